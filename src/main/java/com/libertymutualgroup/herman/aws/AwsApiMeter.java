@@ -0,0 +1,246 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.RetryUtils;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.ObjectMappers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts every AWS call made through the clients of an {@link AwsClientRegistry}: calls, errors, retries and
+ * throttling per service operation, with a latency histogram. Retries happen inside the SDK (see the max error retry
+ * of the client configuration), so they are only visible from here.
+ */
+public class AwsApiMeter extends RequestHandler2 {
+
+    /**
+     * System property, or else environment variable {@value #REPORT_PATH_ENV}, naming the file to export the call
+     * counts to. Nothing is written unless one of them is set.
+     */
+    public static final String REPORT_PATH_PROPERTY = "herman.awsCallReport";
+    public static final String REPORT_PATH_ENV = "HERMAN_AWS_CALL_REPORT";
+
+    static final long[] LATENCY_BUCKETS_MS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private static final HandlerContextKey<Long> STARTED_AT = new HandlerContextKey<>("HermanMeterStartedAt");
+
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        request.addHandlerContext(STARTED_AT, System.nanoTime());
+    }
+
+    @Override
+    public void afterAttempt(HandlerAfterAttemptContext context) {
+        OperationStats stats = getStats(context.getRequest());
+        stats.attempts.increment();
+        Exception exception = context.getException();
+        if (exception instanceof SdkBaseException && RetryUtils.isThrottlingException((SdkBaseException) exception)) {
+            stats.throttles.increment();
+        }
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        getStats(request).record(elapsedMs(request), true);
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+        getStats(request).record(elapsedMs(request), false);
+    }
+
+    public List<OperationStats> getOperations() {
+        List<OperationStats> result = new ArrayList<>(operations.values());
+        result.sort(Comparator.comparingLong(OperationStats::getCalls).reversed()
+            .thenComparing(OperationStats::getName));
+        return result;
+    }
+
+    public long getTotalCalls() {
+        return operations.values().stream().mapToLong(OperationStats::getCalls).sum();
+    }
+
+    public void logSummary(HermanLogger logger) {
+        List<OperationStats> stats = getOperations();
+        if (stats.isEmpty()) {
+            return;
+        }
+        logger.addLogEntry("AWS API calls:");
+        logger.addLogEntry(String.format("... %-48s %6s %6s %7s %9s %8s %8s", "operation", "calls", "errors", "retries",
+            "throttled", "avg ms", "max ms"));
+        long calls = 0;
+        long errors = 0;
+        long retries = 0;
+        long throttles = 0;
+        for (OperationStats operation : stats) {
+            logger.addLogEntry(String.format("... %-48s %6d %6d %7d %9d %8d %8d", operation.getName(),
+                operation.getCalls(), operation.getErrors(), operation.getRetries(), operation.getThrottles(),
+                operation.getAverageMs(), operation.getMaxMs()));
+            calls += operation.getCalls();
+            errors += operation.getErrors();
+            retries += operation.getRetries();
+            throttles += operation.getThrottles();
+        }
+        logger.addLogEntry(String.format("... %-48s %6d %6d %7d %9d", "total", calls, errors, retries, throttles));
+    }
+
+    public void writeJson(File file) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("totalCalls", getTotalCalls());
+        report.put("latencyBucketsMs", LATENCY_BUCKETS_MS);
+        report.put("operations", getOperations());
+        ObjectMappers.json().writer().with(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+    }
+
+    /**
+     * Logs the summary table and, when a report path is configured, exports the same numbers to it.
+     */
+    public void report(HermanLogger logger) {
+        report(logger, getReportFile());
+    }
+
+    void report(HermanLogger logger, File file) {
+        logSummary(logger);
+        if (file == null || operations.isEmpty()) {
+            return;
+        }
+        try {
+            writeJson(file);
+        } catch (IOException e) {
+            logger.addLogEntry("Unable to write " + file + ": " + e.getMessage());
+        }
+    }
+
+    static File getReportFile() {
+        String path = System.getProperty(REPORT_PATH_PROPERTY, System.getenv(REPORT_PATH_ENV));
+        return path == null || path.trim().isEmpty() ? null : new File(path.trim());
+    }
+
+    private OperationStats getStats(Request<?> request) {
+        String service = request.getHandlerContext(HandlerContextKey.SERVICE_ID);
+        if (service == null) {
+            service = request.getServiceName();
+        }
+        String operation = request.getHandlerContext(HandlerContextKey.OPERATION_NAME);
+        if (operation == null) {
+            AmazonWebServiceRequest original = request.getOriginalRequest();
+            operation = original == null ? "unknown" : original.getClass().getSimpleName().replaceAll("Request$", "");
+        }
+        return operations.computeIfAbsent(service + ":" + operation, OperationStats::new);
+    }
+
+    private static long elapsedMs(Request<?> request) {
+        Long startedAt = request.getHandlerContext(STARTED_AT);
+        return startedAt == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+    }
+
+    @JsonPropertyOrder({"name", "calls", "errors", "retries", "throttles", "averageMs", "maxMs", "latencyHistogram"})
+    public static class OperationStats {
+
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder throttles = new LongAdder();
+        private final LongAdder totalMs = new LongAdder();
+        private final AtomicLong maxMs = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(LATENCY_BUCKETS_MS.length + 1);
+
+        OperationStats(String name) {
+            this.name = name;
+        }
+
+        void record(long durationMs, boolean succeeded) {
+            calls.increment();
+            if (!succeeded) {
+                errors.increment();
+            }
+            totalMs.add(durationMs);
+            maxMs.accumulateAndGet(durationMs, Math::max);
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_MS.length && durationMs > LATENCY_BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getRetries() {
+            return Math.max(0, attempts.sum() - calls.sum());
+        }
+
+        public long getThrottles() {
+            return throttles.sum();
+        }
+
+        public long getAverageMs() {
+            long count = getCalls();
+            return count == 0 ? 0 : totalMs.sum() / count;
+        }
+
+        public long getMaxMs() {
+            return maxMs.get();
+        }
+
+        /**
+         * Call counts per latency bucket, keyed by the bucket's upper bound in ms ("+Inf" for the last one).
+         */
+        public Map<String, Long> getLatencyHistogram() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (int i = 0; i < histogram.length(); i++) {
+                String bound = i < LATENCY_BUCKETS_MS.length ? String.valueOf(LATENCY_BUCKETS_MS[i]) : "+Inf";
+                result.put(bound, histogram.get(i));
+            }
+            return result;
+        }
+    }
+}
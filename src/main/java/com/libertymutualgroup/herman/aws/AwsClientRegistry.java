@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws;
+
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScaling;
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScalingClientBuilder;
+import com.amazonaws.services.autoscaling.AmazonAutoScaling;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingClientBuilder;
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
+import com.amazonaws.services.cloudwatch.AmazonCloudWatch;
+import com.amazonaws.services.cloudwatch.AmazonCloudWatchClientBuilder;
+import com.amazonaws.services.cloudwatchevents.AmazonCloudWatchEvents;
+import com.amazonaws.services.cloudwatchevents.AmazonCloudWatchEventsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.AmazonECSClientBuilder;
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClientBuilder;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
+import com.amazonaws.services.kms.AWSKMS;
+import com.amazonaws.services.kms.AWSKMSClientBuilder;
+import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
+import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
+import com.amazonaws.services.rds.AmazonRDS;
+import com.amazonaws.services.rds.AmazonRDSClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClientBuilder;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.AmazonSNSClientBuilder;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Lazily builds AWS clients for one set of credentials, region and client configuration, and shares them between
+ * every component of a task run (the push, its brokers, nested pushes and configuration lookups).
+ *
+ * Task entry points {@link #acquire} a registry and {@link #release()} (or {@link #close()}) it when they finish; the
+ * clients are shut down once the last holder releases. Whoever acquires a registry owns that hold and must release it,
+ * so code that may run outside a task acquires its own in a try-with-resources block. Components that are only ever
+ * created within a task look the shared registry up with {@link #getInstance}, which fails when nothing holds one.
+ */
+public class AwsClientRegistry implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AwsClientRegistry.class);
+    private static final Map<String, AwsClientRegistry> REGISTRIES = new HashMap<>();
+    // Rate limiters and the number of live registries using each; both guarded by REGISTRIES
+    private static final Map<String, AwsRateLimiter> RATE_LIMITERS = new HashMap<>();
+    private static final Map<String, Integer> RATE_LIMITER_REGISTRIES = new HashMap<>();
+
+    private static final int LAMBDA_TIMEOUT_MS = 300000;
+    private static final int LAMBDA_ASYNC_TIMEOUT_MS = 900000;
+
+    private final String key;
+    private final String rateLimiterKey;
+    private final AWSStaticCredentialsProvider credentialsProvider;
+    private final Regions region;
+    private final ClientConfiguration clientConfiguration;
+    private final ConcurrentMap<String, Object> clients = new ConcurrentHashMap<>();
+    private final AwsApiMeter meter = new AwsApiMeter();
+    private final AwsRateLimiter rateLimiter;
+    private int holders;
+
+    private AwsClientRegistry(String key, AWSCredentials credentials, Regions region,
+        ClientConfiguration clientConfiguration) {
+        this.key = key;
+        this.credentialsProvider = new AWSStaticCredentialsProvider(credentials);
+        this.region = region;
+        this.clientConfiguration = clientConfiguration;
+        this.rateLimiterKey = credentials.getAWSAccessKeyId() + "|" + region;
+        this.rateLimiter = RATE_LIMITERS.computeIfAbsent(rateLimiterKey, k -> new AwsRateLimiter());
+        RATE_LIMITER_REGISTRIES.merge(rateLimiterKey, 1, Integer::sum);
+    }
+
+    public static AwsClientRegistry acquire(AWSCredentials credentials, Regions region,
+        ClientConfiguration clientConfiguration) {
+        String key = keyFor(credentials, region, clientConfiguration);
+        synchronized (REGISTRIES) {
+            AwsClientRegistry registry = REGISTRIES.computeIfAbsent(key,
+                k -> new AwsClientRegistry(k, credentials, region, clientConfiguration));
+            registry.holders++;
+            return registry;
+        }
+    }
+
+    /**
+     * @return the registry a task has acquired for these credentials, region and client configuration; callers do not
+     * release it
+     * @throws IllegalStateException if no task holds one
+     */
+    public static AwsClientRegistry getInstance(AWSCredentials credentials, Regions region,
+        ClientConfiguration clientConfiguration) {
+        String key = keyFor(credentials, region, clientConfiguration);
+        synchronized (REGISTRIES) {
+            AwsClientRegistry registry = REGISTRIES.get(key);
+            if (registry != null) {
+                return registry;
+            }
+        }
+        throw new IllegalStateException("No AWS client registry has been acquired for region " + region
+            + "; acquire one where the task starts and release it when the task ends");
+    }
+
+    public void release() {
+        synchronized (REGISTRIES) {
+            if (--holders > 0) {
+                return;
+            }
+            REGISTRIES.remove(key, this);
+            if (RATE_LIMITER_REGISTRIES.merge(rateLimiterKey, -1, Integer::sum) <= 0) {
+                RATE_LIMITER_REGISTRIES.remove(rateLimiterKey);
+                RATE_LIMITERS.remove(rateLimiterKey);
+            }
+        }
+        shutdown();
+    }
+
+    /**
+     * Same as {@link #release()}, so a registry can be held in a try-with-resources block.
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    /**
+     * Metering for every call made through this registry's clients.
+     */
+    public AwsApiMeter getMeter() {
+        return meter;
+    }
+
+    /**
+     * Rate limiter shared by every registry (and so every task in this process) using the same access key and region.
+     * It is dropped with the last of those registries, so short-lived session keys do not accumulate limiters.
+     */
+    public AwsRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public AmazonIdentityManagement getIamClient() {
+        return getClient("iam", AmazonIdentityManagementClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonECS getEcsClient() {
+        return getClient("ecs", AmazonECSClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonEC2 getEc2Client() {
+        return getClient("ec2", AmazonEC2ClientBuilder::standard, clientConfiguration);
+    }
+
+    public com.amazonaws.services.elasticloadbalancing.AmazonElasticLoadBalancing getElbClient() {
+        return getClient("elb",
+            com.amazonaws.services.elasticloadbalancing.AmazonElasticLoadBalancingClientBuilder::standard,
+            clientConfiguration);
+    }
+
+    public com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancing getElbV2Client() {
+        return getClient("elbv2",
+            com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancingClientBuilder::standard,
+            clientConfiguration);
+    }
+
+    public AmazonCloudFormation getCloudFormationClient() {
+        return getClient("cloudformation", AmazonCloudFormationClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonS3 getS3Client() {
+        return getClient("s3", AmazonS3ClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonKinesis getKinesisClient() {
+        return getClient("kinesis", AmazonKinesisClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonRDS getRdsClient() {
+        return getClient("rds", AmazonRDSClientBuilder::standard, clientConfiguration);
+    }
+
+    public AWSKMS getKmsClient() {
+        return getClient("kms", AWSKMSClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonSQS getSqsClient() {
+        return getClient("sqs", AmazonSQSClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonSNS getSnsClient() {
+        return getClient("sns", AmazonSNSClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonDynamoDB getDynamoDbClient() {
+        return getClient("dynamodb", AmazonDynamoDBClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonCloudWatch getCloudWatchClient() {
+        return getClient("cloudwatch", AmazonCloudWatchClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonCloudWatchEvents getCloudWatchEventsClient() {
+        return getClient("events", AmazonCloudWatchEventsClientBuilder::standard, clientConfiguration);
+    }
+
+    public AmazonAutoScaling getAutoScalingClient() {
+        return getClient("autoscaling", AmazonAutoScalingClientBuilder::standard, clientConfiguration);
+    }
+
+    public AWSApplicationAutoScaling getApplicationAutoScalingClient() {
+        return getClient("application-autoscaling", AWSApplicationAutoScalingClientBuilder::standard,
+            clientConfiguration);
+    }
+
+    public AWSSecurityTokenService getStsClient() {
+        return getClient("sts", AWSSecurityTokenServiceClientBuilder::standard, clientConfiguration);
+    }
+
+    public AWSLambda getLambdaClient() {
+        return getClient("lambda", AWSLambdaClientBuilder::standard, new ClientConfiguration(clientConfiguration)
+            .withClientExecutionTimeout(LAMBDA_TIMEOUT_MS).withSocketTimeout(LAMBDA_TIMEOUT_MS));
+    }
+
+    public AWSLambdaAsync getLambdaAsyncClient() {
+        return getClient("lambda-async", AWSLambdaAsyncClientBuilder::standard,
+            new ClientConfiguration(clientConfiguration)
+                .withClientExecutionTimeout(LAMBDA_ASYNC_TIMEOUT_MS).withSocketTimeout(LAMBDA_ASYNC_TIMEOUT_MS));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <B extends AwsClientBuilder<B, T>, T> T getClient(String name, Supplier<B> builder,
+        ClientConfiguration configuration) {
+        return (T) clients.computeIfAbsent(name, k -> {
+            B clientBuilder = builder.get()
+                .withCredentials(credentialsProvider)
+                .withClientConfiguration(configuration)
+                .withRequestHandlers(rateLimiter, meter);
+            if (region != null) {
+                clientBuilder = clientBuilder.withRegion(region);
+            }
+            return clientBuilder.build();
+        });
+    }
+
+    private void shutdown() {
+        for (Map.Entry<String, Object> client : clients.entrySet()) {
+            try {
+                ((AmazonWebServiceClient) client.getValue()).shutdown();
+            } catch (Exception e) {
+                LOGGER.debug("Error shutting down " + client.getKey() + " client", e);
+            }
+        }
+        clients.clear();
+    }
+
+    private static String keyFor(AWSCredentials credentials, Regions region, ClientConfiguration configuration) {
+        String sessionToken = credentials instanceof AWSSessionCredentials
+            ? ((AWSSessionCredentials) credentials).getSessionToken() : null;
+        return String.join("|",
+            credentials.getAWSAccessKeyId(),
+            credentials.getAWSSecretKey(),
+            String.valueOf(sessionToken),
+            String.valueOf(region),
+            String.valueOf(configuration.getMaxErrorRetry()),
+            String.valueOf(configuration.getConnectionTimeout()),
+            String.valueOf(configuration.getSocketTimeout()),
+            String.valueOf(configuration.getRequestTimeout()),
+            String.valueOf(configuration.getClientExecutionTimeout()),
+            String.valueOf(configuration.getMaxConnections()),
+            String.valueOf(configuration.getProtocol()),
+            String.valueOf(configuration.getProxyHost()),
+            String.valueOf(configuration.getProxyPort()));
+    }
+}
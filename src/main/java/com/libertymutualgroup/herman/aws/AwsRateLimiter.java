@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.Request;
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerBeforeAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.RetryUtils;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side rate limiter with one token bucket per AWS service. Every attempt (including SDK retries) takes a
+ * token; a throttling response halves the rate of that service and each successful call adds back a little, up to
+ * the configured rate (AIMD).
+ *
+ * Rates are requests per second keyed by lower-cased service id ("ecs", "cloudformation", "iam", "kms", ...), with
+ * "default" used for anything not listed.
+ */
+public class AwsRateLimiter extends RequestHandler2 {
+
+    public static final String DEFAULT_SERVICE = "default";
+    static final double MIN_RATE = 0.5;
+    static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Map<String, Double> DEFAULT_RATES = new HashMap<>();
+
+    static {
+        DEFAULT_RATES.put(DEFAULT_SERVICE, 20.0);
+        DEFAULT_RATES.put("ecs", 20.0);
+        DEFAULT_RATES.put("cloudformation", 5.0);
+        DEFAULT_RATES.put("iam", 10.0);
+        DEFAULT_RATES.put("kms", 50.0);
+    }
+
+    private final Map<String, Double> rates = new ConcurrentHashMap<>(DEFAULT_RATES);
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Overrides the starting (and maximum) rate of the given services. A bucket already in use is only replaced when
+     * its configured rate changes, so every push configuring the same rates keeps the rate learned from throttling.
+     */
+    public void configure(Map<String, Double> serviceRates) {
+        if (serviceRates == null) {
+            return;
+        }
+        serviceRates.forEach((service, rate) -> {
+            if (rate != null && rate > 0) {
+                String key = normalize(service);
+                if (!rate.equals(rates.put(key, rate))) {
+                    buckets.remove(key);
+                }
+            }
+        });
+    }
+
+    public double getRate(String service) {
+        return getBucket(normalize(service)).getRate();
+    }
+
+    @Override
+    public void beforeAttempt(HandlerBeforeAttemptContext context) {
+        long waitNanos = getBucket(serviceOf(context.getRequest())).reserve(System.nanoTime());
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException(e);
+        }
+    }
+
+    @Override
+    public void afterAttempt(HandlerAfterAttemptContext context) {
+        TokenBucket bucket = getBucket(serviceOf(context.getRequest()));
+        Exception exception = context.getException();
+        if (exception == null) {
+            bucket.onSuccess();
+        } else if (exception instanceof SdkBaseException
+            && RetryUtils.isThrottlingException((SdkBaseException) exception)) {
+            bucket.onThrottle(System.nanoTime());
+        }
+    }
+
+    TokenBucket getBucket(String service) {
+        return buckets.computeIfAbsent(service,
+            key -> new TokenBucket(rates.getOrDefault(key, rates.get(DEFAULT_SERVICE)), System.nanoTime()));
+    }
+
+    private static String serviceOf(Request<?> request) {
+        String service = request.getHandlerContext(HandlerContextKey.SERVICE_ID);
+        return normalize(service != null ? service : request.getServiceName());
+    }
+
+    private static String normalize(String service) {
+        return service == null ? DEFAULT_SERVICE : service.replace(" ", "").toLowerCase(Locale.ROOT);
+    }
+
+    static class TokenBucket {
+
+        private final double maxRate;
+        private double rate;
+        private double tokens;
+        private long lastRefill;
+        private long lastDecrease = Long.MIN_VALUE;
+
+        TokenBucket(double maxRate, long now) {
+            this.maxRate = maxRate;
+            this.rate = maxRate;
+            this.tokens = capacity();
+            this.lastRefill = now;
+        }
+
+        /**
+         * Takes one token and returns how long the caller has to wait for it. Tokens may go negative, so concurrent
+         * callers queue up behind each other instead of all waking at the same time.
+         */
+        synchronized long reserve(long now) {
+            tokens = Math.min(capacity(), tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+            lastRefill = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        synchronized void onSuccess() {
+            // roughly one more request per second for every second of unthrottled calls
+            rate = Math.min(maxRate, rate + 1 / rate);
+        }
+
+        synchronized void onThrottle(long now) {
+            // a burst of throttled calls only counts once
+            if (lastDecrease != Long.MIN_VALUE && now - lastDecrease < DECREASE_COOLDOWN_NANOS) {
+                return;
+            }
+            lastDecrease = now;
+            rate = Math.max(MIN_RATE, rate / 2);
+            tokens = Math.min(tokens, capacity());
+        }
+
+        synchronized double getRate() {
+            return rate;
+        }
+
+        private double capacity() {
+            return Math.max(1, rate);
+        }
+    }
+}
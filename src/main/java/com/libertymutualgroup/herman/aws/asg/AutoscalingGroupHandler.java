@@ -9,16 +9,14 @@ import com.amazonaws.services.autoscaling.AmazonAutoScaling;
 import com.amazonaws.services.autoscaling.model.AmazonAutoScalingException;
 import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
 import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsRequest;
-import com.amazonaws.services.autoscaling.model.Instance;
-import com.amazonaws.services.autoscaling.model.LifecycleState;
 import com.amazonaws.services.autoscaling.model.ResumeProcessesRequest;
+import com.amazonaws.services.autoscaling.model.SetDesiredCapacityRequest;
 import com.amazonaws.services.autoscaling.model.SetInstanceHealthRequest;
 import com.amazonaws.services.autoscaling.model.SuspendProcessesRequest;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class AutoscalingGroupHandler {
     private AmazonAutoScaling asgClient;
@@ -57,11 +55,21 @@ public class AutoscalingGroupHandler {
         return this.asgClient.describeAutoScalingGroups(request).getAutoScalingGroups().get(0);
     }
 
-    public List<Instance> getAsgInstancesInService(String asgName) {
+    /**
+     * Sets the desired capacity, kept within the group's min and max size.
+     */
+    public void setDesiredCapacity(String asgName, int desiredCapacity) {
         AutoScalingGroup group = getAsg(asgName);
-        return group.getInstances().stream()
-            .filter(instance -> LifecycleState.InService.toString().equals(instance.getLifecycleState()) && "Healthy".equals(instance.getHealthStatus()))
-            .collect(Collectors.toList());
+        int desired = Math.max(group.getMinSize(), Math.min(group.getMaxSize(), desiredCapacity));
+        if (desired != desiredCapacity) {
+            this.logger.addLogEntry("...Desired capacity " + desiredCapacity + " is outside " + group.getMinSize()
+                + "-" + group.getMaxSize() + " for " + asgName + ", using " + desired);
+        }
+        this.logger.addLogEntry("...Setting desired capacity of " + asgName + " to " + desired);
+        this.asgClient.setDesiredCapacity(new SetDesiredCapacityRequest()
+            .withAutoScalingGroupName(asgName)
+            .withDesiredCapacity(desired)
+            .withHonorCooldown(false));
     }
 
     public void setEc2Unhealthy(String instanceId) {
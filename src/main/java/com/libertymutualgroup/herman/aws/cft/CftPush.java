@@ -16,31 +16,32 @@
 package com.libertymutualgroup.herman.aws.cft;
 
 import com.amazonaws.AmazonServiceException;
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
-import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
 import com.amazonaws.services.cloudformation.model.AlreadyExistsException;
 import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
 import com.amazonaws.services.cloudformation.model.CreateStackRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStackResourcesRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStackResourcesResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.Output;
 import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.Stack;
 import com.amazonaws.services.cloudformation.model.StackResource;
 import com.amazonaws.services.cloudformation.model.Tag;
 import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
 import com.amazonaws.services.lambda.AWSLambda;
-import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
 import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.aws.tags.HermanTag;
 import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.cft.CftPushTaskProperties;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -53,6 +54,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -81,17 +83,15 @@ public class CftPush { ;
         this.propertyHandler = taskContext.getPropertyHandler();
         this.region = taskContext.getRegion();
 
-        cftClient = AmazonCloudFormationClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(taskContext.getSessionCredentials())).withClientConfiguration(taskContext.getAwsClientConfig())
-            .withRegion(region).build();
-
-        lambdaClient = AWSLambdaClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(taskContext.getSessionCredentials())).withClientConfiguration(taskContext.getAwsClientConfig())
-            .withRegion(region).build();
-
-        this.stackUtils = new StackUtils(this.cftClient, this.buildLogger);
+        AwsClientRegistry clients = taskContext.getClientRegistry();
+        clients.getRateLimiter().configure(taskContext.getTaskProperties().getApiRateLimits());
+        cftClient = clients.getCloudFormationClient();
+        lambdaClient = clients.getLambdaClient();
 
         this.taskProperties = taskContext.getTaskProperties();
+
+        this.stackUtils = new StackUtils(this.cftClient, this.buildLogger)
+            .withFailFast(Boolean.TRUE.equals(this.taskProperties.getFailFast()));
     }
 
     public void push(String stackName, String template) {
@@ -99,6 +99,37 @@ public class CftPush { ;
     }
 
     public void push(String stackName, String template, List<HermanTag> stackTags) {
+        deploy(stackName, template, stackTags, true);
+
+        try (OutputStream fileOut = new FileOutputStream(taskContext.getRootPath() + File.separator + "stackoutput.properties")) {
+            output.store(fileOut, null);
+        } catch (IOException e) {
+            throw new AwsExecException(e);
+        }
+    }
+
+    /**
+     * Pushes the stack without reading or writing stackoutput.properties, for callers that hand outputs from one
+     * stack to the next themselves.
+     *
+     * @return the stack's outputs by key, plus the physical id of each resource as aws.stack.[logical id]
+     */
+    public Map<String, String> pushInMemory(String stackName, String template, List<HermanTag> stackTags) {
+        String deployedName = deploy(stackName, template, stackTags, false);
+
+        Map<String, String> stackOutputs = new HashMap<>();
+        for (String key: output.stringPropertyNames()) {
+            stackOutputs.put(key, output.getProperty(key));
+        }
+        List<Stack> stacks = cftClient.describeStacks(new DescribeStacksRequest().withStackName(deployedName))
+            .getStacks();
+        for (Output stackOutput: stacks.get(0).getOutputs()) {
+            stackOutputs.put(stackOutput.getOutputKey(), stackOutput.getOutputValue());
+        }
+        return stackOutputs;
+    }
+
+    private String deploy(String stackName, String template, List<HermanTag> stackTags, boolean useOutputFile) {
 
         // Input data outside of CFT
         String env = taskContext.getEnvName();
@@ -109,7 +140,7 @@ public class CftPush { ;
             introspectEnvironment();
         }
         injectBambooContext();
-        importPropFiles(env);
+        importPropFiles(env, useOutputFile);
 
         if (this.taskContext.getTemplateParameters() != null) {
             props.putAll(this.taskContext.getTemplateParameters());
@@ -119,30 +150,34 @@ public class CftPush { ;
             stackName = stackName + "-" + region.getName();
         }
 
-        createStack(stackName, template, stackTags);
-
-        buildLogger.addLogEntry("Stack triggered: " + stackName);
-        this.stackUtils.waitForCompletion(stackName);
-        outputStack(stackName);
+        if (Boolean.TRUE.equals(this.taskProperties.getUseChangeSets())) {
+            if (pushChangeSet(stackName, template, stackTags)) {
+                buildLogger.addLogEntry("Stack triggered: " + stackName);
+                this.stackUtils.waitForCompletion(stackName, false);
+            }
+        } else {
+            createStack(stackName, template, stackTags);
 
-        try (OutputStream fileOut = new FileOutputStream(taskContext.getRootPath() + File.separator + "stackoutput.properties")) {
-            output.store(fileOut, null);
-        } catch (IOException e) {
-            throw new AwsExecException(e);
+            buildLogger.addLogEntry("Stack triggered: " + stackName);
+            this.stackUtils.waitForCompletion(stackName);
         }
+        outputStack(stackName);
+        return stackName;
     }
 
-    private void importPropFiles(String env) {
-        File stackOut = new File(taskContext.getRootPath() + File.separator + "stackoutput.properties");
+    private void importPropFiles(String env, boolean useOutputFile) {
+        if (useOutputFile) {
+            File stackOut = new File(taskContext.getRootPath() + File.separator + "stackoutput.properties");
 
-        try (FileReader stackRead = new FileReader(stackOut)) {
-            if (stackOut.exists()) {
-                props.load(stackRead);
-                buildLogger.addLogEntry("Loaded stackoutput.properties");
+            try (FileReader stackRead = new FileReader(stackOut)) {
+                if (stackOut.exists()) {
+                    props.load(stackRead);
+                    buildLogger.addLogEntry("Loaded stackoutput.properties");
+                }
+            } catch (IOException e) {
+                LOGGER.debug("No stackoutput.properties", e);
+                buildLogger.addLogEntry("No stackoutput.properties");
             }
-        } catch (IOException e) {
-            LOGGER.debug("No stackoutput.properties", e);
-            buildLogger.addLogEntry("No stackoutput.properties");
         }
 
         String root = taskContext.getRootPath();
@@ -187,31 +222,21 @@ public class CftPush { ;
 
     }
 
-    private void createStack(String name, String template, List<HermanTag> stackTags) {
-        List<Parameter> parameters = convertPropsToCftParams(template);
-
-        String deployEnvironment = taskContext.getEnvName();
-
-        List<HermanTag> defaultTags = new ArrayList<>();
-        defaultTags.add(new HermanTag().withKey("Name").withValue(name));
-        defaultTags.add(new HermanTag().withKey(this.taskProperties.getAppTagKey()).withValue(name));
-        defaultTags.add(new HermanTag().withKey(this.taskProperties.getAppTagKey() + "_uid").withValue("app-e312c4299a"));
-        defaultTags.add(new HermanTag().withKey(this.taskProperties.getAppTagKey() + "_env").withValue(deployEnvironment));
-        defaultTags.add(new HermanTag().withKey(this.taskProperties.getSbuTagKey()).withValue(this.taskProperties.getSbu()));
-
-        Properties bambooContext = this.propertyHandler.lookupProperties(BUILD_NUMBER, MAVEN_GROUP, MAVEN_ART,
-            MAVEN_VERS);
+    private boolean pushChangeSet(String name, String template, List<HermanTag> stackTags) {
+        try {
+            return new StackChangeSet(cftClient, buildLogger)
+                .apply(name, template, convertPropsToCftParams(template), buildTags(name, stackTags));
+        } catch (AmazonServiceException ase) {
+            LOGGER.debug("Change set push threw an exception for " + name, ase);
 
-        String artifactId = bambooContext.getProperty(MAVEN_ART);
-        if (StringUtils.isNotEmpty(artifactId)) {
-            defaultTags.add(new HermanTag().withKey(this.taskProperties.getCompany() + "_gav")
-                .withValue(bambooContext.getProperty(MAVEN_GROUP) + ":"
-                    + bambooContext.getProperty(MAVEN_ART) + ":"
-                    + bambooContext.getProperty(MAVEN_VERS)));
+            buildLogger.addLogEntry(ase.toString());
+            throw new AwsExecException(ase);
         }
+    }
 
-        List<HermanTag> mergedTags = TagUtil.mergeTags(defaultTags, stackTags);
-        List<Tag> tags = TagUtil.hermanToCftTags(mergedTags);
+    private void createStack(String name, String template, List<HermanTag> stackTags) {
+        List<Parameter> parameters = convertPropsToCftParams(template);
+        List<Tag> tags = buildTags(name, stackTags);
 
         try {
             CreateStackRequest createStackRequest = new CreateStackRequest().withCapabilities("CAPABILITY_IAM")
@@ -246,8 +271,44 @@ public class CftPush { ;
 
     }
 
+    private List<Tag> buildTags(String name, List<HermanTag> stackTags) {
+        String deployEnvironment = taskContext.getEnvName();
+
+        List<HermanTag> defaultTags = new ArrayList<>();
+        defaultTags.add(new HermanTag().withKey("Name").withValue(name));
+        defaultTags.add(new HermanTag().withKey(this.taskProperties.getAppTagKey()).withValue(name));
+        defaultTags.add(new HermanTag().withKey(this.taskProperties.getAppTagKey() + "_uid").withValue("app-e312c4299a"));
+        defaultTags.add(new HermanTag().withKey(this.taskProperties.getAppTagKey() + "_env").withValue(deployEnvironment));
+        defaultTags.add(new HermanTag().withKey(this.taskProperties.getSbuTagKey()).withValue(this.taskProperties.getSbu()));
+
+        Properties bambooContext = this.propertyHandler.lookupProperties(BUILD_NUMBER, MAVEN_GROUP, MAVEN_ART,
+            MAVEN_VERS);
+
+        String artifactId = bambooContext.getProperty(MAVEN_ART);
+        if (StringUtils.isNotEmpty(artifactId)) {
+            defaultTags.add(new HermanTag().withKey(this.taskProperties.getCompany() + "_gav")
+                .withValue(bambooContext.getProperty(MAVEN_GROUP) + ":"
+                    + bambooContext.getProperty(MAVEN_ART) + ":"
+                    + bambooContext.getProperty(MAVEN_VERS)));
+        }
+
+        List<HermanTag> mergedTags = TagUtil.mergeTags(defaultTags, stackTags);
+        return TagUtil.hermanToCftTags(mergedTags);
+    }
 
     private List<Parameter> convertPropsToCftParams(String template) {
+        CftTemplateParameters declared;
+        try {
+            declared = CftTemplateParameters.of(template);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to parse template parameters", e);
+            buildLogger.addLogEntry("Unable to parse template Parameters, matching properties by name instead");
+            return matchPropsByName(template);
+        }
+        return declared.select(props);
+    }
+
+    private List<Parameter> matchPropsByName(String template) {
         List<Parameter> parameters = new ArrayList<>();
         for (Object key: props.keySet()) {
             if (template.contains((String) key)) {
@@ -268,7 +329,7 @@ public class CftPush { ;
             Charset.forName("UTF-8"));
         Map<String, String> variables;
         try {
-            variables = new ObjectMapper().readValue(variableJson, new TypeReference<Map<String, String>>() {});
+            variables = ObjectMappers.json().readValue(variableJson, new TypeReference<Map<String, String>>() {});
         } catch (IOException e) {
             this.buildLogger.addLogEntry(e.getMessage());
             this.buildLogger.addLogEntry("Unable to parse variables from " + variableJson);
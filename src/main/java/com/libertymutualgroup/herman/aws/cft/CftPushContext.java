@@ -8,6 +8,7 @@ package com.libertymutualgroup.herman.aws.cft;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.cft.CftPushTaskProperties;
@@ -97,6 +98,13 @@ public class CftPushContext {
         this.taskProperties = taskProperties;
     }
 
+    /**
+     * @return the clients shared for these credentials, region and client configuration
+     */
+    public AwsClientRegistry getClientRegistry() {
+        return AwsClientRegistry.getInstance(sessionCredentials, region, awsClientConfig);
+    }
+
     public CftPushContext withLogger(final HermanLogger logger) {
         this.logger = logger;
         return this;
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.libertymutualgroup.herman.aws.tags.HermanTag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CftStackDefinition {
+    private String name;
+    private String template;
+    private List<String> dependsOn = new ArrayList<>();
+    private Map<String, String> parameters = new HashMap<>();
+    private Map<String, String> inputs = new HashMap<>();
+    private List<HermanTag> tags;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(String template) {
+        this.template = template;
+    }
+
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(Map<String, String> parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Parameter name to the output that feeds it, written as [stack name].[output key]. Resource physical ids can
+     * be referenced the same way by logical id.
+     */
+    public Map<String, String> getInputs() {
+        return inputs;
+    }
+
+    public void setInputs(Map<String, String> inputs) {
+        this.inputs = inputs;
+    }
+
+    public List<HermanTag> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<HermanTag> tags) {
+        this.tags = tags;
+    }
+
+    public CftStackDefinition withName(final String name) {
+        this.name = name;
+        return this;
+    }
+
+    public CftStackDefinition withTemplate(final String template) {
+        this.template = template;
+        return this;
+    }
+
+    public CftStackDefinition withDependsOn(final List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+        return this;
+    }
+
+    public CftStackDefinition withParameters(final Map<String, String> parameters) {
+        this.parameters = parameters;
+        return this;
+    }
+
+    public CftStackDefinition withInputs(final Map<String, String> inputs) {
+        this.inputs = inputs;
+        return this;
+    }
+
+    public CftStackDefinition withTags(final List<HermanTag> tags) {
+        this.tags = tags;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CftStackDefinition{" +
+            "name='" + name + '\'' +
+            ", template='" + template + '\'' +
+            ", dependsOn=" + dependsOn +
+            ", parameters=" + parameters +
+            ", inputs=" + inputs +
+            ", tags=" + tags +
+            '}';
+    }
+}
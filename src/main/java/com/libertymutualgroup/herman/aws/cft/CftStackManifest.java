@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CftStackManifest {
+    private int maxParallel = 4;
+    private List<CftStackDefinition> stacks = new ArrayList<>();
+
+    public int getMaxParallel() {
+        return maxParallel;
+    }
+
+    public void setMaxParallel(int maxParallel) {
+        this.maxParallel = maxParallel;
+    }
+
+    public List<CftStackDefinition> getStacks() {
+        return stacks;
+    }
+
+    public void setStacks(List<CftStackDefinition> stacks) {
+        this.stacks = stacks;
+    }
+
+    public CftStackManifest withMaxParallel(final int maxParallel) {
+        this.maxParallel = maxParallel;
+        return this;
+    }
+
+    public CftStackManifest withStacks(final List<CftStackDefinition> stacks) {
+        this.stacks = stacks;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CftStackManifest{" +
+            "maxParallel=" + maxParallel +
+            ", stacks=" + stacks +
+            '}';
+    }
+}
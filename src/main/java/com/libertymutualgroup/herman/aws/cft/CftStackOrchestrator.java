@@ -0,0 +1,296 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
+import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
+import com.libertymutualgroup.herman.util.TemplateFormat;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Pushes the stacks listed in a cft-stacks manifest in dependency order. Stacks whose dependencies are done run
+ * concurrently up to the manifest's maxParallel, and outputs are handed to dependent stacks' parameters in memory
+ * rather than through stackoutput.properties.
+ */
+public class CftStackOrchestrator {
+
+    public static final String MANIFEST_NAME = "cft-stacks";
+    private static final String RESOURCE_PREFIX = "aws.stack.";
+
+    interface StackPusher {
+        Map<String, String> push(CftStackDefinition stack, String template, Map<String, String> parameters,
+            HermanLogger stackLogger);
+    }
+
+    private final HermanLogger logger;
+    private final Function<String, String> templateLoader;
+    private final StackPusher pusher;
+
+    public CftStackOrchestrator(CftPushContext context, FileUtil fileUtil) {
+        this(context.getLogger(), name -> loadTemplate(fileUtil, name),
+            (stack, template, parameters, stackLogger) -> {
+                Map<String, String> templateParameters = new HashMap<>();
+                if (context.getTemplateParameters() != null) {
+                    templateParameters.putAll(context.getTemplateParameters());
+                }
+                templateParameters.putAll(parameters);
+
+                CftPushContext stackContext = new CftPushContext()
+                    .withLogger(stackLogger)
+                    .withEnvName(context.getEnvName())
+                    .withRootPath(context.getRootPath())
+                    .withPropertyHandler(context.getPropertyHandler())
+                    .withSessionCredentials(context.getSessionCredentials())
+                    .withAwsClientConfig(context.getAwsClientConfig())
+                    .withRegion(context.getRegion())
+                    .withTemplateParameters(templateParameters)
+                    .withTaskProperties(context.getTaskProperties());
+                return new CftPush(stackContext).pushInMemory(stack.getName(), template, stack.getTags());
+            });
+    }
+
+    CftStackOrchestrator(HermanLogger logger, Function<String, String> templateLoader, StackPusher pusher) {
+        this.logger = logger;
+        this.templateLoader = templateLoader;
+        this.pusher = pusher;
+    }
+
+    /**
+     * @return the manifest in the root path, or null if there is none
+     */
+    public static CftStackManifest findManifest(FileUtil fileUtil, PropertyHandler propertyHandler) {
+        for (TemplateFormat format: TemplateFormat.values()) {
+            String fileName = MANIFEST_NAME + "." + format.toSuffix();
+            if (fileUtil.fileExists(fileName)) {
+                String manifest = fileUtil.findFile(fileName, false);
+                try {
+                    return ObjectMappers.of(!TemplateFormat.YML.equals(format))
+                        .readValue(propertyHandler.mapInProperties(manifest), CftStackManifest.class);
+                } catch (IOException e) {
+                    throw new AwsExecException("Unable to parse " + fileName, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the outputs of every stack, by stack name
+     */
+    public Map<String, Map<String, String>> push(CftStackManifest manifest) {
+        Map<String, CftStackDefinition> stacks = indexStacks(manifest.getStacks());
+        Map<String, Set<String>> dependencies = resolveDependencies(stacks);
+        List<String> order = sortTopologically(dependencies);
+        logger.addLogEntry("Pushing " + order.size() + " stacks (max " + manifest.getMaxParallel()
+            + " at a time): " + String.join(", ", order));
+
+        Map<String, String> templates = new HashMap<>();
+        for (CftStackDefinition stack: stacks.values()) {
+            templates.put(stack.getName(), templateLoader.apply(stack.getTemplate()));
+        }
+
+        Map<String, Map<String, String>> outputs = new ConcurrentHashMap<>();
+        Set<String> pending = new LinkedHashSet<>(order);
+        int parallelism = Math.max(1, Math.min(manifest.getMaxParallel(), order.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        CompletionService<String> completion = new ExecutorCompletionService<>(executor);
+        Map<String, RuntimeException> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        int running = 0;
+        try {
+            while (!pending.isEmpty() || running > 0) {
+                if (failures.isEmpty()) {
+                    for (Iterator<String> it = pending.iterator(); it.hasNext() && running < parallelism; ) {
+                        String name = it.next();
+                        if (outputs.keySet().containsAll(dependencies.get(name))) {
+                            it.remove();
+                            CftStackDefinition stack = stacks.get(name);
+                            String template = templates.get(name);
+                            completion.submit(() -> {
+                                long start = System.currentTimeMillis();
+                                HermanLogger stackLogger = new PrefixedLogger("[" + name + "] ", logger);
+                                try {
+                                    outputs.put(name, pusher.push(stack, template, wireInputs(stack, outputs),
+                                        stackLogger));
+                                    stackLogger.addLogEntry("Complete in "
+                                        + (System.currentTimeMillis() - start) / 1000 + "s");
+                                } catch (RuntimeException e) {
+                                    stackLogger.addErrorLogEntry("Failed: " + e.getMessage(), e);
+                                    failures.put(name, e);
+                                }
+                                return name;
+                            });
+                            running++;
+                        }
+                    }
+                }
+                if (running == 0) {
+                    break;
+                }
+
+                Future<String> done = completion.take();
+                running--;
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    throw new AwsExecException("Unexpected error while pushing stacks", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while pushing stacks", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            if (!pending.isEmpty()) {
+                logger.addLogEntry("Skipped stacks: " + String.join(", ", pending));
+            }
+            Map.Entry<String, RuntimeException> first = failures.entrySet().iterator().next();
+            throw new AwsExecException("Stack push failed: " + first.getKey(), first.getValue());
+        }
+        return outputs;
+    }
+
+    private static Map<String, CftStackDefinition> indexStacks(List<CftStackDefinition> stackList) {
+        Map<String, CftStackDefinition> stacks = new LinkedHashMap<>();
+        for (CftStackDefinition stack: stackList) {
+            if (stack.getName() == null || stack.getTemplate() == null) {
+                throw new AwsExecException("Each stack in " + MANIFEST_NAME + " needs a name and a template");
+            }
+            if (stacks.put(stack.getName(), stack) != null) {
+                throw new AwsExecException("Duplicate stack in " + MANIFEST_NAME + ": " + stack.getName());
+            }
+        }
+        return stacks;
+    }
+
+    private static Map<String, Set<String>> resolveDependencies(Map<String, CftStackDefinition> stacks) {
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        for (CftStackDefinition stack: stacks.values()) {
+            Set<String> stackDependencies = new LinkedHashSet<>();
+            if (stack.getDependsOn() != null) {
+                stackDependencies.addAll(stack.getDependsOn());
+            }
+            if (stack.getInputs() != null) {
+                for (String reference: stack.getInputs().values()) {
+                    stackDependencies.add(parseReference(reference)[0]);
+                }
+            }
+            for (String dependency: stackDependencies) {
+                if (!stacks.containsKey(dependency)) {
+                    throw new AwsExecException("Stack " + stack.getName() + " depends on unknown stack " + dependency);
+                }
+            }
+            dependencies.put(stack.getName(), stackDependencies);
+        }
+        return dependencies;
+    }
+
+    static List<String> sortTopologically(Map<String, Set<String>> dependencies) {
+        Map<String, Integer> remaining = new LinkedHashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        for (Map.Entry<String, Set<String>> entry: dependencies.entrySet()) {
+            remaining.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) {
+                ready.add(entry.getKey());
+            }
+            for (String dependency: entry.getValue()) {
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        List<String> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            order.add(name);
+            for (String dependent: dependents.getOrDefault(name, new ArrayList<>())) {
+                if (remaining.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (order.size() < dependencies.size()) {
+            List<String> cycle = new ArrayList<>(dependencies.keySet());
+            cycle.removeAll(order);
+            throw new AwsExecException("Stack dependencies contain a cycle between: " + String.join(", ", cycle));
+        }
+        return order;
+    }
+
+    private static Map<String, String> wireInputs(CftStackDefinition stack, Map<String, Map<String, String>> outputs) {
+        Map<String, String> parameters = new HashMap<>();
+        if (stack.getParameters() != null) {
+            parameters.putAll(stack.getParameters());
+        }
+        if (stack.getInputs() != null) {
+            for (Map.Entry<String, String> input: stack.getInputs().entrySet()) {
+                String[] reference = parseReference(input.getValue());
+                Map<String, String> stackOutputs = outputs.get(reference[0]);
+                String value = stackOutputs.containsKey(reference[1])
+                    ? stackOutputs.get(reference[1])
+                    : stackOutputs.get(RESOURCE_PREFIX + reference[1]);
+                if (value == null) {
+                    throw new AwsExecException("Stack " + reference[0] + " has no output or resource "
+                        + reference[1] + " for parameter " + input.getKey());
+                }
+                parameters.put(input.getKey(), value);
+            }
+        }
+        return parameters;
+    }
+
+    private static String[] parseReference(String reference) {
+        int dot = reference == null ? -1 : reference.indexOf('.');
+        if (dot <= 0 || dot == reference.length() - 1) {
+            throw new AwsExecException("Stack inputs must be written as [stack name].[output key]: " + reference);
+        }
+        return new String[] {reference.substring(0, dot), reference.substring(dot + 1)};
+    }
+
+    private static String loadTemplate(FileUtil fileUtil, String templateName) {
+        if (!fileUtil.fileExists(templateName)) {
+            throw new AwsExecException("CloudFormation Template with name " + templateName + " not found!");
+        }
+        return fileUtil.findFile(templateName, false);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.util.BinaryUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.util.ObjectMappers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The Parameters section of a CloudFormation template, parsed once per distinct template body.
+ */
+public class CftTemplateParameters {
+
+    static final int MAX_CACHED_TEMPLATES = 64;
+
+    private static final Map<String, CftTemplateParameters> CACHE =
+        new LinkedHashMap<String, CftTemplateParameters>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CftTemplateParameters> eldest) {
+                return size() > MAX_CACHED_TEMPLATES;
+            }
+        };
+
+    private final Map<String, Declaration> declarations;
+
+    private CftTemplateParameters(Map<String, Declaration> declarations) {
+        this.declarations = declarations;
+    }
+
+    /**
+     * @throws IOException if the template is neither valid JSON nor valid YAML
+     */
+    public static CftTemplateParameters of(String template) throws IOException {
+        String hash = hash(template);
+        synchronized (CACHE) {
+            CftTemplateParameters cached = CACHE.get(hash);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        CftTemplateParameters parsed = parse(template);
+        synchronized (CACHE) {
+            CACHE.put(hash, parsed);
+        }
+        return parsed;
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(declarations.keySet());
+    }
+
+    /**
+     * @return the Default declared for the parameter, or null if it is not declared or has no Default
+     */
+    public String getDefault(String name) {
+        Declaration declaration = declarations.get(name);
+        return declaration != null ? declaration.defaultValue : null;
+    }
+
+    /**
+     * Picks the values for the declared parameters out of the available properties and checks them against the
+     * declarations. Parameters without a value are left to their template default.
+     */
+    public List<Parameter> select(Properties props) {
+        List<Parameter> parameters = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        for (Declaration declaration: declarations.values()) {
+            String value = props.getProperty(declaration.name);
+            if (value == null) {
+                if (!declaration.hasDefault) {
+                    errors.add(declaration.name + " has no value and no Default");
+                }
+                continue;
+            }
+            String error = declaration.validate(value);
+            if (error != null) {
+                errors.add(error);
+                continue;
+            }
+            parameters.add(new Parameter().withParameterKey(declaration.name).withParameterValue(value));
+        }
+        if (!errors.isEmpty()) {
+            throw new AwsExecException("Invalid template parameters: " + String.join("; ", errors));
+        }
+        return parameters;
+    }
+
+    private static CftTemplateParameters parse(String template) throws IOException {
+        boolean isJson = template.trim().startsWith("{");
+        JsonNode parameters = ObjectMappers.of(isJson).readTree(template).path("Parameters");
+
+        Map<String, Declaration> declarations = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = parameters.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            declarations.put(field.getKey(), new Declaration(field.getKey(), field.getValue()));
+        }
+        return new CftTemplateParameters(declarations);
+    }
+
+    private static String hash(String template) {
+        try {
+            byte[] body = template.getBytes(StandardCharsets.UTF_8);
+            return BinaryUtils.toHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AwsExecException(e);
+        }
+    }
+
+    private static class Declaration {
+        private final String name;
+        private final String type;
+        private final boolean hasDefault;
+        private final String defaultValue;
+        private final List<String> allowedValues = new ArrayList<>();
+
+        Declaration(String name, JsonNode node) {
+            this.name = name;
+            this.type = node.path("Type").asText("String");
+            this.hasDefault = node.has("Default");
+            this.defaultValue = hasDefault ? node.get("Default").asText() : null;
+            for (JsonNode allowed: node.path("AllowedValues")) {
+                allowedValues.add(allowed.asText());
+            }
+        }
+
+        String validate(String value) {
+            if ("Number".equals(type) && !isNumber(value)) {
+                return name + " must be a Number but was '" + value + "'";
+            }
+            if ("List<Number>".equals(type)) {
+                for (String item: value.split(",")) {
+                    if (!isNumber(item.trim())) {
+                        return name + " must be a List<Number> but was '" + value + "'";
+                    }
+                }
+            }
+            if (!allowedValues.isEmpty() && !allowedValues.contains(value)) {
+                return name + " must be one of " + allowedValues + " but was '" + value + "'";
+            }
+            return null;
+        }
+
+        private static boolean isNumber(String value) {
+            try {
+                Double.parseDouble(value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.Change;
+import com.amazonaws.services.cloudformation.model.ChangeSetNotFoundException;
+import com.amazonaws.services.cloudformation.model.ChangeSetStatus;
+import com.amazonaws.services.cloudformation.model.ChangeSetType;
+import com.amazonaws.services.cloudformation.model.CreateChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DeleteChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.ExecuteChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.ExecutionStatus;
+import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.Tag;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Pushes a template through a CloudFormation change set so that a push with nothing to change is detected as soon
+ * as the change set has been computed, and the resource-level diff is logged before anything is executed.
+ */
+public class StackChangeSet {
+
+    static final long INITIAL_POLL_MS = 1000;
+    static final long MAX_POLL_MS = 10000;
+    private static final long MAX_WAIT_MS = 30L * 60 * 1000;
+
+    private static final String[] NO_CHANGE_REASONS = {
+        "didn't contain changes",
+        "No updates are to be performed"
+    };
+
+    private final AmazonCloudFormation cftClient;
+    private final HermanLogger logger;
+    private final LongConsumer sleeper;
+
+    public StackChangeSet(AmazonCloudFormation cftClient, HermanLogger logger) {
+        this(cftClient, logger, null);
+    }
+
+    StackChangeSet(AmazonCloudFormation cftClient, HermanLogger logger, LongConsumer sleeper) {
+        this.cftClient = cftClient;
+        this.logger = logger;
+        this.sleeper = sleeper != null ? sleeper : this::sleep;
+    }
+
+    /**
+     * Creates, reviews and executes a change set for the stack.
+     *
+     * @return true if the change set was executed and the stack is now updating, false if there was nothing to change
+     */
+    public boolean apply(String stackName, String template, List<Parameter> parameters, List<Tag> tags) {
+        ChangeSetType type = stackExists(stackName) ? ChangeSetType.UPDATE : ChangeSetType.CREATE;
+        String changeSetName = "herman-" + System.currentTimeMillis();
+
+        CreateChangeSetRequest createRequest = new CreateChangeSetRequest()
+            .withCapabilities("CAPABILITY_IAM", "CAPABILITY_NAMED_IAM")
+            .withStackName(stackName)
+            .withChangeSetName(changeSetName)
+            .withChangeSetType(type)
+            .withTemplateBody(template)
+            .withParameters(parameters)
+            .withTags(tags);
+        String changeSetId = cftClient.createChangeSet(createRequest).getId();
+        logger.addLogEntry("Created " + type + " change set " + changeSetName + " for " + stackName);
+
+        DescribeChangeSetResult changeSet;
+        try {
+            changeSet = waitForChangeSet(changeSetId);
+        } catch (AwsExecException e) {
+            discard(stackName, changeSetId, type);
+            throw e;
+        }
+        if (ChangeSetStatus.FAILED.toString().equals(changeSet.getStatus())) {
+            discard(stackName, changeSetId, type);
+            if (isNoChange(changeSet.getStatusReason())) {
+                logger.addLogEntry("No CFT Updates to apply, skipping CFT Push...");
+                return false;
+            }
+            throw new AwsExecException("Change set for " + stackName + " failed: " + changeSet.getStatusReason());
+        }
+
+        logChanges(changeSet);
+
+        cftClient.executeChangeSet(new ExecuteChangeSetRequest().withChangeSetName(changeSetId));
+        waitForExecutionStart(changeSetId);
+        return true;
+    }
+
+    private boolean stackExists(String stackName) {
+        String status = getStackStatus(stackName);
+        // a stack left in review by an earlier change set has no resources yet and still takes a CREATE
+        return status != null && !StackStatus.REVIEW_IN_PROGRESS.toString().equals(status);
+    }
+
+    private String getStackStatus(String stackName) {
+        try {
+            List<Stack> stacks = cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName))
+                .getStacks();
+            return stacks.isEmpty() ? null : stacks.get(0).getStackStatus();
+        } catch (AmazonCloudFormationException e) {
+            if (e.getMessage() != null && e.getMessage().contains("does not exist")) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes a change set that will not be executed. A CREATE change set leaves behind an empty stack in
+     * REVIEW_IN_PROGRESS, which is deleted as well.
+     */
+    private void discard(String stackName, String changeSetId, ChangeSetType type) {
+        try {
+            cftClient.deleteChangeSet(new DeleteChangeSetRequest().withChangeSetName(changeSetId));
+            if (type == ChangeSetType.CREATE
+                && StackStatus.REVIEW_IN_PROGRESS.toString().equals(getStackStatus(stackName))) {
+                logger.addLogEntry("Deleting empty stack " + stackName + " left in review by the change set");
+                cftClient.deleteStack(new DeleteStackRequest().withStackName(stackName));
+            }
+        } catch (AmazonCloudFormationException e) {
+            logger.addLogEntry("Unable to clean up change set " + changeSetId + ": " + e.getMessage());
+        }
+    }
+
+    private DescribeChangeSetResult waitForChangeSet(String changeSetId) {
+        long interval = INITIAL_POLL_MS;
+        long waited = 0;
+        while (true) {
+            DescribeChangeSetResult result = describeAllChanges(changeSetId);
+            String status = result.getStatus();
+            if (ChangeSetStatus.CREATE_COMPLETE.toString().equals(status)
+                || ChangeSetStatus.FAILED.toString().equals(status)) {
+                return result;
+            }
+            if (waited >= MAX_WAIT_MS) {
+                throw new AwsExecException("Timed out waiting for change set " + changeSetId + " - " + status);
+            }
+            sleeper.accept(interval);
+            waited += interval;
+            interval = nextInterval(interval);
+        }
+    }
+
+    private void waitForExecutionStart(String changeSetId) {
+        long interval = INITIAL_POLL_MS;
+        long waited = 0;
+        while (waited < MAX_WAIT_MS) {
+            String executionStatus;
+            try {
+                executionStatus = cftClient.describeChangeSet(new DescribeChangeSetRequest()
+                    .withChangeSetName(changeSetId)).getExecutionStatus();
+            } catch (ChangeSetNotFoundException e) {
+                // CloudFormation cleans up the stack's change sets once one has been executed
+                return;
+            }
+            if (ExecutionStatus.EXECUTE_FAILED.toString().equals(executionStatus)) {
+                throw new AwsExecException("Change set " + changeSetId + " failed to execute");
+            }
+            if (!ExecutionStatus.AVAILABLE.toString().equals(executionStatus)
+                && !ExecutionStatus.UNAVAILABLE.toString().equals(executionStatus)) {
+                return;
+            }
+            sleeper.accept(interval);
+            waited += interval;
+            interval = nextInterval(interval);
+        }
+        throw new AwsExecException("Timed out waiting for change set " + changeSetId + " to start executing");
+    }
+
+    private DescribeChangeSetResult describeAllChanges(String changeSetId) {
+        DescribeChangeSetResult result = cftClient.describeChangeSet(new DescribeChangeSetRequest()
+            .withChangeSetName(changeSetId));
+        if (result.getNextToken() == null) {
+            return result;
+        }
+
+        List<Change> changes = new ArrayList<>(result.getChanges());
+        String nextToken = result.getNextToken();
+        while (nextToken != null) {
+            DescribeChangeSetResult page = cftClient.describeChangeSet(new DescribeChangeSetRequest()
+                .withChangeSetName(changeSetId)
+                .withNextToken(nextToken));
+            changes.addAll(page.getChanges());
+            nextToken = page.getNextToken();
+        }
+        return result.withChanges(changes).withNextToken(null);
+    }
+
+    private void logChanges(DescribeChangeSetResult changeSet) {
+        List<Change> changes = changeSet.getChanges();
+        logger.addLogEntry("Change set contains " + changes.size() + " resource change(s):");
+        for (Change change: changes) {
+            ResourceChange resourceChange = change.getResourceChange();
+            if (resourceChange == null) {
+                continue;
+            }
+            StringBuilder entry = new StringBuilder("  ")
+                .append(resourceChange.getAction()).append(' ')
+                .append(resourceChange.getResourceType()).append(' ')
+                .append(resourceChange.getLogicalResourceId());
+            if (resourceChange.getReplacement() != null) {
+                entry.append(" (replacement: ").append(resourceChange.getReplacement()).append(')');
+            }
+            logger.addLogEntry(entry.toString());
+        }
+    }
+
+    static boolean isNoChange(String statusReason) {
+        if (statusReason == null) {
+            return false;
+        }
+        for (String reason: NO_CHANGE_REASONS) {
+            if (statusReason.contains(reason)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long nextInterval(long interval) {
+        return Math.min(MAX_POLL_MS, interval * 2);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.addLogEntry("Interrupted while polling");
+            throw new AwsExecException("Interrupted while polling");
+        }
+    }
+}
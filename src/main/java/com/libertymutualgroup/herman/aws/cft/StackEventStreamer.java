@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Tails the events of a stack operation, logging every resource transition once, until the stack itself reaches a
+ * terminal status. Polls quickly while events are arriving and backs off while a long-running resource is in flight.
+ */
+public class StackEventStreamer {
+
+    static final long MIN_POLL_MS = 2000;
+    static final long MAX_POLL_MS = 15000;
+    private static final int MAX_PAGES = 20;
+
+    private static final Set<String> OPERATION_START_STATUSES = new HashSet<>(Arrays.asList(
+        "CREATE_IN_PROGRESS", "UPDATE_IN_PROGRESS", "DELETE_IN_PROGRESS", "IMPORT_IN_PROGRESS"));
+
+    private final AmazonCloudFormation cftClient;
+    private final HermanLogger logger;
+    private final LongConsumer sleeper;
+    private boolean failFast;
+
+    private String stackRef;
+    private String lastEventId;
+    private String stackStatus;
+
+    public StackEventStreamer(AmazonCloudFormation cftClient, HermanLogger logger) {
+        this(cftClient, logger, null);
+    }
+
+    StackEventStreamer(AmazonCloudFormation cftClient, HermanLogger logger, LongConsumer sleeper) {
+        this.cftClient = cftClient;
+        this.logger = logger;
+        this.sleeper = sleeper != null ? sleeper : this::sleep;
+    }
+
+    /**
+     * Stop waiting on the first resource-level FAILED event instead of waiting for CloudFormation to roll back.
+     */
+    public StackEventStreamer withFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    /**
+     * @param stackNameOrId name or id of a stack whose latest operation has already started; pass the id for deletes
+     *                      so the events can still be read once the stack is gone
+     * @return the terminal status of the stack
+     */
+    public String waitForCompletion(String stackNameOrId) {
+        this.stackRef = stackNameOrId;
+        this.lastEventId = null;
+        this.stackStatus = null;
+
+        long interval = MIN_POLL_MS;
+        while (true) {
+            List<StackEvent> events = poll();
+            for (StackEvent event: events) {
+                report(event);
+            }
+
+            if (isTerminal(stackStatus)) {
+                if (stackStatus.contains("FAILED") || stackStatus.contains("ROLLBACK")) {
+                    throw new AwsExecException("CFT pushed failed - " + stackStatus);
+                }
+                return stackStatus;
+            }
+
+            interval = events.isEmpty() ? Math.min(MAX_POLL_MS, interval * 3 / 2) : MIN_POLL_MS;
+            sleeper.accept(interval);
+        }
+    }
+
+    /**
+     * @return the events not yet seen, oldest first
+     */
+    private List<StackEvent> poll() {
+        boolean firstPoll = lastEventId == null;
+        List<StackEvent> newestFirst = new ArrayList<>();
+        String nextToken = null;
+        boolean reachedCursor = false;
+        for (int page = 0; page < MAX_PAGES && !reachedCursor; page++) {
+            DescribeStackEventsResult result = cftClient.describeStackEvents(new DescribeStackEventsRequest()
+                .withStackName(stackRef)
+                .withNextToken(nextToken));
+            for (StackEvent event: result.getStackEvents()) {
+                if (firstPoll ? isOperationStart(event) : event.getEventId().equals(lastEventId)) {
+                    if (firstPoll) {
+                        newestFirst.add(event);
+                    }
+                    reachedCursor = true;
+                    break;
+                }
+                newestFirst.add(event);
+            }
+            nextToken = result.getNextToken();
+            if (nextToken == null) {
+                break;
+            }
+        }
+
+        if (!newestFirst.isEmpty()) {
+            // follow the stack by id from here on so a deleted stack can still be tailed
+            this.stackRef = newestFirst.get(0).getStackId();
+            this.lastEventId = newestFirst.get(0).getEventId();
+        }
+        if (firstPoll && !reachedCursor && newestFirst.size() > 1) {
+            // the start of the operation is out of reach, so only the latest state is worth reporting
+            newestFirst = newestFirst.subList(0, 1);
+        }
+
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    private void report(StackEvent event) {
+        String status = event.getResourceStatus();
+        StringBuilder entry = new StringBuilder()
+            .append(event.getLogicalResourceId()).append(" (").append(event.getResourceType()).append(") ")
+            .append(status);
+        if (event.getResourceStatusReason() != null) {
+            entry.append(" : ").append(event.getResourceStatusReason());
+        }
+        logger.addLogEntry(entry.toString());
+
+        if (isStackEvent(event)) {
+            stackStatus = status;
+        } else if (failFast && status != null && status.endsWith("_FAILED")) {
+            throw new AwsExecException("CFT pushed failed - " + event.getLogicalResourceId() + " " + status
+                + (event.getResourceStatusReason() != null ? " : " + event.getResourceStatusReason() : ""));
+        }
+    }
+
+    private static boolean isOperationStart(StackEvent event) {
+        return isStackEvent(event) && OPERATION_START_STATUSES.contains(event.getResourceStatus());
+    }
+
+    private static boolean isStackEvent(StackEvent event) {
+        return event.getStackId() != null && event.getStackId().equals(event.getPhysicalResourceId());
+    }
+
+    static boolean isTerminal(String status) {
+        return status != null && !status.endsWith("_IN_PROGRESS");
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.addLogEntry("Interrupted while polling");
+            throw new AwsExecException("Interrupted while polling");
+        }
+    }
+}
@@ -6,35 +6,51 @@
 package com.libertymutualgroup.herman.aws.cft;
 
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
-import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.ListStacksRequest;
 import com.amazonaws.services.cloudformation.model.ListStacksResult;
-import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackStatus;
 import com.amazonaws.services.cloudformation.model.StackSummary;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class StackUtils {
     private AmazonCloudFormation cftClient;
     private HermanLogger logger;
+    private boolean failFast;
 
     private static final int POLLING_INTERVAL_MS = 10000;
 
+    /**
+     * Every stack status except DELETE_COMPLETE, for listStacks calls that should skip deleted stacks.
+     */
+    public static final List<String> LIVE_STACK_STATUSES = Arrays.stream(StackStatus.values())
+        .filter(status -> status != StackStatus.DELETE_COMPLETE)
+        .map(StackStatus::toString)
+        .collect(Collectors.toList());
+
     public StackUtils(AmazonCloudFormation cftClient, HermanLogger logger) {
         this.cftClient = cftClient;
         this.logger = logger;
     }
 
+    public StackUtils withFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
     public List<StackSummary> findStacksWithName(String name) {
-        ListStacksResult stacksResult = this.cftClient.listStacks();
+        ListStacksResult stacksResult = this.cftClient.listStacks(new ListStacksRequest()
+            .withStackStatusFilters(LIVE_STACK_STATUSES));
         ArrayList<StackSummary> allStacks = new ArrayList<>(stacksResult.getStackSummaries());
         String nextToken = stacksResult.getNextToken();
         while (nextToken != null) {
             ListStacksRequest listRequest = new ListStacksRequest()
+                .withStackStatusFilters(LIVE_STACK_STATUSES)
                 .withNextToken(nextToken);
             ListStacksResult listStacksResult = this.cftClient.listStacks(listRequest);
             allStacks.addAll(listStacksResult.getStackSummaries());
@@ -47,24 +63,23 @@ public class StackUtils {
     }
 
     public void waitForCompletion(String stackName) {
-        DescribeStacksRequest wait = new DescribeStacksRequest();
-        wait.setStackName(stackName);
-        Boolean completed = false;
+        waitForCompletion(stackName, true);
+    }
 
+    /**
+     * @param delayStart sleep once before the first poll, for callers that cannot tell whether the stack has started
+     *                   updating yet
+     */
+    public void waitForCompletion(String stackName, boolean delayStart) {
         logger.addLogEntry("Waiting...");
 
         // Try waiting at the start to avoid a race before the stack starts updating
-        sleep();
-        while (!completed) {
-            List<Stack> stacks = cftClient.describeStacks(wait).getStacks();
-
-            completed = reportStatusAndCheckCompletionOf(stacks);
-
-            // Not done yet so sleep for 10 seconds.
-            if (!completed) {
-                sleep();
-            }
+        if (delayStart) {
+            sleep();
         }
+        new StackEventStreamer(cftClient, logger)
+            .withFailFast(failFast)
+            .waitForCompletion(stackName);
 
         logger.addLogEntry("done");
     }
@@ -78,28 +93,4 @@ public class StackUtils {
             throw new AwsExecException("Interrupted while polling");
         }
     }
-
-    private Boolean reportStatusAndCheckCompletionOf(List<Stack> stacks) {
-        for (Stack stack: stacks) {
-            reportStatusOf(stack);
-            if (stack.getStackStatus().contains("IN_PROGRESS")) {
-                return false;
-            }
-
-            if (stack.getStackStatus().contains("FAILED") || stack.getStackStatus().contains("ROLLBACK")) {
-                throw new AwsExecException("CFT pushed failed - " + stack.getStackStatus());
-            }
-        }
-        return true;
-    }
-
-    private void reportStatusOf(Stack stack) {
-
-        String status = stack.getStackStatus();
-        String reason = stack.getStackStatusReason();
-        if (reason != null) {
-            status += " : " + reason;
-        }
-        logger.addLogEntry(status);
-    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.libertymutualgroup.herman.util.ObjectMappers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each phase of a deployment takes. Phases may be timed from several threads at once (brokers,
+ * background purges), and each one is kept with its offset from the start of the deployment so overlaps show up in
+ * the report.
+ */
+public class DeploymentTimer {
+
+    public static final String PHASE_DURATION_METRIC = "PhaseDuration";
+    public static final String TOTAL_DURATION_METRIC = "TotalDuration";
+
+    private final long startedAt;
+    private final List<PhaseTiming> timings = new ArrayList<>();
+
+    public DeploymentTimer() {
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    public <T> T time(String phase, Supplier<T> work) {
+        long start = System.currentTimeMillis();
+        boolean succeeded = false;
+        try {
+            T result = work.get();
+            succeeded = true;
+            return result;
+        } finally {
+            record(phase, start, System.currentTimeMillis() - start, succeeded);
+        }
+    }
+
+    public void time(String phase, Runnable work) {
+        time(phase, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public void record(String phase, long start, long durationMs, boolean succeeded) {
+        synchronized (timings) {
+            timings.add(new PhaseTiming(phase, start - startedAt, durationMs, succeeded));
+        }
+    }
+
+    public List<PhaseTiming> getTimings() {
+        synchronized (timings) {
+            return new ArrayList<>(timings);
+        }
+    }
+
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    /**
+     * One datum per phase plus the total, all sharing the given dimensions; phases are told apart by a "phase"
+     * dimension.
+     */
+    public List<MetricDatum> toMetricData(List<Dimension> dimensions) {
+        Date now = new Date();
+        List<MetricDatum> data = new ArrayList<>();
+        for (PhaseTiming timing : getTimings()) {
+            List<Dimension> phaseDimensions = new ArrayList<>(dimensions);
+            phaseDimensions.add(new Dimension().withName("phase").withValue(timing.getPhase()));
+            data.add(new MetricDatum().withMetricName(PHASE_DURATION_METRIC)
+                .withDimensions(phaseDimensions)
+                .withUnit(StandardUnit.Milliseconds)
+                .withValue((double) timing.getDurationMs())
+                .withTimestamp(now));
+        }
+        data.add(new MetricDatum().withMetricName(TOTAL_DURATION_METRIC)
+            .withDimensions(dimensions)
+            .withUnit(StandardUnit.Milliseconds)
+            .withValue((double) getElapsedMs())
+            .withTimestamp(now));
+        return data;
+    }
+
+    public void writeReport(File file, Map<String, Object> attributes, boolean succeeded) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>(attributes);
+        report.put("succeeded", succeeded);
+        report.put("startedAt", new Date(startedAt));
+        report.put("totalMs", getElapsedMs());
+        report.put("phases", getTimings());
+        ObjectMappers.json().writer()
+            .without(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .with(SerializationFeature.INDENT_OUTPUT)
+            .writeValue(file, report);
+    }
+
+    public static class PhaseTiming {
+
+        private final String phase;
+        private final long startOffsetMs;
+        private final long durationMs;
+        private final boolean succeeded;
+
+        PhaseTiming(String phase, long startOffsetMs, long durationMs, boolean succeeded) {
+            this.phase = phase;
+            this.startOffsetMs = startOffsetMs;
+            this.durationMs = durationMs;
+            this.succeeded = succeeded;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public long getStartOffsetMs() {
+            return startOffsetMs;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        public boolean isSucceeded() {
+            return succeeded;
+        }
+    }
+}
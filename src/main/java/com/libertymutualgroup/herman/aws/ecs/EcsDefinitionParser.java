@@ -33,15 +33,37 @@ import com.amazonaws.services.ecs.model.Ulimit;
 import com.amazonaws.services.ecs.model.UlimitName;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBMixIns;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public class EcsDefinitionParser {
 
+    private static final Map<Class<?>, Class<?>> MIX_INS;
+
+    static {
+        Map<Class<?>, Class<?>> mixIns = new HashMap<>(ObjectMappers.mixIns(DynamoDBMixIns.class,
+            KeySchemaElement.class, StreamSpecification.class, AttributeDefinition.class, Projection.class));
+        mixIns.put(PortMapping.class, IgnoreTransportSetValueObjMixIn.class);
+        mixIns.put(Ulimit.class, IgnoreUlimitObjMixIn.class);
+        mixIns.put(PlacementConstraint.class, IgnorePlacementConstraint.class);
+        mixIns.put(LogConfiguration.class, IgnoreLogConfigLogDriver.class);
+        mixIns.put(PlacementStrategy.class, IgnorePlaceStrategyType.class);
+        mixIns.put(TaskDefinitionPlacementConstraint.class, IgnoreTaskPlacementConstraint.class);
+        MIX_INS = Collections.unmodifiableMap(mixIns);
+    }
+
     private PropertyHandler handler;
 
     public EcsDefinitionParser(PropertyHandler handler) {
@@ -49,30 +71,18 @@ public class EcsDefinitionParser {
     }
 
     public EcsPushDefinition parse(String template, boolean isJson) {
-
-        ObjectMapper mapper = null;
-        if (isJson) {
-            mapper = new ObjectMapper();
-        } else {
-            mapper = new ObjectMapper(new YAMLFactory());
-        }
-
-        mapper.addMixIn(PortMapping.class, IgnoreTransportSetValueObjMixIn.class);
-        mapper.addMixIn(Ulimit.class, IgnoreUlimitObjMixIn.class);
-        mapper.addMixIn(PlacementConstraint.class, IgnorePlacementConstraint.class);
-        mapper.addMixIn(LogConfiguration.class, IgnoreLogConfigLogDriver.class);
-        mapper.addMixIn(PlacementStrategy.class, IgnorePlaceStrategyType.class);
-        mapper.addMixIn(TaskDefinitionPlacementConstraint.class, IgnoreTaskPlacementConstraint.class);
-        mapper.addMixIn(KeySchemaElement.class, DynamoDBMixIns.class);
-        mapper.addMixIn(StreamSpecification.class, DynamoDBMixIns.class);
-        mapper.addMixIn(AttributeDefinition.class, DynamoDBMixIns.class);
-        mapper.addMixIn(Projection.class, DynamoDBMixIns.class);
+        ObjectMapper mapper = ObjectMappers.withMixIns(isJson, MIX_INS);
 
         EcsPushDefinition ecsPushDefinition;
         try {
-            // parse out any YAML comments
-            template = mapper.writeValueAsString(mapper.readValue(template, Object.class));
-            ecsPushDefinition = mapper.readValue(handler.mapInProperties(template), EcsPushDefinition.class);
+            // reading into a tree drops YAML comments, so references in comments are never substituted
+            JsonNode tree = mapper.readTree(template);
+            if (tree == null || tree.isMissingNode()) {
+                throw new AwsExecException("Empty ECS push definition");
+            }
+            ecsPushDefinition = mapper.treeToValue(substitute(tree), EcsPushDefinition.class);
+        } catch (AwsExecException e) {
+            throw e;
         } catch (Exception e) {
             throw new AwsExecException(e);
         }
@@ -81,6 +91,35 @@ public class EcsDefinitionParser {
         return ecsPushDefinition;
     }
 
+    /**
+     * Substitutes properties in every string of the tree, field names included. Jackson coerces the resulting strings
+     * to numbers or booleans where the definition needs them, as it did when the substituted text was re-parsed.
+     */
+    private JsonNode substitute(JsonNode node) {
+        if (node.isTextual()) {
+            return TextNode.valueOf(substitute(node.textValue()));
+        }
+        if (node.isArray()) {
+            ArrayNode array = (ArrayNode) node;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, substitute(array.get(i)));
+            }
+        } else if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            ObjectNode result = object.objectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                result.set(substitute(field.getKey()), substitute(field.getValue()));
+            }
+            return result;
+        }
+        return node;
+    }
+
+    private String substitute(String text) {
+        return text.contains("${") ? handler.mapInProperties(text) : text;
+    }
 
     private void patchJsonLogDefintionParseError(List<ContainerDefinition> containers) {
         for (ContainerDefinition container : containers) {
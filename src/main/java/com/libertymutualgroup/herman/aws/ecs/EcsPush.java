@@ -15,22 +15,12 @@
  */
 package com.libertymutualgroup.herman.aws.ecs;
 
-import com.amazonaws.ClientConfiguration;
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
-import com.amazonaws.services.cloudformation.AmazonCloudFormation;
-import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
-import com.amazonaws.services.cloudwatch.AmazonCloudWatch;
-import com.amazonaws.services.cloudwatch.AmazonCloudWatchClientBuilder;
 import com.amazonaws.services.cloudwatch.model.Dimension;
 import com.amazonaws.services.cloudwatch.model.MetricDatum;
 import com.amazonaws.services.cloudwatch.model.PutMetricDataRequest;
 import com.amazonaws.services.cloudwatch.model.StandardUnit;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
-import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ecs.AmazonECS;
-import com.amazonaws.services.ecs.AmazonECSClientBuilder;
+import com.amazonaws.services.ecs.model.AmazonECSException;
 import com.amazonaws.services.ecs.model.AssignPublicIp;
 import com.amazonaws.services.ecs.model.AwsVpcConfiguration;
 import com.amazonaws.services.ecs.model.Container;
@@ -38,14 +28,12 @@ import com.amazonaws.services.ecs.model.ContainerDefinition;
 import com.amazonaws.services.ecs.model.CreateServiceRequest;
 import com.amazonaws.services.ecs.model.CreateServiceResult;
 import com.amazonaws.services.ecs.model.DeleteServiceRequest;
-import com.amazonaws.services.ecs.model.DeregisterTaskDefinitionRequest;
 import com.amazonaws.services.ecs.model.DescribeServicesRequest;
 import com.amazonaws.services.ecs.model.DescribeServicesResult;
 import com.amazonaws.services.ecs.model.DescribeTaskDefinitionRequest;
+import com.amazonaws.services.ecs.model.DescribeTaskDefinitionResult;
 import com.amazonaws.services.ecs.model.DescribeTasksRequest;
 import com.amazonaws.services.ecs.model.Failure;
-import com.amazonaws.services.ecs.model.ListTaskDefinitionsRequest;
-import com.amazonaws.services.ecs.model.ListTaskDefinitionsResult;
 import com.amazonaws.services.ecs.model.LoadBalancer;
 import com.amazonaws.services.ecs.model.NetworkConfiguration;
 import com.amazonaws.services.ecs.model.RegisterTaskDefinitionRequest;
@@ -54,38 +42,24 @@ import com.amazonaws.services.ecs.model.RunTaskRequest;
 import com.amazonaws.services.ecs.model.RunTaskResult;
 import com.amazonaws.services.ecs.model.SchedulingStrategy;
 import com.amazonaws.services.ecs.model.Service;
-import com.amazonaws.services.ecs.model.ServiceEvent;
 import com.amazonaws.services.ecs.model.StopTaskRequest;
 import com.amazonaws.services.ecs.model.Task;
 import com.amazonaws.services.ecs.model.TaskDefinition;
+import com.amazonaws.services.ecs.model.TaskDefinitionField;
 import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
 import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraintType;
 import com.amazonaws.services.ecs.model.UpdateServiceRequest;
-import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
-import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClientBuilder;
 import com.amazonaws.services.identitymanagement.model.Role;
-import com.amazonaws.services.kinesis.AmazonKinesis;
-import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
-import com.amazonaws.services.kms.AWSKMS;
-import com.amazonaws.services.kms.AWSKMSClientBuilder;
-import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.AWSLambdaAsync;
-import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
-import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
-import com.amazonaws.services.rds.AmazonRDS;
-import com.amazonaws.services.rds.AmazonRDSClientBuilder;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.AmazonSNSClientBuilder;
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.amazonaws.util.IOUtils;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.ecs.broker.BrokerScheduler;
 import com.libertymutualgroup.herman.aws.ecs.broker.autoscaling.AutoscalingBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.custom.CustomBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.custom.CustomBrokerConfiguration;
 import com.libertymutualgroup.herman.aws.ecs.broker.custom.CustomBrokerPhase;
+import com.libertymutualgroup.herman.aws.ecs.broker.custom.CustomBrokerResponse;
 import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.iam.IAMBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.kinesis.KinesisBroker;
@@ -112,6 +86,9 @@ import com.libertymutualgroup.herman.aws.ecs.loadbalancing.EcsLoadBalancerV2Hand
 import com.libertymutualgroup.herman.aws.ecs.loadbalancing.ElbOrAlbDecider;
 import com.libertymutualgroup.herman.aws.ecs.loadbalancing.ServicePurger;
 import com.libertymutualgroup.herman.aws.ecs.logging.LoggingService;
+import com.libertymutualgroup.herman.aws.ecs.service.DeploymentFailureDetector;
+import com.libertymutualgroup.herman.aws.ecs.service.EcsService;
+import com.libertymutualgroup.herman.aws.ecs.service.ServiceStabilizationWaiter;
 import com.libertymutualgroup.herman.aws.tags.HermanTag;
 import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
@@ -119,45 +96,45 @@ import com.libertymutualgroup.herman.task.ecs.ECSPushTaskProperties;
 import com.libertymutualgroup.herman.util.FileUtil;
 import org.apache.logging.log4j.util.Strings;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class EcsPush {
 
     private static final String INTERRUPTED_WHILE_POLLING = "Interrupted while polling";
 
     private static final int POLLING_INTERVAL_MS = 10000;
+    private static final int MAX_METRIC_DATA_PER_REQUEST = 20;
+    private static final String TIMING_REPORT_SUFFIX = "-timings.json";
 
     private HermanLogger logger;
     private EcsPushContext pushContext;
     private PropertyHandler bambooPropertyHandler;
     private ECSPushTaskProperties taskProperties;
 
-    private AmazonIdentityManagement iamClient;
+    private AwsClientRegistry clients;
     private AmazonECS ecsClient;
-    private AmazonEC2 ec2Client;
-    private com.amazonaws.services.elasticloadbalancing.AmazonElasticLoadBalancing elbClient;
-    private com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancing elbV2Client;
-    private AmazonCloudFormation cftClient;
-    private AmazonS3 s3Client;
-    private AmazonKinesis kinesisClient;
-    private AmazonRDS rdsClient;
-    private AWSKMS kmsClient;
-    private AmazonSQS sqsClient;
-    private AmazonSNS snsClient;
-    private AmazonDynamoDB dynamoDbClient;
-    private AWSLambda lambdaClient;
-    private AWSLambdaAsync lambdaAsyncClient;
-    private AmazonCloudWatch cloudWatchClient;
+    private final DeploymentTimer timer = new DeploymentTimer();
     private FileUtil fileUtil;
 
     public EcsPush(EcsPushContext context) {
@@ -166,82 +143,25 @@ public class EcsPush {
         this.taskProperties = context.getTaskProperties();
         this.pushContext = context;
 
-        this.iamClient = AmazonIdentityManagementClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.ecsClient = AmazonECSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.ec2Client = AmazonEC2ClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.elbClient = com.amazonaws.services.elasticloadbalancing.AmazonElasticLoadBalancingClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.elbV2Client = com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancingClientBuilder
-            .standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.cftClient = AmazonCloudFormationClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.s3Client = AmazonS3ClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.kinesisClient = AmazonKinesisClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.rdsClient = AmazonRDSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.kmsClient = AWSKMSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.sqsClient = AmazonSQSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.snsClient = AmazonSNSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.dynamoDbClient = AmazonDynamoDBClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig())
-            .withRegion(context.getRegion())
-            .build();
-
-        this.lambdaClient = AWSLambdaClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(new ClientConfiguration().withClientExecutionTimeout(300000).withSocketTimeout(300000))
-            .withRegion(context.getRegion())
-            .build();
-
-        this.lambdaAsyncClient = AWSLambdaAsyncClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(new ClientConfiguration().withClientExecutionTimeout(900000).withSocketTimeout(900000))
-            .withRegion(context.getRegion())
-            .build();
-
-        this.cloudWatchClient = AmazonCloudWatchClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(pushContext.getSessionCredentials()))
-            .withClientConfiguration(pushContext.getAwsClientConfig()).withRegion(pushContext.getRegion()).build();
+        this.clients = context.getClientRegistry();
+        this.clients.getRateLimiter().configure(taskProperties.getApiRateLimits());
+        this.ecsClient = clients.getEcsClient();
 
         this.fileUtil = new FileUtil(pushContext.getRootPath(), logger);
     }
 
     public void push() {
-        EcsPushDefinition definition = getEcsPushDefinition();
+        EcsPushDefinition definition = timer.time("definition", this::getEcsPushDefinition);
+        boolean succeeded = false;
+        try {
+            push(definition);
+            succeeded = true;
+        } finally {
+            reportTimings(definition, succeeded);
+        }
+    }
+
+    private void push(EcsPushDefinition definition) {
 
         ArrayList<TaskDefinitionPlacementConstraint> placementConstraints;
         if (definition.getTaskPlacementConstraints() == null) {
@@ -257,10 +177,11 @@ public class EcsPush {
         definition.setTaskPlacementConstraints(placementConstraints);
 
         logger.addLogEntry(definition.toString());
-        logInvocationInCloudWatch(definition);
 
-        EcsClusterIntrospector clusterIntrospector = new EcsClusterIntrospector(cftClient, ec2Client, logger);
-        EcsClusterMetadata clusterMetadata = clusterIntrospector.introspect(definition.getCluster(), pushContext.getRegion());
+        EcsClusterIntrospector clusterIntrospector = new EcsClusterIntrospector(clients.getCloudFormationClient(),
+            clients.getEc2Client(), logger);
+        EcsClusterMetadata clusterMetadata = timer.time("introspection",
+            () -> clusterIntrospector.introspect(definition.getCluster(), pushContext.getRegion()));
 
         LoggingService loggingService = new LoggingService(logger)
             .withSplunkInstanceValues(clusterMetadata.getSplunkUrl(), taskProperties);
@@ -269,14 +190,15 @@ public class EcsPush {
         String customIamPolicyFileName = Optional.ofNullable(definition.getIamPolicy()).orElse("iam-policy.json");
         String customIamPolicy = fileUtil.findFile(customIamPolicyFileName, true);
         IAMBroker iamBroker = new IAMBroker(logger);
-        Role appRole;
-        if (definition.getIamRole() == null || definition.getAppName().equals(definition.getIamRole())) {
-            logger.addLogEntry("Brokering role with policy " + customIamPolicyFileName);
-            appRole = iamBroker.brokerAppRole(iamClient, definition, customIamPolicy, bambooPropertyHandler);
-        } else {
+        Role appRole = timer.time("iam-role", () -> {
+            if (definition.getIamRole() == null || definition.getAppName().equals(definition.getIamRole())) {
+                logger.addLogEntry("Brokering role with policy " + customIamPolicyFileName);
+                return iamBroker.brokerAppRole(clients.getIamClient(), definition, customIamPolicy,
+                    bambooPropertyHandler);
+            }
             logger.addLogEntry("Using existing role: " + definition.getIamRole());
-            appRole = iamBroker.getRole(iamClient, definition.getIamRole());
-        }
+            return iamBroker.getRole(clients.getIamClient(), definition.getIamRole());
+        });
 
         if (definition.getIamOptOut() == null) {
             definition.setTaskRoleArn(appRole.getArn());
@@ -289,55 +211,126 @@ public class EcsPush {
             clusterMetadata);
         injectMagic.setDefaultContainerName(definition);
 
-        brokerServicesPrePush(definition, injectMagic, clusterMetadata);
+        timer.time("brokers", () -> brokerServicesPrePush(definition, injectMagic, clusterMetadata));
 
         EcsPortHandler portHandler = new EcsPortHandler();
         LoadBalancer bal = null;
         TaskType type = portHandler.getTaskType(definition);
         if (Objects.equals(type, TaskType.WEB)) {
-            ElbOrAlbDecider decider = new ElbOrAlbDecider(elbClient, logger);
-            boolean useAlb = decider.shouldUseAlb(definition.getAppName(), definition);
-
-            DnsRegistrar dnsRegistrar = new DnsRegistrar(lambdaClient, logger, taskProperties.getDnsBrokerLambda());
-            CertHandler certHandler = new CertHandler(logger, taskProperties.getSslCertificates());
-            if (useAlb) {
-                EcsLoadBalancerV2Handler loadBalancerV2Handler = new EcsLoadBalancerV2Handler(elbV2Client, lambdaClient,
-                    certHandler, dnsRegistrar, logger, taskProperties);
-                bal = loadBalancerV2Handler.createLoadBalancer(clusterMetadata, definition);
-            } else {
-                EcsLoadBalancerHandler loadBalancerHandler = new EcsLoadBalancerHandler(elbClient, certHandler,
-                    dnsRegistrar, logger, taskProperties);
-                bal = loadBalancerHandler.createLoadBalancer(clusterMetadata, definition);
-            }
+            bal = timer.time("load-balancer", () -> createLoadBalancer(definition, clusterMetadata));
         }
 
-        TaskDefinition versionForRollback = getCurrentTaskDef(definition.getAppName(), ecsClient,
+        DescribeTaskDefinitionResult currentTaskDef = getCurrentTaskDef(definition.getAppName(), ecsClient,
             clusterMetadata.getClusterId());
+        TaskDefinition versionForRollback = currentTaskDef != null ? currentTaskDef.getTaskDefinition() : null;
 
-        RegisterTaskDefinitionResult taskResult = registerTask(definition, definition.getAppName(), ecsClient,
-            clusterMetadata.getClusterId());
+        RegisterTaskDefinitionRequest taskRequest = buildTaskRequest(definition);
+        String definitionHash = TaskDefinitionFingerprint.hash(taskRequest);
+        boolean taskDefinitionUnchanged = currentTaskDef != null
+            && TaskDefinitionFingerprint.matchesRevision(definitionHash, currentTaskDef);
+
+        RegisterTaskDefinitionResult taskResult;
+        if (taskDefinitionUnchanged) {
+            logger.addLogEntry("Task definition unchanged, reusing " + versionForRollback.getTaskDefinitionArn());
+            taskResult = new RegisterTaskDefinitionResult().withTaskDefinition(versionForRollback);
+        } else {
+            taskRequest.withTags(TaskDefinitionFingerprint.toTag(definitionHash));
+            taskResult = timer.time("register", () -> registerTask(taskRequest, ecsClient));
+        }
+
+        CompletableFuture<Integer> taskDefinitionCleanup = null;
+        if (versionForRollback != null) {
+            Set<String> protectedArns = new HashSet<>(Arrays.asList(versionForRollback.getTaskDefinitionArn(),
+                taskResult.getTaskDefinition().getTaskDefinitionArn()));
+            taskDefinitionCleanup = timeAsync("task-definition-cleanup",
+                getTaskDefinitionJanitor(ecsClient).cleanAsync(definition.getAppName(), protectedArns));
+        }
 
         logger.addLogEntry("Task role: " + definition.getTaskRoleArn());
 
         loggingService.provideSplunkLog(taskResult);
 
         if (type.equals(TaskType.WEB) || type.equals(TaskType.DAEMON)) {
+            // Stale copies in other clusters are cleared while the new deployment stabilizes
             ServicePurger purger = new ServicePurger(ecsClient, logger);
-            purger.purgeOtherClusters(definition.getCluster(), definition.getAppName());
-            deployService(ecsClient, clusterMetadata, definition, bal, taskResult.getTaskDefinition(),
-                versionForRollback);
+            CompletableFuture<Void> purge = timeAsync("purge", purger.purgeOtherClustersAsync(definition.getCluster(),
+                definition.getAppName()));
+            LoadBalancer balancer = bal;
+            boolean deployed = false;
+            try {
+                timer.time("deploy-service", () -> deployService(ecsClient, clusterMetadata, definition, balancer,
+                    taskResult.getTaskDefinition(), versionForRollback, taskDefinitionUnchanged));
+                deployed = true;
+            } finally {
+                if (deployed) {
+                    purger.waitForPurge(purge);
+                } else {
+                    // Still see the purge through, but report its failure without hiding why the deploy failed
+                    try {
+                        purger.waitForPurge(purge);
+                    } catch (RuntimeException e) {
+                        logger.addErrorLogEntry("Error purging the app from other clusters", e);
+                    }
+                }
+            }
 
             // only post-push for services, not task
-            brokerServicesPostPush(definition, clusterMetadata);
+            timer.time("post-push-brokers", () -> brokerServicesPostPush(definition, clusterMetadata));
 
             loggingService.provideSplunkLog(taskResult);
             provideConsoleLink(loggingService, taskResult, clusterMetadata.getClusterId());
 
         } else if (Objects.equals(type, TaskType.TASK)) {
-            runTask(clusterMetadata, ecsClient, taskResult.getTaskDefinition(), definition.getContainerDefinitions());
+            timer.time("run-task", () -> runTask(clusterMetadata, ecsClient, taskResult.getTaskDefinition(),
+                definition.getContainerDefinitions()));
+        }
+
+        waitForTaskDefinitionCleanup(taskDefinitionCleanup);
+    }
+
+    private LoadBalancer createLoadBalancer(EcsPushDefinition definition, EcsClusterMetadata clusterMetadata) {
+        ElbOrAlbDecider decider = new ElbOrAlbDecider(clients.getElbClient(), logger);
+        boolean useAlb = decider.shouldUseAlb(definition.getAppName(), definition);
+
+        DnsRegistrar dnsRegistrar = new DnsRegistrar(clients.getLambdaClient(), logger, taskProperties.getDnsBrokerLambda());
+        CertHandler certHandler = new CertHandler(logger, taskProperties.getSslCertificates());
+        if (useAlb) {
+            EcsLoadBalancerV2Handler loadBalancerV2Handler = new EcsLoadBalancerV2Handler(clients.getElbV2Client(),
+                clients.getLambdaClient(),
+                certHandler, dnsRegistrar, logger, taskProperties);
+            return loadBalancerV2Handler.createLoadBalancer(clusterMetadata, definition);
+        } else {
+            EcsLoadBalancerHandler loadBalancerHandler = new EcsLoadBalancerHandler(clients.getElbClient(), certHandler,
+                dnsRegistrar, logger, taskProperties);
+            return loadBalancerHandler.createLoadBalancer(clusterMetadata, definition);
         }
+    }
+
+    private <T> CompletableFuture<T> timeAsync(String phase, CompletableFuture<T> work) {
+        long start = System.currentTimeMillis();
+        return work.whenComplete((result, error) ->
+            timer.record(phase, start, System.currentTimeMillis() - start, error == null));
+    }
 
-        logResultInCloudWatch(definition);
+    private TaskDefinitionJanitor getTaskDefinitionJanitor(AmazonECS ecsClient) {
+        int revisionsToKeep = Optional.ofNullable(taskProperties.getTaskDefinitionRevisionsToKeep())
+            .orElse(TaskDefinitionJanitor.DEFAULT_REVISIONS_TO_KEEP);
+        return new TaskDefinitionJanitor(ecsClient, logger, revisionsToKeep);
+    }
+
+    private void waitForTaskDefinitionCleanup(CompletableFuture<Integer> cleanup) {
+        if (cleanup == null) {
+            return;
+        }
+        try {
+            logger.addLogEntry("Deregistered " + cleanup.get() + " prior task definitions");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while deregistering prior task definitions");
+        } catch (ExecutionException e) {
+            // Cleanup is best effort; leftover revisions are picked up by the next push
+            logger.addErrorLogEntry("Unable to deregister prior task definitions", e.getCause());
+        }
     }
 
     private void provideConsoleLink(LoggingService loggingService, RegisterTaskDefinitionResult task, String cluster) {
@@ -406,69 +399,64 @@ public class EcsPush {
         }
     }
 
-    private TaskDefinition getCurrentTaskDef(String appName, AmazonECS ecsClient, String clusterId) {
-        TaskDefinition result = null;
+    private DescribeTaskDefinitionResult getCurrentTaskDef(String appName, AmazonECS ecsClient, String clusterId) {
+        DescribeTaskDefinitionResult result = null;
         DescribeServicesResult serviceResult = ecsClient
             .describeServices(new DescribeServicesRequest().withCluster(clusterId).withServices(appName));
         if (!serviceResult.getServices().isEmpty()) {
             String taskDef = serviceResult.getServices().get(0).getTaskDefinition();
-            result = ecsClient.describeTaskDefinition(new DescribeTaskDefinitionRequest().withTaskDefinition(taskDef))
-                .getTaskDefinition();
+            result = ecsClient.describeTaskDefinition(new DescribeTaskDefinitionRequest().withTaskDefinition(taskDef)
+                .withInclude(TaskDefinitionField.TAGS));
         }
 
         return result;
     }
 
-    private RegisterTaskDefinitionResult registerTask(EcsPushDefinition definition, String appName, AmazonECS ecsClient,
-        String clusterId) {
-
-        RegisterTaskDefinitionResult taskResult = ecsClient.registerTaskDefinition(new RegisterTaskDefinitionRequest()
-            .withFamily(appName)
+    private RegisterTaskDefinitionRequest buildTaskRequest(EcsPushDefinition definition) {
+        return new RegisterTaskDefinitionRequest()
+            .withFamily(definition.getAppName())
             .withContainerDefinitions(definition.getContainerDefinitions())
             .withVolumes(definition.getVolumes())
             .withPlacementConstraints(definition.getTaskPlacementConstraints())
             .withNetworkMode(definition.getNetworkMode())
             .withTaskRoleArn(definition.getTaskRoleArn())
-            .withMemory(definition.getTaskMemory()));
-        logger.addLogEntry("Registered new task: " + taskResult.getTaskDefinition().getTaskDefinitionArn());
+            .withMemory(definition.getTaskMemory());
+    }
 
-        DescribeServicesResult serviceResult = ecsClient
-            .describeServices(new DescribeServicesRequest().withCluster(clusterId).withServices(appName));
-        if (!serviceResult.getServices().isEmpty()) {
-            String taskDef = serviceResult.getServices().get(0).getTaskDefinition();
-            String currentTaskArn = ecsClient
-                .describeTaskDefinition(new DescribeTaskDefinitionRequest().withTaskDefinition(taskDef))
-                .getTaskDefinition().getTaskDefinitionArn();
-
-            ListTaskDefinitionsResult taskListResult = ecsClient.listTaskDefinitions(
-                new ListTaskDefinitionsRequest().withFamilyPrefix(appName).withStatus("ACTIVE"));
-            for (String arn : taskListResult.getTaskDefinitionArns()) {
-                if (!Objects.equals(taskResult.getTaskDefinition().getTaskDefinitionArn(), arn)
-                    && !Objects.equals(currentTaskArn, arn)) {
-                    logger.addLogEntry("Deregistering prior task: " + arn);
-                    ecsClient.deregisterTaskDefinition(new DeregisterTaskDefinitionRequest().withTaskDefinition(arn));
-                }
+    private RegisterTaskDefinitionResult registerTask(RegisterTaskDefinitionRequest taskRequest, AmazonECS ecsClient) {
+
+        RegisterTaskDefinitionResult taskResult;
+        try {
+            taskResult = ecsClient.registerTaskDefinition(taskRequest);
+        } catch (AmazonECSException e) {
+            if (!"AccessDeniedException".equals(e.getErrorCode()) || taskRequest.getTags().isEmpty()) {
+                throw e;
             }
+            // Tagging on registration needs ecs:TagResource; without it, later pushes compare the definitions instead
+            logger.addLogEntry("Not allowed to tag the task definition, registering without tags: "
+                + e.getErrorMessage());
+            taskResult = ecsClient.registerTaskDefinition(taskRequest.clone().withTags(Collections.emptyList()));
         }
+        logger.addLogEntry("Registered new task: " + taskResult.getTaskDefinition().getTaskDefinitionArn());
 
         return taskResult;
     }
 
     private String deployService(AmazonECS ecsClient, EcsClusterMetadata clusterMetadata, EcsPushDefinition definition,
-        LoadBalancer balancer, TaskDefinition taskDefinition, TaskDefinition priorDef) {
+        LoadBalancer balancer, TaskDefinition taskDefinition, TaskDefinition priorDef, boolean taskDefinitionUnchanged) {
         String appName = definition.getAppName();
         DescribeServicesResult serviceSearch = ecsClient.describeServices(
             new DescribeServicesRequest().withCluster(clusterMetadata.getClusterId()).withServices(appName));
 
-        boolean serviceExists = false;
-        String serviceArn = null;
+        Service existingService = null;
         for (Service service : serviceSearch.getServices()) {
             if (!Objects.equals(service.getStatus(), "INACTIVE")) {
                 logger.addLogEntry("Service found: " + service.getServiceName() + " : " + service.getStatus());
-                serviceExists = true;
-                serviceArn = service.getServiceArn();
+                existingService = service;
             }
         }
+        boolean serviceExists = existingService != null;
+        String serviceArn = serviceExists ? existingService.getServiceArn() : null;
 
         String serviceRole = null;
         if (balancer != null) {
@@ -519,6 +507,10 @@ public class EcsPush {
             CreateServiceResult csr = ecsClient.createService(cr);
             serviceArn = csr.getService().getServiceArn();
 
+        } else if (taskDefinitionUnchanged
+            && isServiceUnchanged(existingService, definition, balancer, networkConfiguration)) {
+            logger.addLogEntry("No changes to task definition or service configuration - skipping update");
+            return serviceArn;
         } else {
             logger.addLogEntry("UPDATE SERVICE");
             UpdateServiceRequest updateRequest = new UpdateServiceRequest().withCluster(clusterMetadata.getClusterId())
@@ -540,32 +532,22 @@ public class EcsPush {
             ecsClient.updateService(updateRequest);
         }
 
-        waitForRequestInitialization(definition, ecsClient, clusterMetadata);
-        boolean deploySuccessful = waitForDeployment(appName, ecsClient, clusterMetadata);
+        ServiceStabilizationWaiter waiter = new ServiceStabilizationWaiter(ecsClient, logger,
+            clusterMetadata.getClusterId(), appName);
+        if (balancer != null) {
+            waiter.withTargetHealthCheck(clients.getElbV2Client());
+        }
+        boolean deploySuccessful = timer.time("stabilization", () -> {
+            waitForRequestInitialization(definition, ecsClient, clusterMetadata, waiter,
+                taskDefinition.getTaskDefinitionArn());
+            return waitForDeployment(waiter,
+                getFailureDetector(ecsClient, clusterMetadata, appName, taskDefinition.getTaskDefinitionArn()));
+        });
 
         if (!deploySuccessful) {
             if (priorDef != null) {
-                logger.addLogEntry("Deployment never stabilized - rolling back!");
-                logger.addLogEntry("Rolling back to " + priorDef.getTaskRoleArn());
-
-                UpdateServiceRequest updateRequest = new UpdateServiceRequest()
-                    .withCluster(clusterMetadata.getClusterId())
-                    .withDesiredCount(definition.getService().getInstanceCount())
-                    .withDeploymentConfiguration(definition.getService().getDeploymentConfiguration())
-                    .withTaskDefinition(
-                        priorDef.getTaskDefinitionArn())// "aws-kms-encrypt-dev-us-east-1-task-LEP2I3IDX73G:1")
-                    .withService(appName);
-
-                if (balancer != null) {
-                    updateRequest
-                        .withHealthCheckGracePeriodSeconds(definition.getService().getHealthCheckGracePeriodSeconds());
-                }
-
-                ecsClient.updateService(updateRequest);
-
-                waitForRequestInitialization(definition, ecsClient, clusterMetadata);
-                boolean rollbackSuccessful = waitForDeployment(appName, ecsClient, clusterMetadata);
-
+                boolean rollbackSuccessful = timer.time("rollback", () -> rollBack(ecsClient, clusterMetadata,
+                    definition, balancer, waiter, priorDef));
                 if (!rollbackSuccessful) {
                     setUnsuccessfulServiceToZero(definition, ecsClient, clusterMetadata);
                     throw new AwsExecException(
@@ -585,45 +567,76 @@ public class EcsPush {
         return serviceArn;
     }
 
-    private boolean waitForDeployment(String appName, AmazonECS ecsClient, EcsClusterMetadata clusterMetadata) {
-        String lastEventId = "";
-        int timeoutCount = this.pushContext.getTimeout() * 6;
+    private boolean rollBack(AmazonECS ecsClient, EcsClusterMetadata clusterMetadata, EcsPushDefinition definition,
+        LoadBalancer balancer, ServiceStabilizationWaiter waiter, TaskDefinition priorDef) {
+        String appName = definition.getAppName();
+        logger.addLogEntry("Deployment never stabilized - rolling back!");
+        logger.addLogEntry("Rolling back to " + priorDef.getTaskRoleArn());
 
-        while (timeoutCount > 0) {
-            DescribeServicesResult servicesResult = ecsClient.describeServices(
-                new DescribeServicesRequest().withCluster(clusterMetadata.getClusterId()).withServices(appName));
-            Service service = servicesResult.getServices().get(0);
-            ServiceEvent lastEvent = service.getEvents().get(0);
+        UpdateServiceRequest updateRequest = new UpdateServiceRequest()
+            .withCluster(clusterMetadata.getClusterId())
+            .withDesiredCount(definition.getService().getInstanceCount())
+            .withDeploymentConfiguration(definition.getService().getDeploymentConfiguration())
+            .withTaskDefinition(
+                priorDef.getTaskDefinitionArn())// "aws-kms-encrypt-dev-us-east-1-task-LEP2I3IDX73G:1")
+            .withService(appName);
 
-            logger.addLogEntry("Status:" + service.getStatus() + "  Desired:" + service.getDesiredCount()
-                + "  Pending:" + service.getPendingCount() + "  Running:" + service.getRunningCount());
+        if (balancer != null) {
+            updateRequest
+                .withHealthCheckGracePeriodSeconds(definition.getService().getHealthCheckGracePeriodSeconds());
+        }
 
-            if (!Objects.equals(lastEvent.getId(), lastEventId)) {
-                logger.addLogEntry(lastEvent.getMessage());
-                lastEventId = lastEvent.getId();
-            }
+        ecsClient.updateService(updateRequest);
 
+        waitForRequestInitialization(definition, ecsClient, clusterMetadata, waiter,
+            priorDef.getTaskDefinitionArn());
+        return waitForDeployment(waiter,
+            getFailureDetector(ecsClient, clusterMetadata, appName, priorDef.getTaskDefinitionArn()));
+    }
 
+    private boolean isServiceUnchanged(Service service, EcsPushDefinition definition, LoadBalancer balancer,
+        NetworkConfiguration networkConfiguration) {
+        EcsService serviceDefinition = definition.getService();
+        if (!Objects.equals(service.getStatus(), "ACTIVE") || !ServiceStabilizationWaiter.isSteady(service)) {
+            return false;
+        }
+        if (!serviceDefinition.getSchedulingStrategy().equals(SchedulingStrategy.DAEMON)
+            && !Objects.equals(service.getDesiredCount(), serviceDefinition.getInstanceCount())) {
+            return false;
+        }
+        if (serviceDefinition.getDeploymentConfiguration() != null
+            && !serviceDefinition.getDeploymentConfiguration().equals(service.getDeploymentConfiguration())) {
+            return false;
+        }
+        if (balancer != null && !Objects.equals(
+            Optional.ofNullable(service.getHealthCheckGracePeriodSeconds()).orElse(0),
+            Optional.ofNullable(serviceDefinition.getHealthCheckGracePeriodSeconds()).orElse(0))) {
+            return false;
+        }
+        return networkConfiguration == null || isSameNetwork(networkConfiguration, service.getNetworkConfiguration());
+    }
 
-            ServiceEvent latest = service.getEvents().get(0);
-            if (Objects.equals(service.getDesiredCount(), service.getRunningCount())
-                && latest.getMessage().contains("has reached a steady state")) {
-                logger.addLogEntry("App has stabilized");
-                return true;
-            }
+    private boolean isSameNetwork(NetworkConfiguration expected, NetworkConfiguration actual) {
+        if (actual == null || actual.getAwsvpcConfiguration() == null) {
+            return false;
+        }
+        AwsVpcConfiguration expectedVpc = expected.getAwsvpcConfiguration();
+        AwsVpcConfiguration actualVpc = actual.getAwsvpcConfiguration();
+        return Objects.equals(expectedVpc.getAssignPublicIp(), actualVpc.getAssignPublicIp())
+            && new HashSet<>(expectedVpc.getSubnets()).equals(new HashSet<>(actualVpc.getSubnets()))
+            && new HashSet<>(expectedVpc.getSecurityGroups()).equals(new HashSet<>(actualVpc.getSecurityGroups()));
+    }
 
-            try {
-                Thread.sleep(POLLING_INTERVAL_MS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new AwsExecException(INTERRUPTED_WHILE_POLLING);
-            }
-            timeoutCount--;
+    private boolean waitForDeployment(ServiceStabilizationWaiter waiter, DeploymentFailureDetector failureDetector) {
+        if (waiter.waitForSteadyState(getPollingTimeoutMs(), failureDetector)) {
+            return true;
+        }
+        if (failureDetector.hasFailed()) {
+            return false; // Tasks are crash-looping, a healthy percentage from the old version doesn't count
         }
+
         // Run one last check to see if minimum healthy percent was achieved
-        DescribeServicesResult servicesResult = ecsClient.describeServices(
-            new DescribeServicesRequest().withCluster(clusterMetadata.getClusterId()).withServices(appName));
-        Service service = servicesResult.getServices().get(0);
+        Service service = waiter.describeService();
         float healthyPercent = ((float) service.getRunningCount() / service.getDesiredCount()) * 100;
         if (Objects.nonNull(service.getDeploymentConfiguration().getMinimumHealthyPercent()) && healthyPercent > service.getDeploymentConfiguration().getMinimumHealthyPercent()) {
             logger.addLogEntry("Minimum healthy percent satisfied");
@@ -646,34 +659,24 @@ public class EcsPush {
         }
     }
 
-    private void waitForRequestInitialization(EcsPushDefinition definition, AmazonECS ecsClient, EcsClusterMetadata clusterMetadata) {
-        int timeoutCount = this.pushContext.getTimeout() * 6;
-
-        while (timeoutCount > 0) {
-            try {
-                Thread.sleep(POLLING_INTERVAL_MS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new AwsExecException(INTERRUPTED_WHILE_POLLING);
-            }
-            DescribeServicesResult servicesResult = ecsClient.describeServices(
-                new DescribeServicesRequest().withCluster(clusterMetadata.getClusterId()).withServices(definition.getAppName()));
-            Service service = servicesResult.getServices().get(0);
-            if (service != null && !service.getEvents().isEmpty()) {
-                ServiceEvent lastEvent = service.getEvents().get(0);
-                if (lastEvent != null) {
-                    Date lastEventDate = lastEvent.getCreatedAt();
-                    if (new Date().getTime() - lastEventDate.getTime() > 60000) {
-                        logger.addLogEntry("Waiting for start...");
-                    } else {
-                        return;
-                    }
-                }
-            }
-            timeoutCount--;
+    private void waitForRequestInitialization(EcsPushDefinition definition, AmazonECS ecsClient,
+        EcsClusterMetadata clusterMetadata, ServiceStabilizationWaiter waiter, String taskDefinitionArn) {
+        if (!waiter.waitForInitialization(taskDefinitionArn, getPollingTimeoutMs())) {
+            setUnsuccessfulServiceToZero(definition, ecsClient, clusterMetadata);
+            throw new AwsExecException("AWS never initiated the deployment");
         }
-        setUnsuccessfulServiceToZero(definition, ecsClient, clusterMetadata);
-        throw new AwsExecException("AWS never initiated the deployment");
+    }
+
+    private DeploymentFailureDetector getFailureDetector(AmazonECS ecsClient, EcsClusterMetadata clusterMetadata,
+        String appName, String taskDefinitionArn) {
+        int threshold = Optional.ofNullable(taskProperties.getStoppedTaskThreshold())
+            .orElse(DeploymentFailureDetector.DEFAULT_STOPPED_TASK_THRESHOLD);
+        return new DeploymentFailureDetector(ecsClient, logger, clusterMetadata.getClusterId(), appName,
+            taskDefinitionArn, threshold);
+    }
+
+    private long getPollingTimeoutMs() {
+        return TimeUnit.MINUTES.toMillis(this.pushContext.getTimeout());
     }
 
     private void waitForTaskCompletion(AmazonECS client, String taskName, String clusterName,
@@ -741,17 +744,68 @@ public class EcsPush {
     private void brokerServicesPrePush(EcsPushDefinition definition, EcsDefaultEnvInjection injectMagic,
         EcsClusterMetadata clusterMetadata) {
 
-        String applicationKeyId = brokerKms(definition, clusterMetadata);
-        brokerSqs(definition);
-        brokerSns(definition);
-        brokerS3(definition, clusterMetadata, applicationKeyId);
-        brokerKinesisStream(definition);
-        brokerRds(definition, injectMagic, clusterMetadata, applicationKeyId);
-        brokerDynamoDB(definition);
-        brokerCustom(definition, pushContext, clusterMetadata, lambdaAsyncClient, CustomBrokerPhase.PREPUSH);
+        AtomicReference<String> applicationKeyId = new AtomicReference<>(Strings.EMPTY);
+        int maxConcurrentBrokers = Optional.ofNullable(taskProperties.getMaxConcurrentBrokers())
+            .orElse(BrokerScheduler.DEFAULT_MAX_CONCURRENT_BROKERS);
+
+        BrokerScheduler scheduler = new BrokerScheduler(logger, maxConcurrentBrokers)
+            .addBroker("kms", timedBroker("kms", () -> {
+                applicationKeyId.set(brokerKms(definition, clusterMetadata));
+                return null;
+            }))
+            .addBroker("sqs", timedBroker("sqs", () -> {
+                brokerSqs(definition);
+                return null;
+            }))
+            .addBroker("sns", timedBroker("sns", () -> {
+                brokerSns(definition);
+                return null;
+            }))
+            .addBroker("s3", timedBroker("s3", () -> {
+                brokerS3(definition, clusterMetadata, applicationKeyId.get());
+                return null;
+            }), "kms", "sqs", "sns") // bucket notifications can target the queues and topics brokered above
+            .addBroker("kinesis", timedBroker("kinesis", () -> {
+                brokerKinesisStream(definition);
+                return null;
+            }))
+            .addBroker("rds", timedBroker("rds", () -> {
+                brokerRds(definition, injectMagic, clusterMetadata, applicationKeyId.get());
+                return null;
+            }), "kms")
+            .addBroker("dynamodb", timedBroker("dynamodb", () -> {
+                brokerDynamoDB(definition);
+                return null;
+            }));
+
+        // Custom brokers are sent the push definition, so they wait for the RDS values to be injected into it
+        for (CustomBroker customBroker : getCustomBrokers(definition, pushContext, clusterMetadata,
+            clients.getLambdaAsyncClient(), CustomBrokerPhase.PREPUSH)) {
+            String name = "custom:" + customBroker.getName();
+            scheduler.addBroker(name, timedBroker(name, () -> {
+                CustomBrokerResponse response = customBroker.invokeBroker();
+                return () -> customBroker.injectVariables(response);
+            }), "rds");
+        }
+
+        scheduler.run();
     }
 
 
+    private Callable<Runnable> timedBroker(String name, Callable<Runnable> broker) {
+        return () -> {
+            long start = System.currentTimeMillis();
+            boolean succeeded = false;
+            try {
+                Runnable deferredAction = broker.call();
+                succeeded = true;
+                return deferredAction;
+            } finally {
+                timer.record("broker:" + name, start, System.currentTimeMillis() - start, succeeded);
+            }
+        };
+    }
+
     private String brokerKms(EcsPushDefinition definition, EcsClusterMetadata clusterMetadata) {
         KmsBroker broker = new KmsBroker(logger, bambooPropertyHandler, fileUtil, taskProperties,
             this.pushContext.getSessionCredentials(), this.pushContext.getCustomConfigurationBucket(), this.pushContext.getRegion());
@@ -765,9 +819,9 @@ public class EcsPush {
         tags = TagUtil.mergeTags(tags, definition.getTags());
         String applicationKeyId = Strings.EMPTY;
         if (broker.isActive(definition)) {
-            applicationKeyId = broker.brokerKey(kmsClient, definition, TagUtil.hermanToKmsTags(tags));
+            applicationKeyId = broker.brokerKey(clients.getKmsClient(), definition, TagUtil.hermanToKmsTags(tags));
         } else {
-            broker.deleteKey(kmsClient, definition);
+            broker.deleteKey(clients.getKmsClient(), definition);
         }
         return applicationKeyId;
     }
@@ -779,7 +833,7 @@ public class EcsPush {
             targetKey = applicationKeyId;
         }
 
-        RdsBroker rdsBroker = new RdsBroker(pushContext, rdsClient, kmsClient, targetKey, definition, clusterMetadata,
+        RdsBroker rdsBroker = new RdsBroker(pushContext, clients.getRdsClient(), clients.getKmsClient(), targetKey, definition, clusterMetadata,
             new EcsPushFactory(), fileUtil);
 
         if (definition.getDatabase() != null) {
@@ -798,9 +852,9 @@ public class EcsPush {
             for (SqsQueue queue : definition.getQueues()) {
                 if (queue.getPolicyName() != null) {
                     String policy = fileUtil.findFile(queue.getPolicyName(), false);
-                    sqsBroker.brokerQueue(sqsClient, queue, policy, definition.getTags());
+                    sqsBroker.brokerQueue(clients.getSqsClient(), queue, policy, definition.getTags());
                 } else {
-                    sqsBroker.brokerQueue(sqsClient, queue, null, definition.getTags());
+                    sqsBroker.brokerQueue(clients.getSqsClient(), queue, null, definition.getTags());
                 }
             }
         }
@@ -812,9 +866,9 @@ public class EcsPush {
             for (SnsTopic topic : definition.getTopics()) {
                 if (topic.getPolicyName() != null) {
                     String policy = fileUtil.findFile(topic.getPolicyName(), false);
-                    snsBroker.brokerTopic(snsClient, topic, policy);
+                    snsBroker.brokerTopic(clients.getSnsClient(), topic, policy);
                 } else {
-                    snsBroker.brokerTopic(snsClient, topic, null);
+                    snsBroker.brokerTopic(clients.getSnsClient(), topic, null);
                 }
             }
         }
@@ -827,16 +881,16 @@ public class EcsPush {
             for (S3Bucket bucket : definition.getBuckets()) {
                 if (bucket.getPolicyName() != null) {
                     String policy = fileUtil.findFile(bucket.getPolicyName(), false);
-                    s3Broker.brokerBucketFromEcsPush(s3Client, kmsClient, bucket, policy, kmsKeyId, clusterMetadata, definition);
+                    s3Broker.brokerBucketFromEcsPush(clients.getS3Client(), clients.getKmsClient(), bucket, policy, kmsKeyId, clusterMetadata, definition);
                 } else {
-                    s3Broker.brokerBucketFromEcsPush(s3Client, kmsClient, bucket, null, kmsKeyId, clusterMetadata, definition);
+                    s3Broker.brokerBucketFromEcsPush(clients.getS3Client(), clients.getKmsClient(), bucket, null, kmsKeyId, clusterMetadata, definition);
                 }
             }
         }
     }
 
     private void brokerKinesisStream(EcsPushDefinition definition) {
-        KinesisBroker kinesisBroker = new KinesisBroker(logger, kinesisClient, definition, taskProperties);
+        KinesisBroker kinesisBroker = new KinesisBroker(logger, clients.getKinesisClient(), definition, taskProperties);
 
         if (definition.getStreams() != null) {
             for (KinesisStream stream : definition.getStreams()) {
@@ -849,7 +903,7 @@ public class EcsPush {
         DynamoDBBroker dynamoDBBroker = new DynamoDBBroker(logger, definition);
 
         if (definition.getDynamoDBTables() != null) {
-            dynamoDBBroker.createDynamoDBTables(dynamoDbClient);
+            dynamoDBBroker.createDynamoDBTables(clients.getDynamoDbClient());
         }
     }
 
@@ -862,7 +916,7 @@ public class EcsPush {
                 logger,
                 fileUtil,
                 newRelicBrokerConfiguration,
-                lambdaClient);
+                clients.getLambdaClient());
             newRelicBroker.brokerNewRelicApplicationDeployment(
                 definition.getNewRelic(),
                 definition.getAppName(),
@@ -875,12 +929,12 @@ public class EcsPush {
             asb.broker(clusterMetadata, definition);
         }
 
-        brokerCustom(definition, pushContext, clusterMetadata, lambdaAsyncClient, CustomBrokerPhase.POSTPUSH);
+        brokerCustom(definition, pushContext, clusterMetadata, clients.getLambdaAsyncClient(), CustomBrokerPhase.POSTPUSH);
     }
 
-    private void logInvocationInCloudWatch(EcsPushDefinition definition) {
+    private MetricDatum getInvocationMetric(EcsPushDefinition definition) {
         try {
-            MetricDatum d = new MetricDatum().withMetricName("Invocation")
+            return new MetricDatum().withMetricName("Invocation")
                 .withDimensions(new Dimension().withName("application").withValue(definition.getAppName()),
                     new Dimension().withName("cluster").withValue(definition.getCluster()),
                     new Dimension().withName("env")
@@ -892,17 +946,70 @@ public class EcsPush {
                             : "current-plugin"),
                     new Dimension().withName("engine").withValue(taskProperties.getEngine()))
                 .withUnit(StandardUnit.Count).withValue(1.0).withTimestamp(new Date());
-
-            cloudWatchClient.putMetricData(new PutMetricDataRequest().withNamespace("Herman/Deploy").withMetricData(d));
         } catch (Exception e) { // NOSONAR
             pushContext.getLogger()
                 .addLogEntry("Error logging invocation to CW: " + e.getMessage());// nothing to do
+            return null;
+        }
+    }
+
+    private void reportTimings(EcsPushDefinition definition, boolean succeeded) {
+        logger.addLogEntry("Deployment timings:");
+        for (DeploymentTimer.PhaseTiming timing : timer.getTimings()) {
+            logger.addLogEntry(String.format("... %-28s %8d ms%s", timing.getPhase(), timing.getDurationMs(),
+                timing.isSucceeded() ? "" : " (failed)"));
+        }
+        logger.addLogEntry(String.format("... %-28s %8d ms", "total", timer.getElapsedMs()));
+
+        publishTimingsInCloudWatch(definition, succeeded);
+        if (taskProperties.getTimingReportDirectory() != null) {
+            // one file per app, so the apps of a batch push do not overwrite each other's report
+            File directory = new File(taskProperties.getTimingReportDirectory());
+            writeTimingReport(definition, succeeded,
+                new File(directory, definition.getAppName() + TIMING_REPORT_SUFFIX));
         }
     }
 
-    private void logResultInCloudWatch(EcsPushDefinition definition) {
+    private void publishTimingsInCloudWatch(EcsPushDefinition definition, boolean succeeded) {
         try {
-            MetricDatum d = new MetricDatum().withMetricName("Result")
+            List<Dimension> dimensions = new ArrayList<>();
+            dimensions.add(new Dimension().withName("application").withValue(definition.getAppName()));
+            dimensions.add(new Dimension().withName("cluster").withValue(definition.getCluster()));
+            if (pushContext.getEnvName() != null) {
+                dimensions.add(new Dimension().withName("env").withValue(pushContext.getEnvName()));
+            }
+            List<MetricDatum> data = new ArrayList<>();
+            Optional.ofNullable(getInvocationMetric(definition)).ifPresent(data::add);
+            data.addAll(timer.toMetricData(dimensions));
+            if (succeeded) {
+                Optional.ofNullable(getResultMetric(definition)).ifPresent(data::add);
+            }
+
+            for (int i = 0; i < data.size(); i += MAX_METRIC_DATA_PER_REQUEST) {
+                clients.getCloudWatchClient().putMetricData(new PutMetricDataRequest().withNamespace("Herman/Deploy")
+                    .withMetricData(data.subList(i, Math.min(i + MAX_METRIC_DATA_PER_REQUEST, data.size()))));
+            }
+        } catch (Exception e) { // NOSONAR
+            pushContext.getLogger().addLogEntry("Error logging timings to CW: " + e.getMessage());// nothing to do
+        }
+    }
+
+    private void writeTimingReport(EcsPushDefinition definition, boolean succeeded, File report) {
+        try {
+            Files.createDirectories(report.getParentFile().toPath());
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("application", definition.getAppName());
+            attributes.put("cluster", definition.getCluster());
+            attributes.put("environment", pushContext.getEnvName());
+            timer.writeReport(report, attributes, succeeded);
+        } catch (IOException e) {
+            logger.addLogEntry("Unable to write " + report + ": " + e.getMessage());
+        }
+    }
+
+    private MetricDatum getResultMetric(EcsPushDefinition definition) {
+        try {
+            return new MetricDatum().withMetricName("Result")
                 .withDimensions(
                     new Dimension().withName("application").withValue(definition.getAppName()),
                     new Dimension().withName("cluster").withValue(definition.getCluster()),
@@ -917,10 +1024,9 @@ public class EcsPush {
                     new Dimension().withName("propKeysRequired").withValue(
                         String.join(",", ((TaskContextPropertyHandler) bambooPropertyHandler).getPropertyKeysUsed())))
                 .withUnit(StandardUnit.Count).withValue(1.0).withTimestamp(new Date());
-
-            cloudWatchClient.putMetricData(new PutMetricDataRequest().withNamespace("Herman/Deploy").withMetricData(d));
         } catch (Exception e) { // NOSONAR
             pushContext.getLogger().addLogEntry("Error logging result to CW: " + e.getMessage());// nothing to do
+            return null;
         }
     }
 
@@ -931,11 +1037,24 @@ public class EcsPush {
         AWSLambdaAsync lambdaAsyncClient,
         CustomBrokerPhase phase
     ) {
+        for(CustomBroker customBroker: getCustomBrokers(definition, pushContext, clusterMetadata, lambdaAsyncClient, phase)){
+            customBroker.runBroker();
+        }
+    }
+
+    private List<CustomBroker> getCustomBrokers(
+        EcsPushDefinition definition,
+        EcsPushContext pushContext,
+        EcsClusterMetadata clusterMetadata,
+        AWSLambdaAsync lambdaAsyncClient,
+        CustomBrokerPhase phase
+    ) {
+        List<CustomBroker> customBrokers = new ArrayList<>();
         if(definition != null && definition.getCustomBrokers() != null){
             for(Entry<String, Object> entry: definition.getCustomBrokers().entrySet()){
                 CustomBrokerConfiguration config = pushContext.getTaskProperties().getCustomBrokers().get(entry.getKey());
                 if(config.getPhase() == phase){
-                    CustomBroker customBroker = new CustomBroker(
+                    customBrokers.add(new CustomBroker(
                         entry.getKey(),
                         entry.getValue(),
                         pushContext,
@@ -943,10 +1062,10 @@ public class EcsPush {
                         clusterMetadata,
                         config,
                         lambdaAsyncClient
-                    );
-                    customBroker.runBroker();
+                    ));
                 }
             }
         }
+        return customBrokers;
     }
 }
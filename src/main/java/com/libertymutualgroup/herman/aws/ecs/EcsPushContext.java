@@ -18,6 +18,7 @@ package com.libertymutualgroup.herman.aws.ecs;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.ecs.ECSPushTaskProperties;
 
@@ -114,6 +115,13 @@ public class EcsPushContext {
         this.customConfigurationBucket = customConfigurationBucket;
     }
 
+    /**
+     * @return the clients shared for these credentials, region and client configuration
+     */
+    public AwsClientRegistry getClientRegistry() {
+        return AwsClientRegistry.getInstance(sessionCredentials, region, awsClientConfig);
+    }
+
     public EcsPushContext withLogger(final HermanLogger logger) {
         this.logger = logger;
         return this;
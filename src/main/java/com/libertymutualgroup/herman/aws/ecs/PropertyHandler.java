@@ -15,24 +15,19 @@
  */
 package com.libertymutualgroup.herman.aws.ecs;
 
-import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.util.FileUtil;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashSet;
 import java.util.Properties;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public abstract class PropertyHandler {
-    private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([a-zA-Z0-9\\.\\_\\-]+)\\}");
     private HermanLogger hermanLogger;
     private String environmentName;
     private String rootDirectory;
+    private Properties envProps;
     Properties props = new Properties();
 
     public PropertyHandler(HermanLogger hermanLogger, String environmentName, String rootDirectory) {
@@ -47,37 +42,7 @@ public abstract class PropertyHandler {
 
     public String mapInProperties(String template) {
         importPropFiles();
-
-        Set<String> propertiesToMatch = getPropertiesToMatch(template);
-        String result = template;
-        for (String prop : propertiesToMatch) {
-            String token = prop.replace("${", "");
-            token = token.replace("}", "");
-            Pattern groupPattern = Pattern.compile("\\$\\{(" + token + ")\\}");
-            Matcher matcher = groupPattern.matcher(result);
-            String value = lookupVariable(token);
-            if (value == null) {
-                throw new AwsExecException("Missing property set for " + token);
-            }
-            result = matcher.replaceAll(value);
-        }
-
-        if(getPropertiesToMatch(result).isEmpty()){
-            return result;
-        }
-
-        return mapInProperties(result);
-
-    }
-
-    private Set<String> getPropertiesToMatch(String template) {
-        Set<String> propertiesToMatch = new HashSet<>();
-        Matcher propMatcher = PROPERTY_PATTERN.matcher(template);
-        while (propMatcher.find()) {
-            String propVal = propMatcher.group();
-            propertiesToMatch.add(propVal);
-        }
-        return propertiesToMatch;
+        return new PropertySubstitutor(this::lookupVariable).substitute(template);
     }
 
     public Properties lookupProperties(String... propList) {
@@ -93,19 +58,27 @@ public abstract class PropertyHandler {
 
     public abstract String lookupVariable(String inputKey);
 
-    private void importPropFiles() {
-        FileUtil util = new FileUtil(this.rootDirectory, this.hermanLogger);
-        String envProps = util.findFile(this.environmentName + ".properties", true);
+    /**
+     * Reads the environment properties file the first time it is needed, then re-applies the same values on every
+     * call so they keep taking precedence over properties added in between.
+     */
+    private synchronized void importPropFiles() {
+        if (envProps == null) {
+            envProps = new Properties();
+            FileUtil util = new FileUtil(this.rootDirectory, this.hermanLogger);
+            String envPropsFile = util.findFile(this.environmentName + ".properties", true);
 
-        if (props != null && envProps != null) {
-            try {
-                InputStream propStream = new ByteArrayInputStream(envProps.getBytes());
-                props.load(propStream);
-            } catch (IOException e) {
-                hermanLogger.addErrorLogEntry("Error loading " + this.environmentName + ".properties: " + e.getMessage());
+            if (envPropsFile != null) {
+                try {
+                    InputStream propStream = new ByteArrayInputStream(envPropsFile.getBytes());
+                    envProps.load(propStream);
+                } catch (IOException e) {
+                    hermanLogger.addErrorLogEntry("Error loading " + this.environmentName + ".properties: " + e.getMessage());
+                }
+            } else {
+                hermanLogger.addErrorLogEntry("No property file was loaded - we looked for " + this.environmentName + ".properties");
             }
-        } else {
-            hermanLogger.addErrorLogEntry("No property file was loaded - we looked for " + this.environmentName + ".properties");
         }
+        props.putAll(envProps);
     }
-}
\ No newline at end of file
+}
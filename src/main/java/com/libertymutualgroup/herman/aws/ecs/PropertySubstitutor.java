@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Replaces ${name} references in a template in a single left-to-right pass. References may be nested
+ * (${app-${env}}) and values may contain references themselves; each name is looked up and resolved once per
+ * substitutor, and a name that ends up referring to itself is reported instead of recursing forever.
+ *
+ * Text that is not a valid reference (no closing brace, or characters outside [a-zA-Z0-9._-] in the name) is kept as
+ * is.
+ */
+class PropertySubstitutor {
+
+    private final Function<String, String> lookup;
+    private final Map<String, String> resolved = new HashMap<>();
+    private final Set<String> resolving = new LinkedHashSet<>();
+
+    PropertySubstitutor(Function<String, String> lookup) {
+        this.lookup = lookup;
+    }
+
+    String substitute(String template) {
+        StringBuilder out = new StringBuilder(template.length());
+        append(template, 0, false, out);
+        return out.toString();
+    }
+
+    /**
+     * Copies text from start into out, resolving references on the way. When nested, stops after the brace that
+     * closes the enclosing reference and returns the index following it, or -1 if there is none.
+     */
+    private int append(String text, int start, boolean nested, StringBuilder out) {
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '$' && i + 1 < text.length() && text.charAt(i + 1) == '{') {
+                i = appendReference(text, i, out);
+            } else if (c == '}' && nested) {
+                return i + 1;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return nested ? -1 : i;
+    }
+
+    private int appendReference(String text, int start, StringBuilder out) {
+        StringBuilder name = new StringBuilder();
+        int end = append(text, start + 2, true, name);
+        if (end < 0) {
+            out.append("${").append(name);
+            return text.length();
+        }
+        if (isValidName(name)) {
+            out.append(resolve(name.toString()));
+        } else {
+            out.append("${").append(name).append('}');
+        }
+        return end;
+    }
+
+    private String resolve(String name) {
+        String value = resolved.get(name);
+        if (value != null) {
+            return value;
+        }
+        if (resolving.contains(name)) {
+            throw new AwsExecException(
+                "Circular property reference: " + String.join(" -> ", resolving) + " -> " + name);
+        }
+        String raw = lookup.apply(name);
+        if (raw == null) {
+            throw new AwsExecException("Missing property set for " + name);
+        }
+
+        resolving.add(name);
+        try {
+            StringBuilder out = new StringBuilder(raw.length());
+            append(raw, 0, false, out);
+            value = out.toString();
+        } finally {
+            resolving.remove(name);
+        }
+        resolved.put(name, value);
+        return value;
+    }
+
+    private static boolean isValidName(CharSequence name) {
+        if (name.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '_' || c == '-';
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -21,14 +21,18 @@ import com.atlassian.bamboo.variable.VariableContext;
 import com.atlassian.bamboo.variable.VariableDefinitionContext;
 import com.libertymutualgroup.herman.logging.AtlassianBuildLogger;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TaskContextPropertyHandler extends PropertyHandler {
     private DeploymentTaskContext deploymentTaskContext;
     private CustomVariableContext customVariableContext;
-    private Set<String> propertyKeysUsed = new HashSet<>();
+    private Set<String> propertyKeysUsed = ConcurrentHashMap.newKeySet();
+    private volatile VariableIndex variableIndex;
 
     public TaskContextPropertyHandler(DeploymentTaskContext deploymentTaskContext,
         CustomVariableContext customVariableContext) {
@@ -50,9 +54,6 @@ public class TaskContextPropertyHandler extends PropertyHandler {
     public String lookupVariable(String inputKey) {
         String key = inputKey.replace("bamboo.", "");
 
-        VariableContext commonVars = deploymentTaskContext.getCommonContext().getVariableContext();
-        VariableContext vars = deploymentTaskContext.getDeploymentContext().getVariableContext();
-
         if ("deploy.environment".equals(key)) {
             propertyKeysUsed.add(key);
             return deploymentTaskContext.getDeploymentContext().getEnvironmentName();
@@ -72,49 +73,71 @@ public class TaskContextPropertyHandler extends PropertyHandler {
 
         String value = props.getProperty(key);
         if (value == null) {
-            value = lookupVar(vars.getEffectiveVariables(), key);
-        }
-        if (value == null) {
-            value = lookupVar(vars.getResultVariables(), key);
-        }
-        // check sys env with .
-        if (value == null) {
-            value = lookupVar(vars.getOriginalVariables(), key);
-        }
-        // //check sysenv with _
-        if (value == null) {
-            value = lookupVar(commonVars.getEffectiveVariables(), key);
-        }
-        if (value == null) {
-            value = lookupVar(commonVars.getResultVariables(), key);
-        }
-
-        // Get value of a custom variable
-        if (value == null) {
-            for (Map.Entry<String, VariableDefinitionContext> entry : customVariableContext.getVariableContexts()
-                .entrySet()) {
-                if (key.equals(entry.getKey())) {
-                    propertyKeysUsed.add(key);
-                    value = entry.getValue().getValue();
-                    break;
-                }
+            VariableIndex index = getVariableIndex();
+            if (index.keys.contains(key)) {
+                propertyKeysUsed.add(key);
+                value = index.values.get(key);
             }
         }
-
         return value;
     }
 
-    private String lookupVar(Map<String, VariableDefinitionContext> map, String key) {
-        VariableDefinitionContext ctxt = map.get(key);
-        if (ctxt != null) {
-            propertyKeysUsed.add(key);
-            return ctxt.getValue();
-        } else {
-            return null;
+    /**
+     * Bamboo variables do not change while the task runs, so every source is merged once, in lookup order:
+     * deployment effective, result and original variables, then the common context's effective and result
+     * variables, then custom variables.
+     */
+    private VariableIndex getVariableIndex() {
+        VariableIndex index = variableIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = variableIndex;
+                if (index == null) {
+                    VariableContext commonVars = deploymentTaskContext.getCommonContext().getVariableContext();
+                    VariableContext vars = deploymentTaskContext.getDeploymentContext().getVariableContext();
+
+                    index = new VariableIndex();
+                    index.addAll(vars.getEffectiveVariables());
+                    index.addAll(vars.getResultVariables());
+                    index.addAll(vars.getOriginalVariables());
+                    index.addAll(commonVars.getEffectiveVariables());
+                    index.addAll(commonVars.getResultVariables());
+                    index.addAll(customVariableContext.getVariableContexts());
+                    variableIndex = index.seal();
+                }
+            }
         }
+        return index;
     }
 
     Set<String> getPropertyKeysUsed() {
         return propertyKeysUsed;
     }
+
+    private static class VariableIndex {
+        private Map<String, String> values = new HashMap<>();
+        private Set<String> keys = new HashSet<>();
+
+        void addAll(Map<String, VariableDefinitionContext> variables) {
+            if (variables == null) {
+                return;
+            }
+            for (Map.Entry<String, VariableDefinitionContext> entry : variables.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                keys.add(entry.getKey());
+                // an earlier source only wins if it actually has a value, as with the sequential lookups
+                if (!values.containsKey(entry.getKey()) && entry.getValue().getValue() != null) {
+                    values.put(entry.getKey(), entry.getValue().getValue());
+                }
+            }
+        }
+
+        VariableIndex seal() {
+            values = Collections.unmodifiableMap(values);
+            keys = Collections.unmodifiableSet(keys);
+            return this;
+        }
+    }
 }
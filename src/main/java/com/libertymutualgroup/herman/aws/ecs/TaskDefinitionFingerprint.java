@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.amazonaws.services.ecs.model.DescribeTaskDefinitionResult;
+import com.amazonaws.services.ecs.model.RegisterTaskDefinitionRequest;
+import com.amazonaws.services.ecs.model.Tag;
+import com.amazonaws.services.ecs.model.TaskDefinition;
+import com.amazonaws.util.BinaryUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.util.ObjectMappers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Canonical content hash of a task definition registration. The hash is stored as a tag on each registered revision
+ * so a later push can tell whether the revision the service runs already matches what it would register, without
+ * having to normalize the defaults ECS fills into described task definitions. Revisions registered without the tag
+ * (when the deploy role may not tag resources) are compared by hashing the described definition instead.
+ */
+public class TaskDefinitionFingerprint {
+
+    public static final String HASH_TAG_KEY = "herman:definition-hash";
+
+    private TaskDefinitionFingerprint() {
+    }
+
+    public static String hash(RegisterTaskDefinitionRequest request) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("family", request.getFamily());
+        content.put("containerDefinitions", request.getContainerDefinitions());
+        content.put("volumes", request.getVolumes());
+        content.put("placementConstraints", request.getPlacementConstraints());
+        content.put("networkMode", request.getNetworkMode());
+        content.put("taskRoleArn", request.getTaskRoleArn());
+        content.put("memory", request.getMemory());
+        try {
+            byte[] canonical = ObjectMappers.canonicalJson().writeValueAsString(content).getBytes(StandardCharsets.UTF_8);
+            return BinaryUtils.toHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new AwsExecException(e);
+        }
+    }
+
+    public static Tag toTag(String hash) {
+        return new Tag().withKey(HASH_TAG_KEY).withValue(hash);
+    }
+
+    /**
+     * Compares against the hash tag of the described revision, or against the described definition itself when the
+     * revision has no hash tag. The described definition includes defaults ECS filled in, so that comparison can
+     * report a change that isn't one (costing a registration), but never misses a real change.
+     */
+    public static boolean matchesRevision(String hash, DescribeTaskDefinitionResult current) {
+        if (findHash(current.getTags()) != null) {
+            return matches(hash, current.getTags());
+        }
+        TaskDefinition definition = current.getTaskDefinition();
+        return Objects.equals(hash, hash(new RegisterTaskDefinitionRequest()
+            .withFamily(definition.getFamily())
+            .withContainerDefinitions(definition.getContainerDefinitions())
+            .withVolumes(definition.getVolumes())
+            .withPlacementConstraints(definition.getPlacementConstraints())
+            .withNetworkMode(definition.getNetworkMode())
+            .withTaskRoleArn(definition.getTaskRoleArn())
+            .withMemory(definition.getMemory())));
+    }
+
+    public static boolean matches(String hash, List<Tag> tags) {
+        String taggedHash = findHash(tags);
+        return taggedHash != null && Objects.equals(hash, taggedHash);
+    }
+
+    private static String findHash(List<Tag> tags) {
+        if (tags == null) {
+            return null;
+        }
+        for (Tag tag : tags) {
+            if (HASH_TAG_KEY.equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.amazonaws.services.cloudwatchevents.AmazonCloudWatchEvents;
+import com.amazonaws.services.cloudwatchevents.model.EventBus;
+import com.amazonaws.services.cloudwatchevents.model.ListEventBusesRequest;
+import com.amazonaws.services.cloudwatchevents.model.ListEventBusesResult;
+import com.amazonaws.services.cloudwatchevents.model.ListRulesRequest;
+import com.amazonaws.services.cloudwatchevents.model.ListRulesResult;
+import com.amazonaws.services.cloudwatchevents.model.ListTargetsByRuleRequest;
+import com.amazonaws.services.cloudwatchevents.model.ListTargetsByRuleResult;
+import com.amazonaws.services.cloudwatchevents.model.Rule;
+import com.amazonaws.services.cloudwatchevents.model.Target;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.DeregisterTaskDefinitionRequest;
+import com.amazonaws.services.ecs.model.DescribeServicesRequest;
+import com.amazonaws.services.ecs.model.DescribeTasksRequest;
+import com.amazonaws.services.ecs.model.Deployment;
+import com.amazonaws.services.ecs.model.ListClustersRequest;
+import com.amazonaws.services.ecs.model.ListClustersResult;
+import com.amazonaws.services.ecs.model.ListServicesRequest;
+import com.amazonaws.services.ecs.model.ListServicesResult;
+import com.amazonaws.services.ecs.model.ListTaskDefinitionFamiliesRequest;
+import com.amazonaws.services.ecs.model.ListTaskDefinitionFamiliesResult;
+import com.amazonaws.services.ecs.model.ListTaskDefinitionsRequest;
+import com.amazonaws.services.ecs.model.ListTaskDefinitionsResult;
+import com.amazonaws.services.ecs.model.ListTasksRequest;
+import com.amazonaws.services.ecs.model.ListTasksResult;
+import com.amazonaws.services.ecs.model.Service;
+import com.amazonaws.services.ecs.model.SortOrder;
+import com.amazonaws.services.ecs.model.Task;
+import com.amazonaws.services.ecs.model.TaskDefinitionFamilyStatus;
+import com.amazonaws.services.ecs.model.TaskDefinitionStatus;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Deregisters stale ACTIVE task definition revisions. The newest revisions of a family are kept along with any
+ * protected ones (such as the running and rollback revisions), and deregistrations are spaced out so a large backlog
+ * doesn't get throttled.
+ */
+public class TaskDefinitionJanitor {
+
+    public static final int DEFAULT_REVISIONS_TO_KEEP = 1;
+    static final long DEFAULT_MIN_DEREGISTER_INTERVAL_MS = 200;
+    private static final int DESCRIBE_SERVICES_BATCH_SIZE = 10;
+    private static final int DESCRIBE_TASKS_BATCH_SIZE = 100;
+
+    private final AmazonECS ecsClient;
+    private final HermanLogger logger;
+    private final int revisionsToKeep;
+    private final long minDeregisterIntervalMs;
+    private AmazonCloudWatchEvents eventsClient;
+    private long nextDeregisterAt;
+
+    public TaskDefinitionJanitor(AmazonECS ecsClient, HermanLogger logger, int revisionsToKeep) {
+        this(ecsClient, logger, revisionsToKeep, DEFAULT_MIN_DEREGISTER_INTERVAL_MS);
+    }
+
+    TaskDefinitionJanitor(AmazonECS ecsClient, HermanLogger logger, int revisionsToKeep,
+        long minDeregisterIntervalMs) {
+        this.ecsClient = ecsClient;
+        this.logger = logger;
+        this.revisionsToKeep = Math.max(0, revisionsToKeep);
+        this.minDeregisterIntervalMs = minDeregisterIntervalMs;
+    }
+
+    /**
+     * Needed by {@link #sweep}, which protects revisions that scheduled (EventBridge) tasks launch.
+     */
+    public TaskDefinitionJanitor withEventsClient(AmazonCloudWatchEvents eventsClient) {
+        this.eventsClient = eventsClient;
+        return this;
+    }
+
+    /**
+     * Lists every ACTIVE revision of the family, newest first, and returns the ones that can be deregistered.
+     */
+    public List<String> findStaleRevisions(String family, Set<String> protectedArns) {
+        return findStaleRevisions(family, protectedArns, revisionsToKeep);
+    }
+
+    private List<String> findStaleRevisions(String family, Set<String> protectedArns, int revisionsToKeep) {
+        List<String> stale = new ArrayList<>();
+        int kept = 0;
+        ListTaskDefinitionsRequest request = new ListTaskDefinitionsRequest()
+            .withFamilyPrefix(family)
+            .withStatus(TaskDefinitionStatus.ACTIVE)
+            .withSort(SortOrder.DESC);
+        do {
+            ListTaskDefinitionsResult result = ecsClient.listTaskDefinitions(request);
+            for (String arn : result.getTaskDefinitionArns()) {
+                // The family filter is a prefix match, so "app" also lists "app-worker"
+                if (!family.equals(getFamily(arn)) || protectedArns.contains(arn)) {
+                    continue;
+                }
+                if (kept < revisionsToKeep) {
+                    kept++;
+                } else {
+                    stale.add(arn);
+                }
+            }
+            request.setNextToken(result.getNextToken());
+        } while (request.getNextToken() != null);
+        return stale;
+    }
+
+    /**
+     * @return the number of revisions deregistered
+     */
+    public int clean(String family, Set<String> protectedArns) {
+        int deregistered = 0;
+        for (String arn : findStaleRevisions(family, protectedArns)) {
+            if (deregister(arn)) {
+                deregistered++;
+            }
+        }
+        return deregistered;
+    }
+
+    /**
+     * Same as {@link #clean}, on a background thread so it can overlap with the rest of a deployment.
+     */
+    public CompletableFuture<Integer> cleanAsync(String family, Set<String> protectedArns) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-definition-janitor-" + family);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return CompletableFuture.supplyAsync(() -> clean(family, new HashSet<>(protectedArns)), executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Cleans the ACTIVE task definition families starting with the prefix (every family in the account when it is
+     * null). Revisions are protected when a service deployment, a running task or an EventBridge target in this region
+     * uses them; a target naming only the family keeps that family's newest revision.
+     *
+     * @return the number of revisions deregistered, or that would be in a dry run
+     */
+    public int sweep(String familyPrefix, int parallelism, boolean dryRun) {
+        if (eventsClient == null) {
+            throw new AwsExecException("An events client is required to find revisions used by scheduled tasks");
+        }
+        Set<String> inUse = new HashSet<>();
+        Set<String> latestInUse = new HashSet<>();
+        addRevisionsInUseByClusters(inUse);
+        addRevisionsInUseByEventTargets(inUse, latestInUse);
+        Set<String> protectedArns = Collections.unmodifiableSet(inUse);
+        List<String> families = listFamilies(familyPrefix);
+        logger.addLogEntry("Sweeping " + families.size() + " task definition families; " + inUse.size()
+            + " revisions are in use by services, tasks and scheduled rules");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (String family : families) {
+                futures.add(executor.submit(() -> {
+                    int keep = latestInUse.contains(family) ? Math.max(1, revisionsToKeep) : revisionsToKeep;
+                    List<String> stale = findStaleRevisions(family, protectedArns, keep);
+                    if (dryRun) {
+                        stale.forEach(arn -> logger.addLogEntry("Would deregister " + arn));
+                        return stale.size();
+                    }
+                    int deregistered = 0;
+                    for (String arn : stale) {
+                        if (deregister(arn)) {
+                            deregistered++;
+                        }
+                    }
+                    return deregistered;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while sweeping task definitions");
+        } catch (ExecutionException e) {
+            throw new AwsExecException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static String getFamily(String taskDefinitionArn) {
+        String familyAndRevision = taskDefinitionArn.substring(taskDefinitionArn.lastIndexOf('/') + 1);
+        int revisionSeparator = familyAndRevision.lastIndexOf(':');
+        return revisionSeparator < 0 ? familyAndRevision : familyAndRevision.substring(0, revisionSeparator);
+    }
+
+    private boolean deregister(String arn) {
+        throttle();
+        try {
+            logger.addLogEntry("Deregistering prior task: " + arn);
+            ecsClient.deregisterTaskDefinition(new DeregisterTaskDefinitionRequest().withTaskDefinition(arn));
+            return true;
+        } catch (RuntimeException e) {
+            logger.addErrorLogEntry("Unable to deregister " + arn + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void throttle() {
+        long wait = nextDeregisterAt - System.currentTimeMillis();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AwsExecException("Interrupted while deregistering task definitions");
+            }
+        }
+        nextDeregisterAt = System.currentTimeMillis() + minDeregisterIntervalMs;
+    }
+
+    private List<String> listFamilies(String familyPrefix) {
+        List<String> families = new ArrayList<>();
+        ListTaskDefinitionFamiliesRequest request = new ListTaskDefinitionFamiliesRequest()
+            .withFamilyPrefix(familyPrefix)
+            .withStatus(TaskDefinitionFamilyStatus.ACTIVE);
+        do {
+            ListTaskDefinitionFamiliesResult result = ecsClient.listTaskDefinitionFamilies(request);
+            families.addAll(result.getFamilies());
+            request.setNextToken(result.getNextToken());
+        } while (request.getNextToken() != null);
+        return families;
+    }
+
+    private void addRevisionsInUseByClusters(Set<String> inUse) {
+        ListClustersRequest clustersRequest = new ListClustersRequest();
+        do {
+            ListClustersResult clusters = ecsClient.listClusters(clustersRequest);
+            for (String cluster : clusters.getClusterArns()) {
+                addRevisionsInUseByServices(cluster, inUse);
+                addRevisionsInUseByTasks(cluster, inUse);
+            }
+            clustersRequest.setNextToken(clusters.getNextToken());
+        } while (clustersRequest.getNextToken() != null);
+    }
+
+    private void addRevisionsInUseByTasks(String cluster, Set<String> inUse) {
+        // Covers standalone RunTask and scheduled tasks as well as service tasks
+        ListTasksRequest tasksRequest = new ListTasksRequest().withCluster(cluster);
+        do {
+            ListTasksResult tasks = ecsClient.listTasks(tasksRequest);
+            List<String> taskArns = tasks.getTaskArns();
+            for (int i = 0; i < taskArns.size(); i += DESCRIBE_TASKS_BATCH_SIZE) {
+                List<String> batch = taskArns.subList(i, Math.min(i + DESCRIBE_TASKS_BATCH_SIZE, taskArns.size()));
+                for (Task task : ecsClient.describeTasks(
+                    new DescribeTasksRequest().withCluster(cluster).withTasks(batch)).getTasks()) {
+                    inUse.add(task.getTaskDefinitionArn());
+                }
+            }
+            tasksRequest.setNextToken(tasks.getNextToken());
+        } while (tasksRequest.getNextToken() != null);
+    }
+
+    private void addRevisionsInUseByEventTargets(Set<String> inUse, Set<String> latestInUse) {
+        ListEventBusesRequest busesRequest = new ListEventBusesRequest();
+        do {
+            ListEventBusesResult buses = eventsClient.listEventBuses(busesRequest);
+            for (EventBus bus : nullToEmpty(buses.getEventBuses())) {
+                ListRulesRequest rulesRequest = new ListRulesRequest().withEventBusName(bus.getName());
+                do {
+                    ListRulesResult rules = eventsClient.listRules(rulesRequest);
+                    for (Rule rule : nullToEmpty(rules.getRules())) {
+                        addRevisionsInUseByRule(bus.getName(), rule.getName(), inUse, latestInUse);
+                    }
+                    rulesRequest.setNextToken(rules.getNextToken());
+                } while (rulesRequest.getNextToken() != null);
+            }
+            busesRequest.setNextToken(buses.getNextToken());
+        } while (busesRequest.getNextToken() != null);
+    }
+
+    private void addRevisionsInUseByRule(String bus, String rule, Set<String> inUse, Set<String> latestInUse) {
+        ListTargetsByRuleRequest targetsRequest = new ListTargetsByRuleRequest().withEventBusName(bus).withRule(rule);
+        do {
+            ListTargetsByRuleResult targets = eventsClient.listTargetsByRule(targetsRequest);
+            for (Target target : nullToEmpty(targets.getTargets())) {
+                if (target.getEcsParameters() == null || target.getEcsParameters().getTaskDefinitionArn() == null) {
+                    continue;
+                }
+                String taskDefinitionArn = target.getEcsParameters().getTaskDefinitionArn();
+                String familyAndRevision = taskDefinitionArn.substring(taskDefinitionArn.lastIndexOf('/') + 1);
+                if (familyAndRevision.indexOf(':') < 0) {
+                    // Without a revision the target launches the family's latest ACTIVE revision
+                    latestInUse.add(familyAndRevision);
+                } else {
+                    inUse.add(taskDefinitionArn);
+                }
+            }
+            targetsRequest.setNextToken(targets.getNextToken());
+        } while (targetsRequest.getNextToken() != null);
+    }
+
+    // EventBridge results leave lists null when a page is empty
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+
+    private void addRevisionsInUseByServices(String cluster, Set<String> inUse) {
+        ListServicesRequest servicesRequest = new ListServicesRequest().withCluster(cluster);
+        do {
+            ListServicesResult services = ecsClient.listServices(servicesRequest);
+            List<String> serviceArns = services.getServiceArns();
+            for (int i = 0; i < serviceArns.size(); i += DESCRIBE_SERVICES_BATCH_SIZE) {
+                List<String> batch = serviceArns.subList(i,
+                    Math.min(i + DESCRIBE_SERVICES_BATCH_SIZE, serviceArns.size()));
+                for (Service service : ecsClient.describeServices(
+                    new DescribeServicesRequest().withCluster(cluster).withServices(batch)).getServices()) {
+                    inUse.add(service.getTaskDefinition());
+                    for (Deployment deployment : service.getDeployments()) {
+                        inUse.add(deployment.getTaskDefinition());
+                    }
+                }
+            }
+            servicesRequest.setNextToken(services.getNextToken());
+        } while (servicesRequest.getNextToken() != null);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs brokers concurrently on a bounded pool, honoring declared dependencies between them.
+ *
+ * Each broker does its AWS work on a pool thread and may hand back a deferred action (e.g. injecting environment
+ * variables into the container definitions). Deferred actions are applied on the calling thread, in the order the
+ * brokers were added, once every broker has finished - so the resulting push definition does not depend on which
+ * broker happened to finish first.
+ */
+public class BrokerScheduler {
+
+    public static final int DEFAULT_MAX_CONCURRENT_BROKERS = 4;
+
+    private final HermanLogger logger;
+    private final int maxConcurrentBrokers;
+    private final Map<String, ScheduledBroker> brokers = new LinkedHashMap<>();
+
+    public BrokerScheduler(HermanLogger logger, int maxConcurrentBrokers) {
+        this.logger = logger;
+        this.maxConcurrentBrokers = Math.max(1, maxConcurrentBrokers);
+    }
+
+    /**
+     * @param name         unique broker name, used for dependencies and reporting
+     * @param broker       work to run; returns a deferred action to apply after all brokers finish, or null
+     * @param dependencies names of brokers that must complete successfully before this one starts
+     */
+    public BrokerScheduler addBroker(String name, Callable<Runnable> broker, String... dependencies) {
+        if (brokers.containsKey(name)) {
+            throw new IllegalArgumentException("Broker already scheduled: " + name);
+        }
+        for (String dependency : dependencies) {
+            if (!brokers.containsKey(dependency)) {
+                throw new IllegalArgumentException(
+                    String.format("Broker %s depends on %s, which must be added first", name, dependency));
+            }
+        }
+        brokers.put(name, new ScheduledBroker(name, broker, new LinkedHashSet<>(Arrays.asList(dependencies))));
+        return this;
+    }
+
+    public Map<String, Long> run() {
+        if (brokers.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(maxConcurrentBrokers, brokers.size()), new BrokerThreadFactory());
+        CompletionService<ScheduledBroker> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            int inFlight = 0;
+            int settled = 0;
+            while (settled < brokers.size()) {
+                for (ScheduledBroker broker : brokers.values()) {
+                    if (broker.state == BrokerState.WAITING) {
+                        if (anyDependencyIn(broker, BrokerState.FAILED, BrokerState.SKIPPED)) {
+                            broker.state = BrokerState.SKIPPED;
+                            settled++;
+                            logger.addLogEntry("Skipping broker " + broker.name + " - a dependency failed");
+                        } else if (!anyDependencyIn(broker, BrokerState.WAITING, BrokerState.RUNNING)) {
+                            broker.state = BrokerState.RUNNING;
+                            completionService.submit(broker);
+                            inFlight++;
+                        }
+                    }
+                }
+                if (inFlight == 0) {
+                    break;
+                }
+
+                ScheduledBroker finished = completionService.take().get();
+                inFlight--;
+                settled++;
+                logger.addLogEntry(String.format("Broker %s finished in %d ms%s", finished.name,
+                    finished.durationMs, finished.failure != null ? " with errors" : ""));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while running brokers");
+        } catch (ExecutionException e) {
+            // ScheduledBroker.call() captures its own failures, so this indicates a scheduler bug
+            throw new AwsExecException("Unexpected broker scheduling error", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        rethrowFirstFailure();
+        applyDeferredActions();
+        return reportTimings();
+    }
+
+    private boolean anyDependencyIn(ScheduledBroker broker, BrokerState... states) {
+        List<BrokerState> stateList = Arrays.asList(states);
+        for (String dependency : broker.dependencies) {
+            if (stateList.contains(brokers.get(dependency).state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rethrowFirstFailure() {
+        for (ScheduledBroker broker : brokers.values()) {
+            if (broker.failure instanceof RuntimeException) {
+                throw (RuntimeException) broker.failure;
+            } else if (broker.failure != null) {
+                throw new AwsExecException("Broker " + broker.name + " failed", broker.failure);
+            }
+        }
+    }
+
+    private void applyDeferredActions() {
+        for (ScheduledBroker broker : brokers.values()) {
+            if (broker.deferredAction != null) {
+                broker.deferredAction.run();
+            }
+        }
+    }
+
+    private Map<String, Long> reportTimings() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        List<String> lines = new ArrayList<>();
+        for (ScheduledBroker broker : brokers.values()) {
+            timings.put(broker.name, broker.durationMs);
+            lines.add(String.format("... %-12s %8d ms", broker.name, broker.durationMs));
+        }
+        logger.addLogEntry("Broker timings:");
+        lines.forEach(logger::addLogEntry);
+        return timings;
+    }
+
+    private enum BrokerState {
+        WAITING, RUNNING, SUCCEEDED, FAILED, SKIPPED
+    }
+
+    private static class ScheduledBroker implements Callable<ScheduledBroker> {
+
+        private final String name;
+        private final Callable<Runnable> work;
+        private final Set<String> dependencies;
+        private volatile BrokerState state = BrokerState.WAITING;
+        private volatile Runnable deferredAction;
+        private volatile Exception failure;
+        private volatile long durationMs;
+
+        ScheduledBroker(String name, Callable<Runnable> work, Set<String> dependencies) {
+            this.name = name;
+            this.work = work;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public ScheduledBroker call() {
+            long start = System.currentTimeMillis();
+            try {
+                deferredAction = work.call();
+                state = BrokerState.SUCCEEDED;
+            } catch (Exception e) {
+                failure = e;
+                state = BrokerState.FAILED;
+            } finally {
+                durationMs = System.currentTimeMillis() - start;
+            }
+            return this;
+        }
+    }
+
+    private static class BrokerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "herman-broker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
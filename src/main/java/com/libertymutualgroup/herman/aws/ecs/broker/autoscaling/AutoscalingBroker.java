@@ -15,9 +15,7 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.broker.autoscaling;
 
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScaling;
-import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScalingClientBuilder;
 import com.amazonaws.services.applicationautoscaling.model.CustomizedMetricSpecification;
 import com.amazonaws.services.applicationautoscaling.model.MetricDimension;
 import com.amazonaws.services.applicationautoscaling.model.PolicyType;
@@ -27,9 +25,9 @@ import com.amazonaws.services.applicationautoscaling.model.ScalableDimension;
 import com.amazonaws.services.applicationautoscaling.model.ServiceNamespace;
 import com.amazonaws.services.applicationautoscaling.model.TargetTrackingScalingPolicyConfiguration;
 import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
-import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClientBuilder;
 import com.amazonaws.services.identitymanagement.model.GetRoleRequest;
 import com.amazonaws.services.identitymanagement.model.Role;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
@@ -43,13 +41,9 @@ public class AutoscalingBroker {
     }
 
     public void broker(EcsClusterMetadata meta, EcsPushDefinition definition) {
-        AWSApplicationAutoScaling autoScaling = AWSApplicationAutoScalingClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        AmazonIdentityManagement iamClient = AmazonIdentityManagementClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
+        AwsClientRegistry clients = context.getClientRegistry();
+        AWSApplicationAutoScaling autoScaling = clients.getApplicationAutoScalingClient();
+        AmazonIdentityManagement iamClient = clients.getIamClient();
 
         Role ecsRole = iamClient.getRole(new GetRoleRequest().withRoleName(meta.getClusterEcsRole())).getRole();
 
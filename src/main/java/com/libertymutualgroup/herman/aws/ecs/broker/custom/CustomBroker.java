@@ -15,6 +15,7 @@ import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
 import com.libertymutualgroup.herman.aws.ecs.broker.custom.CustomBrokerResponse.Status;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 
 import java.io.IOException;
 import java.util.Base64;
@@ -24,6 +25,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 public class CustomBroker {
+    private static final ObjectMapper MAPPER = ObjectMappers.json().copy()
+        .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+
     private String name;
     private Object definition;
     private EcsPushDefinition pushDefinition;
@@ -50,22 +54,32 @@ public class CustomBroker {
         this.lambdaClient = lambdaClient;
     }
 
+    public String getName() {
+        return name;
+    }
+
     public void runBroker(){
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-        ObjectNode brokerDefinition = mapper.valueToTree(configuration.getDefaults());
+        injectVariables(invokeBroker());
+    }
+
+    /**
+     * Invokes the broker Lambda without touching the push definition, so it can run alongside other brokers. Pass
+     * the response to {@link #injectVariables(CustomBrokerResponse)} to apply its variables.
+     */
+    public CustomBrokerResponse invokeBroker(){
+        ObjectNode brokerDefinition = MAPPER.valueToTree(configuration.getDefaults());
 
         if(brokerDefinition == null){
-            brokerDefinition = mapper.createObjectNode();
+            brokerDefinition = MAPPER.createObjectNode();
         }
 
-        overlay(brokerDefinition, mapper.valueToTree(definition));
+        overlay(brokerDefinition, MAPPER.valueToTree(definition));
         CustomBrokerPayload payload = new CustomBrokerPayload(pushDefinition, clusterMetadata, brokerDefinition);
 
         try{
             InvokeRequest request = new InvokeRequest()
                 .withFunctionName(name)
-                .withPayload(mapper.writeValueAsString(payload))
+                .withPayload(MAPPER.writeValueAsString(payload))
                 .withLogType(LogType.Tail);
 
             logger.addLogEntry("**************************************************************");
@@ -79,7 +93,7 @@ public class CustomBroker {
             logger.addLogEntry("**************************************************************");
 
             logger.addLogEntry("Invoking Lambda " + name);
-            logger.addLogEntry("With payload: " + mapper.writeValueAsString(payload));
+            logger.addLogEntry("With payload: " + MAPPER.writeValueAsString(payload));
             Future<InvokeResult> future = lambdaClient.invokeAsync(request);
             while(!future.isDone()){
                 logger.addLogEntry("Custom broker " + name + " running...");
@@ -90,16 +104,7 @@ public class CustomBroker {
             logger.addLogEntry(new String(Base64.getDecoder().decode(result.getLogResult())));
 
             CustomBrokerResponse response =
-                mapper.readValue(result.getPayload().array(), CustomBrokerResponse.class);
-
-            if(response.getVariablesToInject() != null){
-                for(Entry<String,String> entry: response.getVariablesToInject().entrySet()) {
-                    for(ContainerDefinition containerDef: pushDefinition.getContainerDefinitions()) {
-                        KeyValuePair pair = new KeyValuePair().withName(entry.getKey()).withValue(entry.getValue());
-                        containerDef.getEnvironment().add(pair);
-                    }
-                }
-            }
+                MAPPER.readValue(result.getPayload().array(), CustomBrokerResponse.class);
 
             logger.addLogEntry("Lambda " + name + " finished");
 
@@ -109,10 +114,23 @@ public class CustomBroker {
             else {
                 logger.addErrorLogEntry("Lambda error: " + response.getMessage());
             }
+            return response;
 
         } catch(IOException | InterruptedException | ExecutionException exception){
             logger.addErrorLogEntry("Custom broker failed", exception);
         }
+        return null;
+    }
+
+    public void injectVariables(CustomBrokerResponse response){
+        if(response != null && response.getVariablesToInject() != null){
+            for(Entry<String,String> entry: response.getVariablesToInject().entrySet()) {
+                for(ContainerDefinition containerDef: pushDefinition.getContainerDefinitions()) {
+                    KeyValuePair pair = new KeyValuePair().withName(entry.getKey()).withValue(entry.getValue());
+                    containerDef.getEnvironment().add(pair);
+                }
+            }
+        }
     }
 
     private void overlay(ObjectNode from, JsonNode with) {
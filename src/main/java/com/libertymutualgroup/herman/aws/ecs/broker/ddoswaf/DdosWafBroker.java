@@ -22,8 +22,8 @@ import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import java.nio.charset.Charset;
 import java.util.List;
 import org.apache.commons.lang3.StringUtils;
@@ -49,7 +49,7 @@ public class DdosWafBroker {
                .withAppName(appName)
                .withElbResourceArn(elbArn)
                .withRuleActions(brokerConfiguration.getRuleActions());
-            payload = new ObjectMapper().writeValueAsString(request);
+            payload = ObjectMappers.json().writeValueAsString(request);
         } catch (Exception ex) {
             throw new RuntimeException("Error getting DDoS / WAF Broker payload", ex);
         }
@@ -67,7 +67,7 @@ public class DdosWafBroker {
             String brokerUpdatesJson = new String(invokeResult.getPayload().array(), Charset.forName("UTF-8"));
             List<String> updates;
             try {
-                updates = new ObjectMapper()
+                updates = ObjectMappers.json()
                     .readValue(brokerUpdatesJson, new TypeReference<List<String>>() {});
             } catch (Exception e) {
                 throw new RuntimeException("Unable to parse broker updates from: " + brokerUpdatesJson, e);
@@ -19,12 +19,12 @@ import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.aws.ecs.broker.domain.HermanBrokerStatus;
 import com.libertymutualgroup.herman.aws.ecs.logging.LoggingService;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import org.apache.commons.lang3.StringUtils;
 
 import java.nio.charset.Charset;
@@ -62,7 +62,7 @@ public class NewRelicBroker {
         try {
             NewRelicBrokerRequest newRelicBrokerRequest = getNewRelicBrokerRequest(newRelicConfigurationDefinition,
                 policyName, newRelicApplicationName, newRelicLicenseKey);
-            payload = new ObjectMapper().writeValueAsString(newRelicBrokerRequest);
+            payload = ObjectMappers.json().writeValueAsString(newRelicBrokerRequest);
         } catch (Exception ex) {
             throw new RuntimeException("Error getting NR Broker payload", ex);
         }
@@ -82,7 +82,7 @@ public class NewRelicBroker {
 
             NewRelicBrokerResponse response;
             try {
-                response = new ObjectMapper()
+                response = ObjectMappers.json()
                     .readValue(nrBrokerResponseJson, NewRelicBrokerResponse.class);
             } catch (Exception e) {
                 throw new RuntimeException("Unable to parse NR broker response from: " + nrBrokerResponseJson, e);
@@ -21,7 +21,6 @@ import com.amazonaws.services.rds.AmazonRDS;
 import com.amazonaws.services.rds.model.OptionGroup;
 import com.amazonaws.services.rds.model.Parameter;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libertymutualgroup.herman.aws.ecs.EcsPush;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
@@ -32,6 +31,7 @@ import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.util.DateUtil;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.joda.time.DateTime;
 import org.springframework.util.Assert;
@@ -162,8 +162,7 @@ public class RdsBroker {
         if (rds.getOptionGroupFile() != null) {
             try {
                 String optionGroupJson = fileUtil.findFile(rds.getOptionGroupFile(), false);
-                ObjectMapper objectMapper = new ObjectMapper();
-                OptionGroup optionGroup = objectMapper.readValue(optionGroupJson, new TypeReference<OptionGroup>() {});
+                OptionGroup optionGroup = ObjectMappers.json().readValue(optionGroupJson, new TypeReference<OptionGroup>() {});
                 rdsClient.setOptionGroup(instanceId, optionGroup);
             } catch (Exception ex) {
                 throw new RuntimeException("Error attempting to set DB Options", ex);
@@ -173,9 +172,8 @@ public class RdsBroker {
         if (rds.getParameterGroupFile() != null) {
             try {
                 String parameterGroupJson = fileUtil.findFile(rds.getParameterGroupFile(), false);
-                ObjectMapper objectMapper = new ObjectMapper();
-                objectMapper.addMixIn(Parameter.class, RdsBrokerMixIns.ParameterMixIn.class);
-                List<Parameter> parameters = objectMapper
+                List<Parameter> parameters = ObjectMappers
+                    .withMixIns(true, ObjectMappers.mixIns(RdsBrokerMixIns.ParameterMixIn.class, Parameter.class))
                     .readValue(parameterGroupJson, new TypeReference<List<Parameter>>() {});
                 rdsClient.setDBParameterGroup(instanceId, parameters);
             } catch (Exception ex) {
@@ -15,13 +15,10 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.broker.s3;
 
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.services.kms.AWSKMS;
-import com.amazonaws.services.kms.AWSKMSClientBuilder;
 import com.amazonaws.services.kms.model.DescribeKeyRequest;
 import com.amazonaws.services.kms.model.Tag;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.BucketLoggingConfiguration;
 import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
@@ -45,9 +42,7 @@ import com.amazonaws.services.s3.model.SetBucketPolicyRequest;
 import com.amazonaws.services.s3.model.TopicConfiguration;
 import com.amazonaws.util.IOUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.AwsExecException;
-import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.aws.ecs.broker.kms.KmsBroker;
@@ -57,6 +52,7 @@ import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.s3.S3CreateTaskProperties;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -119,9 +115,7 @@ public class S3Broker {
             policy = fileUtil.findFile(configuration.getPolicyName(), false);
         }
 
-        AmazonS3 client = AmazonS3ClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(BambooCredentialsHandler.getConfiguration()).withRegion(context.getRegion()).build();
+        AmazonS3 client = context.getClientRegistry().getS3Client();
         brokerBucket(client, configuration, tags, policy);
         updateNotificationConfiguration(configuration, client);
 
@@ -134,9 +128,7 @@ public class S3Broker {
     }
 
     private String brokerKms(S3InjectConfiguration configuration, Map<String, String> tagMap) {
-        AWSKMS kmsClient = AWSKMSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(BambooCredentialsHandler.getConfiguration()).withRegion(context.getRegion()).build();
+        AWSKMS kmsClient = context.getClientRegistry().getKmsClient();
 
         KmsBroker kmsBroker = new KmsBroker(this.buildLogger, this.handler, this.context.getFileUtil(), this.taskProperties,
             this.context.getSessionCredentials(), null, this.context.getRegion());
@@ -357,7 +349,7 @@ public class S3Broker {
                 throw new AwsExecException("No S3 template provided!");
             }
 
-            ObjectMapper mapper = isJson ? new ObjectMapper() : new ObjectMapper(new YAMLFactory());
+            ObjectMapper mapper = ObjectMappers.of(isJson);
             definition = mapper.readValue(handler.mapInProperties(template), S3InjectConfiguration.class);
         } catch (FileNotFoundException e1) {
             LOGGER.debug("No template found: " + S3_TEMPLATE_JSON, e1);
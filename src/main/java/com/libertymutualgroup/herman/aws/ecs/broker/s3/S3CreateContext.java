@@ -15,8 +15,10 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.broker.s3;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
@@ -28,6 +30,7 @@ public class S3CreateContext {
     private HermanLogger logger;
     private PropertyHandler propertyHandler;
     private AWSCredentials sessionCredentials;
+    private ClientConfiguration awsClientConfig;
     private Regions region;
     private String rootPath;
     private S3CreateTaskProperties taskProperties;
@@ -37,6 +40,7 @@ public class S3CreateContext {
         this.logger = pushContext.getLogger();
         this.propertyHandler = pushContext.getPropertyHandler();
         this.sessionCredentials = pushContext.getSessionCredentials();
+        this.awsClientConfig = pushContext.getAwsClientConfig();
         this.region = pushContext.getRegion();
         this.rootPath = pushContext.getRootPath();
         this.taskProperties = new S3CreateTaskProperties()
@@ -69,6 +73,18 @@ public class S3CreateContext {
         this.sessionCredentials = sessionCredentials;
     }
 
+    public ClientConfiguration getAwsClientConfig() {
+        return awsClientConfig;
+    }
+
+    public void setAwsClientConfig(ClientConfiguration awsClientConfig) {
+        this.awsClientConfig = awsClientConfig;
+    }
+
+    public AwsClientRegistry getClientRegistry() {
+        return AwsClientRegistry.getInstance(sessionCredentials, region, awsClientConfig);
+    }
+
     public Regions getRegion() {
         return region;
     }
@@ -117,6 +133,11 @@ public class S3CreateContext {
         return this;
     }
 
+    public S3CreateContext withAwsClientConfig(final ClientConfiguration awsClientConfig) {
+        this.awsClientConfig = awsClientConfig;
+        return this;
+    }
+
     public S3CreateContext withRegion(final Regions region) {
         this.region = region;
         return this;
@@ -143,6 +164,7 @@ public class S3CreateContext {
         return "S3CreateContext{" +
             "logger=" + logger +
             ", propertyHandler=" + propertyHandler +
+            ", awsClientConfig=" + awsClientConfig +
             ", region=" + region +
             ", rootPath='" + rootPath + '\'' +
             ", taskProperties=" + taskProperties +
@@ -5,7 +5,6 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.cluster;
 
-import com.amazonaws.services.autoscaling.model.Instance;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.model.DescribeTagsRequest;
 import com.amazonaws.services.ec2.model.DescribeTagsResult;
@@ -20,15 +19,23 @@ import com.amazonaws.services.ecs.model.ListContainerInstancesRequest;
 import com.amazonaws.services.ecs.model.ListContainerInstancesResult;
 import com.amazonaws.services.ecs.model.PutAttributesRequest;
 import com.amazonaws.services.ecs.model.TargetType;
-import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+import com.google.common.collect.Lists;
+import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class ContainerInstanceHandler {
+    static final int MAX_DESCRIBE_BATCH = 100;
+    static final int MAX_ATTRIBUTES_PER_PUT = 10;
+    private static final int MAX_PARALLEL_DESCRIBES = 4;
+
     private AmazonECS ecsClient;
     private AmazonEC2 ec2Client;
     private HermanLogger logger;
@@ -39,18 +46,56 @@ public class ContainerInstanceHandler {
         this.logger = logger;
     }
 
+    /**
+     * @return the ARNs of every container instance in the cluster, across all pages
+     */
+    public List<String> getContainerInstanceArns(String cluster) {
+        List<String> arns = new ArrayList<>();
+        String nextToken = null;
+        do {
+            ListContainerInstancesResult listResult = this.ecsClient.listContainerInstances(
+                new ListContainerInstancesRequest()
+                    .withCluster(cluster)
+                    .withNextToken(nextToken));
+            arns.addAll(listResult.getContainerInstanceArns());
+            nextToken = listResult.getNextToken();
+        } while (nextToken != null);
+        return arns;
+    }
+
     public List<ContainerInstance> getContainerInstances(String cluster) {
-        ListContainerInstancesRequest listRequest = new ListContainerInstancesRequest()
-            .withCluster(cluster);
-        ListContainerInstancesResult listResult = this.ecsClient.listContainerInstances(listRequest);
-        if (listResult.getContainerInstanceArns().isEmpty()) {
+        List<String> arns = getContainerInstanceArns(cluster);
+        if (arns.isEmpty()) {
             return null;
         }
-        DescribeContainerInstancesRequest descrRequest = new DescribeContainerInstancesRequest()
-            .withCluster(cluster)
-            .withContainerInstances(listResult.getContainerInstanceArns());
-        DescribeContainerInstancesResult descrResult = this.ecsClient.describeContainerInstances(descrRequest);
-        return descrResult.getContainerInstances();
+
+        List<List<String>> batches = Lists.partition(arns, MAX_DESCRIBE_BATCH);
+        if (batches.size() == 1) {
+            return describeContainerInstances(cluster, arns);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(batches.size(), MAX_PARALLEL_DESCRIBES));
+        try {
+            List<Future<List<ContainerInstance>>> described = new ArrayList<>();
+            for (List<String> batch: batches) {
+                described.add(executor.submit(() -> describeContainerInstances(cluster, batch)));
+            }
+            List<ContainerInstance> instances = new ArrayList<>(arns.size());
+            for (Future<List<ContainerInstance>> batch: described) {
+                instances.addAll(batch.get());
+            }
+            return instances;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while describing container instances", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AwsExecException("Unable to describe container instances", e);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     public void setAttributeOnCluster(String cluster, String key, String value) {
@@ -60,27 +105,17 @@ public class ContainerInstanceHandler {
             this.logger.addLogEntry("... No container instances found in cluster, skipping attribute set");
         }
         else {
-            for (ContainerInstance containerInstance : containerInstances) {
-                this.setAttribute(cluster, containerInstance.getContainerInstanceArn(), key, value);
-            }
+            List<Attribute> attributes = containerInstances.stream()
+                .map(containerInstance -> new Attribute()
+                    .withName(key)
+                    .withValue(value)
+                    .withTargetType(TargetType.ContainerInstance)
+                    .withTargetId(containerInstance.getContainerInstanceArn()))
+                .collect(Collectors.toList());
+            putAttributes(cluster, attributes);
         }
     }
 
-    public Set<String> getUnregisteredInstanceIds(String cluster, String asgName, AutoscalingGroupHandler asgHandler) {
-        List<String> newAsgInstanceIds = asgHandler.getAsgInstancesInService(asgName).stream()
-            .map(Instance::getInstanceId)
-            .collect(Collectors.toList());
-        List<ContainerInstance> clusterInstances = getContainerInstances(cluster);
-        List<String> newContainerInstanceIds = clusterInstances.stream()
-            .filter(instance -> (!"pre-drain".equals(getInstanceAttributeValue(instance, "state"))))
-            .map(ContainerInstance::getEc2InstanceId)
-            .collect(Collectors.toList());
-
-        return newAsgInstanceIds.stream()
-            .filter(newInstance -> !newContainerInstanceIds.contains(newInstance))
-            .collect(Collectors.toSet());
-    }
-
     public List<TagDescription> getContainerInstanceTags(ContainerInstance containerInstance) {
         DescribeTagsResult tagsResult = this.ec2Client.describeTags(new DescribeTagsRequest()
             .withFilters(
@@ -105,25 +140,20 @@ public class ContainerInstanceHandler {
         return tags;
     }
 
-
-    private String getInstanceAttributeValue(ContainerInstance instance, String key) {
-        for (Attribute attribute : instance.getAttributes()) {
-            if (key.equals(attribute.getName())) {
-                return attribute.getValue();
-            }
-        }
-        return null;
+    private List<ContainerInstance> describeContainerInstances(String cluster, List<String> arns) {
+        DescribeContainerInstancesRequest descrRequest = new DescribeContainerInstancesRequest()
+            .withCluster(cluster)
+            .withContainerInstances(arns);
+        DescribeContainerInstancesResult descrResult = this.ecsClient.describeContainerInstances(descrRequest);
+        return descrResult.getContainerInstances();
     }
 
-    private void setAttribute(String cluster, String containerInstanceId, String key, String value) {
-        Attribute attribute = new Attribute()
-            .withName(key)
-            .withValue(value)
-            .withTargetType(TargetType.ContainerInstance)
-            .withTargetId(containerInstanceId);
-        PutAttributesRequest putAttributesRequest = new PutAttributesRequest()
-            .withAttributes(attribute)
-            .withCluster(cluster);
-        this.ecsClient.putAttributes(putAttributesRequest);
+    private void putAttributes(String cluster, List<Attribute> attributes) {
+        for (List<Attribute> batch: Lists.partition(attributes, MAX_ATTRIBUTES_PER_PUT)) {
+            PutAttributesRequest putAttributesRequest = new PutAttributesRequest()
+                .withAttributes(batch)
+                .withCluster(cluster);
+            this.ecsClient.putAttributes(putAttributesRequest);
+        }
     }
 }
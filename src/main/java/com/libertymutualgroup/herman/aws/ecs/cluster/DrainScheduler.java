@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.ContainerInstanceStatus;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.Resource;
+import com.amazonaws.services.ecs.model.UpdateContainerInstancesStateRequest;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Drains old container instances through a sliding window: the next instance starts draining as soon as any
+ * draining instance is empty, as long as the new instances have room for its tasks. maxConcurrent caps the window;
+ * with no new instances to measure, the cap alone applies.
+ */
+class DrainScheduler {
+
+    private static final int MAX_DESCRIBE_BATCH = 100;
+
+    private final AmazonECS ecsClient;
+    private final HermanLogger logger;
+    private final String cluster;
+    private final int maxConcurrent;
+    private final long pollIntervalMs;
+    private final long instanceTimeoutMs;
+    private final LongConsumer sleeper;
+    private final LongSupplier clock;
+
+    DrainScheduler(AmazonECS ecsClient, HermanLogger logger, String cluster, int maxConcurrent, long pollIntervalMs,
+        long instanceTimeoutMs) {
+        this(ecsClient, logger, cluster, maxConcurrent, pollIntervalMs, instanceTimeoutMs, null,
+            System::currentTimeMillis);
+    }
+
+    DrainScheduler(AmazonECS ecsClient, HermanLogger logger, String cluster, int maxConcurrent, long pollIntervalMs,
+        long instanceTimeoutMs, LongConsumer sleeper, LongSupplier clock) {
+        this.ecsClient = ecsClient;
+        this.logger = logger;
+        this.cluster = cluster;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.pollIntervalMs = pollIntervalMs;
+        this.instanceTimeoutMs = instanceTimeoutMs;
+        this.sleeper = sleeper != null ? sleeper : this::sleep;
+        this.clock = clock;
+    }
+
+    /**
+     * @return how long each old instance took to drain, in milliseconds, by container instance ARN
+     */
+    Map<String, Long> drain(List<String> oldArns, List<String> newArns) {
+        Map<String, ContainerInstance> instances = describe(oldArns);
+        Map<String, Resources> used = new HashMap<>();
+        for (String arn: oldArns) {
+            used.put(arn, Resources.used(instances.get(arn)));
+        }
+        Resources spare = newArns.isEmpty() ? null : spareOn(describe(newArns), newArns);
+
+        Deque<String> queue = new ArrayDeque<>(oldArns);
+        Map<String, Long> draining = new LinkedHashMap<>();
+        Map<String, Long> durations = new LinkedHashMap<>();
+        long started = clock.getAsLong();
+        while (!queue.isEmpty() || !draining.isEmpty()) {
+            List<String> admitted = admit(queue, draining.keySet(), used, spare);
+            if (!admitted.isEmpty()) {
+                setDraining(admitted);
+                long now = clock.getAsLong();
+                admitted.forEach(arn -> draining.put(arn, now));
+                logger.addLogEntry("... " + draining.size() + " of max " + maxConcurrent + " instances draining, "
+                    + queue.size() + " queued");
+            }
+
+            sleeper.accept(pollIntervalMs);
+
+            Set<String> toDescribe = new LinkedHashSet<>(draining.keySet());
+            toDescribe.addAll(newArns);
+            instances = describe(new ArrayList<>(toDescribe));
+            long now = clock.getAsLong();
+            for (Iterator<Map.Entry<String, Long>> it = draining.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Long> entry = it.next();
+                String arn = entry.getKey();
+                long elapsed = now - entry.getValue();
+                ContainerInstance instance = instances.get(arn);
+                if (instance == null || instance.getRunningTasksCount() == 0) {
+                    logger.addLogEntry("... Drained " + label(arn, instance) + " in " + elapsed / 1000 + "s");
+                    durations.put(arn, elapsed);
+                    it.remove();
+                } else if (elapsed >= instanceTimeoutMs) {
+                    logger.addErrorLogEntry("Unable to drain " + label(arn, instance)
+                        + "! Manual cleanup of old stack may be required.");
+                    durations.put(arn, elapsed);
+                    it.remove();
+                } else {
+                    logger.addLogEntry("..." + arn + " - " + instance.getEc2InstanceId() + " - Tasks: "
+                        + instance.getRunningTasksCount() + " - DRAINING");
+                    used.put(arn, Resources.used(instance));
+                }
+            }
+            if (spare != null) {
+                spare = spareOn(instances, newArns);
+            }
+        }
+
+        logger.addLogEntry("... Drained " + durations.size() + " instances in "
+            + (clock.getAsLong() - started) / 1000 + "s");
+        durations.values().stream().mapToLong(Long::longValue).max().ifPresent(slowest ->
+            logger.addLogEntry("... Slowest instance drain: " + slowest / 1000 + "s"));
+        return durations;
+    }
+
+    private List<String> admit(Deque<String> queue, Set<String> draining, Map<String, Resources> used,
+        Resources spare) {
+        // capacity still needed by tasks that have not moved off the instances already draining
+        Resources headroom = spare;
+        if (headroom != null) {
+            for (String arn: draining) {
+                headroom = headroom.minus(used.get(arn));
+            }
+        }
+
+        List<String> admitted = new ArrayList<>();
+        while (!queue.isEmpty() && draining.size() + admitted.size() < maxConcurrent) {
+            Resources next = used.get(queue.peek());
+            boolean idle = draining.isEmpty() && admitted.isEmpty();
+            if (headroom != null && !idle && !headroom.fits(next)) {
+                break;
+            }
+            if (headroom != null) {
+                headroom = headroom.minus(next);
+            }
+            admitted.add(queue.poll());
+        }
+        return admitted;
+    }
+
+    private void setDraining(List<String> arns) {
+        for (String arn: arns) {
+            logger.addLogEntry("... Setting instance " + arn + " status to " + ContainerInstanceStatus.DRAINING);
+        }
+        ecsClient.updateContainerInstancesState(new UpdateContainerInstancesStateRequest()
+            .withCluster(cluster)
+            .withContainerInstances(arns)
+            .withStatus(ContainerInstanceStatus.DRAINING));
+    }
+
+    private Map<String, ContainerInstance> describe(List<String> arns) {
+        Map<String, ContainerInstance> instances = new HashMap<>();
+        for (int from = 0; from < arns.size(); from += MAX_DESCRIBE_BATCH) {
+            List<String> batch = arns.subList(from, Math.min(arns.size(), from + MAX_DESCRIBE_BATCH));
+            for (ContainerInstance instance: ecsClient.describeContainerInstances(new DescribeContainerInstancesRequest()
+                .withCluster(cluster)
+                .withContainerInstances(batch)).getContainerInstances()) {
+                instances.put(instance.getContainerInstanceArn(), instance);
+            }
+        }
+        return instances;
+    }
+
+    private static Resources spareOn(Map<String, ContainerInstance> instances, List<String> arns) {
+        Resources spare = new Resources(0, 0);
+        for (String arn: arns) {
+            ContainerInstance instance = instances.get(arn);
+            if (instance != null) {
+                spare = spare.plus(Resources.of(instance.getRemainingResources()));
+            }
+        }
+        return spare;
+    }
+
+    private static String label(String arn, ContainerInstance instance) {
+        return instance == null ? arn : arn + " - " + instance.getEc2InstanceId();
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while waiting for instances to drain");
+        }
+    }
+
+    private static final class Resources {
+        private final long cpu;
+        private final long memory;
+
+        Resources(long cpu, long memory) {
+            this.cpu = cpu;
+            this.memory = memory;
+        }
+
+        static Resources of(List<Resource> resources) {
+            long cpu = 0;
+            long memory = 0;
+            if (resources != null) {
+                for (Resource resource: resources) {
+                    if (resource.getIntegerValue() == null) {
+                        continue;
+                    }
+                    if ("CPU".equals(resource.getName())) {
+                        cpu = resource.getIntegerValue();
+                    } else if ("MEMORY".equals(resource.getName())) {
+                        memory = resource.getIntegerValue();
+                    }
+                }
+            }
+            return new Resources(cpu, memory);
+        }
+
+        static Resources used(ContainerInstance instance) {
+            if (instance == null) {
+                return new Resources(0, 0);
+            }
+            return Resources.of(instance.getRegisteredResources())
+                .minus(Resources.of(instance.getRemainingResources()));
+        }
+
+        Resources plus(Resources other) {
+            return new Resources(cpu + other.cpu, memory + other.memory);
+        }
+
+        Resources minus(Resources other) {
+            return new Resources(cpu - other.cpu, memory - other.memory);
+        }
+
+        boolean fits(Resources other) {
+            return other.cpu <= cpu && other.memory <= memory;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.util.BinaryUtils;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.ObjectMappers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches introspected cluster metadata in memory and on disk. Entries are keyed by the cluster stack and its last
+ * update time, so any stack update invalidates them; on-disk entries also expire after a day because the VPC and
+ * subnet lookups are not covered by the stack's update time. Cache failures are logged and never fail a push.
+ *
+ * Cluster metadata includes license keys and the account's network layout, so the cache directory and every file in
+ * it are created readable by the current user only, before anything is written to them.
+ */
+public class EcsClusterIntrospectionCache {
+
+    static final long DEFAULT_MAX_AGE_MS = TimeUnit.HOURS.toMillis(24);
+    private static final String CACHE_DIR = System.getProperty("user.home") + File.separator + ".herman"
+        + File.separator + "cache" + File.separator + "cluster-introspection";
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final String OWNER_ONLY_DIRECTORY = "rwx------";
+    private static final String OWNER_ONLY_FILE = "rw-------";
+    // Entries written by other Herman versions may carry fields this one doesn't know
+    private static final ObjectReader ENTRY_READER = ObjectMappers.json().readerFor(CacheEntry.class)
+        .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private static final EcsClusterIntrospectionCache DEFAULT = new EcsClusterIntrospectionCache(new File(CACHE_DIR),
+        DEFAULT_MAX_AGE_MS);
+
+    private final ConcurrentHashMap<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+    private final File directory;
+    private final long maxAgeMs;
+
+    /**
+     * @param directory on-disk location, or null to only cache in memory
+     */
+    public EcsClusterIntrospectionCache(File directory, long maxAgeMs) {
+        this.directory = directory;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public static EcsClusterIntrospectionCache getDefault() {
+        return DEFAULT;
+    }
+
+    public Object getLock(String key) {
+        return locks.computeIfAbsent(key, k -> new Object());
+    }
+
+    public EcsClusterMetadata get(String key, HermanLogger logger) {
+        CacheEntry entry = entries.get(key);
+        if (entry == null) {
+            entry = read(key, logger);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        if (entry == null || System.currentTimeMillis() - entry.getCachedAt() > maxAgeMs) {
+            return null;
+        }
+        // Hand out a copy so callers can't alter the cached metadata
+        return ObjectMappers.json().convertValue(entry.getMetadata(), EcsClusterMetadata.class);
+    }
+
+    public void put(String key, EcsClusterMetadata metadata, HermanLogger logger) {
+        CacheEntry entry = new CacheEntry();
+        entry.setKey(key);
+        entry.setCachedAt(System.currentTimeMillis());
+        entry.setMetadata(ObjectMappers.json().convertValue(metadata, EcsClusterMetadata.class));
+        entries.put(key, entry);
+        write(entry, logger);
+    }
+
+    private CacheEntry read(String key, HermanLogger logger) {
+        File file = getFile(key);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        try {
+            CacheEntry entry = ENTRY_READER.readValue(file);
+            return key.equals(entry.getKey()) ? entry : null;
+        } catch (IOException e) {
+            logger.addLogEntry("Ignoring unreadable cluster introspection cache " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(CacheEntry entry, HermanLogger logger) {
+        File file = getFile(entry.getKey());
+        if (file == null) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            Path dir = createPrivateDirectory(directory.toPath());
+            tmp = createPrivateFile(dir, file.getName());
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                ObjectMappers.json().writeValue(out, entry);
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.addLogEntry("Unable to write cluster introspection cache: " + e.getMessage());
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static Path createPrivateDirectory(Path dir) throws IOException {
+        if (POSIX) {
+            Files.createDirectories(dir,
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(OWNER_ONLY_DIRECTORY)));
+            // Also tightens a directory left behind by earlier versions
+            Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString(OWNER_ONLY_DIRECTORY));
+        } else {
+            Files.createDirectories(dir);
+            restrictToOwner(dir.toFile());
+        }
+        return dir;
+    }
+
+    private static Path createPrivateFile(Path dir, String prefix) throws IOException {
+        if (POSIX) {
+            return Files.createTempFile(dir, prefix, ".tmp",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(OWNER_ONLY_FILE)));
+        }
+        Path tmp = Files.createTempFile(dir, prefix, ".tmp");
+        restrictToOwner(tmp.toFile());
+        return tmp;
+    }
+
+    private static void restrictToOwner(File file) throws IOException {
+        boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+            && file.setWritable(false, false) && file.setWritable(true, true);
+        if (!restricted) {
+            throw new IOException("unable to restrict access to " + file);
+        }
+    }
+
+    private static void deleteQuietly(Path tmp) {
+        if (tmp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            // The temp file is unused once the write failed or the move succeeded
+        }
+    }
+
+    private File getFile(String key) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return new File(directory, BinaryUtils.toHex(digest) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    public static class CacheEntry {
+
+        private String key;
+        private long cachedAt;
+        private EcsClusterMetadata metadata;
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public long getCachedAt() {
+            return cachedAt;
+        }
+
+        public void setCachedAt(long cachedAt) {
+            this.cachedAt = cachedAt;
+        }
+
+        public EcsClusterMetadata getMetadata() {
+            return metadata;
+        }
+
+        public void setMetadata(EcsClusterMetadata metadata) {
+            this.metadata = metadata;
+        }
+    }
+}
@@ -23,49 +23,75 @@ import com.amazonaws.services.cloudformation.model.DescribeStackResourcesResult;
 import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
 import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.Stack;
 import com.amazonaws.services.cloudformation.model.StackResource;
 import com.amazonaws.services.cloudformation.model.Tag;
 import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
 import com.amazonaws.services.ec2.model.DescribeSubnetsResult;
+import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
 import com.amazonaws.services.ec2.model.DescribeVpcsResult;
+import com.amazonaws.services.ec2.model.Filter;
 import com.amazonaws.services.ec2.model.Subnet;
 import com.amazonaws.services.ec2.model.Vpc;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 
 public class EcsClusterIntrospector {
 
+    private static final String[] VPC_NAME_IDS = {"sandbox", "dev", "nonprod", "prod"};
+
     private AmazonCloudFormation cftClient;
     private AmazonEC2 ec2Client;
     private HermanLogger logger;
+    private EcsClusterIntrospectionCache cache;
 
     public EcsClusterIntrospector(AmazonCloudFormation cftClient, AmazonEC2 ec2Client, HermanLogger logger) {
+        this(cftClient, ec2Client, logger, EcsClusterIntrospectionCache.getDefault());
+    }
+
+    public EcsClusterIntrospector(AmazonCloudFormation cftClient, AmazonEC2 ec2Client, HermanLogger logger,
+        EcsClusterIntrospectionCache cache) {
         this.cftClient = cftClient;
         this.ec2Client = ec2Client;
         this.logger = logger;
+        this.cache = cache;
     }
 
     public EcsClusterMetadata introspect(String name, Regions region) {
-        EcsClusterMetadata ecsClusterMetadata = new EcsClusterMetadata();
-
-        String stackName = name;
+        Stack stack = findStack(name);
+        if (stack == null) {
+            stack = findStack(name + "-shared");
+        }
+        if (stack == null) {
+            throw new AwsExecException("Unable to find cluster to introspect from stack: " + name);
+        }
 
-        DescribeStackResourcesRequest req = new DescribeStackResourcesRequest()
-            .withStackName(stackName);
-        DescribeStackResourcesResult clusterStackResult;
-        try {
-            clusterStackResult = cftClient.describeStackResources(req);
+        String cacheKey = getCacheKey(stack, region);
+        // Concurrent pushes to one cluster wait for the first introspection instead of repeating it
+        synchronized (cache.getLock(cacheKey)) {
+            return introspect(name, stack, cacheKey);
         }
-        catch (AmazonCloudFormationException ex) {
-            stackName += "-shared";
-            req.setStackName(stackName);
-            clusterStackResult = cftClient.describeStackResources(req);
+    }
+
+    private EcsClusterMetadata introspect(String name, Stack stack, String cacheKey) {
+        EcsClusterMetadata cached = cache.get(cacheKey, logger);
+        if (cached != null) {
+            logger.addLogEntry("Using cached introspection of " + stack.getStackName() + ":");
+            logger.addLogEntry(cached.toString());
+            return cached;
         }
 
+        EcsClusterMetadata ecsClusterMetadata = new EcsClusterMetadata();
+
+        DescribeStackResourcesResult clusterStackResult = cftClient.describeStackResources(
+            new DescribeStackResourcesRequest().withStackName(stack.getStackName()));
         if (clusterStackResult == null) {
             throw new AwsExecException("Unable to find cluster to introspect from stack: " + name);
         }
@@ -74,19 +100,16 @@ public class EcsClusterIntrospector {
             updateClusterMetadataWithStackResourceValue(ecsClusterMetadata, r);
         }
 
-        DescribeStacksResult stackResult = cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName));
-        List<Tag> clusterCftStackTags = stackResult.getStacks().get(0).getTags();
+        List<Tag> clusterCftStackTags = stack.getTags();
         ecsClusterMetadata.setClusterCftStackTags(clusterCftStackTags);
 
-        Iterator<Parameter> stackParams = stackResult.getStacks().get(0).getParameters().iterator();
+        Iterator<Parameter> stackParams = stack.getParameters().iterator();
         while (stackParams.hasNext()) {
             updateClusterMetadataWithStackParamValue(ecsClusterMetadata, stackParams);
         }
 
-        DescribeVpcsResult res = ec2Client.describeVpcs();
-
         Vpc vpc = null;
-        for (Vpc v: res.getVpcs()) {
+        for (Vpc v: findCandidateVpcs()) {
             if (isProperVpc(v)) {
                 vpc = v;
             }
@@ -98,9 +121,7 @@ public class EcsClusterIntrospector {
         List<String> elbSubnets = ecsClusterMetadata.getElbSubnets();
         List<String> publicSubnets = ecsClusterMetadata.getPublicSubnets();
 
-        DescribeSubnetsResult sub = ec2Client.describeSubnets();
-
-        for (Subnet net: sub.getSubnets()) {
+        for (Subnet net: findSubnets(vpc)) {
             if (subnetMatches(vpc, net)) {
                 for (com.amazonaws.services.ec2.model.Tag t: net.getTags()) {
                     if ("Name".equals(t.getKey())) {
@@ -114,11 +135,65 @@ public class EcsClusterIntrospector {
             }
         }
 
+        cache.put(cacheKey, ecsClusterMetadata, logger);
+
         logger.addLogEntry("Introspection complete:");
         logger.addLogEntry(ecsClusterMetadata.toString());
         return ecsClusterMetadata;
     }
 
+    private Stack findStack(String stackName) {
+        DescribeStacksResult stackResult;
+        try {
+            stackResult = cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName));
+        } catch (AmazonCloudFormationException ex) {
+            return null;
+        }
+        if (stackResult == null || stackResult.getStacks().isEmpty()) {
+            return null;
+        }
+        Stack stack = stackResult.getStacks().get(0);
+        if (stack.getStackName() == null) {
+            stack.setStackName(stackName);
+        }
+        return stack;
+    }
+
+    private String getCacheKey(Stack stack, Regions region) {
+        // The stack ID is an ARN, so it already distinguishes accounts, regions and re-created stacks
+        String stackId = stack.getStackId() != null ? stack.getStackId() : region + ":" + stack.getStackName();
+        Date lastUpdated = stack.getLastUpdatedTime() != null ? stack.getLastUpdatedTime() : stack.getCreationTime();
+        return stackId + "@" + (lastUpdated != null ? lastUpdated.getTime() : 0);
+    }
+
+    private List<Vpc> findCandidateVpcs() {
+        List<String> namePatterns = new ArrayList<>();
+        for (String id: VPC_NAME_IDS) {
+            namePatterns.add("*" + id + "*");
+        }
+        List<Vpc> vpcs = new ArrayList<>();
+        DescribeVpcsRequest request = new DescribeVpcsRequest()
+            .withFilters(new Filter().withName("tag:Name").withValues(namePatterns));
+        do {
+            DescribeVpcsResult res = ec2Client.describeVpcs(request);
+            vpcs.addAll(res.getVpcs());
+            request.setNextToken(res.getNextToken());
+        } while (request.getNextToken() != null);
+        return vpcs;
+    }
+
+    private List<Subnet> findSubnets(Vpc vpc) {
+        List<Subnet> subnets = new ArrayList<>();
+        DescribeSubnetsRequest request = new DescribeSubnetsRequest()
+            .withFilters(new Filter().withName("vpc-id").withValues(vpc.getVpcId()));
+        do {
+            DescribeSubnetsResult sub = ec2Client.describeSubnets(request);
+            subnets.addAll(sub.getSubnets());
+            request.setNextToken(sub.getNextToken());
+        } while (request.getNextToken() != null);
+        return subnets;
+    }
+
     private void updateClusterMetadataWithStackParamValue(EcsClusterMetadata ecsClusterMetadata,
         Iterator<Parameter> stackParams) {
         Parameter p = stackParams.next();
@@ -161,11 +236,9 @@ public class EcsClusterIntrospector {
     }
 
     private boolean isProperVpc(Vpc vpc) {
-        String[] defaultIds = {"sandbox", "dev", "nonprod", "prod"};
-
         for (com.amazonaws.services.ec2.model.Tag t: vpc.getTags()) {
             if ("Name".equals(t.getKey())
-                    && Arrays.asList(defaultIds).stream()
+                    && Arrays.asList(VPC_NAME_IDS).stream()
                         .filter(defaultId -> t.getValue().contains(defaultId)).findAny().isPresent()) {
                 return true;
             }
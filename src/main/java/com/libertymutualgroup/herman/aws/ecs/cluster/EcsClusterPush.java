@@ -15,12 +15,7 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.cluster;
 
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
-import com.amazonaws.services.autoscaling.AmazonAutoScaling;
-import com.amazonaws.services.autoscaling.AmazonAutoScalingClientBuilder;
-import com.amazonaws.services.autoscaling.model.Instance;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
-import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
 import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
 import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStackResourcesRequest;
@@ -31,10 +26,8 @@ import com.amazonaws.services.cloudformation.model.Parameter;
 import com.amazonaws.services.cloudformation.model.Stack;
 import com.amazonaws.services.cloudformation.model.StackResource;
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.TagDescription;
 import com.amazonaws.services.ecs.AmazonECS;
-import com.amazonaws.services.ecs.AmazonECSClientBuilder;
 import com.amazonaws.services.ecs.model.Cluster;
 import com.amazonaws.services.ecs.model.ContainerInstance;
 import com.amazonaws.services.ecs.model.ContainerInstanceStatus;
@@ -43,20 +36,18 @@ import com.amazonaws.services.ecs.model.DescribeClustersRequest;
 import com.amazonaws.services.ecs.model.DescribeClustersResult;
 import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
 import com.amazonaws.services.ecs.model.DescribeContainerInstancesResult;
-import com.amazonaws.services.ecs.model.ListContainerInstancesRequest;
-import com.amazonaws.services.ecs.model.ListContainerInstancesResult;
 import com.amazonaws.services.ecs.model.Tag;
 import com.amazonaws.services.ecs.model.TagResourceRequest;
 import com.amazonaws.services.ecs.model.UntagResourceRequest;
 import com.amazonaws.services.ecs.model.UpdateContainerInstancesStateRequest;
 import com.amazonaws.util.StringUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
-import com.google.common.collect.Lists;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
 import com.libertymutualgroup.herman.aws.cft.CftPush;
 import com.libertymutualgroup.herman.aws.cft.CftPushContext;
+import com.libertymutualgroup.herman.aws.cft.CftTemplateParameters;
 import com.libertymutualgroup.herman.aws.cft.StackUtils;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
@@ -65,18 +56,16 @@ import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.cft.CftPushPropertyFactory;
 import com.libertymutualgroup.herman.task.cft.CftPushTaskProperties;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import com.libertymutualgroup.herman.util.TemplateFormat;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.OptionalInt;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -92,6 +81,7 @@ public class EcsClusterPush {
     private AutoscalingGroupHandler asgHandler;
     private ContainerInstanceHandler containerInstanceHandler;
     private StackUtils stackUtils;
+    private InstanceStackIndex instanceStacks;
     private HashMap<String, String> cftParams = new HashMap<>();
 
     private final String TEMPLATE_NAME = "template";
@@ -101,34 +91,25 @@ public class EcsClusterPush {
         this.context = context;
         this.logger = context.getLogger();
 
-        this.cfnClient = AmazonCloudFormationClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.ecsClient = AmazonECSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.ec2Client = AmazonEC2ClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
+        AwsClientRegistry clients = context.getClientRegistry();
+        clients.getRateLimiter().configure(context.getTaskProperties().getApiRateLimits());
+        this.cfnClient = clients.getCloudFormationClient();
+        this.ecsClient = clients.getEcsClient();
+        this.ec2Client = clients.getEc2Client();
 
         this.propertyHandler = context.getPropertyHandler();
 
         this.fileUtil = new FileUtil(context.getRootPath(), this.logger);
         this.definition = loadConfiguration();
 
-        AmazonAutoScaling asgClient = AmazonAutoScalingClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.asgHandler = new AutoscalingGroupHandler(asgClient, this.logger);
+        this.asgHandler = new AutoscalingGroupHandler(clients.getAutoScalingClient(), this.logger);
         this.containerInstanceHandler = new ContainerInstanceHandler(this.ecsClient, this.ec2Client, this.logger);
         this.stackUtils = new StackUtils(this.cfnClient, this.logger);
     }
 
     public void pushCluster() {
         this.definition.setClusterName(this.definition.getClusterName() + "-" + this.context.getRegion().getName());
+        this.instanceStacks = new InstanceStackIndex(this.cfnClient, this.definition.getClusterName());
         EcsClusterDeployState existingStackState = findExistingStack(this.definition.getClusterName());
         String sharedStackTemplate = loadStackFile(this.definition.getSharedCftName());
         String instanceStackTemplate = loadStackFile(this.definition.getInstanceCftName());
@@ -158,8 +139,7 @@ public class EcsClusterPush {
             this.logger.addLogEntry("... Creating new instance stack with name: " + instanceStackName);
             Stack newInstanceStack = pushStack(instanceStackName, instanceStackTemplate);
             String newAsgName = this.findAsgInStack(newInstanceStack.getStackName());
-            waitForInstanceStartup(newAsgName, Optional.empty());
-            waitForInstanceEcsRegistration(this.definition.getClusterName(), newAsgName);
+            waitForInstanceRegistration(newAsgName);
 
             this.containerInstanceHandler.setAttributeOnCluster(this.definition.getClusterName(), "state", "running");
 
@@ -201,14 +181,10 @@ public class EcsClusterPush {
             String existingInstanceTemplate = this.cfnClient.getTemplate(existingTemplateRequest).getTemplateBody();
 
             if (!existingInstanceTemplate.equals(instanceStackTemplate) || parametersUpdated(existingStackState.getInstanceStack().getParameters())) {
-                String instanceStackName = this.findNextStackName(this.definition.getClusterName());
+                String instanceStackName = this.instanceStacks.getNextStackName();
 
                 // Find old container instances
-                List<String> oldContainerInstanceArns = null;
-                ListContainerInstancesResult listContainerInstancesResult = this.ecsClient.listContainerInstances(new ListContainerInstancesRequest().withCluster(this.definition.getClusterName()));
-                if (listContainerInstancesResult.getContainerInstanceArns() != null) {
-                    oldContainerInstanceArns = listContainerInstancesResult.getContainerInstanceArns();
-                }
+                List<String> oldContainerInstanceArns = this.containerInstanceHandler.getContainerInstanceArns(this.definition.getClusterName());
 
 
                 ArrayList<String> newContainerInstanceArns = new ArrayList<>();
@@ -217,16 +193,29 @@ public class EcsClusterPush {
                     // Set pre-drain to avoid placing containers on old boxes
                     this.containerInstanceHandler.setAttributeOnCluster(this.definition.getClusterName(), "state", "pre-drain");
 
+                    OptionalInt replacementCapacity = planReplacementCapacity(instanceStackTemplate);
+                    boolean capacityAsParameter = replacementCapacity.isPresent()
+                        && declaresParameter(instanceStackTemplate, this.definition.getDesiredCapacityParameter());
+                    if (capacityAsParameter) {
+                        int capacity = limitToTemplateMaximum(instanceStackTemplate, replacementCapacity.getAsInt());
+                        this.cftParams.put(this.definition.getDesiredCapacityParameter(), String.valueOf(capacity));
+                    }
+
                     this.logger.addLogEntry("... Creating new instance stack with name: " + instanceStackName);
                     Stack newInstanceStack = pushStack(instanceStackName, instanceStackTemplate);
                     String newAsgName = this.findAsgInStack(newInstanceStack.getStackName());
-                    waitForInstanceStartup(newAsgName, Optional.empty());
-                    waitForInstanceEcsRegistration(this.definition.getClusterName(), newAsgName);
+                    if (replacementCapacity.isPresent() && !capacityAsParameter) {
+                        // never scale the new group below what its template asked for
+                        int templateCapacity = this.asgHandler.getAsg(newAsgName).getDesiredCapacity();
+                        this.asgHandler.setDesiredCapacity(newAsgName,
+                            Math.max(templateCapacity, replacementCapacity.getAsInt()));
+                    }
+                    waitForInstanceRegistration(newAsgName);
 
                     // Pause scaling operations to prevent bringing anymore old boxes online
                     this.asgHandler.pauseScalingOperations(oldAsgName);
 
-                    List<String> midUpdateInstanceArns = this.ecsClient.listContainerInstances(new ListContainerInstancesRequest().withCluster(this.definition.getClusterName())).getContainerInstanceArns();
+                    List<String> midUpdateInstanceArns = this.containerInstanceHandler.getContainerInstanceArns(this.definition.getClusterName());
 
                     if (oldContainerInstanceArns != null) {
                         for (String arn : midUpdateInstanceArns) {
@@ -242,12 +231,11 @@ public class EcsClusterPush {
                     // Set instances to draining
                     if (this.definition.isDrainingEnabled() && oldContainerInstanceArns != null && !oldContainerInstanceArns.isEmpty()) {
                         this.logger.addLogEntry("Moving " + existingCluster.getRunningTasksCount() + " tasks across " + existingCluster.getActiveServicesCount() + " services to new container instances.");
-                        List<List<String>> partitionedInstanceArns = Lists.partition(oldContainerInstanceArns, this.definition.getMaxConcurrentDraining());
-                        this.logger.addLogEntry("... Draining instances in sets of " + this.definition.getMaxConcurrentDraining());
-                        for (List<String> instancePartition : partitionedInstanceArns) {
-                            setContainerInstanceStatus(this.definition.getClusterName(), instancePartition, ContainerInstanceStatus.DRAINING);
-                            waitForDrainingComplete(this.definition.getClusterName(), instancePartition);
-                        }
+                        this.logger.addLogEntry("... Draining up to " + this.definition.getMaxConcurrentDraining() + " instances at a time");
+                        new DrainScheduler(this.ecsClient, this.logger, this.definition.getClusterName(),
+                            this.definition.getMaxConcurrentDraining(), POLLING_INTERVAL_MS,
+                            TimeUnit.MINUTES.toMillis(this.context.getTimeout()))
+                            .drain(oldContainerInstanceArns, newContainerInstanceArns);
                         this.logger.addLogEntry("... All old instances drained.");
                     }
                 }
@@ -272,7 +260,7 @@ public class EcsClusterPush {
                 }
 
                 // Instances empty, continue to delete
-                deleteStack(existingStackState.getInstanceStack().getStackName());
+                deleteStack(existingStackState.getInstanceStack());
                 this.logger.addLogEntry("Cluster Update Complete!");
             }
             else {
@@ -281,6 +269,65 @@ public class EcsClusterPush {
         }
     }
 
+    private OptionalInt planReplacementCapacity(String instanceStackTemplate) {
+        if (!this.definition.isCapacityPlanningEnabled()) {
+            return OptionalInt.empty();
+        }
+        this.logger.addLogEntry("Planning replacement capacity");
+        List<ContainerInstance> oldInstances = this.containerInstanceHandler.getContainerInstances(this.definition.getClusterName());
+        return new ReplacementCapacityPlanner(this.ecsClient, this.ec2Client, this.logger)
+            .plan(this.definition.getClusterName(), oldInstances, this.cftParams.get("InstanceType"),
+                this.definition.getCapacityHeadroomPercent(), templateDesiredCapacity(instanceStackTemplate));
+    }
+
+    /**
+     * @return the desired capacity the instance stack would get without planning, or 0 if it is not known
+     */
+    private int templateDesiredCapacity(String template) {
+        return templateParameterValue(template, this.definition.getDesiredCapacityParameter()).orElse(0);
+    }
+
+    /**
+     * A desired capacity above the group's MaxSize fails the instance stack, so a plan above it is cut down.
+     */
+    private int limitToTemplateMaximum(String template, int capacity) {
+        String parameter = this.definition.getMaxCapacityParameter();
+        OptionalInt maxCapacity = templateParameterValue(template, parameter);
+        if (maxCapacity.isPresent() && capacity > maxCapacity.getAsInt()) {
+            this.logger.addLogEntry("... Planned capacity " + capacity + " is above the instance stack's " + parameter
+                + " of " + maxCapacity.getAsInt() + ", using " + maxCapacity.getAsInt());
+            return maxCapacity.getAsInt();
+        }
+        return capacity;
+    }
+
+    /**
+     * @return the configured value of an instance stack parameter, else its template Default, if it is a number
+     */
+    private OptionalInt templateParameterValue(String template, String parameter) {
+        String value = this.cftParams.get(parameter);
+        if (value == null) {
+            try {
+                value = CftTemplateParameters.of(template).getDefault(parameter);
+            } catch (IOException e) {
+                return OptionalInt.empty();
+            }
+        }
+        try {
+            return value != null ? OptionalInt.of(Integer.parseInt(value.trim())) : OptionalInt.empty();
+        } catch (NumberFormatException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    private boolean declaresParameter(String template, String parameter) {
+        try {
+            return CftTemplateParameters.of(template).getNames().contains(parameter);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     private void setCftParams() {
         this.definition.getCftParameters().forEach(param -> {
             this.cftParams.put(param.getKey(), param.getValue());
@@ -312,11 +359,9 @@ public class EcsClusterPush {
         List<ContainerInstance> existingContainerInstances = containerInstanceHandler.getContainerInstances(clusterName);
         List<Stack> instanceFilteredStacks;
         if (existingContainerInstances == null || existingContainerInstances.size() == 0) {
-            List<Stack> allAccountStacks = getAllStacks();
-            instanceFilteredStacks = allAccountStacks.stream()
-                .filter(stack -> stack.getStackName().contains(this.definition.getClusterName() + "-instances"))
-                .sorted(Comparator.comparing(Stack::getStackName).reversed())
-                .collect(Collectors.toList());
+            instanceFilteredStacks = this.instanceStacks.getLatest()
+                .map(summary -> Collections.singletonList(getStackWithName(summary.getStackName())))
+                .orElse(Collections.emptyList());
         }
         else {
             List<TagDescription> existingContainerInstanceTags = containerInstanceHandler.getContainerInstanceTags(existingContainerInstances.get(0));
@@ -373,13 +418,14 @@ public class EcsClusterPush {
         return this.cfnClient.describeStacks(new DescribeStacksRequest().withStackName(stackName)).getStacks().get(0);
     }
 
-    private void deleteStack(String stackName) {
-        this.logger.addLogEntry("Deleting stack: " + stackName);
+    private void deleteStack(Stack stack) {
+        this.logger.addLogEntry("Deleting stack: " + stack.getStackName());
         DeleteStackRequest deleteStackRequest = new DeleteStackRequest()
-            .withStackName(stackName);
+            .withStackName(stack.getStackId());
         this.cfnClient.deleteStack(deleteStackRequest);
         try {
-            this.stackUtils.waitForCompletion(stackName);
+            // events of a deleted stack can only be read by id
+            this.stackUtils.waitForCompletion(stack.getStackId());
         }
         catch (AmazonCloudFormationException ex) {
             this.logger.addLogEntry("DELETE_COMPLETE");
@@ -393,12 +439,7 @@ public class EcsClusterPush {
             if (fileUtil.fileExists(TEMPLATE_NAME + "." + format.toSuffix())) {
                 String template = fileUtil.findFile(TEMPLATE_NAME + "." + format.toSuffix(), false);
 
-                if (TemplateFormat.YML.equals(format)) {
-                    mapper = new ObjectMapper(new YAMLFactory());
-                }
-                else {
-                    mapper = new ObjectMapper();
-                }
+                mapper = ObjectMappers.of(!TemplateFormat.YML.equals(format));
 
                 try {
                     String deployEnvironment = this.context.getEnvName();
@@ -414,118 +455,16 @@ public class EcsClusterPush {
         throw new AwsExecException("No template provided!");
     }
 
-    private List<Stack> getAllStacks() {
-        DescribeStacksResult stacksResult = this.cfnClient.describeStacks();
-        ArrayList<Stack> stacks = new ArrayList<>(stacksResult.getStacks());
-        String nextToken = stacksResult.getNextToken();
-        while (nextToken != null) {
-            DescribeStacksRequest pagedRequest = new DescribeStacksRequest().withNextToken(nextToken);
-            DescribeStacksResult pagedResult = this.cfnClient.describeStacks(pagedRequest);
-            stacks.addAll(pagedResult.getStacks());
-            nextToken = pagedResult.getNextToken();
-        }
-
-        return stacks;
-    }
-
     private Stack getStackWithName(String stackName) {
         DescribeStacksResult stacksResult = this.cfnClient.describeStacks(new DescribeStacksRequest().withStackName(stackName));
         return stacksResult.getStacks().get(0);
     }
 
-    private String findNextStackName(String clusterName) {
-        List<Stack> allAccountStacks = getAllStacks();
-        List<Stack> instanceFilteredStacks = allAccountStacks.stream()
-            .filter(stack -> stack.getStackName().contains(clusterName + "-instances"))
-            .sorted(Comparator.comparing(Stack::getStackName).reversed())
-            .collect(Collectors.toList());
-        Stack latestStack = instanceFilteredStacks.get(0);
-        String[] stackNameSplit = latestStack.getStackName().split("-");
-        int stackNumber = Integer.parseInt(stackNameSplit[stackNameSplit.length - 1]) + 1;
-        return clusterName + "-instances-" + stackNumber;
-    }
-
-    private long waitForInstanceStartup(String asgName, Optional<Long> timeout) {
-        long timeoutMillis = timeout.orElse(TimeUnit.MINUTES.toMillis(this.context.getTimeout()));
-        boolean instancesStarted = false;
-        this.logger.addLogEntry("Waiting for instances to start");
-        // Wait for ASG Instances to Start
-        while (!instancesStarted && timeoutMillis > 0) {
-            List<String> newAsgInstanceIds = this.asgHandler.getAsgInstancesInService(asgName).stream()
-                .map(Instance::getInstanceId)
-                .collect(Collectors.toList());
-
-            int desiredAsgSize = this.asgHandler.getAsg(asgName).getDesiredCapacity();
-            this.logger.addLogEntry("... Current: " + newAsgInstanceIds.size() + " Desired: " + desiredAsgSize);
-            instancesStarted = desiredAsgSize == newAsgInstanceIds.size();
-
-            try {
-                Thread.sleep(POLLING_INTERVAL_MS);
-            }
-            catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                throw new AwsExecException("Interrupted while waiting for instances to start");
-            }
-            timeoutMillis -= POLLING_INTERVAL_MS;
-        }
-
-        if (!instancesStarted) {
-            this.logger.addErrorLogEntry("Instance startup timed out! Rolling back...");
-            throw new AwsExecException("Instance startup timed out");
-        }
-        return timeoutMillis;
-    }
-
-    private void waitForInstanceEcsRegistration(String cluster, String asgName) {
-        long timeoutMillis = TimeUnit.MINUTES.toMillis(this.context.getTimeout());
-        long registrationTimeoutMillis = TimeUnit.MINUTES.toMillis(this.definition.getInstanceRegistrationTimeout());
-        HashMap<String, Long> pendingInstanceTimeouts = new HashMap<>();
-        Set<String> pendingInstanceIds;
-
-        do {
-            pendingInstanceIds = this.containerInstanceHandler.getUnregisteredInstanceIds(cluster, asgName, this.asgHandler);
-            this.logger.addLogEntry("... " + pendingInstanceIds.size() + " instances pending cluster registration");
-            if (!pendingInstanceIds.isEmpty()) {
-                this.logger.addLogEntry("... Waiting for " + String.join(", ", pendingInstanceIds) + " to register with cluster.");
-            }
-
-            HashSet<String> unhealthyInstances = new HashSet<>();
-            for (String instanceId : pendingInstanceIds) {
-                if (pendingInstanceTimeouts.containsKey(instanceId)) {
-                    if (pendingInstanceTimeouts.get(instanceId) <= 0) { // Timed out
-                        unhealthyInstances.add(instanceId);
-                    }
-                    else { // Count down further
-                        long currentTime = pendingInstanceTimeouts.get(instanceId);
-                        pendingInstanceTimeouts.put(instanceId, currentTime - POLLING_INTERVAL_MS);
-                    }
-                }
-                else {
-                    pendingInstanceTimeouts.put(instanceId, registrationTimeoutMillis);
-                }
-            }
-
-            if (!unhealthyInstances.isEmpty()) { // Instances timed out in this pass, wait for replacements
-                for (String unhealthyInstance : unhealthyInstances) {
-                    this.logger.addLogEntry(unhealthyInstance + " never registered to cluster. Marking unhealthy.");
-                    this.asgHandler.setEc2Unhealthy(unhealthyInstance);
-                }
-                unhealthyInstances.clear();
-                timeoutMillis = waitForInstanceStartup(asgName, Optional.of(timeoutMillis));
-            }
-            else {
-                try {
-                    Thread.sleep(POLLING_INTERVAL_MS);
-                }
-                catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                    throw new AwsExecException("Interrupted while waiting for instances to register");
-                }
-                timeoutMillis -= POLLING_INTERVAL_MS;
-            }
-
-        } while (!pendingInstanceIds.isEmpty() && timeoutMillis > 0);
-
+    private void waitForInstanceRegistration(String asgName) {
+        new InstanceLifecycleTracker(this.ecsClient, this.asgHandler, this.logger, this.definition.getClusterName(),
+            POLLING_INTERVAL_MS, TimeUnit.MINUTES.toMillis(this.context.getTimeout()),
+            TimeUnit.MINUTES.toMillis(this.definition.getInstanceRegistrationTimeout()))
+            .waitUntilRegistered(asgName);
     }
 
     private void waitForDrainingComplete(String cluster, List<String> containerInstanceArns) {
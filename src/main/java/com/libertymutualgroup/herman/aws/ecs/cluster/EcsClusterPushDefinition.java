@@ -17,6 +17,10 @@ public class EcsClusterPushDefinition {
     private int instanceRegistrationTimeout = 3;
     private boolean drainingEnabled = true;
     private int maxConcurrentDraining = 3;
+    private boolean capacityPlanningEnabled = false;
+    private String desiredCapacityParameter = "DesiredCapacity";
+    private String maxCapacityParameter = "MaxSize";
+    private int capacityHeadroomPercent = 10;
     private List<CftParameter> cftParameters = new ArrayList<>();
     private List<HermanTag> tags;
 
@@ -68,6 +72,38 @@ public class EcsClusterPushDefinition {
         this.maxConcurrentDraining = maxConcurrentDraining;
     }
 
+    public boolean isCapacityPlanningEnabled() {
+        return capacityPlanningEnabled;
+    }
+
+    public void setCapacityPlanningEnabled(boolean capacityPlanningEnabled) {
+        this.capacityPlanningEnabled = capacityPlanningEnabled;
+    }
+
+    public String getDesiredCapacityParameter() {
+        return desiredCapacityParameter;
+    }
+
+    public void setDesiredCapacityParameter(String desiredCapacityParameter) {
+        this.desiredCapacityParameter = desiredCapacityParameter;
+    }
+
+    public String getMaxCapacityParameter() {
+        return maxCapacityParameter;
+    }
+
+    public void setMaxCapacityParameter(String maxCapacityParameter) {
+        this.maxCapacityParameter = maxCapacityParameter;
+    }
+
+    public int getCapacityHeadroomPercent() {
+        return capacityHeadroomPercent;
+    }
+
+    public void setCapacityHeadroomPercent(int capacityHeadroomPercent) {
+        this.capacityHeadroomPercent = capacityHeadroomPercent;
+    }
+
     public List<CftParameter> getCftParameters() {
         return cftParameters;
     }
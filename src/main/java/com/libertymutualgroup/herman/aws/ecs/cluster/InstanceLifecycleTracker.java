@@ -0,0 +1,240 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.amazonaws.services.autoscaling.model.LifecycleState;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.ListContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.ListContainerInstancesResult;
+import com.google.common.collect.Lists;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Follows each instance of a new autoscaling group from launch through InService to ECS registration. Only instances
+ * that are in service but not yet registered are looked up in the cluster, and an instance that never registers is
+ * replaced on its own without restarting the wait for the others.
+ */
+class InstanceLifecycleTracker {
+
+    enum State {
+        LAUNCHING, IN_SERVICE, REGISTERED, REPLACED
+    }
+
+    private static final int MAX_IDS_PER_QUERY = 50;
+    private static final int MAX_DESCRIBE_BATCH = 100;
+
+    private final AmazonECS ecsClient;
+    private final AutoscalingGroupHandler asgHandler;
+    private final HermanLogger logger;
+    private final String cluster;
+    private final long pollIntervalMs;
+    private final long timeoutMs;
+    private final long registrationTimeoutMs;
+    private final LongConsumer sleeper;
+    private final LongSupplier clock;
+
+    InstanceLifecycleTracker(AmazonECS ecsClient, AutoscalingGroupHandler asgHandler, HermanLogger logger,
+        String cluster, long pollIntervalMs, long timeoutMs, long registrationTimeoutMs) {
+        this(ecsClient, asgHandler, logger, cluster, pollIntervalMs, timeoutMs, registrationTimeoutMs, null,
+            System::currentTimeMillis);
+    }
+
+    InstanceLifecycleTracker(AmazonECS ecsClient, AutoscalingGroupHandler asgHandler, HermanLogger logger,
+        String cluster, long pollIntervalMs, long timeoutMs, long registrationTimeoutMs, LongConsumer sleeper,
+        LongSupplier clock) {
+        this.ecsClient = ecsClient;
+        this.asgHandler = asgHandler;
+        this.logger = logger;
+        this.cluster = cluster;
+        this.pollIntervalMs = pollIntervalMs;
+        this.timeoutMs = timeoutMs;
+        this.registrationTimeoutMs = registrationTimeoutMs;
+        this.sleeper = sleeper != null ? sleeper : this::sleep;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns once as many instances of the group as it desires are registered with the cluster.
+     *
+     * @return the state each instance seen in the group ended up in, by EC2 instance id
+     */
+    Map<String, State> waitUntilRegistered(String asgName) {
+        this.logger.addLogEntry("Waiting for instances to start and register with " + cluster);
+        Map<String, TrackedInstance> instances = new LinkedHashMap<>();
+        long deadline = clock.getAsLong() + timeoutMs;
+
+        while (true) {
+            AutoScalingGroup group = asgHandler.getAsg(asgName);
+            long now = clock.getAsLong();
+            followGroup(group, instances, now);
+            registerPending(instances, now);
+            replaceUnregistered(instances, now);
+
+            long registered = count(instances, State.REGISTERED);
+            logger.addLogEntry("... Registered: " + registered + " In service: " + count(instances, State.IN_SERVICE)
+                + " Launching: " + count(instances, State.LAUNCHING) + " Desired: " + group.getDesiredCapacity());
+            if (registered >= group.getDesiredCapacity()) {
+                return instances.values().stream()
+                    .collect(Collectors.toMap(tracked -> tracked.id, tracked -> tracked.state, (a, b) -> a,
+                        LinkedHashMap::new));
+            }
+            if (now >= deadline) {
+                logger.addErrorLogEntry("Instance startup timed out! Rolling back...");
+                throw new AwsExecException("Instance startup timed out");
+            }
+            sleeper.accept(pollIntervalMs);
+        }
+    }
+
+    private void followGroup(AutoScalingGroup group, Map<String, TrackedInstance> instances, long now) {
+        Set<String> inGroup = new HashSet<>();
+        for (Instance asgInstance: group.getInstances()) {
+            String id = asgInstance.getInstanceId();
+            inGroup.add(id);
+            TrackedInstance tracked = instances.get(id);
+            if (tracked == null) {
+                tracked = new TrackedInstance(id, now);
+                instances.put(id, tracked);
+                logger.addLogEntry("... " + id + " launching");
+            }
+
+            String lifecycle = asgInstance.getLifecycleState();
+            boolean healthy = "Healthy".equals(asgInstance.getHealthStatus());
+            if (tracked.state != State.REPLACED && (!healthy || lifecycle.startsWith("Terminating"))) {
+                tracked.moveTo(State.REPLACED, now);
+                logger.addLogEntry("... " + id + " is " + lifecycle + "/" + asgInstance.getHealthStatus()
+                    + ", waiting for a replacement");
+            } else if (tracked.state == State.LAUNCHING && LifecycleState.InService.toString().equals(lifecycle)) {
+                tracked.moveTo(State.IN_SERVICE, now);
+                logger.addLogEntry("... " + id + " in service after " + (now - tracked.launched) / 1000 + "s");
+            }
+        }
+
+        for (TrackedInstance tracked: instances.values()) {
+            if (tracked.state != State.REPLACED && !inGroup.contains(tracked.id)) {
+                tracked.moveTo(State.REPLACED, now);
+                logger.addLogEntry("... " + tracked.id + " left the group");
+            }
+        }
+    }
+
+    private void registerPending(Map<String, TrackedInstance> instances, long now) {
+        List<String> pending = instances.values().stream()
+            .filter(tracked -> tracked.state == State.IN_SERVICE)
+            .map(tracked -> tracked.id)
+            .collect(Collectors.toList());
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        for (String id: registeredAmong(pending)) {
+            TrackedInstance tracked = instances.get(id);
+            tracked.moveTo(State.REGISTERED, now);
+            logger.addLogEntry("... " + id + " registered with cluster after " + (now - tracked.launched) / 1000
+                + "s");
+        }
+    }
+
+    private void replaceUnregistered(Map<String, TrackedInstance> instances, long now) {
+        for (TrackedInstance tracked: instances.values()) {
+            if (tracked.state == State.IN_SERVICE && now - tracked.since >= registrationTimeoutMs) {
+                logger.addLogEntry(tracked.id + " never registered to cluster. Marking unhealthy.");
+                asgHandler.setEc2Unhealthy(tracked.id);
+                tracked.moveTo(State.REPLACED, now);
+            }
+        }
+    }
+
+    /**
+     * @return which of the EC2 instances have registered with the cluster, looked up with a cluster query instead of
+     * listing every container instance
+     */
+    private Set<String> registeredAmong(List<String> ec2InstanceIds) {
+        List<String> arns = new ArrayList<>();
+        for (List<String> ids: Lists.partition(ec2InstanceIds, MAX_IDS_PER_QUERY)) {
+            String filter = "ec2InstanceId in [" + ids.stream().map(id -> "'" + id + "'")
+                .collect(Collectors.joining(",")) + "]";
+            String nextToken = null;
+            do {
+                ListContainerInstancesResult result = ecsClient.listContainerInstances(
+                    new ListContainerInstancesRequest()
+                        .withCluster(cluster)
+                        .withFilter(filter)
+                        .withNextToken(nextToken));
+                arns.addAll(result.getContainerInstanceArns());
+                nextToken = result.getNextToken();
+            } while (nextToken != null);
+        }
+
+        Set<String> registered = new HashSet<>();
+        for (List<String> batch: Lists.partition(arns, MAX_DESCRIBE_BATCH)) {
+            for (ContainerInstance instance: ecsClient.describeContainerInstances(new DescribeContainerInstancesRequest()
+                .withCluster(cluster)
+                .withContainerInstances(batch)).getContainerInstances()) {
+                registered.add(instance.getEc2InstanceId());
+            }
+        }
+        registered.retainAll(ec2InstanceIds);
+        return registered;
+    }
+
+    private static long count(Map<String, TrackedInstance> instances, State state) {
+        return instances.values().stream().filter(tracked -> tracked.state == state).count();
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while waiting for instances to register");
+        }
+    }
+
+    private static class TrackedInstance {
+        private final String id;
+        private final long launched;
+        private State state = State.LAUNCHING;
+        private long since;
+
+        TrackedInstance(String id, long now) {
+            this.id = id;
+            this.launched = now;
+            this.since = now;
+        }
+
+        void moveTo(State state, long now) {
+            this.state = state;
+            this.since = now;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import com.libertymutualgroup.herman.aws.cft.StackUtils;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The cluster's [cluster]-instances-N stacks by generation N, listed once per cluster push. Only stacks that still
+ * exist are listed, and the filtering is done by CloudFormation rather than by describing every stack in the account.
+ */
+class InstanceStackIndex {
+
+    private final AmazonCloudFormation cfnClient;
+    private final String clusterName;
+    private final Pattern namePattern;
+    private TreeMap<Integer, StackSummary> stacksByGeneration;
+
+    InstanceStackIndex(AmazonCloudFormation cfnClient, String clusterName) {
+        this.cfnClient = cfnClient;
+        this.clusterName = clusterName;
+        this.namePattern = Pattern.compile(Pattern.quote(clusterName + "-instances-") + "(\\d+)");
+    }
+
+    Optional<StackSummary> getLatest() {
+        Map.Entry<Integer, StackSummary> latest = getStacksByGeneration().lastEntry();
+        return latest == null ? Optional.empty() : Optional.of(latest.getValue());
+    }
+
+    int getLatestGeneration() {
+        return getStacksByGeneration().isEmpty() ? 0 : getStacksByGeneration().lastKey();
+    }
+
+    String getNextStackName() {
+        return clusterName + "-instances-" + (getLatestGeneration() + 1);
+    }
+
+    private TreeMap<Integer, StackSummary> getStacksByGeneration() {
+        if (stacksByGeneration == null) {
+            stacksByGeneration = new TreeMap<>();
+            String nextToken = null;
+            do {
+                ListStacksResult result = cfnClient.listStacks(new ListStacksRequest()
+                    .withStackStatusFilters(StackUtils.LIVE_STACK_STATUSES)
+                    .withNextToken(nextToken));
+                for (StackSummary summary: result.getStackSummaries()) {
+                    Matcher matcher = namePattern.matcher(summary.getStackName());
+                    if (matcher.matches()) {
+                        stacksByGeneration.put(Integer.parseInt(matcher.group(1)), summary);
+                    }
+                }
+                nextToken = result.getNextToken();
+            } while (nextToken != null);
+        }
+        return stacksByGeneration;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstanceTypesRequest;
+import com.amazonaws.services.ec2.model.InstanceTypeInfo;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.Attribute;
+import com.amazonaws.services.ecs.model.ContainerDefinition;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DescribeServicesRequest;
+import com.amazonaws.services.ecs.model.DescribeTaskDefinitionRequest;
+import com.amazonaws.services.ecs.model.DescribeTasksRequest;
+import com.amazonaws.services.ecs.model.DesiredStatus;
+import com.amazonaws.services.ecs.model.ListTasksRequest;
+import com.amazonaws.services.ecs.model.ListTasksResult;
+import com.amazonaws.services.ecs.model.PlacementConstraint;
+import com.amazonaws.services.ecs.model.PlacementConstraintType;
+import com.amazonaws.services.ecs.model.Resource;
+import com.amazonaws.services.ecs.model.Service;
+import com.amazonaws.services.ecs.model.Task;
+import com.amazonaws.services.ecs.model.TaskDefinition;
+import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
+import com.google.common.collect.Lists;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Works out how many replacement instances a rollover needs to hold the tasks running on the old container
+ * instances, so the new instance stack can be sized before any task is moved. Each task's CPU and memory reservation
+ * is placed first-fit onto instances of the replacement type, honoring the distinctInstance and memberOf
+ * constraints that keep tasks apart.
+ */
+class ReplacementCapacityPlanner {
+
+    private static final String INSTANCE_TYPE_ATTRIBUTE = "ecs.instance-type";
+    private static final int CPU_UNITS_PER_VCPU = 1024;
+    private static final int MAX_DESCRIBE_TASKS = 100;
+    private static final int MAX_DESCRIBE_SERVICES = 10;
+    private static final String SERVICE_GROUP_PREFIX = "service:";
+    // added by every ECS push to keep tasks off instances being replaced; replacement instances always meet it
+    private static final String PRE_DRAIN_CONSTRAINT = "attribute:state !exists or attribute:state != pre-drain";
+
+    private final AmazonECS ecsClient;
+    private final AmazonEC2 ec2Client;
+    private final HermanLogger logger;
+
+    ReplacementCapacityPlanner(AmazonECS ecsClient, AmazonEC2 ec2Client, HermanLogger logger) {
+        this.ecsClient = ecsClient;
+        this.ec2Client = ec2Client;
+        this.logger = logger;
+    }
+
+    /**
+     * @param newInstanceType instance type of the replacement instances, or null if it is the same as the old ones
+     * @param headroomPercent extra capacity on top of what the running tasks reserve
+     * @param minimum the capacity the instance stack asks for on its own; the plan never goes below it
+     * @return the number of replacement instances, or empty if there is nothing to base a plan on
+     */
+    OptionalInt plan(String cluster, List<ContainerInstance> oldInstances, String newInstanceType,
+        int headroomPercent, int minimum) {
+        if (oldInstances == null || oldInstances.isEmpty()) {
+            return OptionalInt.empty();
+        }
+
+        long registeredCpu = 0;
+        long registeredMemory = 0;
+        for (ContainerInstance instance: oldInstances) {
+            registeredCpu += value(instance.getRegisteredResources(), "CPU");
+            registeredMemory += value(instance.getRegisteredResources(), "MEMORY");
+        }
+
+        // what one replacement instance will register, assuming the same type as the old instances
+        double cpuPerInstance = (double) registeredCpu / oldInstances.size();
+        double memoryPerInstance = (double) registeredMemory / oldInstances.size();
+
+        String oldInstanceType = attribute(oldInstances.get(0), INSTANCE_TYPE_ATTRIBUTE);
+        if (newInstanceType != null && oldInstanceType != null && !newInstanceType.equals(oldInstanceType)) {
+            Map<String, InstanceTypeInfo> types = describeInstanceTypes(oldInstanceType, newInstanceType);
+            InstanceTypeInfo oldType = types.get(oldInstanceType);
+            InstanceTypeInfo newType = types.get(newInstanceType);
+            if (oldType == null || newType == null) {
+                logger.addLogEntry("... Unable to look up " + oldInstanceType + " and " + newInstanceType
+                    + ", sizing replacement instances like the old ones");
+            } else {
+                cpuPerInstance = newType.getVCpuInfo().getDefaultVCpus() * CPU_UNITS_PER_VCPU;
+                // the ECS agent and OS keep back the same share of memory on the new type as on the old one
+                memoryPerInstance = newType.getMemoryInfo().getSizeInMiB()
+                    * (memoryPerInstance / oldType.getMemoryInfo().getSizeInMiB());
+            }
+        }
+        if (cpuPerInstance <= 0 || memoryPerInstance <= 0) {
+            return OptionalInt.empty();
+        }
+
+        List<TaskReservation> tasks;
+        try {
+            tasks = describeReservations(cluster, oldInstances,
+                newInstanceType != null ? newInstanceType : oldInstanceType);
+        } catch (AmazonServiceException e) {
+            logger.addLogEntry("... Unable to describe the tasks on the old instances: " + e.getMessage());
+            return OptionalInt.empty();
+        }
+
+        double factor = 1 + headroomPercent / 100.0;
+        int packed = pack(tasks, cpuPerInstance / factor, memoryPerInstance / factor);
+        int needed = Math.max(1, Math.max(minimum, packed));
+
+        logger.addLogEntry("... " + tasks.size() + " tasks on " + oldInstances.size() + " old instances fit on "
+            + packed + " replacement instances" + (newInstanceType != null ? " of " + newInstanceType : "")
+            + " with " + headroomPercent + "% headroom; planning " + needed
+            + (needed > packed ? " (instance stack minimum " + minimum + ")" : ""));
+        return OptionalInt.of(needed);
+    }
+
+    /**
+     * First-fit decreasing: the largest tasks are placed first, each on the first instance with room for it, and a
+     * new instance is added when none has.
+     *
+     * @return the number of instances the tasks were placed on
+     */
+    static int pack(List<TaskReservation> tasks, double cpuPerInstance, double memoryPerInstance) {
+        List<TaskReservation> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparingLong((TaskReservation task) -> task.memory)
+            .thenComparingLong(task -> task.cpu).reversed());
+
+        List<PlannedInstance> instances = new ArrayList<>();
+        for (TaskReservation task: sorted) {
+            PlannedInstance target = null;
+            for (PlannedInstance instance: instances) {
+                if (instance.fits(task, cpuPerInstance, memoryPerInstance)) {
+                    target = instance;
+                    break;
+                }
+            }
+            if (target == null) {
+                target = new PlannedInstance(task.memberOf);
+                instances.add(target);
+            }
+            target.place(task);
+        }
+        return instances.size();
+    }
+
+    private List<TaskReservation> describeReservations(String cluster, List<ContainerInstance> oldInstances,
+        String instanceType) {
+        Set<String> oldArns = oldInstances.stream().map(ContainerInstance::getContainerInstanceArn)
+            .collect(Collectors.toSet());
+
+        List<String> taskArns = new ArrayList<>();
+        String nextToken = null;
+        do {
+            ListTasksResult page = ecsClient.listTasks(new ListTasksRequest().withCluster(cluster)
+                .withDesiredStatus(DesiredStatus.RUNNING).withNextToken(nextToken));
+            taskArns.addAll(page.getTaskArns());
+            nextToken = page.getNextToken();
+        } while (nextToken != null);
+
+        List<Task> tasks = new ArrayList<>();
+        for (List<String> batch: Lists.partition(taskArns, MAX_DESCRIBE_TASKS)) {
+            for (Task task: ecsClient.describeTasks(new DescribeTasksRequest().withCluster(cluster)
+                .withTasks(batch)).getTasks()) {
+                if (oldArns.contains(task.getContainerInstanceArn())) {
+                    tasks.add(task);
+                }
+            }
+        }
+
+        Map<String, TaskDefinition> definitions = new HashMap<>();
+        Map<String, Service> services = describeServices(cluster, tasks);
+        List<TaskReservation> reservations = new ArrayList<>();
+        for (Task task: tasks) {
+            TaskDefinition definition = definitions.computeIfAbsent(task.getTaskDefinitionArn(),
+                arn -> ecsClient.describeTaskDefinition(new DescribeTaskDefinitionRequest().withTaskDefinition(arn))
+                    .getTaskDefinition());
+            Service service = services.get(task.getGroup());
+
+            Set<String> memberOf = new TreeSet<>();
+            if (definition.getPlacementConstraints() != null) {
+                for (TaskDefinitionPlacementConstraint constraint: definition.getPlacementConstraints()) {
+                    if (PlacementConstraintType.MemberOf.toString().equals(constraint.getType())) {
+                        addMemberOf(memberOf, constraint.getExpression(), instanceType);
+                    }
+                }
+            }
+            boolean distinctInstance = false;
+            if (service != null && service.getPlacementConstraints() != null) {
+                for (PlacementConstraint constraint: service.getPlacementConstraints()) {
+                    if (PlacementConstraintType.DistinctInstance.toString().equals(constraint.getType())) {
+                        distinctInstance = true;
+                    } else if (PlacementConstraintType.MemberOf.toString().equals(constraint.getType())) {
+                        addMemberOf(memberOf, constraint.getExpression(), instanceType);
+                    }
+                }
+            }
+
+            reservations.add(new TaskReservation(reservedCpu(task, definition), reservedMemory(task, definition),
+                String.join(" and ", memberOf), distinctInstance ? task.getGroup() : null));
+        }
+        return reservations;
+    }
+
+    private Map<String, Service> describeServices(String cluster, List<Task> tasks) {
+        List<String> serviceNames = tasks.stream()
+            .map(Task::getGroup)
+            .filter(group -> group != null && group.startsWith(SERVICE_GROUP_PREFIX))
+            .map(group -> group.substring(SERVICE_GROUP_PREFIX.length()))
+            .distinct()
+            .collect(Collectors.toList());
+
+        Map<String, Service> services = new HashMap<>();
+        for (List<String> batch: Lists.partition(serviceNames, MAX_DESCRIBE_SERVICES)) {
+            for (Service service: ecsClient.describeServices(new DescribeServicesRequest().withCluster(cluster)
+                .withServices(batch)).getServices()) {
+                services.put(SERVICE_GROUP_PREFIX + service.getServiceName(), service);
+            }
+        }
+        return services;
+    }
+
+    /**
+     * Tasks with different memberOf expressions may need different instances (an availability zone, say), so they
+     * are only planned onto the same instance when their expressions match. Expressions every replacement instance
+     * meets are left out.
+     */
+    private static void addMemberOf(Set<String> memberOf, String expression, String instanceType) {
+        if (expression == null) {
+            return;
+        }
+        String normalized = expression.trim().replaceAll("\\s+", " ");
+        if (PRE_DRAIN_CONSTRAINT.equals(normalized)
+            || normalized.equals("attribute:" + INSTANCE_TYPE_ATTRIBUTE + " == " + instanceType)) {
+            return;
+        }
+        memberOf.add(normalized);
+    }
+
+    private static long reservedCpu(Task task, TaskDefinition definition) {
+        Long taskCpu = parse(task.getCpu());
+        if (taskCpu != null) {
+            return taskCpu;
+        }
+        long cpu = 0;
+        for (ContainerDefinition container: definition.getContainerDefinitions()) {
+            cpu += container.getCpu() != null ? container.getCpu() : 0;
+        }
+        return cpu;
+    }
+
+    private static long reservedMemory(Task task, TaskDefinition definition) {
+        Long taskMemory = parse(task.getMemory());
+        if (taskMemory != null) {
+            return taskMemory;
+        }
+        long memory = 0;
+        for (ContainerDefinition container: definition.getContainerDefinitions()) {
+            if (container.getMemoryReservation() != null) {
+                memory += container.getMemoryReservation();
+            } else if (container.getMemory() != null) {
+                memory += container.getMemory();
+            }
+        }
+        return memory;
+    }
+
+    private static Long parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Map<String, InstanceTypeInfo> describeInstanceTypes(String... instanceTypes) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String instanceType: instanceTypes) {
+            distinct.add(instanceType);
+        }
+        Map<String, InstanceTypeInfo> types = new HashMap<>();
+        try {
+            for (InstanceTypeInfo info: ec2Client.describeInstanceTypes(new DescribeInstanceTypesRequest()
+                .withInstanceTypes(distinct)).getInstanceTypes()) {
+                types.put(info.getInstanceType(), info);
+            }
+        } catch (AmazonServiceException e) {
+            logger.addLogEntry("... Unable to describe instance types: " + e.getMessage());
+        }
+        return types;
+    }
+
+    private static long value(List<Resource> resources, String name) {
+        if (resources != null) {
+            for (Resource resource: resources) {
+                if (name.equals(resource.getName()) && resource.getIntegerValue() != null) {
+                    return resource.getIntegerValue();
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static String attribute(ContainerInstance instance, String name) {
+        if (instance.getAttributes() != null) {
+            for (Attribute attribute: instance.getAttributes()) {
+                if (name.equals(attribute.getName())) {
+                    return attribute.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    static class TaskReservation {
+        private final long cpu;
+        private final long memory;
+        private final String memberOf;
+        private final String distinctGroup;
+
+        /**
+         * @param memberOf the task's memberOf expressions; tasks only share an instance when these match
+         * @param distinctGroup the service group the task must not share an instance with, or null
+         */
+        TaskReservation(long cpu, long memory, String memberOf, String distinctGroup) {
+            this.cpu = cpu;
+            this.memory = memory;
+            this.memberOf = memberOf;
+            this.distinctGroup = distinctGroup;
+        }
+    }
+
+    private static class PlannedInstance {
+        private final String memberOf;
+        private final Set<String> groups = new HashSet<>();
+        private long cpu;
+        private long memory;
+
+        PlannedInstance(String memberOf) {
+            this.memberOf = memberOf;
+        }
+
+        boolean fits(TaskReservation task, double cpuPerInstance, double memoryPerInstance) {
+            return memberOf.equals(task.memberOf)
+                && (task.distinctGroup == null || !groups.contains(task.distinctGroup))
+                && cpu + task.cpu <= cpuPerInstance
+                && memory + task.memory <= memoryPerInstance;
+        }
+
+        void place(TaskReservation task) {
+            cpu += task.cpu;
+            memory += task.memory;
+            if (task.distinctGroup != null) {
+                groups.add(task.distinctGroup);
+            }
+        }
+    }
+}
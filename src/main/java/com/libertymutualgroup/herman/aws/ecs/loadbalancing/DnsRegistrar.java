@@ -20,9 +20,9 @@ import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import org.apache.commons.lang3.StringUtils;
 
 import java.nio.charset.Charset;
@@ -55,7 +55,7 @@ public class DnsRegistrar {
             String dnsBrokerUpdatesJson = new String(invokeResult.getPayload().array(), Charset.forName("UTF-8"));
             List<String> updates;
             try {
-                updates = new ObjectMapper()
+                updates = ObjectMappers.json()
                     .readValue(dnsBrokerUpdatesJson, new TypeReference<List<String>>() {});
             } catch (Exception e) {
                 throw new RuntimeException("Unable to parse broker updates from: " + dnsBrokerUpdatesJson, e);
@@ -79,7 +79,7 @@ public class DnsRegistrar {
             dnsBrokerInvokeRequest = new InvokeRequest()
                 .withFunctionName(dnsLambda)
                 .withInvocationType(InvocationType.RequestResponse)
-                .withPayload(new ObjectMapper().writeValueAsString(dnsBrokerRequest));
+                .withPayload(ObjectMappers.json().writeValueAsString(dnsBrokerRequest));
         } catch (Exception ex) {
             throw new AwsExecException("Error building invoke request", ex);
         }
@@ -18,7 +18,8 @@ package com.libertymutualgroup.herman.aws.ecs.loadbalancing;
 import com.amazonaws.services.ecs.AmazonECS;
 import com.amazonaws.services.ecs.model.DeleteServiceRequest;
 import com.amazonaws.services.ecs.model.DescribeServicesRequest;
-import com.amazonaws.services.ecs.model.DescribeServicesResult;
+import com.amazonaws.services.ecs.model.ListClustersRequest;
+import com.amazonaws.services.ecs.model.ListClustersResult;
 import com.amazonaws.services.ecs.model.Service;
 import com.amazonaws.services.ecs.model.ServiceNotActiveException;
 import com.amazonaws.services.ecs.model.UpdateServiceRequest;
@@ -27,97 +28,174 @@ import com.libertymutualgroup.herman.logging.HermanLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Removes copies of a service from clusters other than the one it is being deployed to. Clusters are checked
+ * concurrently, and the copies found are shut down and deleted in parallel.
+ */
 public class ServicePurger {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ServicePurger.class);
     private static final String INTERRUPTED_WHILE_POLLING = "Interrupted while polling";
+    static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final long INITIAL_POLL_INTERVAL_MS = 1000;
+    private static final long MAX_POLL_INTERVAL_MS = 5000;
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
     private AmazonECS ecsClient;
     private HermanLogger buildLogger;
+    private int maxConcurrency;
+    private long initialPollIntervalMs;
+    private long maxPollIntervalMs;
 
     public ServicePurger(AmazonECS ecsClient, HermanLogger buildLogger) {
+        this(ecsClient, buildLogger, DEFAULT_MAX_CONCURRENCY, INITIAL_POLL_INTERVAL_MS, MAX_POLL_INTERVAL_MS);
+    }
+
+    ServicePurger(AmazonECS ecsClient, HermanLogger buildLogger, int maxConcurrency, long initialPollIntervalMs,
+        long maxPollIntervalMs) {
         this.ecsClient = ecsClient;
         this.buildLogger = buildLogger;
+        this.maxConcurrency = maxConcurrency;
+        this.initialPollIntervalMs = initialPollIntervalMs;
+        this.maxPollIntervalMs = maxPollIntervalMs;
     }
 
     public void purgeOtherClusters(String targetCluster, String serviceName) {
+        waitForPurge(purgeOtherClustersAsync(targetCluster, serviceName));
+    }
+
+    /**
+     * Starts purging the service from every other cluster and returns without waiting, so the purge can overlap with
+     * the deployment to the target cluster. Use {@link #waitForPurge} to wait for it and surface failures.
+     */
+    public CompletableFuture<Void> purgeOtherClustersAsync(String targetCluster, String serviceName) {
         buildLogger.addLogEntry("Checking other clusters for app");
-        List<String> clusters = ecsClient.listClusters().getClusterArns();
-        for (String clusterArn : clusters) {
+        List<String> otherClusters = new ArrayList<>();
+        for (String clusterArn : listClusters()) {
             if (!clusterArn.contains(targetCluster)) {
-                DescribeServicesResult svcsResult = ecsClient
-                    .describeServices(new DescribeServicesRequest().withCluster(clusterArn).withServices(serviceName));
-                if (!svcsResult.getServices().isEmpty()) {
-                    ServicePurger purger = new ServicePurger(ecsClient, buildLogger);
+                otherClusters.add(clusterArn);
+            }
+        }
+        if (otherClusters.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrency, otherClusters.size()),
+            runnable -> {
+                Thread thread = new Thread(runnable, "service-purger-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        List<CompletableFuture<Void>> purges = new ArrayList<>();
+        for (String clusterArn : otherClusters) {
+            purges.add(CompletableFuture.runAsync(() -> {
+                if (isActiveIn(clusterArn, serviceName)) {
                     buildLogger.addLogEntry("Moving app to " + targetCluster);
                     buildLogger.addLogEntry("Clearing service from " + clusterArn);
-                    purger.shutdownAndDeleteService(clusterArn, serviceName);
+                    shutdownAndDeleteService(clusterArn, serviceName);
                 }
+            }, executor));
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(purges.toArray(new CompletableFuture<?>[0]));
+        all.whenComplete((result, error) -> executor.shutdown());
+        return all;
+    }
+
+    public void waitForPurge(CompletableFuture<Void> purge) {
+        try {
+            purge.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new AwsExecException(e);
         }
     }
 
+    private List<String> listClusters() {
+        List<String> clusters = new ArrayList<>();
+        ListClustersRequest request = new ListClustersRequest();
+        do {
+            ListClustersResult result = ecsClient.listClusters(request);
+            clusters.addAll(result.getClusterArns());
+            request.setNextToken(result.getNextToken());
+        } while (request.getNextToken() != null);
+        return clusters;
+    }
+
+    private boolean isActiveIn(String cluster, String service) {
+        for (Service s : ecsClient.describeServices(
+            new DescribeServicesRequest().withCluster(cluster).withServices(service)).getServices()) {
+            if (!"INACTIVE".equalsIgnoreCase(s.getStatus())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     private void shutdownAndDeleteService(String cluster, String service) {
         try {
             ecsClient.updateService(
                 new UpdateServiceRequest().withService(service).withCluster(cluster).withDesiredCount(0));
             waitForShutdown(cluster, service);
-            buildLogger.addLogEntry("... Deleting app");
+            buildLogger.addLogEntry("... Deleting app from " + cluster);
             ecsClient.deleteService(new DeleteServiceRequest().withCluster(cluster).withService(service));
             waitForServiceDelete(cluster, service);
         } catch (ServiceNotActiveException e) {
             LOGGER.debug("Error updating service: " + service, e);
-            buildLogger.addLogEntry("... Service not active, nothing to shutdown");
+            buildLogger.addLogEntry("... Service not active in " + cluster + ", nothing to shutdown");
         }
     }
 
-
     private void waitForShutdown(String cluster, String service) {
-        for (int i = 0; i < 60; i++) {
-            Service s = ecsClient
-                .describeServices(new DescribeServicesRequest().withCluster(cluster).withServices(service))
-                .getServices().get(0);
+        waitFor(cluster, service, s -> {
             if (s.getRunningCount() == 0) {
-                return;
-            } else {
-                try {
-                    buildLogger
-                        .addLogEntry("... Waiting for shutdown to convert, still running: " + s.getRunningCount());
-                    Thread.sleep(5000);
-
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    buildLogger.addLogEntry(INTERRUPTED_WHILE_POLLING);
-                    throw new AwsExecException(INTERRUPTED_WHILE_POLLING);
-                }
+                return true;
             }
-
-        }
+            buildLogger.addLogEntry("... Waiting for shutdown in " + cluster + " to convert, still running: "
+                + s.getRunningCount());
+            return false;
+        });
     }
 
     private void waitForServiceDelete(String cluster, String service) {
-        buildLogger.addLogEntry("... Waiting for service delete");
-        for (int i = 0; i < 60; i++) {
+        buildLogger.addLogEntry("... Waiting for service delete from " + cluster);
+        waitFor(cluster, service, s -> {
+            buildLogger.addLogEntry("... Service state in " + cluster + ": " + s.getStatus());
+            return !("DRAINING".equalsIgnoreCase(s.getStatus()) || "ACTIVE".equalsIgnoreCase(s.getStatus()));
+        });
+    }
+
+    private void waitFor(String cluster, String service, Predicate<Service> done) {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        long interval = initialPollIntervalMs;
+        while (System.currentTimeMillis() < deadline) {
             Service s = ecsClient
                 .describeServices(new DescribeServicesRequest().withCluster(cluster).withServices(service))
                 .getServices().get(0);
-            buildLogger.addLogEntry("... Service state: " + s.getStatus());
-            if (!("DRAINING".equalsIgnoreCase(s.getStatus()) || "ACTIVE".equalsIgnoreCase(s.getStatus()))) {
+            if (done.test(s)) {
                 return;
-            } else {
-                try {
-                    Thread.sleep(5000);
-
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    buildLogger.addLogEntry(INTERRUPTED_WHILE_POLLING);
-                    throw new AwsExecException(INTERRUPTED_WHILE_POLLING);
-                }
             }
-
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                buildLogger.addLogEntry(INTERRUPTED_WHILE_POLLING);
+                throw new AwsExecException(INTERRUPTED_WHILE_POLLING);
+            }
+            interval = Math.min(interval * 2, maxPollIntervalMs);
         }
     }
-
 }
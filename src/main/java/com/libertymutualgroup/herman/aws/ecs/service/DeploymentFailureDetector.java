@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.service;
+
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.Container;
+import com.amazonaws.services.ecs.model.DescribeTasksRequest;
+import com.amazonaws.services.ecs.model.DesiredStatus;
+import com.amazonaws.services.ecs.model.ListTasksRequest;
+import com.amazonaws.services.ecs.model.ListTasksResult;
+import com.amazonaws.services.ecs.model.Task;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Watches for tasks of a newly deployed task definition that stop during the deployment. Once the configured number
+ * of them has stopped the deployment is considered crash-looping, so the caller can roll back without waiting for
+ * the full stabilization timeout.
+ */
+public class DeploymentFailureDetector {
+
+    public static final int DEFAULT_STOPPED_TASK_THRESHOLD = 3;
+    private static final int DESCRIBE_TASKS_BATCH_SIZE = 100;
+    private static final long CLOCK_SKEW_MS = 30000;
+
+    private final AmazonECS ecsClient;
+    private final HermanLogger logger;
+    private final String cluster;
+    private final String serviceName;
+    private final String taskDefinitionArn;
+    private final int threshold;
+    private final Date since;
+    private final Set<String> seenTaskArns = new HashSet<>();
+    private int stoppedTasks;
+
+    /**
+     * @param threshold number of stopped tasks that marks the deployment as failed; zero or less disables detection
+     */
+    public DeploymentFailureDetector(AmazonECS ecsClient, HermanLogger logger, String cluster, String serviceName,
+        String taskDefinitionArn, int threshold) {
+        this.ecsClient = ecsClient;
+        this.logger = logger;
+        this.cluster = cluster;
+        this.serviceName = serviceName;
+        this.taskDefinitionArn = taskDefinitionArn;
+        this.threshold = threshold;
+        // Stopped tasks linger in ECS for a while; only count the ones started by this deployment
+        this.since = new Date(System.currentTimeMillis() - CLOCK_SKEW_MS);
+    }
+
+    /**
+     * Checks for newly stopped tasks, logging their stop reasons and exit codes.
+     *
+     * @return true once the stopped task threshold has been reached
+     */
+    public boolean hasFailed() {
+        if (threshold <= 0) {
+            return false;
+        }
+        if (stoppedTasks >= threshold) {
+            return true;
+        }
+
+        List<String> newTaskArns = new ArrayList<>();
+        String nextToken = null;
+        do {
+            ListTasksResult result = ecsClient.listTasks(new ListTasksRequest()
+                .withCluster(cluster)
+                .withServiceName(serviceName)
+                .withDesiredStatus(DesiredStatus.STOPPED)
+                .withNextToken(nextToken));
+            for (String taskArn : result.getTaskArns()) {
+                if (seenTaskArns.add(taskArn)) {
+                    newTaskArns.add(taskArn);
+                }
+            }
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+
+        for (int i = 0; i < newTaskArns.size(); i += DESCRIBE_TASKS_BATCH_SIZE) {
+            List<String> batch = newTaskArns.subList(i, Math.min(i + DESCRIBE_TASKS_BATCH_SIZE, newTaskArns.size()));
+            for (Task task : ecsClient.describeTasks(new DescribeTasksRequest().withCluster(cluster).withTasks(batch))
+                .getTasks()) {
+                if (isFromThisDeployment(task)) {
+                    stoppedTasks++;
+                    logStoppedTask(task);
+                }
+            }
+        }
+
+        if (stoppedTasks >= threshold) {
+            logger.addLogEntry(String.format("%d tasks of %s stopped during the deployment - treating it as failed",
+                stoppedTasks, taskDefinitionArn));
+            return true;
+        }
+        return false;
+    }
+
+    public int getStoppedTasks() {
+        return stoppedTasks;
+    }
+
+    private boolean isFromThisDeployment(Task task) {
+        return Objects.equals(task.getTaskDefinitionArn(), taskDefinitionArn)
+            && (task.getCreatedAt() == null || !task.getCreatedAt().before(since));
+    }
+
+    private void logStoppedTask(Task task) {
+        logger.addLogEntry("Task stopped: " + task.getTaskArn() + "  Reason: " + task.getStoppedReason());
+        for (Container container : task.getContainers()) {
+            String code = container.getExitCode() != null ? container.getExitCode() + "" : "N/A";
+            String reason = container.getReason() != null ? "  Reason: " + container.getReason() : "";
+            logger.addLogEntry("... Container: " + container.getName() + "  Code: " + code + reason);
+        }
+    }
+}
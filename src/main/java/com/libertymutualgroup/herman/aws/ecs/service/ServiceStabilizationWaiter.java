@@ -0,0 +1,255 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.service;
+
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.DescribeServicesRequest;
+import com.amazonaws.services.ecs.model.Deployment;
+import com.amazonaws.services.ecs.model.LoadBalancer;
+import com.amazonaws.services.ecs.model.Service;
+import com.amazonaws.services.ecs.model.ServiceEvent;
+import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancing;
+import com.amazonaws.services.elasticloadbalancingv2.model.DescribeTargetHealthRequest;
+import com.amazonaws.services.elasticloadbalancingv2.model.TargetHealthDescription;
+import com.amazonaws.services.elasticloadbalancingv2.model.TargetHealthStateEnum;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Polls an ECS service until its deployment settles. Polling starts fast and backs off with jitter, every service
+ * event published since the previous poll is logged, and stability is judged from the deployment objects rather than
+ * from event text. With {@link #withTargetHealthCheck} a service behind target groups is only steady once its targets
+ * pass their health checks as well.
+ */
+public class ServiceStabilizationWaiter {
+
+    static final long DEFAULT_INITIAL_INTERVAL_MS = 1000;
+    static final long DEFAULT_MAX_INTERVAL_MS = 15000;
+    private static final double BACKOFF_MULTIPLIER = 1.5;
+    private static final double JITTER = 0.2;
+    private static final String PRIMARY = "PRIMARY";
+    private static final String INTERRUPTED_WHILE_POLLING = "Interrupted while polling";
+
+    private final AmazonECS ecsClient;
+    private final HermanLogger logger;
+    private final String cluster;
+    private final String serviceName;
+    private final long initialIntervalMs;
+    private final long maxIntervalMs;
+    private final Set<String> seenEventIds = new HashSet<>();
+    private final Map<String, String> lastTargetStatus = new HashMap<>();
+    private boolean eventCursorInitialized;
+    private AmazonElasticLoadBalancing elbClient;
+
+    public ServiceStabilizationWaiter(AmazonECS ecsClient, HermanLogger logger, String cluster, String serviceName) {
+        this(ecsClient, logger, cluster, serviceName, DEFAULT_INITIAL_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS);
+    }
+
+    ServiceStabilizationWaiter(AmazonECS ecsClient, HermanLogger logger, String cluster, String serviceName,
+        long initialIntervalMs, long maxIntervalMs) {
+        this.ecsClient = ecsClient;
+        this.logger = logger;
+        this.cluster = cluster;
+        this.serviceName = serviceName;
+        this.initialIntervalMs = initialIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+    }
+
+    public ServiceStabilizationWaiter withTargetHealthCheck(AmazonElasticLoadBalancing elbClient) {
+        this.elbClient = elbClient;
+        return this;
+    }
+
+    /**
+     * Waits until ECS has picked up the requested task definition as the service's PRIMARY deployment.
+     *
+     * @return false if the deployment was not initiated within the timeout
+     */
+    public boolean waitForInitialization(String taskDefinitionArn, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long interval = initialIntervalMs;
+        boolean waitLogged = false;
+        while (true) {
+            Service service = describeService();
+            logNewEvents(service);
+            Deployment primary = getPrimaryDeployment(service);
+            if (primary != null && Objects.equals(primary.getTaskDefinition(), taskDefinitionArn)) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            if (!waitLogged) {
+                logger.addLogEntry("Waiting for start...");
+                waitLogged = true;
+            }
+            interval = sleep(interval, deadline);
+        }
+    }
+
+    /**
+     * Waits until the service has a single PRIMARY deployment whose running count matches its desired count, and (when
+     * checking target health) every target group it is attached to has that many healthy targets.
+     *
+     * @return false if the service did not stabilize within the timeout
+     */
+    public boolean waitForSteadyState(long timeoutMs) {
+        return waitForSteadyState(timeoutMs, null);
+    }
+
+    /**
+     * Same as {@link #waitForSteadyState(long)}, but gives up early once the failure detector reports the deployment
+     * as failed.
+     */
+    public boolean waitForSteadyState(long timeoutMs, DeploymentFailureDetector failureDetector) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long interval = initialIntervalMs;
+        String lastStatus = null;
+        while (true) {
+            Service service = describeService();
+            logNewEvents(service);
+
+            String status = "Status:" + service.getStatus() + "  Desired:" + service.getDesiredCount()
+                + "  Pending:" + service.getPendingCount() + "  Running:" + service.getRunningCount()
+                + "  Deployments:" + service.getDeployments().size();
+            if (!Objects.equals(status, lastStatus)) {
+                logger.addLogEntry(status);
+                lastStatus = status;
+            }
+
+            if (isSteady(service) && areTargetsHealthy(service)) {
+                logger.addLogEntry("App has stabilized");
+                return true;
+            }
+            if (failureDetector != null && failureDetector.hasFailed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            interval = sleep(interval, deadline);
+        }
+    }
+
+    public Service describeService() {
+        List<Service> services = ecsClient.describeServices(
+            new DescribeServicesRequest().withCluster(cluster).withServices(serviceName)).getServices();
+        if (services.isEmpty()) {
+            throw new AwsExecException("Service " + serviceName + " not found in cluster " + cluster);
+        }
+        return services.get(0);
+    }
+
+    public static boolean isSteady(Service service) {
+        Deployment primary = getPrimaryDeployment(service);
+        return primary != null
+            && service.getDeployments().size() == 1
+            && Objects.equals(primary.getRunningCount(), primary.getDesiredCount())
+            && Objects.equals(primary.getPendingCount(), 0)
+            && Objects.equals(service.getRunningCount(), service.getDesiredCount());
+    }
+
+    private boolean areTargetsHealthy(Service service) {
+        if (elbClient == null) {
+            return true;
+        }
+        Set<String> targetGroupArns = new LinkedHashSet<>();
+        for (LoadBalancer loadBalancer : service.getLoadBalancers()) {
+            if (loadBalancer.getTargetGroupArn() != null) {
+                targetGroupArns.add(loadBalancer.getTargetGroupArn());
+            }
+        }
+
+        boolean healthy = true;
+        for (String targetGroupArn : targetGroupArns) {
+            List<TargetHealthDescription> targets = elbClient.describeTargetHealth(
+                new DescribeTargetHealthRequest().withTargetGroupArn(targetGroupArn)).getTargetHealthDescriptions();
+            int healthyTargets = 0;
+            int pendingTargets = 0;
+            for (TargetHealthDescription target : targets) {
+                String state = target.getTargetHealth().getState();
+                if (TargetHealthStateEnum.Healthy.toString().equals(state)) {
+                    healthyTargets++;
+                } else if (TargetHealthStateEnum.Initial.toString().equals(state)
+                    || TargetHealthStateEnum.Unhealthy.toString().equals(state)) {
+                    pendingTargets++;
+                }
+            }
+
+            String status = "Targets Healthy:" + healthyTargets + "  Initial/Unhealthy:" + pendingTargets;
+            if (!Objects.equals(status, lastTargetStatus.put(targetGroupArn, status))) {
+                logger.addLogEntry(status + "  (" + targetGroupArn + ")");
+            }
+            // Draining targets belong to the tasks being replaced, so only new targets still in their checks count
+            healthy &= pendingTargets == 0 && healthyTargets >= service.getDesiredCount();
+        }
+        return healthy;
+    }
+
+    static Deployment getPrimaryDeployment(Service service) {
+        for (Deployment deployment : service.getDeployments()) {
+            if (PRIMARY.equals(deployment.getStatus())) {
+                return deployment;
+            }
+        }
+        return null;
+    }
+
+    private void logNewEvents(Service service) {
+        List<ServiceEvent> newEvents = new ArrayList<>();
+        for (ServiceEvent event : service.getEvents()) {
+            if (seenEventIds.add(event.getId())) {
+                newEvents.add(event);
+            }
+        }
+        if (!eventCursorInitialized) {
+            // Only the latest event predating the wait is relevant; older history was logged by earlier deploys
+            eventCursorInitialized = true;
+            if (!newEvents.isEmpty()) {
+                logger.addLogEntry(newEvents.get(0).getMessage());
+            }
+            return;
+        }
+        // ECS returns events newest first
+        Collections.reverse(newEvents);
+        for (ServiceEvent event : newEvents) {
+            logger.addLogEntry(event.getMessage());
+        }
+    }
+
+    private long sleep(long interval, long deadline) {
+        double jitter = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        long sleepMs = Math.min((long) (interval * jitter), Math.max(0, deadline - System.currentTimeMillis()));
+        try {
+            Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException(INTERRUPTED_WHILE_POLLING);
+        }
+        return Math.min((long) (interval * BACKOFF_MULTIPLIER), maxIntervalMs);
+    }
+}
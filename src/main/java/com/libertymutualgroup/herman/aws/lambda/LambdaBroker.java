@@ -15,20 +15,15 @@
  */
 package com.libertymutualgroup.herman.aws.lambda;
 
-import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.cloudwatchevents.AmazonCloudWatchEvents;
-import com.amazonaws.services.cloudwatchevents.AmazonCloudWatchEventsClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.Projection;
 import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.AmazonEC2Exception;
 import com.amazonaws.services.ec2.model.CreateSecurityGroupRequest;
 import com.amazonaws.services.ec2.model.CreateSecurityGroupResult;
@@ -38,15 +33,11 @@ import com.amazonaws.services.ec2.model.DescribeSecurityGroupsResult;
 import com.amazonaws.services.ec2.model.Filter;
 import com.amazonaws.services.ecs.model.KeyValuePair;
 import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
-import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClientBuilder;
 import com.amazonaws.services.identitymanagement.model.Role;
 import com.amazonaws.services.kinesis.AmazonKinesis;
-import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
 import com.amazonaws.services.kms.AWSKMS;
-import com.amazonaws.services.kms.AWSKMSClientBuilder;
 import com.amazonaws.services.kms.model.Tag;
 import com.amazonaws.services.lambda.AWSLambda;
-import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
 import com.amazonaws.services.lambda.model.AddPermissionRequest;
 import com.amazonaws.services.lambda.model.CreateFunctionRequest;
 import com.amazonaws.services.lambda.model.CreateFunctionResult;
@@ -66,15 +57,13 @@ import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationRequest;
 import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationResult;
 import com.amazonaws.services.lambda.model.VpcConfig;
 import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.amazonaws.util.IOUtils;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PushType;
@@ -93,6 +82,7 @@ import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.common.CommonTaskProperties;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -139,7 +129,7 @@ public class LambdaBroker {
     private AmazonDynamoDB dynamoDbClient;
     private AmazonCloudWatchEvents cloudWatchEventsClient;
 
-    private ObjectMapper mapper = new ObjectMapper();
+    private ObjectMapper mapper = ObjectMappers.json();
 
     public LambdaBroker(LambdaPushContext context, HermanLogger buildLogger, Regions region) {
         this.context = context;
@@ -150,61 +140,18 @@ public class LambdaBroker {
         this.region = region;
 
         credentials = this.context.getSessionCredentials();
-        ClientConfiguration config = BambooCredentialsHandler.getConfiguration();
-
-        this.lambdaClient = AWSLambdaClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(credentials))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
-
-        this.iamClient = AmazonIdentityManagementClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(credentials))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
-
-        this.kmsClient = AWSKMSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(credentials))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
-
-        this.ec2Client = AmazonEC2ClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(credentials))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
-
-        this.sqsClient = AmazonSQSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
-
-        this.snsClient = AmazonSNSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
-
-        this.dynamoDbClient = AmazonDynamoDBClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
-
-        this.kinesisClient = AmazonKinesisClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
-
-        this.cloudWatchEventsClient = AmazonCloudWatchEventsClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(config)
-            .withRegion(region)
-            .build();
+        AwsClientRegistry clients = AwsClientRegistry.getInstance(credentials, region,
+            BambooCredentialsHandler.getConfiguration());
+        clients.getRateLimiter().configure(this.taskProperties.getApiRateLimits());
+        this.lambdaClient = clients.getLambdaClient();
+        this.iamClient = clients.getIamClient();
+        this.kmsClient = clients.getKmsClient();
+        this.ec2Client = clients.getEc2Client();
+        this.sqsClient = clients.getSqsClient();
+        this.snsClient = clients.getSnsClient();
+        this.dynamoDbClient = clients.getDynamoDbClient();
+        this.kinesisClient = clients.getKinesisClient();
+        this.cloudWatchEventsClient = clients.getCloudWatchEventsClient();
     }
 
     public void brokerLambda() throws IOException {
@@ -514,11 +461,8 @@ public class LambdaBroker {
                 throw new AwsExecException("No Lambda template provided!");
             }
 
-            ObjectMapper mapper = isJson ? new ObjectMapper() : new ObjectMapper(new YAMLFactory());
-            mapper.addMixIn(KeySchemaElement.class, DynamoDBMixIns.class);
-            mapper.addMixIn(StreamSpecification.class, DynamoDBMixIns.class);
-            mapper.addMixIn(AttributeDefinition.class, DynamoDBMixIns.class);
-            mapper.addMixIn(Projection.class, DynamoDBMixIns.class);
+            ObjectMapper mapper = ObjectMappers.withMixIns(isJson, ObjectMappers.mixIns(DynamoDBMixIns.class,
+                KeySchemaElement.class, StreamSpecification.class, AttributeDefinition.class, Projection.class));
 
             definition = mapper.readValue(this.context.getBambooPropertyHandler().mapInProperties(template),
                 LambdaInjectConfiguration.class);
@@ -16,12 +16,14 @@
 package com.libertymutualgroup.herman.cli;
 
 import com.amazonaws.regions.Regions;
+import com.libertymutualgroup.herman.aws.AwsApiMeter;
 import com.libertymutualgroup.herman.cli.command.CftPushCommand;
 import com.libertymutualgroup.herman.cli.command.ECRLoginCommand;
 import com.libertymutualgroup.herman.cli.command.ECRRepoCreateCommand;
 import com.libertymutualgroup.herman.cli.command.ECRRepoTrimCommand;
 import com.libertymutualgroup.herman.cli.command.ECSClusterPushCommand;
 import com.libertymutualgroup.herman.cli.command.ECSPushCommand;
+import com.libertymutualgroup.herman.cli.command.ECSTaskDefinitionSweepCommand;
 import com.libertymutualgroup.herman.cli.command.LambdaPushCommand;
 import com.libertymutualgroup.herman.cli.command.S3CreateCommand;
 import com.libertymutualgroup.herman.logging.SysoutLogger;
@@ -38,6 +40,7 @@ import static picocli.CommandLine.RunAll;
 @Command(description = "Runs Herman the AWS Task Helper", name = "herman", mixinStandardHelpOptions = true, versionProvider = Cli.ManifestVersionProvider.class,
     subcommands = {
         ECSPushCommand.class,
+        ECSTaskDefinitionSweepCommand.class,
         ECSClusterPushCommand.class,
         ECRRepoCreateCommand.class,
         ECRLoginCommand.class,
@@ -61,12 +64,18 @@ public class Cli implements Callable<Void> {
     @Option(names = {"-c", "--config"}, description = "Configuration S3 bucket name", showDefaultValue = Help.Visibility.ALWAYS)
     private String configurationBucket = CONFIG_BUCKET_TEMPLATE;
 
+    @Option(names = {"--aws-call-report"}, description = "File to export AWS API call counts and latencies to as JSON")
+    private String awsCallReport;
+
     public static void main(String[] args) {
         CommandLine cmd = new CommandLine(new Cli());
         cmd.parseWithHandler(new RunAll(), args);
     }
 
     @Override public Void call() {
+        if (awsCallReport != null) {
+            System.setProperty(AwsApiMeter.REPORT_PATH_PROPERTY, awsCallReport);
+        }
         return null;
     }
 
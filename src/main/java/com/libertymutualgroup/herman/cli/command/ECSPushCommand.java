@@ -16,6 +16,7 @@
 package com.libertymutualgroup.herman.cli.command;
 
 import com.libertymutualgroup.herman.cli.Cli;
+import com.libertymutualgroup.herman.task.cli.ecs.ECSBatchPushTask;
 import com.libertymutualgroup.herman.task.cli.ecs.ECSPushTask;
 import com.libertymutualgroup.herman.task.cli.ecs.ECSPushTaskConfiguration;
 
@@ -45,10 +46,15 @@ public class ECSPushCommand implements Runnable {
     @Option(names = {"-v", "-vars", "--variables"}, description = "Custom build variables to be injected. <KEY>=<VALUE>")
     private Map<String, String> customVariables = new HashMap<>();
 
+    @Option(names = {"-m", "--manifest"}, description = "YAML manifest listing app directories to push together, instead of --directory")
+    private String manifest;
+
+    @Option(names = {"-p", "--parallelism"}, description = "Number of apps from the manifest to push at once", showDefaultValue = Help.Visibility.ALWAYS)
+    private int parallelism = ECSBatchPushTask.DEFAULT_PARALLELISM;
+
     @Override
     public void run() {
         String absPath = new File(this.rootPath).getAbsolutePath();
-        cli.getLogger().addLogEntry("Starting ECS Push...");
         ECSPushTaskConfiguration config = new ECSPushTaskConfiguration()
             .withRootPath(absPath)
             .withTimeout(timeout)
@@ -57,6 +63,13 @@ public class ECSPushCommand implements Runnable {
             .withCustomConfigurationBucket(cli.getCustomConfigurationBucket())
             .withCustomVariables(customVariables);
 
+        if (manifest != null) {
+            cli.getLogger().addLogEntry("Starting ECS Batch Push...");
+            new ECSBatchPushTask(cli.getLogger()).runTask(manifest, parallelism, config);
+            return;
+        }
+
+        cli.getLogger().addLogEntry("Starting ECS Push...");
         ECSPushTask ecsPush = new ECSPushTask(cli.getLogger());
         ecsPush.runTask(config);
     }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.cli.command;
+
+import com.libertymutualgroup.herman.cli.Cli;
+import com.libertymutualgroup.herman.task.cli.ecs.ECSTaskDefinitionSweepTask;
+import com.libertymutualgroup.herman.task.cli.ecs.ECSTaskDefinitionSweepTaskConfiguration;
+
+import static picocli.CommandLine.Command;
+import static picocli.CommandLine.Help;
+import static picocli.CommandLine.Option;
+import static picocli.CommandLine.ParentCommand;
+
+@Command(name = "ecs-task-definition-sweep", mixinStandardHelpOptions = true)
+public class ECSTaskDefinitionSweepCommand implements Runnable {
+    @ParentCommand
+    private Cli cli;
+
+    @Option(names = {"-f", "--family-prefix"}, description = "Only sweep task definition families starting with this prefix")
+    private String familyPrefix;
+
+    @Option(names = {"-k", "--keep"}, description = "Newest revisions to keep per family, besides those used by services", showDefaultValue = Help.Visibility.ALWAYS)
+    private int revisionsToKeep = 5;
+
+    @Option(names = {"-p", "--parallelism"}, description = "Number of families to process at once", showDefaultValue = Help.Visibility.ALWAYS)
+    private int parallelism = 4;
+
+    @Option(names = {"--deregister"}, description = "Deregister stale revisions; without this, only log the revisions that would be deregistered")
+    private boolean deregister;
+
+    @Override
+    public void run() {
+        cli.getLogger().addLogEntry("Starting ECS Task Definition Sweep...");
+        ECSTaskDefinitionSweepTaskConfiguration config = new ECSTaskDefinitionSweepTaskConfiguration()
+            .withRegion(cli.getRegion())
+            .withFamilyPrefix(familyPrefix)
+            .withRevisionsToKeep(revisionsToKeep)
+            .withParallelism(parallelism)
+            .withDryRun(!deregister);
+        ECSTaskDefinitionSweepTask sweepTask = new ECSTaskDefinitionSweepTask(cli.getLogger());
+        sweepTask.runTask(config);
+    }
+}
@@ -17,8 +17,7 @@ package com.libertymutualgroup.herman.cli.command;
 
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
@@ -28,6 +27,7 @@ import com.libertymutualgroup.herman.cli.Cli;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.common.CommonTaskProperties;
 import com.libertymutualgroup.herman.util.ConfigurationUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import com.libertymutualgroup.herman.util.PropertyHandlerUtil;
 
 import java.io.File;
@@ -61,32 +61,38 @@ public class LambdaPushCommand implements Runnable {
 
         final AWSCredentials sessionCredentials = CredentialsHandler.getCredentials();
         final Regions region = cli.getRegion();
-        final PropertyHandler handler = new PropertyHandlerUtil().getCliPropertyHandler(
-                sessionCredentials, cli.getLogger(), environmentName, absPath, customVariables
-        );
-        LambdaPushContext context = new LambdaPushContext()
-                .withSessionCredentials(sessionCredentials)
-                .withRootPath(absPath)
-                .withBambooPropertyHandler(handler)
-                .withLogger(cli.getLogger())
-                .withTaskProperties(getTaskProperties(sessionCredentials, cli.getLogger(), region, handler));
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials, region,
+                CredentialsHandler.getConfiguration());
+        try {
+            final PropertyHandler handler = new PropertyHandlerUtil().getCliPropertyHandler(
+                    sessionCredentials, cli.getLogger(), environmentName, absPath, customVariables
+            );
+            LambdaPushContext context = new LambdaPushContext()
+                    .withSessionCredentials(sessionCredentials)
+                    .withRootPath(absPath)
+                    .withBambooPropertyHandler(handler)
+                    .withLogger(cli.getLogger())
+                    .withTaskProperties(getTaskProperties(sessionCredentials, cli.getLogger(), region, handler));
 
-        LambdaBroker lambdaBroker = new LambdaBroker(context,
-                cli.getLogger(),
-                region);
+            LambdaBroker lambdaBroker = new LambdaBroker(context,
+                    cli.getLogger(),
+                    region);
 
-        try {
-            lambdaBroker.brokerLambda();
-        } catch (IOException e) {
-            throw new AwsExecException(e);
+            try {
+                lambdaBroker.brokerLambda();
+            } catch (IOException e) {
+                throw new AwsExecException(e);
+            }
+        } finally {
+            clientRegistry.getMeter().report(cli.getLogger());
+            clientRegistry.release();
         }
     }
 
     private CommonTaskProperties getTaskProperties(AWSCredentials sessionCredentials, HermanLogger hermanLogger, Regions region, PropertyHandler handler) {
         try {
             String lambdaCreateTaskPropertiesYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, hermanLogger, region);
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            return objectMapper.readValue(handler.mapInProperties(lambdaCreateTaskPropertiesYml), CommonTaskProperties.class);
+            return ObjectMappers.yaml().readValue(handler.mapInProperties(lambdaCreateTaskPropertiesYml), CommonTaskProperties.class);
         } catch (Exception ex) {
             throw new RuntimeException("Error getting Lambda Create Task Properties", ex);
         }
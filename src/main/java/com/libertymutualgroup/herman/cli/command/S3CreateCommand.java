@@ -18,6 +18,7 @@ package com.libertymutualgroup.herman.cli.command;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.aws.ecs.broker.s3.BucketMeta;
@@ -87,10 +88,18 @@ public class S3CreateCommand implements Runnable {
             properties = new S3CreateTaskProperties().withS3(brokerProperties);
         }
 
-        S3CreateContext s3CreateContext = new S3CreateContext().withPropertyHandler(propertyHandler).withLogger(logger).withRegion(region).withRootPath(absPath).withSessionCredentials(sessionCredentials).withTaskProperties(properties).withFileUtil(new FileUtil(absPath, logger));
+        BucketMeta meta;
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials, region,
+            CredentialsHandler.getConfiguration());
+        try {
+            S3CreateContext s3CreateContext = new S3CreateContext().withPropertyHandler(propertyHandler).withLogger(logger).withRegion(region).withRootPath(absPath).withSessionCredentials(sessionCredentials).withAwsClientConfig(CredentialsHandler.getConfiguration()).withTaskProperties(properties).withFileUtil(new FileUtil(absPath, logger));
 
-        S3Broker s3Broker = getBroker(s3CreateContext);
-        BucketMeta meta = s3Broker.brokerFromConfigurationFile();
+            S3Broker s3Broker = getBroker(s3CreateContext);
+            meta = s3Broker.brokerFromConfigurationFile();
+        } finally {
+            clientRegistry.getMeter().report(logger);
+            clientRegistry.release();
+        }
 
         logger.addLogEntry("S3 bucket name: " + meta.getName());
         logger.addLogEntry("S3 bucket region: " + meta.getRegion());
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.logging;
+
+/**
+ * Prefixes every entry, so output of concurrent pushes sharing one log can be told apart. Entries are written while
+ * holding the delegate's lock, so prefixed loggers on different threads can share a delegate that is not thread-safe.
+ */
+public class PrefixedLogger implements HermanLogger {
+
+    private final String prefix;
+    private final HermanLogger delegate;
+
+    public PrefixedLogger(String prefix, HermanLogger delegate) {
+        this.prefix = prefix;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void addLogEntry(String logEntry) {
+        synchronized (delegate) {
+            delegate.addLogEntry(prefix + logEntry);
+        }
+    }
+
+    @Override
+    public void addErrorLogEntry(String errorLogEntry) {
+        synchronized (delegate) {
+            delegate.addErrorLogEntry(prefix + errorLogEntry);
+        }
+    }
+
+    @Override
+    public void addErrorLogEntry(String errorLogEntry, Throwable exception) {
+        synchronized (delegate) {
+            delegate.addErrorLogEntry(prefix + errorLogEntry, exception);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import com.atlassian.bamboo.task.TaskResult;
 import com.atlassian.bamboo.task.TaskResultBuilder;
 import com.atlassian.bamboo.variable.CustomVariableContext;
 import com.libertymutualgroup.herman.aws.AbstractDeploymentTask;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.EcsPush;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
@@ -59,26 +60,33 @@ public class ECSPushTask extends AbstractDeploymentTask {
         buildLogger.addLogEntry("Starting Herman (version: " + getClass().getPackage().getImplementationVersion() + ") " + getClass().getName() + " in aws region: " + awsRegion.getName());
         final int timeout = Integer.parseInt(taskContext.getConfigurationMap().getOrDefault("timeout",
             String.valueOf(ECSPushTaskConfigurator.DEFAULT_TIMEOUT)));
-        final PropertyHandler handler = PropertyHandlerUtil
-            .getTaskContextPropertyHandler(taskContext, sessionCredentials, getCustomVariableContext());
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            awsRegion, BambooCredentialsHandler.getConfiguration());
+        try {
+            final PropertyHandler handler = PropertyHandlerUtil
+                .getTaskContextPropertyHandler(taskContext, sessionCredentials, getCustomVariableContext());
 
-        final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(sessionCredentials, buildLogger, awsRegion, handler);
-        if (taskProperties.getRdsCredentialBrokerImage() != null) {
-            handler.addProperty("herman.rdsCredentialBrokerImage", taskProperties.getRdsCredentialBrokerImage());
-        }
+            final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(sessionCredentials, buildLogger, awsRegion, handler);
+            if (taskProperties.getRdsCredentialBrokerImage() != null) {
+                handler.addProperty("herman.rdsCredentialBrokerImage", taskProperties.getRdsCredentialBrokerImage());
+            }
 
-        EcsPushContext context = new EcsPushContext()
-            .withLogger(buildLogger)
-            .withPropertyHandler(handler)
-            .withEnvName(taskContext.getDeploymentContext().getEnvironmentName())
-            .withSessionCredentials(sessionCredentials)
-            .withAwsClientConfig(BambooCredentialsHandler.getConfiguration())
-            .withRegion(awsRegion)
-            .withTimeout(timeout)
-            .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
-            .withTaskProperties(taskProperties);
-        EcsPush push = new EcsPush(context);
-        push.push();
+            EcsPushContext context = new EcsPushContext()
+                .withLogger(buildLogger)
+                .withPropertyHandler(handler)
+                .withEnvName(taskContext.getDeploymentContext().getEnvironmentName())
+                .withSessionCredentials(sessionCredentials)
+                .withAwsClientConfig(BambooCredentialsHandler.getConfiguration())
+                .withRegion(awsRegion)
+                .withTimeout(timeout)
+                .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
+                .withTaskProperties(taskProperties);
+            EcsPush push = new EcsPush(context);
+            push.push();
+        } finally {
+            clientRegistry.getMeter().report(buildLogger);
+            clientRegistry.release();
+        }
 
         spitAscii(buildLogger, taskContext.getRootDirectory().getAbsolutePath());
 
@@ -22,6 +22,7 @@ import com.atlassian.bamboo.task.TaskResult;
 import com.atlassian.bamboo.task.TaskResultBuilder;
 import com.atlassian.bamboo.variable.CustomVariableContext;
 import com.libertymutualgroup.herman.aws.AbstractDeploymentTask;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
@@ -59,22 +60,29 @@ public class ECSClusterPushTask extends AbstractDeploymentTask {
         buildLogger.addLogEntry("Starting Herman (version: " + getClass().getPackage().getImplementationVersion() + ") " + getClass().getName() + " in aws region: " + awsRegion.getName());
         final int timeout = Integer.parseInt(taskContext.getConfigurationMap().getOrDefault("timeout",
             String.valueOf(ECSClusterPushTaskConfigurator.DEFAULT_TIMEOUT)));
-        final PropertyHandler handler = PropertyHandlerUtil.getTaskContextPropertyHandler(
-            taskContext, sessionCredentials, getCustomVariableContext());
-        final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(sessionCredentials, buildLogger, awsRegion, handler);
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            awsRegion, BambooCredentialsHandler.getConfiguration());
+        try {
+            final PropertyHandler handler = PropertyHandlerUtil.getTaskContextPropertyHandler(
+                taskContext, sessionCredentials, getCustomVariableContext());
+            final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(sessionCredentials, buildLogger, awsRegion, handler);
 
-        EcsPushContext context = new EcsPushContext()
-            .withLogger(buildLogger)
-            .withPropertyHandler(handler)
-            .withEnvName(taskContext.getDeploymentContext().getEnvironmentName())
-            .withSessionCredentials(sessionCredentials)
-            .withAwsClientConfig(BambooCredentialsHandler.getConfiguration())
-            .withRegion(awsRegion)
-            .withTimeout(timeout)
-            .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
-            .withTaskProperties(taskProperties);
-        EcsClusterPush ecsClusterPush = new EcsClusterPush(context);
-        ecsClusterPush.pushCluster();
+            EcsPushContext context = new EcsPushContext()
+                .withLogger(buildLogger)
+                .withPropertyHandler(handler)
+                .withEnvName(taskContext.getDeploymentContext().getEnvironmentName())
+                .withSessionCredentials(sessionCredentials)
+                .withAwsClientConfig(BambooCredentialsHandler.getConfiguration())
+                .withRegion(awsRegion)
+                .withTimeout(timeout)
+                .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
+                .withTaskProperties(taskProperties);
+            EcsClusterPush ecsClusterPush = new EcsClusterPush(context);
+            ecsClusterPush.pushCluster();
+        } finally {
+            clientRegistry.getMeter().report(buildLogger);
+            clientRegistry.release();
+        }
 
         spitAscii(buildLogger, taskContext.getRootDirectory().getAbsolutePath());
 
@@ -22,6 +22,7 @@ import com.atlassian.bamboo.task.TaskResult;
 import com.atlassian.bamboo.task.TaskResultBuilder;
 import com.atlassian.bamboo.variable.CustomVariableContext;
 import com.libertymutualgroup.herman.aws.AbstractDeploymentTask;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.aws.ecs.broker.s3.BucketMeta;
@@ -56,17 +57,26 @@ public class S3CreateTask extends AbstractDeploymentTask {
                 sessionCredentials, buildLogger, awsRegion, S3CreateTaskProperties.class
         );
 
-        S3CreateContext s3CreateContext = new S3CreateContext()
-            .withPropertyHandler(handler)
-            .withLogger(buildLogger)
-            .withRegion(awsRegion)
-            .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
-            .withSessionCredentials(sessionCredentials)
-            .withTaskProperties(properties)
-            .withFileUtil(new FileUtil(taskContext.getRootDirectory().getAbsolutePath(), buildLogger));
+        BucketMeta meta;
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            awsRegion, BambooCredentialsHandler.getConfiguration());
+        try {
+            S3CreateContext s3CreateContext = new S3CreateContext()
+                .withPropertyHandler(handler)
+                .withLogger(buildLogger)
+                .withRegion(awsRegion)
+                .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
+                .withSessionCredentials(sessionCredentials)
+                .withAwsClientConfig(BambooCredentialsHandler.getConfiguration())
+                .withTaskProperties(properties)
+                .withFileUtil(new FileUtil(taskContext.getRootDirectory().getAbsolutePath(), buildLogger));
 
-        S3Broker s3Broker = new S3Broker(s3CreateContext);
-        BucketMeta meta = s3Broker.brokerFromConfigurationFile();
+            S3Broker s3Broker = new S3Broker(s3CreateContext);
+            meta = s3Broker.brokerFromConfigurationFile();
+        } finally {
+            clientRegistry.getMeter().report(buildLogger);
+            clientRegistry.release();
+        }
 
         taskContext.getDeploymentContext().getVariableContext().addLocalVariable("bamboo.s3.brokered.name",
             meta.getName());
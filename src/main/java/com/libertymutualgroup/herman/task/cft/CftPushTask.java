@@ -22,9 +22,12 @@ import com.atlassian.bamboo.task.TaskResult;
 import com.atlassian.bamboo.task.TaskResultBuilder;
 import com.atlassian.bamboo.variable.CustomVariableContext;
 import com.libertymutualgroup.herman.aws.AbstractDeploymentTask;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.cft.CftPush;
 import com.libertymutualgroup.herman.aws.cft.CftPushContext;
+import com.libertymutualgroup.herman.aws.cft.CftStackManifest;
+import com.libertymutualgroup.herman.aws.cft.CftStackOrchestrator;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.AtlassianBuildLogger;
@@ -51,23 +54,37 @@ public class CftPushTask extends AbstractDeploymentTask {
         final AWSCredentials sessionCredentials = BambooCredentialsHandler.getCredentials(taskContext);
         final Regions awsRegion = Regions.fromName(taskContext.getConfigurationMap().get("awsRegion"));
         buildLogger.addLogEntry("Starting Herman (version: " + getClass().getPackage().getImplementationVersion() + ") " + getClass().getName() + " in aws region: " + awsRegion.getName());
-        final PropertyHandler handler = PropertyHandlerUtil.getTaskContextPropertyHandler(taskContext, sessionCredentials, getCustomVariableContext());
-        final CftPushTaskProperties taskProperties = CftPushPropertyFactory.getTaskProperties(sessionCredentials, buildLogger, awsRegion, handler);
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            awsRegion, BambooCredentialsHandler.getConfiguration());
+        try {
+            final PropertyHandler handler = PropertyHandlerUtil.getTaskContextPropertyHandler(taskContext, sessionCredentials, getCustomVariableContext());
+            final CftPushTaskProperties taskProperties = CftPushPropertyFactory.getTaskProperties(sessionCredentials, buildLogger, awsRegion, handler);
 
-        CftPushContext context = new CftPushContext()
-            .withLogger(buildLogger)
-            .withEnvName(taskContext.getDeploymentContext().getEnvironmentName())
-            .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
-            .withPropertyHandler(handler)
-            .withSessionCredentials(sessionCredentials)
-            .withAwsClientConfig(BambooCredentialsHandler.getConfiguration())
-            .withRegion(awsRegion)
-            .withTaskProperties(taskProperties);
+            CftPushContext context = new CftPushContext()
+                .withLogger(buildLogger)
+                .withEnvName(taskContext.getDeploymentContext().getEnvironmentName())
+                .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
+                .withPropertyHandler(handler)
+                .withSessionCredentials(sessionCredentials)
+                .withAwsClientConfig(BambooCredentialsHandler.getConfiguration())
+                .withRegion(awsRegion)
+                .withTaskProperties(taskProperties);
 
-        CftPush push = new CftPush(context);
-        String name = deriveStackName(taskContext.getDeploymentContext().getDeploymentProjectName(), context.getEnvName());
-        String template = getTemplate(taskContext, buildLogger);
-        push.push(name, template);
+            FileUtil fileUtil = new FileUtil(context.getRootPath(), buildLogger);
+            CftStackManifest manifest = CftStackOrchestrator.findManifest(fileUtil, handler);
+            if (manifest != null) {
+                new CftStackOrchestrator(context, fileUtil).push(manifest);
+                return TaskResultBuilder.newBuilder(taskContext).success().build();
+            }
+
+            CftPush push = new CftPush(context);
+            String name = deriveStackName(taskContext.getDeploymentContext().getDeploymentProjectName(), context.getEnvName());
+            String template = getTemplate(taskContext, buildLogger);
+            push.push(name, template);
+        } finally {
+            clientRegistry.getMeter().report(buildLogger);
+            clientRegistry.release();
+        }
 
         return TaskResultBuilder.newBuilder(taskContext).success().build();
     }
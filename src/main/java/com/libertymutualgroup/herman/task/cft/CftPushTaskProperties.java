@@ -22,6 +22,8 @@ import com.libertymutualgroup.herman.task.common.CommonTaskProperties;
 public class CftPushTaskProperties extends CommonTaskProperties {
 
     private String cftPushVariableBrokerLambda;
+    private Boolean useChangeSets;
+    private Boolean failFast;
 
     public String getCftPushVariableBrokerLambda() {
         return cftPushVariableBrokerLambda;
@@ -37,10 +39,38 @@ public class CftPushTaskProperties extends CommonTaskProperties {
         return this;
     }
 
+    public Boolean getUseChangeSets() {
+        return useChangeSets;
+    }
+
+    public void setUseChangeSets(Boolean useChangeSets) {
+        this.useChangeSets = useChangeSets;
+    }
+
+    public CftPushTaskProperties withUseChangeSets(Boolean useChangeSets) {
+        this.useChangeSets = useChangeSets;
+        return this;
+    }
+
+    public Boolean getFailFast() {
+        return failFast;
+    }
+
+    public void setFailFast(Boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public CftPushTaskProperties withFailFast(Boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "CftPushTaskProperties{" +
             "cftPushVariableBrokerLambda=" + cftPushVariableBrokerLambda +
+            ", useChangeSets=" + useChangeSets +
+            ", failFast=" + failFast +
             "} " + super.toString();
     }
 }
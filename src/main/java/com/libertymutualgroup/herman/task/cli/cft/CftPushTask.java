@@ -6,9 +6,12 @@
 package com.libertymutualgroup.herman.task.cli.cft;
 
 import com.amazonaws.auth.AWSCredentials;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.cft.CftPush;
 import com.libertymutualgroup.herman.aws.cft.CftPushContext;
+import com.libertymutualgroup.herman.aws.cft.CftStackManifest;
+import com.libertymutualgroup.herman.aws.cft.CftStackOrchestrator;
 import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
@@ -26,28 +29,44 @@ public class CftPushTask {
 
     public void runTask(CftPushTaskConfiguration configuration) {
         final AWSCredentials sessionCredentials = new CredentialsHandler().getCredentials();
-        final PropertyHandler propertyHandler = new PropertyHandlerUtil().getCliPropertyHandler(
-            sessionCredentials,
-            this.logger,
-            configuration.getEnvironmentName(),
-            configuration.getRootPath(),
-            configuration.getCustomVariables()
-        );
-        CftPushTaskProperties taskProperties = CftPushPropertyFactory.getTaskProperties(sessionCredentials, this.logger, configuration.getRegion(), propertyHandler);
-        CftPushContext cftPushContext = new CftPushContext()
-            .withLogger(this.logger)
-            .withEnvName(configuration.getEnvironmentName())
-            .withRootPath(configuration.getRootPath())
-            .withPropertyHandler(propertyHandler)
-            .withSessionCredentials(sessionCredentials)
-            .withAwsClientConfig(CredentialsHandler.getConfiguration())
-            .withRegion(configuration.getRegion())
-            .withTemplateParameters(configuration.getCustomVariables())
-            .withTaskProperties(taskProperties);
-
-        CftPush cftPush = new CftPush(cftPushContext);
-        String template = getTemplate(configuration.getTemplateFile(), configuration.getRootPath());
-        cftPush.push(configuration.getStackName(), template);
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            configuration.getRegion(), CredentialsHandler.getConfiguration());
+        try {
+            final PropertyHandler propertyHandler = new PropertyHandlerUtil().getCliPropertyHandler(
+                sessionCredentials,
+                this.logger,
+                configuration.getEnvironmentName(),
+                configuration.getRootPath(),
+                configuration.getCustomVariables()
+            );
+            CftPushTaskProperties taskProperties = CftPushPropertyFactory.getTaskProperties(sessionCredentials, this.logger, configuration.getRegion(), propertyHandler);
+            CftPushContext cftPushContext = new CftPushContext()
+                .withLogger(this.logger)
+                .withEnvName(configuration.getEnvironmentName())
+                .withRootPath(configuration.getRootPath())
+                .withPropertyHandler(propertyHandler)
+                .withSessionCredentials(sessionCredentials)
+                .withAwsClientConfig(CredentialsHandler.getConfiguration())
+                .withRegion(configuration.getRegion())
+                .withTemplateParameters(configuration.getCustomVariables())
+                .withTaskProperties(taskProperties);
+
+            if (configuration.getTemplateFile() == null) {
+                FileUtil fileUtil = new FileUtil(configuration.getRootPath(), this.logger);
+                CftStackManifest manifest = CftStackOrchestrator.findManifest(fileUtil, propertyHandler);
+                if (manifest != null) {
+                    new CftStackOrchestrator(cftPushContext, fileUtil).push(manifest);
+                    return;
+                }
+            }
+
+            CftPush cftPush = new CftPush(cftPushContext);
+            String template = getTemplate(configuration.getTemplateFile(), configuration.getRootPath());
+            cftPush.push(configuration.getStackName(), template);
+        } finally {
+            clientRegistry.getMeter().report(this.logger);
+            clientRegistry.release();
+        }
     }
 
     private String getTemplate(String templateName, String rootPath) {
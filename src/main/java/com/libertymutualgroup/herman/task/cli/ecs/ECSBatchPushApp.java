@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.task.cli.ecs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One application of a batch push manifest. Unset values fall back to the ones given on the command line.
+ */
+public class ECSBatchPushApp {
+    private String name;
+    private String directory;
+    private String environment;
+    private Integer timeout;
+    private Map<String, String> variables = new HashMap<>();
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public void setEnvironment(String environment) {
+        this.environment = environment;
+    }
+
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    public void setVariables(Map<String, String> variables) {
+        this.variables = variables;
+    }
+
+    public ECSBatchPushApp withName(final String name) {
+        this.name = name;
+        return this;
+    }
+
+    public ECSBatchPushApp withDirectory(final String directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    public ECSBatchPushApp withEnvironment(final String environment) {
+        this.environment = environment;
+        return this;
+    }
+
+    public ECSBatchPushApp withTimeout(final Integer timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public ECSBatchPushApp withVariables(final Map<String, String> variables) {
+        this.variables = variables;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ECSBatchPushApp{" +
+            "name='" + name + '\'' +
+            ", directory='" + directory + '\'' +
+            ", environment='" + environment + '\'' +
+            ", timeout=" + timeout +
+            ", variables=" + variables +
+            '}';
+    }
+}
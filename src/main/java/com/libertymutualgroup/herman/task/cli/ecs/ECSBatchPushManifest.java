@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.task.cli.ecs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ECSBatchPushManifest {
+    private List<ECSBatchPushApp> apps = new ArrayList<>();
+
+    public List<ECSBatchPushApp> getApps() {
+        return apps;
+    }
+
+    public void setApps(List<ECSBatchPushApp> apps) {
+        this.apps = apps;
+    }
+
+    @Override
+    public String toString() {
+        return "ECSBatchPushManifest{" +
+            "apps=" + apps +
+            '}';
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.task.cli.ecs;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.services.securitytoken.model.GetCallerIdentityRequest;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
+import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
+import com.libertymutualgroup.herman.task.ecs.ECSPushPropertyFactory;
+import com.libertymutualgroup.herman.task.ecs.ECSPushTaskProperties;
+import com.libertymutualgroup.herman.util.ConfigurationUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
+import com.libertymutualgroup.herman.util.PropertyHandlerUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pushes every application of a manifest from one process. Credentials, AWS clients, the Herman configuration and
+ * cluster introspection are shared between the pushes, which run concurrently; a failing application does not stop
+ * the others.
+ */
+public class ECSBatchPushTask {
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private HermanLogger logger;
+
+    public ECSBatchPushTask(HermanLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @param defaults values used for anything an application in the manifest does not set
+     */
+    public void runTask(String manifestPath, int parallelism, ECSPushTaskConfiguration defaults) {
+        File manifestFile = new File(manifestPath).getAbsoluteFile();
+        Map<String, ECSPushTaskConfiguration> apps = getAppConfigurations(readManifest(manifestFile),
+            manifestFile.getParentFile(), defaults);
+        logger.addLogEntry("Pushing " + apps.size() + " applications with parallelism " + parallelism);
+        long start = System.currentTimeMillis();
+
+        final AWSCredentials sessionCredentials = CredentialsHandler.getCredentials();
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            defaults.getRegion(), CredentialsHandler.getConfiguration());
+        List<AppResult> results;
+        try {
+            final String accountId = clientRegistry.getStsClient()
+                .getCallerIdentity(new GetCallerIdentityRequest()).getAccount();
+            final String hermanConfiguration = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials,
+                logger, defaults.getCustomConfigurationBucket(), defaults.getRegion());
+
+            results = pushAll(apps, parallelism, (configuration, appLogger) -> {
+                PropertyHandler propertyHandler = new PropertyHandlerUtil().getCliPropertyHandler(
+                    accountId,
+                    appLogger,
+                    configuration.getEnvironmentName(),
+                    configuration.getRootPath(),
+                    configuration.getCustomVariables());
+                ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(hermanConfiguration,
+                    propertyHandler);
+                new ECSPushTask(appLogger).push(configuration, sessionCredentials, propertyHandler, taskProperties);
+            });
+        } finally {
+            clientRegistry.getMeter().report(logger);
+            clientRegistry.release();
+        }
+
+        logSummary(results, System.currentTimeMillis() - start);
+        long failed = results.stream().filter(result -> !result.isSucceeded()).count();
+        if (failed > 0) {
+            throw new AwsExecException(failed + " of " + results.size() + " applications failed to push");
+        }
+        logger.addLogEntry("Done!");
+    }
+
+    List<AppResult> pushAll(Map<String, ECSPushTaskConfiguration> apps, int parallelism, AppPusher pusher) {
+        if (apps.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, apps.size())));
+        try {
+            List<Future<AppResult>> futures = new ArrayList<>();
+            for (Map.Entry<String, ECSPushTaskConfiguration> app : apps.entrySet()) {
+                futures.add(executor.submit(() -> push(app.getKey(), app.getValue(), pusher)));
+            }
+            List<AppResult> results = new ArrayList<>();
+            for (Future<AppResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while waiting for application pushes");
+        } catch (ExecutionException e) {
+            throw new AwsExecException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AppResult push(String name, ECSPushTaskConfiguration configuration, AppPusher pusher) {
+        HermanLogger appLogger = new PrefixedLogger("[" + name + "] ", logger);
+        long start = System.currentTimeMillis();
+        try {
+            pusher.push(configuration, appLogger);
+            return new AppResult(name, true, System.currentTimeMillis() - start, null);
+        } catch (Exception e) {
+            appLogger.addErrorLogEntry("Push failed", e);
+            return new AppResult(name, false, System.currentTimeMillis() - start, e.getMessage());
+        }
+    }
+
+    private void logSummary(List<AppResult> results, long totalMs) {
+        logger.addLogEntry("Batch push summary:");
+        for (AppResult result : results) {
+            logger.addLogEntry(String.format("  %-40s %-9s %8.1fs%s", result.getName(),
+                result.isSucceeded() ? "SUCCEEDED" : "FAILED", result.getDurationMs() / 1000.0,
+                result.getError() != null ? "  " + result.getError() : ""));
+        }
+        logger.addLogEntry(String.format("  %-40s %-9s %8.1fs", "Total", "", totalMs / 1000.0));
+    }
+
+    private ECSBatchPushManifest readManifest(File manifestFile) {
+        try {
+            return ObjectMappers.yaml().readValue(manifestFile, ECSBatchPushManifest.class);
+        } catch (IOException e) {
+            throw new AwsExecException("Unable to read manifest " + manifestFile + ": " + e.getMessage());
+        }
+    }
+
+    Map<String, ECSPushTaskConfiguration> getAppConfigurations(ECSBatchPushManifest manifest, File baseDirectory,
+        ECSPushTaskConfiguration defaults) {
+        Map<String, ECSPushTaskConfiguration> apps = new LinkedHashMap<>();
+        for (ECSBatchPushApp app : manifest.getApps()) {
+            if (app.getDirectory() == null) {
+                throw new AwsExecException("Manifest entry is missing a directory: " + app);
+            }
+            File directory = new File(app.getDirectory());
+            if (!directory.isAbsolute()) {
+                directory = new File(baseDirectory, app.getDirectory());
+            }
+            String name = Optional.ofNullable(app.getName()).orElse(directory.getName());
+            Map<String, String> variables = new HashMap<>();
+            Optional.ofNullable(defaults.getCustomVariables()).ifPresent(variables::putAll);
+            Optional.ofNullable(app.getVariables()).ifPresent(variables::putAll);
+
+            ECSPushTaskConfiguration configuration = new ECSPushTaskConfiguration()
+                .withRootPath(directory.getAbsolutePath())
+                .withTimeout(Optional.ofNullable(app.getTimeout()).orElse(defaults.getTimeout()))
+                .withEnvironmentName(Optional.ofNullable(app.getEnvironment()).orElse(defaults.getEnvironmentName()))
+                .withRegion(defaults.getRegion())
+                .withCustomConfigurationBucket(defaults.getCustomConfigurationBucket())
+                .withCustomVariables(variables);
+            if (apps.put(name, configuration) != null) {
+                throw new AwsExecException("Manifest contains more than one application named " + name);
+            }
+        }
+        return apps;
+    }
+
+    interface AppPusher {
+        void push(ECSPushTaskConfiguration configuration, HermanLogger appLogger);
+    }
+
+    static class AppResult {
+        private final String name;
+        private final boolean succeeded;
+        private final long durationMs;
+        private final String error;
+
+        AppResult(String name, boolean succeeded, long durationMs, String error) {
+            this.name = name;
+            this.succeeded = succeeded;
+            this.durationMs = durationMs;
+            this.error = error;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isSucceeded() {
+            return succeeded;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
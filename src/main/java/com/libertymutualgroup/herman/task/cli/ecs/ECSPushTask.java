@@ -16,6 +16,7 @@
 package com.libertymutualgroup.herman.task.cli.ecs;
 
 import com.amazonaws.auth.AWSCredentials;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.EcsPush;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
@@ -34,20 +35,34 @@ public class ECSPushTask {
 
     public void runTask(ECSPushTaskConfiguration configuration) {
         final AWSCredentials sessionCredentials = CredentialsHandler.getCredentials();
-        final PropertyHandler propertyHandler = new PropertyHandlerUtil().getCliPropertyHandler(
-            sessionCredentials,
-            logger,
-            configuration.getEnvironmentName(),
-            configuration.getRootPath(),
-            configuration.getCustomVariables());
-        final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(sessionCredentials, logger, configuration.getCustomConfigurationBucket(), configuration.getRegion(), propertyHandler);
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            configuration.getRegion(), CredentialsHandler.getConfiguration());
+        try {
+            final PropertyHandler propertyHandler = new PropertyHandlerUtil().getCliPropertyHandler(
+                sessionCredentials,
+                logger,
+                configuration.getEnvironmentName(),
+                configuration.getRootPath(),
+                configuration.getCustomVariables());
+            final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(sessionCredentials, logger, configuration.getCustomConfigurationBucket(), configuration.getRegion(), propertyHandler);
+            push(configuration, sessionCredentials, propertyHandler, taskProperties);
+        } finally {
+            clientRegistry.getMeter().report(logger);
+            clientRegistry.release();
+        }
+
+        logger.addLogEntry("Done!");
+    }
+
+    void push(ECSPushTaskConfiguration configuration, AWSCredentials sessionCredentials,
+        PropertyHandler propertyHandler, ECSPushTaskProperties taskProperties) {
         propertyHandler.addProperty("herman.rdsCredentialBrokerImage", taskProperties.getRdsCredentialBrokerImage());
 
         EcsPushContext context = new EcsPushContext()
             .withLogger(logger)
             .withPropertyHandler(propertyHandler)
             .withEnvName(configuration.getEnvironmentName())
-            .withSessionCredentials(CredentialsHandler.getCredentials())
+            .withSessionCredentials(sessionCredentials)
             .withAwsClientConfig(CredentialsHandler.getConfiguration())
             .withRegion(configuration.getRegion())
             .withTimeout(configuration.getTimeout())
@@ -56,9 +71,5 @@ public class ECSPushTask {
             .withCustomConfigurationBucket(configuration.getCustomConfigurationBucket());
         EcsPush push = new EcsPush(context);
         push.push();
-
-        logger.addLogEntry("Done!");
     }
-
-
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.task.cli.ecs;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
+import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
+import com.libertymutualgroup.herman.aws.ecs.TaskDefinitionJanitor;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+public class ECSTaskDefinitionSweepTask {
+    private HermanLogger logger;
+
+    public ECSTaskDefinitionSweepTask(HermanLogger logger) {
+        this.logger = logger;
+    }
+
+    public void runTask(ECSTaskDefinitionSweepTaskConfiguration configuration) {
+        final AWSCredentials sessionCredentials = CredentialsHandler.getCredentials();
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            configuration.getRegion(), CredentialsHandler.getConfiguration());
+        try {
+            TaskDefinitionJanitor janitor = new TaskDefinitionJanitor(clientRegistry.getEcsClient(), logger,
+                configuration.getRevisionsToKeep())
+                .withEventsClient(clientRegistry.getCloudWatchEventsClient());
+            int deregistered = janitor.sweep(configuration.getFamilyPrefix(), configuration.getParallelism(),
+                configuration.isDryRun());
+            logger.addLogEntry((configuration.isDryRun() ? "Would deregister " : "Deregistered ") + deregistered
+                + " task definitions");
+        } finally {
+            clientRegistry.getMeter().report(logger);
+            clientRegistry.release();
+        }
+
+        logger.addLogEntry("Done!");
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.task.cli.ecs;
+
+import com.amazonaws.regions.Regions;
+
+public class ECSTaskDefinitionSweepTaskConfiguration {
+    private Regions region;
+    private String familyPrefix;
+    private int revisionsToKeep;
+    private int parallelism;
+    private boolean dryRun = true;
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    public void setRegion(Regions region) {
+        this.region = region;
+    }
+
+    public String getFamilyPrefix() {
+        return familyPrefix;
+    }
+
+    public void setFamilyPrefix(String familyPrefix) {
+        this.familyPrefix = familyPrefix;
+    }
+
+    public int getRevisionsToKeep() {
+        return revisionsToKeep;
+    }
+
+    public void setRevisionsToKeep(int revisionsToKeep) {
+        this.revisionsToKeep = revisionsToKeep;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public ECSTaskDefinitionSweepTaskConfiguration withRegion(final Regions region) {
+        this.region = region;
+        return this;
+    }
+
+    public ECSTaskDefinitionSweepTaskConfiguration withFamilyPrefix(final String familyPrefix) {
+        this.familyPrefix = familyPrefix;
+        return this;
+    }
+
+    public ECSTaskDefinitionSweepTaskConfiguration withRevisionsToKeep(final int revisionsToKeep) {
+        this.revisionsToKeep = revisionsToKeep;
+        return this;
+    }
+
+    public ECSTaskDefinitionSweepTaskConfiguration withParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public ECSTaskDefinitionSweepTaskConfiguration withDryRun(final boolean dryRun) {
+        this.dryRun = dryRun;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ECSTaskDefinitionSweepTaskConfiguration{" +
+            "region=" + region +
+            ", familyPrefix='" + familyPrefix + '\'' +
+            ", revisionsToKeep=" + revisionsToKeep +
+            ", parallelism=" + parallelism +
+            ", dryRun=" + dryRun +
+            '}';
+    }
+}
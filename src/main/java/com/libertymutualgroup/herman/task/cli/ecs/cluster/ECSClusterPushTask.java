@@ -16,6 +16,7 @@
 package com.libertymutualgroup.herman.task.cli.ecs.cluster;
 
 import com.amazonaws.auth.AWSCredentials;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.EcsPush;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
@@ -35,32 +36,39 @@ public class ECSClusterPushTask {
 
     public void runTask(ECSClusterPushTaskConfiguration configuration) {
         final AWSCredentials sessionCredentials = CredentialsHandler.getCredentials();
-        final PropertyHandler propertyHandler = new PropertyHandlerUtil().getCliPropertyHandler(
-            sessionCredentials,
-            logger,
-            configuration.getEnvironmentName(),
-            configuration.getRootPath(),
-            configuration.getCustomVariables());
-        final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(
-            sessionCredentials,
-            logger,
-            configuration.getCustomConfigurationBucket(),
-            configuration.getRegion(),
-            propertyHandler);
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            configuration.getRegion(), CredentialsHandler.getConfiguration());
+        try {
+            final PropertyHandler propertyHandler = new PropertyHandlerUtil().getCliPropertyHandler(
+                sessionCredentials,
+                logger,
+                configuration.getEnvironmentName(),
+                configuration.getRootPath(),
+                configuration.getCustomVariables());
+            final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(
+                sessionCredentials,
+                logger,
+                configuration.getCustomConfigurationBucket(),
+                configuration.getRegion(),
+                propertyHandler);
 
-        EcsPushContext context = new EcsPushContext()
-            .withLogger(logger)
-            .withPropertyHandler(propertyHandler)
-            .withEnvName(configuration.getEnvironmentName())
-            .withSessionCredentials(CredentialsHandler.getCredentials())
-            .withAwsClientConfig(CredentialsHandler.getConfiguration())
-            .withRegion(configuration.getRegion())
-            .withTimeout(configuration.getTimeout())
-            .withRootPath(configuration.getRootPath())
-            .withTaskProperties(taskProperties)
-            .withCustomConfigurationBucket(configuration.getCustomConfigurationBucket());
-        EcsClusterPush push = new EcsClusterPush(context);
-        push.pushCluster();
+            EcsPushContext context = new EcsPushContext()
+                .withLogger(logger)
+                .withPropertyHandler(propertyHandler)
+                .withEnvName(configuration.getEnvironmentName())
+                .withSessionCredentials(sessionCredentials)
+                .withAwsClientConfig(CredentialsHandler.getConfiguration())
+                .withRegion(configuration.getRegion())
+                .withTimeout(configuration.getTimeout())
+                .withRootPath(configuration.getRootPath())
+                .withTaskProperties(taskProperties)
+                .withCustomConfigurationBucket(configuration.getCustomConfigurationBucket());
+            EcsClusterPush push = new EcsClusterPush(context);
+            push.pushCluster();
+        } finally {
+            clientRegistry.getMeter().report(logger);
+            clientRegistry.release();
+        }
 
         logger.addLogEntry("Done!");
     }
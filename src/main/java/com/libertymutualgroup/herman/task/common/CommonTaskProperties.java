@@ -17,6 +17,8 @@ package com.libertymutualgroup.herman.task.common;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.Map;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class CommonTaskProperties {
 
@@ -24,6 +26,7 @@ public class CommonTaskProperties {
     private String sbu;
     private String org;
     private String engine;
+    private Map<String, Double> apiRateLimits;
 
     public String getCompany() {
         return company;
@@ -57,6 +60,18 @@ public class CommonTaskProperties {
         this.engine = engine;
     }
 
+    /**
+     * Starting requests per second per AWS service id (e.g. ecs, cloudformation, iam, kms, default), see
+     * {@link com.libertymutualgroup.herman.aws.AwsRateLimiter}.
+     */
+    public Map<String, Double> getApiRateLimits() {
+        return apiRateLimits;
+    }
+
+    public void setApiRateLimits(Map<String, Double> apiRateLimits) {
+        this.apiRateLimits = apiRateLimits;
+    }
+
     public String getSbuTagKey() {
         return company + "_sbu";
     }
@@ -93,6 +108,11 @@ public class CommonTaskProperties {
         return this;
     }
 
+    public CommonTaskProperties withApiRateLimits(final Map<String, Double> apiRateLimits) {
+        this.apiRateLimits = apiRateLimits;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "CommonTaskProperties{" +
@@ -100,6 +120,7 @@ public class CommonTaskProperties {
             ", sbu='" + sbu + '\'' +
             ", org='" + org + '\'' +
             ", engine='" + engine + '\'' +
+            ", apiRateLimits=" + apiRateLimits +
             '}';
     }
 }
@@ -18,10 +18,10 @@ package com.libertymutualgroup.herman.task.ecs;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.util.ConfigurationUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 
 public class ECSPushPropertyFactory {
 
@@ -34,9 +34,21 @@ public class ECSPushPropertyFactory {
     }
 
     public static ECSPushTaskProperties getTaskProperties(AWSCredentials sessionCredentials, HermanLogger hermanLogger, String customConfigurationBucket, Regions region, PropertyHandler handler) {
+        String ecsPushTaskPropertiesYml;
         try {
-            String ecsPushTaskPropertiesYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, hermanLogger, customConfigurationBucket, region);
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
+            ecsPushTaskPropertiesYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, hermanLogger, customConfigurationBucket, region);
+        } catch (Exception ex) {
+            throw new RuntimeException("Error getting ECS Push Task Properties", ex);
+        }
+        return getTaskProperties(ecsPushTaskPropertiesYml, handler);
+    }
+
+    /**
+     * Maps the handler's properties into configuration that was already fetched, so it can be shared by several pushes.
+     */
+    public static ECSPushTaskProperties getTaskProperties(String ecsPushTaskPropertiesYml, PropertyHandler handler) {
+        try {
+            ObjectMapper objectMapper = ObjectMappers.yaml();
             return objectMapper.readValue(
                 handler.mapInProperties(ecsPushTaskPropertiesYml),
                 ECSPushTaskProperties.class);
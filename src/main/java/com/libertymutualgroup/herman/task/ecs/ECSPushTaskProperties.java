@@ -43,6 +43,10 @@ public class ECSPushTaskProperties extends CommonTaskProperties {
     private S3BrokerProperties s3;
     private String logsBucket;
     private Map<String, CustomBrokerConfiguration> customBrokers = new HashMap<>();
+    private Integer maxConcurrentBrokers;
+    private Integer stoppedTaskThreshold;
+    private Integer taskDefinitionRevisionsToKeep;
+    private String timingReportDirectory;
 
     @Override
     public ECSPushTaskProperties withCompany(final String company) {
@@ -157,6 +161,38 @@ public class ECSPushTaskProperties extends CommonTaskProperties {
         this.customBrokers = customBrokers;
     }
 
+    public Integer getMaxConcurrentBrokers() {
+        return maxConcurrentBrokers;
+    }
+
+    public void setMaxConcurrentBrokers(Integer maxConcurrentBrokers) {
+        this.maxConcurrentBrokers = maxConcurrentBrokers;
+    }
+
+    public Integer getStoppedTaskThreshold() {
+        return stoppedTaskThreshold;
+    }
+
+    public void setStoppedTaskThreshold(Integer stoppedTaskThreshold) {
+        this.stoppedTaskThreshold = stoppedTaskThreshold;
+    }
+
+    public Integer getTaskDefinitionRevisionsToKeep() {
+        return taskDefinitionRevisionsToKeep;
+    }
+
+    public void setTaskDefinitionRevisionsToKeep(Integer taskDefinitionRevisionsToKeep) {
+        this.taskDefinitionRevisionsToKeep = taskDefinitionRevisionsToKeep;
+    }
+
+    public String getTimingReportDirectory() {
+        return timingReportDirectory;
+    }
+
+    public void setTimingReportDirectory(String timingReportDirectory) {
+        this.timingReportDirectory = timingReportDirectory;
+    }
+
     public ECSPushTaskProperties withNewRelic(
         final NewRelicBrokerProperties newRelic) {
         this.newRelic = newRelic;
@@ -212,6 +248,26 @@ public class ECSPushTaskProperties extends CommonTaskProperties {
         return this;
     }
 
+    public ECSPushTaskProperties withMaxConcurrentBrokers(final Integer maxConcurrentBrokers) {
+        this.maxConcurrentBrokers = maxConcurrentBrokers;
+        return this;
+    }
+
+    public ECSPushTaskProperties withStoppedTaskThreshold(final Integer stoppedTaskThreshold) {
+        this.stoppedTaskThreshold = stoppedTaskThreshold;
+        return this;
+    }
+
+    public ECSPushTaskProperties withTaskDefinitionRevisionsToKeep(final Integer taskDefinitionRevisionsToKeep) {
+        this.taskDefinitionRevisionsToKeep = taskDefinitionRevisionsToKeep;
+        return this;
+    }
+
+    public ECSPushTaskProperties withTimingReportDirectory(final String timingReportDirectory) {
+        this.timingReportDirectory = timingReportDirectory;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "ECSPushTaskProperties{" +
@@ -225,6 +281,10 @@ public class ECSPushTaskProperties extends CommonTaskProperties {
             ", externalElbSecurityGroups=" + externalElbSecurityGroups +
             ", s3=" + s3 +
             ", logsBucket='" + logsBucket + '\'' +
+            ", maxConcurrentBrokers=" + maxConcurrentBrokers +
+            ", stoppedTaskThreshold=" + stoppedTaskThreshold +
+            ", taskDefinitionRevisionsToKeep=" + taskDefinitionRevisionsToKeep +
+            ", timingReportDirectory='" + timingReportDirectory + '\'' +
             "} " + super.toString();
     }
 }
\ No newline at end of file
@@ -21,9 +21,8 @@ import com.atlassian.bamboo.deployments.execution.DeploymentTaskContext;
 import com.atlassian.bamboo.task.TaskResult;
 import com.atlassian.bamboo.task.TaskResultBuilder;
 import com.atlassian.bamboo.variable.CustomVariableContext;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.AbstractDeploymentTask;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
@@ -33,6 +32,7 @@ import com.libertymutualgroup.herman.logging.AtlassianBuildLogger;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.common.CommonTaskProperties;
 import com.libertymutualgroup.herman.util.ConfigurationUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import com.libertymutualgroup.herman.util.PropertyHandlerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -51,23 +51,30 @@ public class LambdaCreateTask extends AbstractDeploymentTask {
         final AWSCredentials sessionCredentials = BambooCredentialsHandler.getCredentials(taskContext);
         final Regions region = Regions.fromName(taskContext.getConfigurationMap().get("awsRegion"));
         buildLogger.addLogEntry("Starting Herman (version: " + getClass().getPackage().getImplementationVersion() + ") " + getClass().getName() + " in aws region: " + region.getName());
-        final PropertyHandler handler = PropertyHandlerUtil
-            .getTaskContextPropertyHandler(taskContext, sessionCredentials, getCustomVariableContext());
+        final AwsClientRegistry clientRegistry = AwsClientRegistry.acquire(sessionCredentials,
+            region, BambooCredentialsHandler.getConfiguration());
+        try {
+            final PropertyHandler handler = PropertyHandlerUtil
+                .getTaskContextPropertyHandler(taskContext, sessionCredentials, getCustomVariableContext());
 
-        LambdaPushContext context = new LambdaPushContext()
-            .withSessionCredentials(sessionCredentials)
-            .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
-            .withBambooPropertyHandler(handler)
-            .withLogger(buildLogger)
-            .withTaskProperties(getTaskProperties(sessionCredentials, buildLogger, region, handler));
+            LambdaPushContext context = new LambdaPushContext()
+                .withSessionCredentials(sessionCredentials)
+                .withRootPath(taskContext.getRootDirectory().getAbsolutePath())
+                .withBambooPropertyHandler(handler)
+                .withLogger(buildLogger)
+                .withTaskProperties(getTaskProperties(sessionCredentials, buildLogger, region, handler));
 
-        LambdaBroker lambdaBroker = new LambdaBroker(context,
-            buildLogger,
-            region);
-        try {
-            lambdaBroker.brokerLambda();
-        } catch (IOException e) {
-            throw new AwsExecException(e);
+            LambdaBroker lambdaBroker = new LambdaBroker(context,
+                buildLogger,
+                region);
+            try {
+                lambdaBroker.brokerLambda();
+            } catch (IOException e) {
+                throw new AwsExecException(e);
+            }
+        } finally {
+            clientRegistry.getMeter().report(buildLogger);
+            clientRegistry.release();
         }
 
         return TaskResultBuilder.newBuilder(taskContext).success().build();
@@ -76,8 +83,7 @@ public class LambdaCreateTask extends AbstractDeploymentTask {
     CommonTaskProperties getTaskProperties(AWSCredentials sessionCredentials, HermanLogger hermanLogger, Regions region, PropertyHandler handler) {
         try {
             String lambdaCreateTaskPropertiesYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, hermanLogger, region);
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            return objectMapper.readValue(handler.mapInProperties(lambdaCreateTaskPropertiesYml), CommonTaskProperties.class);
+            return ObjectMappers.yaml().readValue(handler.mapInProperties(lambdaCreateTaskPropertiesYml), CommonTaskProperties.class);
         } catch (Exception ex) {
             throw new RuntimeException("Error getting Lambda Create Task Properties", ex);
         }
@@ -25,8 +25,6 @@ import com.atlassian.bamboo.deployments.execution.DeploymentTaskContext;
 import com.atlassian.bamboo.task.TaskResult;
 import com.atlassian.bamboo.task.TaskResultBuilder;
 import com.atlassian.bamboo.variable.CustomVariableContext;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.AbstractDeploymentTask;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
@@ -38,6 +36,7 @@ import com.libertymutualgroup.herman.logging.AtlassianBuildLogger;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.util.ConfigurationUtil;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.ObjectMappers;
 import com.libertymutualgroup.herman.util.PropertyHandlerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -103,15 +102,9 @@ public class NewRelicBrokerTask extends AbstractDeploymentTask {
             throw new AwsExecException("No template provided!");
         }
 
-        ObjectMapper mapper;
-        if (isJson) {
-            mapper = new ObjectMapper();
-        } else {
-            mapper = new ObjectMapper(new YAMLFactory());
-        }
         NewRelicDefinition newRelicDefinition;
         try {
-            newRelicDefinition = mapper.readValue(handler.mapInProperties(template), NewRelicDefinition.class);
+            newRelicDefinition = ObjectMappers.of(isJson).readValue(handler.mapInProperties(template), NewRelicDefinition.class);
         } catch (Exception e) {
             throw new AwsExecException("Error parsing template", e);
         }
@@ -123,8 +116,7 @@ public class NewRelicBrokerTask extends AbstractDeploymentTask {
     NewRelicBrokerConfiguration getTaskProperties(AWSCredentials sessionCredentials, HermanLogger hermanLogger, Regions region, PropertyHandler handler) {
         try {
             String newRelicBrokerConfigurationYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, hermanLogger, region);
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            return objectMapper.readValue(handler.mapInProperties(newRelicBrokerConfigurationYml), NewRelicBrokerConfiguration.class);
+            return ObjectMappers.yaml().readValue(handler.mapInProperties(newRelicBrokerConfigurationYml), NewRelicBrokerConfiguration.class);
         } catch (Exception ex) {
             throw new RuntimeException("Error getting NewRelic Broker Configuration", ex);
         }
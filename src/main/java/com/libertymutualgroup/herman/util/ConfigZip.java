@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.amazonaws.util.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Entry index and content cache for a *-config.zip. Indexes are shared between {@link FileUtil} instances and
+ * rebuilt when the zip changes on disk. Contents are cached up to {@link #MAX_CACHED_CHARS} per zip, least recently
+ * used first out; entries larger than {@link #MAX_CACHED_ENTRY_CHARS} are always read from the zip.
+ */
+class ConfigZip {
+
+    static final int MAX_CACHED_ZIPS = 16;
+    static final long MAX_CACHED_CHARS = 8 * 1024 * 1024;
+    static final long MAX_CACHED_ENTRY_CHARS = 1024 * 1024;
+
+    private static final Map<String, ConfigZip> ZIPS = new LinkedHashMap<String, ConfigZip>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConfigZip> eldest) {
+            return size() > MAX_CACHED_ZIPS;
+        }
+    };
+
+    private final File file;
+    private final long lastModified;
+    private final long length;
+    private final Set<String> entries;
+    private final LinkedHashMap<String, String> contents = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedChars;
+
+    private ConfigZip(File file) throws IOException {
+        this.file = file;
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+
+        Set<String> names = new HashSet<>();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                names.add(zipEntries.nextElement().getName());
+            }
+        }
+        this.entries = Collections.unmodifiableSet(names);
+    }
+
+    static ConfigZip get(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        synchronized (ZIPS) {
+            ConfigZip zip = ZIPS.get(key);
+            if (zip == null || zip.lastModified != file.lastModified() || zip.length != file.length()) {
+                zip = new ConfigZip(file);
+                ZIPS.put(key, zip);
+            }
+            return zip;
+        }
+    }
+
+    boolean contains(String name) {
+        return entries.contains(name);
+    }
+
+    String read(String name) throws IOException {
+        if (!contains(name)) {
+            return null;
+        }
+        synchronized (this) {
+            String cached = contents.get(name);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        String content;
+        try (ZipFile zipFile = new ZipFile(file)) {
+            ZipEntry entry = zipFile.getEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream stream = zipFile.getInputStream(entry)) {
+                content = IOUtils.toString(stream);
+            }
+        }
+        cache(name, content);
+        return content;
+    }
+
+    private synchronized void cache(String name, String content) {
+        if (content.length() > MAX_CACHED_ENTRY_CHARS || contents.containsKey(name)) {
+            return;
+        }
+        contents.put(name, content);
+        cachedChars += content.length();
+        Iterator<String> eldest = contents.values().iterator();
+        while (cachedChars > MAX_CACHED_CHARS && eldest.hasNext()) {
+            cachedChars -= eldest.next().length();
+            eldest.remove();
+        }
+    }
+}
@@ -1,17 +1,14 @@
 package com.libertymutualgroup.herman.util;
 
 import com.amazonaws.auth.AWSCredentials;
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
-import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClientBuilder;
 import com.amazonaws.services.securitytoken.model.GetCallerIdentityRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.libertymutualgroup.herman.aws.AwsClientRegistry;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import org.apache.commons.io.IOUtils;
@@ -34,37 +31,31 @@ public class ConfigurationUtil {
     }
 
     public static String getHermanConfigurationAsString(AWSCredentials sessionCredentials, HermanLogger hermanLogger, String customConfigurationBucket, Regions region) {
-        try {
-            String hermanConfigBucket = getConfigurationBucketName(sessionCredentials, customConfigurationBucket, region);
-            hermanLogger.addLogEntry(String.format("... Using task config from S3 bucket %s: %s", hermanConfigBucket, CONFIG_FILE));
-
-            AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
-                    .withCredentials(new AWSStaticCredentialsProvider(sessionCredentials))
-                    .withRegion(region)
-                    .withClientConfiguration(BambooCredentialsHandler.getConfiguration()).build();
-            S3Object fullObject = s3Client.getObject(new GetObjectRequest(hermanConfigBucket, CONFIG_FILE));
-            return IOUtils.toString(fullObject.getObjectContent(), StandardCharsets.UTF_8.name());
-        } catch (Exception ex) {
-            AWSSecurityTokenService stsClient = AWSSecurityTokenServiceClientBuilder.standard()
-                    .withCredentials(new AWSStaticCredentialsProvider(sessionCredentials))
-                    .withClientConfiguration(BambooCredentialsHandler.getConfiguration()).build();
-
-            String account = stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getAccount();
-            String userId = stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getUserId();
-            String errorMessage = String.format("ERROR: This AWS Account is not configured for Herman! Please ensure that the appropriate configuration bucket and files are in place, or that you're using the correct AWS Account.\nRequested configuration file: %s\nAWS Account ID: %s\nAWS User ID: %s", CONFIG_FILE, account, userId);
-            throw new RuntimeException(errorMessage, ex);
+        try (AwsClientRegistry clients = acquireClients(sessionCredentials, region)) {
+            try {
+                String hermanConfigBucket = getConfigurationBucketName(clients, customConfigurationBucket, region);
+                hermanLogger.addLogEntry(String.format("... Using task config from S3 bucket %s: %s", hermanConfigBucket, CONFIG_FILE));
+
+                AmazonS3 s3Client = clients.getS3Client();
+                S3Object fullObject = s3Client.getObject(new GetObjectRequest(hermanConfigBucket, CONFIG_FILE));
+                return IOUtils.toString(fullObject.getObjectContent(), StandardCharsets.UTF_8.name());
+            } catch (Exception ex) {
+                AWSSecurityTokenService stsClient = clients.getStsClient();
+
+                String account = stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getAccount();
+                String userId = stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getUserId();
+                String errorMessage = String.format("ERROR: This AWS Account is not configured for Herman! Please ensure that the appropriate configuration bucket and files are in place, or that you're using the correct AWS Account.\nRequested configuration file: %s\nAWS Account ID: %s\nAWS User ID: %s", CONFIG_FILE, account, userId);
+                throw new RuntimeException(errorMessage, ex);
+            }
         }
     }
 
     public static String getECRPolicyAsString(AWSCredentials sessionCredentials, HermanLogger hermanLogger, String customConfigurationBucket, Regions region) {
-        try {
-            String configBucket = getConfigurationBucketName(sessionCredentials, customConfigurationBucket, region);
+        try (AwsClientRegistry clients = acquireClients(sessionCredentials, region)) {
+            String configBucket = getConfigurationBucketName(clients, customConfigurationBucket, region);
             hermanLogger.addLogEntry(String.format("... Using ECR policy file from S3 bucket %s: %s", configBucket, ECR_POLICY_FILE));
 
-            AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
-                    .withCredentials(new AWSStaticCredentialsProvider(sessionCredentials))
-                    .withRegion(region)
-                    .withClientConfiguration(BambooCredentialsHandler.getConfiguration()).build();
+            AmazonS3 s3Client = clients.getS3Client();
             S3Object fullObject = s3Client.getObject(new GetObjectRequest(configBucket, ECR_POLICY_FILE));
             return IOUtils.toString(fullObject.getObjectContent(), StandardCharsets.UTF_8.name());
         } catch (Exception ex) {
@@ -73,14 +64,11 @@ public class ConfigurationUtil {
     }
 
     public static String getKMSPolicyAsString(AWSCredentials sessionCredentials, HermanLogger hermanLogger, String customConfigurationBucket, Regions region) {
-        try {
-            String configBucket = getConfigurationBucketName(sessionCredentials, customConfigurationBucket, region);
+        try (AwsClientRegistry clients = acquireClients(sessionCredentials, region)) {
+            String configBucket = getConfigurationBucketName(clients, customConfigurationBucket, region);
             hermanLogger.addLogEntry(String.format("... Using KMS policy file from S3 bucket %s: %s", configBucket, KMS_POLICY_FILE));
 
-            AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
-                    .withCredentials(new AWSStaticCredentialsProvider(sessionCredentials))
-                    .withRegion(region)
-                    .withClientConfiguration(BambooCredentialsHandler.getConfiguration()).build();
+            AmazonS3 s3Client = clients.getS3Client();
             S3Object fullObject = s3Client.getObject(new GetObjectRequest(configBucket, KMS_POLICY_FILE));
             return IOUtils.toString(fullObject.getObjectContent(), StandardCharsets.UTF_8.name());
         } catch (Exception ex) {
@@ -88,11 +76,17 @@ public class ConfigurationUtil {
         }
     }
 
-    private static String getConfigurationBucketName(AWSCredentials sessionCredentials, String customConfigurationBucket, Regions region)
+    /**
+     * These lookups also run before a task acquires its clients, so each holds a registry for the length of the call.
+     * Within a task this joins the task's registry rather than building new clients.
+     */
+    private static AwsClientRegistry acquireClients(AWSCredentials sessionCredentials, Regions region) {
+        return AwsClientRegistry.acquire(sessionCredentials, region, BambooCredentialsHandler.getConfiguration());
+    }
+
+    private static String getConfigurationBucketName(AwsClientRegistry clients, String customConfigurationBucket, Regions region)
             throws IOException {
-        AWSSecurityTokenService stsClient = AWSSecurityTokenServiceClientBuilder.standard()
-                .withCredentials(new AWSStaticCredentialsProvider(sessionCredentials))
-                .withClientConfiguration(BambooCredentialsHandler.getConfiguration()).build();
+        AWSSecurityTokenService stsClient = clients.getStsClient();
         String account = stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getAccount();
 
         InputStream versionPropertiesInputStream = ConfigurationUtil.class.getClassLoader().getResourceAsStream(VERSION_PROPERTY_FILE);
@@ -114,7 +108,7 @@ public class ConfigurationUtil {
 
     public <T> T getConfigProperties(AWSCredentials sessionCredentials, HermanLogger logger, Regions region, Class<T> propertiesClass) {
         String propertiesYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, logger, region);
-        ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
+        ObjectMapper objectMapper = ObjectMappers.yaml();
         try {
             return objectMapper.readValue(propertiesYml, propertiesClass);
         } catch (Exception e) {
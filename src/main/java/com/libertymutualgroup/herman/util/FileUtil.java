@@ -15,7 +15,6 @@
  */
 package com.libertymutualgroup.herman.util;
 
-import com.amazonaws.util.IOUtils;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import org.slf4j.Logger;
@@ -24,17 +23,25 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Enumeration;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads deployment files from the root path, falling back to the *-config.zip found there. The zip is located once
+ * per instance and its entries are indexed once per process (see {@link ConfigZip}).
+ */
 public class FileUtil {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FileUtil.class);
+    private static final long MAPPED_READ_THRESHOLD = 1024 * 1024;
 
     private String rootPath;
     private HermanLogger buildLogger;
+    private ConfigZip configZip;
+    private boolean configZipLoaded;
 
     public FileUtil(String rootPath, HermanLogger buildLogger) {
         this.rootPath = rootPath;
@@ -44,7 +51,8 @@ public class FileUtil {
     public boolean fileExists(String path) {
         boolean fileExists = new File(rootPath + File.separator + path).exists();
         if (!fileExists) {
-            fileExists = findFileInZip(path) != null;
+            ConfigZip zip = getConfigZip();
+            fileExists = zip != null && zip.contains(path);
         }
         return fileExists;
 
@@ -80,10 +88,8 @@ public class FileUtil {
         String path = rootPath + File.separator + filename;
         File template = new File(path);
         if (template.exists()) {
-            FileInputStream streamToParse;
             try {
-                streamToParse = new FileInputStream(template);
-                return IOUtils.toString(streamToParse);
+                return read(template);
             } catch (IOException e) {
                 LOGGER.debug("Error finding file: " + path, e);
                 buildLogger.addLogEntry(String.format("Error finding file %s: %s", path, e.getMessage()));
@@ -92,34 +98,52 @@ public class FileUtil {
         return null;
     }
 
+    private String read(File file) throws IOException {
+        if (file.length() < MAPPED_READ_THRESHOLD) {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    }
+
     private String findFileInZip(String filename) {
-        File zip = findZip();
-        String result;
+        ConfigZip zip = getConfigZip();
         if (zip != null) {
-            try (ZipFile zipFile = new ZipFile(zip)) {
-                Enumeration<? extends ZipEntry> entries = zipFile.entries();
-                while (entries.hasMoreElements()) {
-                    ZipEntry entry = entries.nextElement();
-                    if (entry.getName().contentEquals(filename)) {
-                        InputStream stream = zipFile.getInputStream(entry);
-                        result = IOUtils.toString(stream);
-                        return result;
-                    }
-                }
+            try {
+                return zip.read(filename);
             } catch (IOException e) {
                 LOGGER.debug("Error finding file: " + filename, e);
                 buildLogger
                     .addLogEntry(String.format("Error reading file in zip %s: %s", filename, e.getMessage()));
-
             }
         }
         return null;
+    }
 
+    private synchronized ConfigZip getConfigZip() {
+        if (!configZipLoaded) {
+            File zip = findZip();
+            if (zip != null) {
+                try {
+                    configZip = ConfigZip.get(zip);
+                } catch (IOException e) {
+                    LOGGER.debug("Error reading zip: " + zip, e);
+                    buildLogger.addLogEntry(String.format("Error reading zip %s: %s", zip, e.getMessage()));
+                }
+            }
+            configZipLoaded = true;
+        }
+        return configZip;
     }
 
     private File findZip() {
         File folder = new File(rootPath);
         File[] listOfFiles = folder.listFiles();
+        if (listOfFiles == null) {
+            return null;
+        }
 
         for (int i = 0; i < listOfFiles.length; i++) {
             if (listOfFiles[i].isFile() && listOfFiles[i].getName().endsWith("-config.zip")) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared, preconfigured mappers. ObjectMapper is thread-safe once configured, so these are built once per JVM and
+ * must not be reconfigured by callers; use {@link ObjectMapper#reader()}/{@link ObjectMapper#writer()} variants or
+ * {@link ObjectMapper#copy()} for one-off settings.
+ */
+public final class ObjectMappers {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+    private static final ObjectMapper CANONICAL_JSON = new ObjectMapper()
+        .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+        .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+        .setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
+    private static final ConcurrentMap<Key, ObjectMapper> MIXED_IN = new ConcurrentHashMap<>();
+
+    private ObjectMappers() {
+    }
+
+    public static ObjectMapper json() {
+        return JSON;
+    }
+
+    public static ObjectMapper yaml() {
+        return YAML;
+    }
+
+    /**
+     * JSON with properties and map keys sorted and empty values left out, so equal content always serializes to the
+     * same bytes (for hashing and comparisons).
+     */
+    public static ObjectMapper canonicalJson() {
+        return CANONICAL_JSON;
+    }
+
+    public static ObjectMapper of(boolean isJson) {
+        return isJson ? JSON : YAML;
+    }
+
+    /**
+     * @param mixIns target class to mix-in class
+     * @return the mapper for this format with the mix-ins registered, built on first use
+     */
+    public static ObjectMapper withMixIns(boolean isJson, Map<Class<?>, Class<?>> mixIns) {
+        return MIXED_IN.computeIfAbsent(new Key(isJson, mixIns), key -> {
+            ObjectMapper mapper = of(isJson).copy();
+            mixIns.forEach(mapper::addMixIn);
+            return mapper;
+        });
+    }
+
+    /**
+     * Convenience for building the mix-in maps passed to {@link #withMixIns(boolean, Map)}.
+     */
+    public static Map<Class<?>, Class<?>> mixIns(Class<?> mixIn, Class<?>... targets) {
+        Map<Class<?>, Class<?>> mixIns = new HashMap<>();
+        Arrays.stream(targets).forEach(target -> mixIns.put(target, mixIn));
+        return Collections.unmodifiableMap(mixIns);
+    }
+
+    private static final class Key {
+        private final boolean isJson;
+        private final Map<Class<?>, Class<?>> mixIns;
+
+        Key(boolean isJson, Map<Class<?>, Class<?>> mixIns) {
+            this.isJson = isJson;
+            this.mixIns = new HashMap<>(mixIns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return isJson == key.isJson && mixIns.equals(key.mixIns);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(isJson, mixIns);
+        }
+    }
+}
@@ -28,8 +28,18 @@ public class PropertyHandlerUtil {
 
     public PropertyHandler getCliPropertyHandler(AWSCredentials sessionCredentials, HermanLogger logger,
             String environmentName, String rootDirectory, Map<String, String> customVariables) {
+        return getCliPropertyHandler(getAccountId(sessionCredentials), logger, environmentName, rootDirectory,
+            customVariables);
+    }
+
+    /**
+     * Same as {@link #getCliPropertyHandler(AWSCredentials, HermanLogger, String, String, Map)} for callers that
+     * already looked the account up, such as batch pushes creating one handler per application.
+     */
+    public PropertyHandler getCliPropertyHandler(String accountId, HermanLogger logger,
+            String environmentName, String rootDirectory, Map<String, String> customVariables) {
         final PropertyHandler handler = new CliPropertyHandler(logger, environmentName, rootDirectory, customVariables);
-        PropertyHandlerUtil.addStandardProperties(sessionCredentials, handler);
+        handler.addProperty("account.id", accountId);
         return handler;
     }
 
@@ -38,7 +48,7 @@ public class PropertyHandlerUtil {
         propertyHandler.addProperty("account.id", accountId);
     }
 
-    private static String getAccountId(AWSCredentials sessionCredentials){
+    public static String getAccountId(AWSCredentials sessionCredentials){
         AWSSecurityTokenService stsClient = AWSSecurityTokenServiceClientBuilder.standard()
                 .withCredentials(new AWSStaticCredentialsProvider(sessionCredentials))
                 .withClientConfiguration(new ClientConfiguration().withMaxErrorRetry(10)).build();
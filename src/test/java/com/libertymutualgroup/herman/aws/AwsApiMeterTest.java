@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.services.ecs.model.ListClustersRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AwsApiMeterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldCountCallsRetriesAndThrottles() {
+        AwsApiMeter meter = new AwsApiMeter();
+
+        Request<?> succeeded = request("ECS", "ListClusters");
+        meter.beforeRequest(succeeded);
+        meter.afterAttempt(attempt(succeeded, throttled()));
+        meter.afterAttempt(attempt(succeeded, null));
+        meter.afterResponse(succeeded, null);
+
+        Request<?> failed = request("ECS", "ListClusters");
+        meter.beforeRequest(failed);
+        AmazonServiceException notFound = new AmazonServiceException("missing");
+        notFound.setErrorCode("ClusterNotFoundException");
+        meter.afterAttempt(attempt(failed, notFound));
+        meter.afterError(failed, null, notFound);
+
+        Request<?> other = request("CloudFormation", "DescribeStacks");
+        meter.beforeRequest(other);
+        meter.afterAttempt(attempt(other, null));
+        meter.afterResponse(other, null);
+
+        List<AwsApiMeter.OperationStats> operations = meter.getOperations();
+        assertEquals(2, operations.size());
+        assertEquals(3, meter.getTotalCalls());
+
+        AwsApiMeter.OperationStats listClusters = operations.get(0);
+        assertEquals("ECS:ListClusters", listClusters.getName());
+        assertEquals(2, listClusters.getCalls());
+        assertEquals(1, listClusters.getErrors());
+        assertEquals(1, listClusters.getRetries());
+        assertEquals(1, listClusters.getThrottles());
+        assertEquals(Long.valueOf(2), listClusters.getLatencyHistogram().get("50"));
+    }
+
+    @Test
+    public void shouldFallBackToRequestClassForOperationName() {
+        AwsApiMeter meter = new AwsApiMeter();
+        Request<?> request = new DefaultRequest<>(new ListClustersRequest(), "AmazonECS");
+        meter.beforeRequest(request);
+        meter.afterResponse(request, null);
+
+        assertEquals("AmazonECS:ListClusters", meter.getOperations().get(0).getName());
+    }
+
+    @Test
+    public void shouldExportJson() throws Exception {
+        AwsApiMeter meter = new AwsApiMeter();
+        Request<?> request = request("ECS", "DescribeServices");
+        meter.beforeRequest(request);
+        meter.afterResponse(request, null);
+
+        File report = new File(folder.getRoot(), "aws-calls.json");
+        meter.report(new SysoutLogger(), report);
+
+        assertTrue(report.exists());
+        JsonNode json = new ObjectMapper().readTree(report);
+        assertEquals(1, json.get("totalCalls").asLong());
+        JsonNode operation = json.get("operations").get(0);
+        assertEquals("ECS:DescribeServices", operation.get("name").asText());
+        assertEquals(AwsApiMeter.LATENCY_BUCKETS_MS.length + 1, operation.get("latencyHistogram").size());
+        assertFalse(operation.has("attempts"));
+    }
+
+    @Test
+    public void shouldOnlyExportToConfiguredReportPath() {
+        AwsApiMeter meter = new AwsApiMeter();
+        Request<?> request = request("ECS", "DescribeServices");
+        meter.beforeRequest(request);
+        meter.afterResponse(request, null);
+
+        File report = new File(folder.getRoot(), "configured.json");
+        String previous = System.getProperty(AwsApiMeter.REPORT_PATH_PROPERTY);
+        try {
+            System.setProperty(AwsApiMeter.REPORT_PATH_PROPERTY, report.getAbsolutePath());
+            meter.report(new SysoutLogger());
+            assertTrue(report.exists());
+
+            System.clearProperty(AwsApiMeter.REPORT_PATH_PROPERTY);
+            if (System.getenv(AwsApiMeter.REPORT_PATH_ENV) == null) {
+                assertNull(AwsApiMeter.getReportFile());
+            }
+        } finally {
+            if (previous != null) {
+                System.setProperty(AwsApiMeter.REPORT_PATH_PROPERTY, previous);
+            }
+        }
+    }
+
+    private static Request<?> request(String service, String operation) {
+        Request<?> request = new DefaultRequest<>(new ListClustersRequest(), "Amazon" + service);
+        request.addHandlerContext(HandlerContextKey.SERVICE_ID, service);
+        request.addHandlerContext(HandlerContextKey.OPERATION_NAME, operation);
+        return request;
+    }
+
+    private static HandlerAfterAttemptContext attempt(Request<?> request, Exception exception) {
+        return HandlerAfterAttemptContext.builder().withRequest(request).withException(exception).build();
+    }
+
+    private static AmazonServiceException throttled() {
+        AmazonServiceException exception = new AmazonServiceException("Rate exceeded");
+        exception.setErrorCode("ThrottlingException");
+        return exception;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.amazonaws.regions.Regions;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AwsClientRegistryTest {
+
+    private static final BasicSessionCredentials CREDENTIALS =
+        new BasicSessionCredentials("accessKey", "secretKey", "sessionToken");
+
+    @Test
+    public void shouldShareRegistryWhileAcquired() {
+        AwsClientRegistry registry = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1, config());
+        try {
+            AwsClientRegistry lookedUp = AwsClientRegistry.getInstance(
+                new BasicSessionCredentials("accessKey", "secretKey", "sessionToken"), Regions.US_EAST_1, config());
+
+            Assert.assertSame(registry, lookedUp);
+            Assert.assertSame(registry.getEcsClient(), lookedUp.getEcsClient());
+        } finally {
+            registry.release();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailWhenNothingAcquired() {
+        AwsClientRegistry.getInstance(CREDENTIALS, Regions.US_EAST_1, config());
+    }
+
+    @Test
+    public void shouldKeepRegistryUntilLastHolderReleases() {
+        AwsClientRegistry first = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1, config());
+        AwsClientRegistry second = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1, config());
+        Assert.assertSame(first, second);
+
+        second.release();
+        Assert.assertSame(first, AwsClientRegistry.getInstance(CREDENTIALS, Regions.US_EAST_1, config()));
+
+        first.release();
+        try (AwsClientRegistry next = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1, config())) {
+            Assert.assertNotSame(first, next);
+        }
+    }
+
+    @Test
+    public void shouldNotShareAcrossRegionsOrConfigurations() {
+        try (AwsClientRegistry registry = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1, config());
+            AwsClientRegistry otherRegion = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_WEST_2, config());
+            AwsClientRegistry otherConfig = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1,
+                config().withMaxErrorRetry(3))) {
+            Assert.assertNotSame(registry, otherRegion);
+            Assert.assertNotSame(registry, otherConfig);
+        }
+    }
+
+    @Test
+    public void shouldBuildEachClientOnce() {
+        try (AwsClientRegistry registry = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1, config())) {
+            Assert.assertSame(registry.getS3Client(), registry.getS3Client());
+            Assert.assertSame(registry.getLambdaClient(), registry.getLambdaClient());
+            Assert.assertNotSame(registry.getLambdaClient(), registry.getLambdaAsyncClient());
+        }
+    }
+
+    @Test
+    public void shouldDropRateLimiterWithLastRegistryUsingIt() {
+        AwsRateLimiter shared;
+        try (AwsClientRegistry registry = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1, config());
+            AwsClientRegistry otherConfig = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1,
+                config().withMaxErrorRetry(3))) {
+            shared = registry.getRateLimiter();
+            Assert.assertSame(shared, otherConfig.getRateLimiter());
+        }
+
+        try (AwsClientRegistry next = AwsClientRegistry.acquire(CREDENTIALS, Regions.US_EAST_1, config())) {
+            Assert.assertNotSame(shared, next.getRateLimiter());
+        }
+    }
+
+    private ClientConfiguration config() {
+        return new ClientConfiguration().withMaxErrorRetry(10);
+    }
+}
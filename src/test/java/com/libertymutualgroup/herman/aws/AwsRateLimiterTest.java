@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.services.ecs.model.ListClustersRequest;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AwsRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void shouldMakeCallersWaitOnceBurstIsUsed() {
+        AwsRateLimiter.TokenBucket bucket = new AwsRateLimiter.TokenBucket(2, 0);
+
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(SECOND / 2, bucket.reserve(0));
+        assertEquals(SECOND, bucket.reserve(0));
+
+        // a second later two more tokens have come in, both already promised to the queued callers
+        assertEquals(SECOND / 2, bucket.reserve(SECOND));
+    }
+
+    @Test
+    public void shouldHalveRateOnThrottleAndRecoverAdditively() {
+        AwsRateLimiter.TokenBucket bucket = new AwsRateLimiter.TokenBucket(8, 0);
+
+        bucket.onThrottle(SECOND);
+        assertEquals(4.0, bucket.getRate(), 0.001);
+
+        // throttles within the cooldown belong to the same burst
+        bucket.onThrottle(SECOND + SECOND / 2);
+        assertEquals(4.0, bucket.getRate(), 0.001);
+
+        bucket.onThrottle(3 * SECOND);
+        assertEquals(2.0, bucket.getRate(), 0.001);
+
+        bucket.onSuccess();
+        assertEquals(2.5, bucket.getRate(), 0.001);
+        for (int i = 0; i < 100; i++) {
+            bucket.onSuccess();
+        }
+        assertEquals(8.0, bucket.getRate(), 0.001);
+    }
+
+    @Test
+    public void shouldNeverDropBelowMinimumRate() {
+        AwsRateLimiter.TokenBucket bucket = new AwsRateLimiter.TokenBucket(1, 0);
+        for (int i = 1; i <= 10; i++) {
+            bucket.onThrottle(i * 2 * SECOND);
+        }
+        assertEquals(AwsRateLimiter.MIN_RATE, bucket.getRate(), 0.001);
+    }
+
+    @Test
+    public void shouldAdaptPerServiceFromThrottlingResponses() {
+        AwsRateLimiter limiter = new AwsRateLimiter();
+        limiter.configure(Collections.singletonMap("ECS", 10.0));
+        assertEquals(10.0, limiter.getRate("ecs"), 0.001);
+
+        Request<?> request = new DefaultRequest<>(new ListClustersRequest(), "AmazonECS");
+        request.addHandlerContext(HandlerContextKey.SERVICE_ID, "ECS");
+        AmazonServiceException throttled = new AmazonServiceException("Rate exceeded");
+        throttled.setErrorCode("ThrottlingException");
+        limiter.afterAttempt(HandlerAfterAttemptContext.builder().withRequest(request).withException(throttled)
+            .build());
+
+        assertEquals(5.0, limiter.getRate("ecs"), 0.001);
+        assertEquals(5.0, limiter.getRate("cloudformation"), 0.001);
+        assertTrue(limiter.getRate("sqs") > 5.0);
+
+        // the next push configuring the same rates keeps what throttling taught the limiter
+        limiter.configure(Collections.singletonMap("ECS", 10.0));
+        assertEquals(5.0, limiter.getRate("ecs"), 0.001);
+
+        limiter.configure(Collections.singletonMap("ECS", 12.0));
+        assertEquals(12.0, limiter.getRate("ecs"), 0.001);
+    }
+}
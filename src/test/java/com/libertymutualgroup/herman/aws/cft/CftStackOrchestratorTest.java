@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class CftStackOrchestratorTest {
+
+    private final HermanLogger logger = mock(HermanLogger.class);
+
+    @Test
+    public void shouldWireOutputsIntoDependentStackParameters() {
+        CftStackManifest manifest = new CftStackManifest().withStacks(Arrays.asList(
+            new CftStackDefinition().withName("app").withTemplate("app.yml")
+                .withParameters(Collections.singletonMap("Size", "2"))
+                .withInputs(inputs("VpcId", "network.VpcId", "BucketName", "storage.Bucket")),
+            new CftStackDefinition().withName("network").withTemplate("network.yml"),
+            new CftStackDefinition().withName("storage").withTemplate("storage.yml")));
+
+        Map<String, Map<String, String>> parametersByStack = new ConcurrentHashMap<>();
+        CftStackOrchestrator orchestrator = new CftStackOrchestrator(logger, name -> name,
+            (stack, template, parameters, stackLogger) -> {
+                parametersByStack.put(stack.getName(), parameters);
+                if ("network".equals(stack.getName())) {
+                    return Collections.singletonMap("VpcId", "vpc-123");
+                }
+                return Collections.singletonMap("aws.stack.Bucket", "bucket-" + template);
+            });
+
+        Map<String, Map<String, String>> outputs = orchestrator.push(manifest);
+
+        assertEquals(3, outputs.size());
+        Map<String, String> appParameters = parametersByStack.get("app");
+        assertEquals("vpc-123", appParameters.get("VpcId"));
+        assertEquals("bucket-storage.yml", appParameters.get("BucketName"));
+        assertEquals("2", appParameters.get("Size"));
+    }
+
+    @Test
+    public void shouldRunIndependentStacksConcurrently() {
+        CftStackManifest manifest = new CftStackManifest().withMaxParallel(2).withStacks(Arrays.asList(
+            new CftStackDefinition().withName("a").withTemplate("a"),
+            new CftStackDefinition().withName("b").withTemplate("b"),
+            new CftStackDefinition().withName("c").withTemplate("c").withDependsOn(Arrays.asList("a", "b"))));
+
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        List<String> finished = new CopyOnWriteArrayList<>();
+        CftStackOrchestrator orchestrator = new CftStackOrchestrator(logger, name -> name,
+            (stack, template, parameters, stackLogger) -> {
+                if (!"c".equals(stack.getName())) {
+                    bothStarted.countDown();
+                    try {
+                        // only returns if a and b were in flight at the same time
+                        assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                finished.add(stack.getName());
+                return Collections.emptyMap();
+            });
+
+        orchestrator.push(manifest);
+
+        assertEquals(3, finished.size());
+        assertEquals("c", finished.get(2));
+    }
+
+    @Test
+    public void shouldSkipDependentsOfFailedStack() {
+        CftStackManifest manifest = new CftStackManifest().withMaxParallel(1).withStacks(Arrays.asList(
+            new CftStackDefinition().withName("base").withTemplate("base"),
+            new CftStackDefinition().withName("app").withTemplate("app").withDependsOn(Arrays.asList("base"))));
+
+        List<String> pushed = new ArrayList<>();
+        CftStackOrchestrator orchestrator = new CftStackOrchestrator(logger, name -> name,
+            (stack, template, parameters, stackLogger) -> {
+                pushed.add(stack.getName());
+                throw new AwsExecException("CFT pushed failed - UPDATE_ROLLBACK_COMPLETE");
+            });
+
+        try {
+            orchestrator.push(manifest);
+            fail("Expected the failed stack to fail the push");
+        } catch (AwsExecException e) {
+            assertEquals("Stack push failed: base", e.getMessage());
+        }
+        assertEquals(Collections.singletonList("base"), pushed);
+    }
+
+    @Test(expected = AwsExecException.class)
+    public void shouldRejectDependencyCycles() {
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("a", new LinkedHashSet<>(Collections.singletonList("b")));
+        dependencies.put("b", new LinkedHashSet<>(Collections.singletonList("a")));
+        dependencies.put("c", new LinkedHashSet<>());
+
+        CftStackOrchestrator.sortTopologically(dependencies);
+    }
+
+    private static Map<String, String> inputs(String... keyValues) {
+        Map<String, String> inputs = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            inputs.put(keyValues[i], keyValues[i + 1]);
+        }
+        return inputs;
+    }
+}
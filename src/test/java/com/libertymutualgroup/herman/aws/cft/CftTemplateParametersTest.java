@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.model.Parameter;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CftTemplateParametersTest {
+
+    private static final String YAML_TEMPLATE = "AWSTemplateFormatVersion: '2010-09-09'\n"
+        + "Parameters:\n"
+        + "  BuildId:\n"
+        + "    Type: String\n"
+        + "  Size:\n"
+        + "    Type: Number\n"
+        + "    Default: 1\n"
+        + "  Tier:\n"
+        + "    Type: String\n"
+        + "    AllowedValues: [dev, prod]\n"
+        + "    Default: dev\n"
+        + "Resources:\n"
+        + "  Bucket:\n"
+        + "    Type: AWS::S3::Bucket\n"
+        + "    Properties:\n"
+        + "      BucketName: !Sub 'bucket-${BuildId}-ArtifactId'\n"
+        + "      Tags:\n"
+        + "        - Key: Size\n"
+        + "          Value: !Ref Size\n";
+
+    @Test
+    public void shouldPassOnlyDeclaredParameters() throws Exception {
+        Properties props = new Properties();
+        props.put("BuildId", "BUILD12");
+        props.put("Size", "3");
+        // mentioned in the template body but not declared as a parameter
+        props.put("ArtifactId", "my-app");
+
+        List<Parameter> parameters = CftTemplateParameters.of(YAML_TEMPLATE).select(props);
+
+        assertEquals(2, parameters.size());
+        assertEquals("BuildId", parameters.get(0).getParameterKey());
+        assertEquals("BUILD12", parameters.get(0).getParameterValue());
+        assertEquals("Size", parameters.get(1).getParameterKey());
+    }
+
+    @Test
+    public void shouldParseJsonTemplatesAndCacheByContent() throws Exception {
+        String template = "{\"Parameters\": {\"VpcId\": {\"Type\": \"AWS::EC2::VPC::Id\"}}, \"Resources\": {}}";
+
+        CftTemplateParameters parameters = CftTemplateParameters.of(template);
+
+        assertEquals(new HashSet<>(Arrays.asList("VpcId")), parameters.getNames());
+        assertSame(parameters, CftTemplateParameters.of(new String(template)));
+    }
+
+    @Test
+    public void shouldReportInvalidAndMissingValues() throws Exception {
+        Properties props = new Properties();
+        props.put("Size", "large");
+        props.put("Tier", "qa");
+
+        try {
+            CftTemplateParameters.of(YAML_TEMPLATE).select(props);
+            fail("Expected invalid parameters to be rejected");
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("BuildId has no value and no Default"));
+            assertTrue(e.getMessage().contains("Size must be a Number"));
+            assertTrue(e.getMessage().contains("Tier must be one of [dev, prod]"));
+        }
+    }
+}
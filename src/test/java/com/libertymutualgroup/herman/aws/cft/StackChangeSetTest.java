@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.Change;
+import com.amazonaws.services.cloudformation.model.CreateChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.CreateChangeSetResult;
+import com.amazonaws.services.cloudformation.model.DeleteChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.ExecuteChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StackChangeSetTest {
+
+    private AmazonCloudFormation cftClient;
+    private HermanLogger logger;
+    private List<Long> sleeps;
+    private StackChangeSet changeSet;
+
+    @Before
+    public void setup() {
+        cftClient = mock(AmazonCloudFormation.class);
+        logger = mock(HermanLogger.class);
+        sleeps = new ArrayList<>();
+        changeSet = new StackChangeSet(cftClient, logger, sleeps::add);
+
+        when(cftClient.createChangeSet(any(CreateChangeSetRequest.class)))
+            .thenReturn(new CreateChangeSetResult().withId("cs-id"));
+    }
+
+    @Test
+    public void shouldSkipExecutionWhenChangeSetIsEmpty() {
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class)))
+            .thenReturn(new DescribeStacksResult().withStacks(new Stack().withStackStatus("UPDATE_COMPLETE")));
+        when(cftClient.describeChangeSet(any(DescribeChangeSetRequest.class)))
+            .thenReturn(new DescribeChangeSetResult().withStatus("CREATE_PENDING"))
+            .thenReturn(new DescribeChangeSetResult().withStatus("FAILED")
+                .withStatusReason("The submitted information didn't contain changes. "
+                    + "Submit different information to create a change set."));
+
+        assertFalse(changeSet.apply("stack", "{}", Collections.emptyList(), Collections.emptyList()));
+
+        ArgumentCaptor<CreateChangeSetRequest> request = ArgumentCaptor.forClass(CreateChangeSetRequest.class);
+        verify(cftClient).createChangeSet(request.capture());
+        assertEquals("UPDATE", request.getValue().getChangeSetType());
+        verify(cftClient).deleteChangeSet(any(DeleteChangeSetRequest.class));
+        verify(cftClient, never()).executeChangeSet(any(ExecuteChangeSetRequest.class));
+        assertEquals(Collections.singletonList(StackChangeSet.INITIAL_POLL_MS), sleeps);
+    }
+
+    @Test
+    public void shouldCreateNewStackAndExecuteChanges() {
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class)))
+            .thenThrow(new AmazonCloudFormationException("Stack with id stack does not exist"));
+        Change change = new Change().withResourceChange(new ResourceChange().withAction("Add")
+            .withResourceType("AWS::S3::Bucket").withLogicalResourceId("Bucket"));
+        when(cftClient.describeChangeSet(any(DescribeChangeSetRequest.class)))
+            .thenReturn(new DescribeChangeSetResult().withStatus("CREATE_IN_PROGRESS"))
+            .thenReturn(new DescribeChangeSetResult().withStatus("CREATE_IN_PROGRESS"))
+            .thenReturn(new DescribeChangeSetResult().withStatus("CREATE_COMPLETE").withChanges(change))
+            .thenReturn(new DescribeChangeSetResult().withExecutionStatus("EXECUTE_IN_PROGRESS"));
+
+        assertTrue(changeSet.apply("stack", "{}", Collections.emptyList(), Collections.emptyList()));
+
+        ArgumentCaptor<CreateChangeSetRequest> request = ArgumentCaptor.forClass(CreateChangeSetRequest.class);
+        verify(cftClient).createChangeSet(request.capture());
+        assertEquals("CREATE", request.getValue().getChangeSetType());
+        verify(cftClient).executeChangeSet(any(ExecuteChangeSetRequest.class));
+        verify(logger).addLogEntry("  Add AWS::S3::Bucket Bucket");
+        assertEquals(2, sleeps.size());
+        assertEquals(StackChangeSet.nextInterval(StackChangeSet.INITIAL_POLL_MS), (long) sleeps.get(1));
+    }
+
+    @Test
+    public void shouldFailWhenChangeSetCannotBeCreated() {
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class)))
+            .thenReturn(new DescribeStacksResult().withStacks(new Stack().withStackStatus("UPDATE_COMPLETE")));
+        when(cftClient.describeChangeSet(any(DescribeChangeSetRequest.class)))
+            .thenReturn(new DescribeChangeSetResult().withStatus("FAILED").withStatusReason("Template format error"));
+
+        try {
+            changeSet.apply("stack", "{}", Collections.emptyList(), Collections.emptyList());
+            fail("Expected the failed change set to fail the push");
+        } catch (AwsExecException e) {
+            verify(cftClient).deleteChangeSet(any(DeleteChangeSetRequest.class));
+            verify(cftClient, never()).deleteStack(any(DeleteStackRequest.class));
+        }
+    }
+
+    @Test
+    public void shouldDeleteStackLeftInReviewWhenCreateFails() {
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class)))
+            .thenThrow(new AmazonCloudFormationException("Stack with id stack does not exist"))
+            .thenReturn(new DescribeStacksResult().withStacks(new Stack().withStackStatus("REVIEW_IN_PROGRESS")));
+        when(cftClient.describeChangeSet(any(DescribeChangeSetRequest.class)))
+            .thenReturn(new DescribeChangeSetResult().withStatus("FAILED").withStatusReason("Template format error"));
+
+        try {
+            changeSet.apply("stack", "{}", Collections.emptyList(), Collections.emptyList());
+            fail("Expected the failed change set to fail the push");
+        } catch (AwsExecException e) {
+            verify(cftClient).deleteChangeSet(any(DeleteChangeSetRequest.class));
+            ArgumentCaptor<DeleteStackRequest> request = ArgumentCaptor.forClass(DeleteStackRequest.class);
+            verify(cftClient).deleteStack(request.capture());
+            assertEquals("stack", request.getValue().getStackName());
+        }
+    }
+
+    @Test
+    public void shouldBackOffUpToMaxInterval() {
+        long interval = StackChangeSet.INITIAL_POLL_MS;
+        for (int i = 0; i < 10; i++) {
+            interval = StackChangeSet.nextInterval(interval);
+        }
+        assertEquals(StackChangeSet.MAX_POLL_MS, interval);
+    }
+}
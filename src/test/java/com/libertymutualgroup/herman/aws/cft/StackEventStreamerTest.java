@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StackEventStreamerTest {
+
+    private static final String STACK_ID = "arn:aws:cloudformation:us-east-1:123:stack/app/abc";
+
+    private AmazonCloudFormation cftClient;
+    private HermanLogger logger;
+    private List<Long> sleeps;
+
+    @Before
+    public void setup() {
+        cftClient = mock(AmazonCloudFormation.class);
+        logger = mock(HermanLogger.class);
+        sleeps = new ArrayList<>();
+    }
+
+    @Test
+    public void shouldReportEachTransitionOnceFromStartOfOperation() {
+        StackEvent previous = stackEvent("e0", "UPDATE_COMPLETE");
+        StackEvent start = stackEvent("e1", "UPDATE_IN_PROGRESS");
+        StackEvent bucketStart = resourceEvent("e2", "Bucket", "UPDATE_IN_PROGRESS");
+        StackEvent bucketDone = resourceEvent("e3", "Bucket", "UPDATE_COMPLETE");
+        StackEvent done = stackEvent("e4", "UPDATE_COMPLETE");
+        when(cftClient.describeStackEvents(any(DescribeStackEventsRequest.class)))
+            .thenReturn(events(bucketStart, start, previous))
+            .thenReturn(events(bucketStart, start, previous))
+            .thenReturn(events(done, bucketDone, bucketStart, start, previous));
+
+        String status = new StackEventStreamer(cftClient, logger, sleeps::add).waitForCompletion("app");
+
+        assertEquals("UPDATE_COMPLETE", status);
+        InOrder order = inOrder(logger);
+        order.verify(logger).addLogEntry("app (AWS::CloudFormation::Stack) UPDATE_IN_PROGRESS");
+        order.verify(logger).addLogEntry("Bucket (AWS::S3::Bucket) UPDATE_IN_PROGRESS");
+        order.verify(logger).addLogEntry("Bucket (AWS::S3::Bucket) UPDATE_COMPLETE");
+        order.verify(logger).addLogEntry("app (AWS::CloudFormation::Stack) UPDATE_COMPLETE");
+        verify(logger, times(4)).addLogEntry(any(String.class));
+
+        // quiet polls back off, and the stack is followed by id once it is known
+        assertEquals(StackEventStreamer.MIN_POLL_MS * 3 / 2, (long) sleeps.get(1));
+        ArgumentCaptor<DescribeStackEventsRequest> requests = ArgumentCaptor.forClass(DescribeStackEventsRequest.class);
+        verify(cftClient, times(3)).describeStackEvents(requests.capture());
+        assertEquals("app", requests.getAllValues().get(0).getStackName());
+        assertEquals(STACK_ID, requests.getAllValues().get(2).getStackName());
+    }
+
+    @Test
+    public void shouldFailOnRollback() {
+        when(cftClient.describeStackEvents(any(DescribeStackEventsRequest.class)))
+            .thenReturn(events(stackEvent("e3", "UPDATE_ROLLBACK_COMPLETE"),
+                resourceEvent("e2", "Bucket", "UPDATE_FAILED"), stackEvent("e1", "UPDATE_IN_PROGRESS")));
+
+        try {
+            new StackEventStreamer(cftClient, logger, sleeps::add).waitForCompletion("app");
+            fail("Expected rollback to fail the push");
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("UPDATE_ROLLBACK_COMPLETE"));
+        }
+    }
+
+    @Test
+    public void shouldFailFastOnFirstResourceFailure() {
+        when(cftClient.describeStackEvents(any(DescribeStackEventsRequest.class)))
+            .thenReturn(events(resourceEvent("e2", "Bucket", "CREATE_FAILED").withResourceStatusReason("denied"),
+                stackEvent("e1", "CREATE_IN_PROGRESS")));
+
+        try {
+            new StackEventStreamer(cftClient, logger, sleeps::add).withFailFast(true).waitForCompletion("app");
+            fail("Expected resource failure to fail the push");
+        } catch (AwsExecException e) {
+            assertEquals("CFT pushed failed - Bucket CREATE_FAILED : denied", e.getMessage());
+        }
+        verify(logger).addLogEntry(startsWith("Bucket (AWS::S3::Bucket) CREATE_FAILED"));
+        assertTrue(sleeps.isEmpty());
+    }
+
+    private static DescribeStackEventsResult events(StackEvent... newestFirst) {
+        return new DescribeStackEventsResult().withStackEvents(newestFirst);
+    }
+
+    private static StackEvent stackEvent(String id, String status) {
+        return new StackEvent().withEventId(id).withStackId(STACK_ID).withPhysicalResourceId(STACK_ID)
+            .withLogicalResourceId("app").withResourceType("AWS::CloudFormation::Stack").withResourceStatus(status);
+    }
+
+    private static StackEvent resourceEvent(String id, String logicalId, String status) {
+        return new StackEvent().withEventId(id).withStackId(STACK_ID).withPhysicalResourceId("bucket-" + id)
+            .withLogicalResourceId(logicalId).withResourceType("AWS::S3::Bucket").withResourceStatus(status);
+    }
+}
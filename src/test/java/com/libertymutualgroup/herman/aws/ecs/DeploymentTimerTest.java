@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeploymentTimerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldRecordFailedPhases() {
+        DeploymentTimer timer = new DeploymentTimer();
+        assertEquals("def", timer.time("definition", () -> "def"));
+        try {
+            timer.time("deploy-service", () -> {
+                throw new AwsExecException("boom");
+            });
+            fail("Expected the phase failure to propagate");
+        } catch (AwsExecException e) {
+            // expected
+        }
+
+        List<DeploymentTimer.PhaseTiming> timings = timer.getTimings();
+        assertEquals(2, timings.size());
+        assertEquals("definition", timings.get(0).getPhase());
+        assertTrue(timings.get(0).isSucceeded());
+        assertEquals("deploy-service", timings.get(1).getPhase());
+        assertFalse(timings.get(1).isSucceeded());
+    }
+
+    @Test
+    public void shouldBuildOneDatumPerPhasePlusTotal() {
+        DeploymentTimer timer = new DeploymentTimer();
+        timer.record("register", System.currentTimeMillis(), 150, true);
+        timer.record("deploy-service", System.currentTimeMillis(), 4000, true);
+
+        Dimension app = new Dimension().withName("application").withValue("my-app");
+        List<MetricDatum> data = timer.toMetricData(Collections.singletonList(app));
+
+        assertEquals(3, data.size());
+        MetricDatum register = data.get(0);
+        assertEquals(DeploymentTimer.PHASE_DURATION_METRIC, register.getMetricName());
+        assertEquals(StandardUnit.Milliseconds.toString(), register.getUnit());
+        assertEquals(150.0, register.getValue(), 0);
+        assertEquals(2, register.getDimensions().size());
+        assertTrue(register.getDimensions().contains(new Dimension().withName("phase").withValue("register")));
+
+        MetricDatum total = data.get(2);
+        assertEquals(DeploymentTimer.TOTAL_DURATION_METRIC, total.getMetricName());
+        assertEquals(Collections.singletonList(app), total.getDimensions());
+    }
+
+    @Test
+    public void shouldWriteReport() throws Exception {
+        DeploymentTimer timer = new DeploymentTimer();
+        timer.time("introspection", () -> { });
+        File report = new File(folder.getRoot(), "herman-timings.json");
+
+        timer.writeReport(report, Collections.singletonMap("application", "my-app"), false);
+
+        JsonNode json = new ObjectMapper().readTree(report);
+        assertEquals("my-app", json.get("application").asText());
+        assertFalse(json.get("succeeded").asBoolean());
+        assertEquals(1, json.get("phases").size());
+        assertEquals("introspection", json.get("phases").get(0).get("phase").asText());
+    }
+}
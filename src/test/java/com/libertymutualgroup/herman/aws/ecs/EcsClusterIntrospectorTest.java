@@ -14,30 +14,48 @@ import com.amazonaws.services.cloudformation.model.StackResource;
 import com.amazonaws.services.cloudformation.model.StackSummary;
 import com.amazonaws.services.cloudformation.model.Tag;
 import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
 import com.amazonaws.services.ec2.model.DescribeSubnetsResult;
+import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
 import com.amazonaws.services.ec2.model.DescribeVpcsResult;
 import com.amazonaws.services.ec2.model.Subnet;
 import com.amazonaws.services.ec2.model.Vpc;
 import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterIntrospectionCache;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterIntrospector;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class EcsClusterIntrospectorTest {
 
     HermanLogger logger = new SysoutLogger();
 
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
     @Mock
     AmazonCloudFormation cftClient;
     @Mock
@@ -48,7 +66,8 @@ public class EcsClusterIntrospectorTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        introspector = new EcsClusterIntrospector(cftClient, ec2Client, logger);
+        introspector = new EcsClusterIntrospector(cftClient, ec2Client, logger, new EcsClusterIntrospectionCache(null,
+            TimeUnit.HOURS.toMillis(1)));
     }
 
     @Test
@@ -96,12 +115,12 @@ public class EcsClusterIntrospectorTest {
         com.amazonaws.services.ec2.model.Tag vpcTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
             .withValue("nonprod-vpc");
         Vpc vpc = new Vpc().withTags(vpcTag).withVpcId("vpc12345");
-        when(ec2Client.describeVpcs()).thenReturn(new DescribeVpcsResult().withVpcs(vpc));
+        when(ec2Client.describeVpcs(Mockito.any(DescribeVpcsRequest.class))).thenReturn(new DescribeVpcsResult().withVpcs(vpc));
 
         com.amazonaws.services.ec2.model.Tag subnetTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
             .withValue("private-elb-subnet");
         Subnet subnet = new Subnet().withTags(subnetTag).withVpcId("vpc12345");
-        when(ec2Client.describeSubnets()).thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
+        when(ec2Client.describeSubnets(Mockito.any(DescribeSubnetsRequest.class))).thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
 
         //WHEN
         EcsClusterMetadata meta = introspector.introspect(stackName, Regions.US_EAST_1);
@@ -158,12 +177,12 @@ public class EcsClusterIntrospectorTest {
         com.amazonaws.services.ec2.model.Tag vpcTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
             .withValue("nonprod-vpc");
         Vpc vpc = new Vpc().withTags(vpcTag).withVpcId("vpc12345");
-        when(ec2Client.describeVpcs()).thenReturn(new DescribeVpcsResult().withVpcs(vpc));
+        when(ec2Client.describeVpcs(Mockito.any(DescribeVpcsRequest.class))).thenReturn(new DescribeVpcsResult().withVpcs(vpc));
 
         com.amazonaws.services.ec2.model.Tag subnetTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
             .withValue("private-elb-subnet");
         Subnet subnet = new Subnet().withTags(subnetTag).withVpcId("vpc12345");
-        when(ec2Client.describeSubnets()).thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
+        when(ec2Client.describeSubnets(Mockito.any(DescribeSubnetsRequest.class))).thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
 
         //WHEN
         EcsClusterMetadata meta = introspector.introspect(stackName, Regions.US_EAST_1);
@@ -188,4 +207,93 @@ public class EcsClusterIntrospectorTest {
         introspector.introspect("not-a-real-stack", Regions.US_EAST_1);
     }
 
+    @Test
+    public void testInspectUsesCacheUntilStackIsUpdated() {
+        //GIVEN
+        String stackName = "cached-cluster-stack";
+        mockClusterStack(stackName, new Date(1000));
+
+        //WHEN
+        introspector.introspect(stackName, Regions.US_EAST_1);
+        EcsClusterMetadata cached = introspector.introspect(stackName, Regions.US_EAST_1);
+
+        //THEN
+        assertEquals("sg23456", cached.getAppSecurityGroup());
+        assertEquals(1, cached.getElbSubnets().size());
+        verify(cftClient, times(1)).describeStackResources(Mockito.any(DescribeStackResourcesRequest.class));
+        verify(ec2Client, times(1)).describeSubnets(Mockito.any(DescribeSubnetsRequest.class));
+
+        //WHEN
+        mockClusterStack(stackName, new Date(2000));
+        introspector.introspect(stackName, Regions.US_EAST_1);
+
+        //THEN
+        verify(cftClient, times(2)).describeStackResources(Mockito.any(DescribeStackResourcesRequest.class));
+    }
+
+    @Test
+    public void testInspectReadsCacheFromDisk() throws Exception {
+        //GIVEN
+        String stackName = "disk-cluster-stack";
+        mockClusterStack(stackName, new Date(1000));
+        new EcsClusterIntrospector(cftClient, ec2Client, logger,
+            new EcsClusterIntrospectionCache(cacheFolder.getRoot(), TimeUnit.HOURS.toMillis(1)))
+            .introspect(stackName, Regions.US_EAST_1);
+
+        //WHEN
+        EcsClusterMetadata meta = new EcsClusterIntrospector(cftClient, ec2Client, logger,
+            new EcsClusterIntrospectionCache(cacheFolder.getRoot(), TimeUnit.HOURS.toMillis(1)))
+            .introspect(stackName, Regions.US_EAST_1);
+
+        //THEN
+        assertEquals("vpc12345", meta.getVpcId());
+        assertEquals("some-cluster", meta.getClusterCftStackTags().get(0).getValue());
+        verify(cftClient, times(1)).describeStackResources(Mockito.any(DescribeStackResourcesRequest.class));
+    }
+
+    @Test
+    public void testInspectWritesCacheReadableByOwnerOnly() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        //GIVEN
+        String stackName = "private-cluster-stack";
+        mockClusterStack(stackName, new Date(1000));
+        File cacheDir = new File(cacheFolder.getRoot(), "cluster-introspection");
+
+        //WHEN
+        new EcsClusterIntrospector(cftClient, ec2Client, logger,
+            new EcsClusterIntrospectionCache(cacheDir, TimeUnit.HOURS.toMillis(1)))
+            .introspect(stackName, Regions.US_EAST_1);
+
+        //THEN
+        assertEquals("rwx------",
+            PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDir.toPath())));
+        File[] files = cacheDir.listFiles();
+        assertEquals(1, files.length);
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(files[0].toPath())));
+    }
+
+    private void mockClusterStack(String stackName, Date lastUpdated) {
+        DescribeStackResourcesResult describeStackResourcesResult = new DescribeStackResourcesResult()
+            .withStackResources(
+                new StackResource().withLogicalResourceId("someAppSecurityGroup").withPhysicalResourceId("sg23456"));
+        when(cftClient.describeStackResources(new DescribeStackResourcesRequest().withStackName(stackName)))
+            .thenReturn(describeStackResourcesResult);
+
+        Stack stack = new Stack().withStackName(stackName)
+            .withStackId("arn:aws:cloudformation:us-east-1:123456789012:stack/" + stackName + "/1")
+            .withLastUpdatedTime(lastUpdated)
+            .withTags(new Tag().withKey("Name").withValue("some-cluster"));
+        when(cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName)))
+            .thenReturn(new DescribeStacksResult().withStacks(stack));
+
+        Vpc vpc = new Vpc().withVpcId("vpc12345")
+            .withTags(new com.amazonaws.services.ec2.model.Tag().withKey("Name").withValue("nonprod-vpc"));
+        when(ec2Client.describeVpcs(Mockito.any(DescribeVpcsRequest.class)))
+            .thenReturn(new DescribeVpcsResult().withVpcs(vpc));
+
+        Subnet subnet = new Subnet().withVpcId("vpc12345").withSubnetId("subnet-1")
+            .withTags(new com.amazonaws.services.ec2.model.Tag().withKey("Name").withValue("private-elb-subnet"));
+        when(ec2Client.describeSubnets(Mockito.any(DescribeSubnetsRequest.class)))
+            .thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
+    }
 }
@@ -50,4 +50,24 @@ public class EcsDefinitionParserTest {
         EcsPushDefinition def = parser.parse(template, false);
         Assert.assertEquals("udp", def.getContainerDefinitions().get(0).getPortMappings().get(0).getProtocol());
     }
+
+    @Test
+    public void shouldCoerceMappedInProperties() {
+        handler.addProperty("memory", "512");
+        handler.addProperty("app", "my-app");
+        String template = baseTemplate.append("  image: repo/${app}:latest\n")
+            .append("  cpu: ${memory}\n")
+            .append("appName: ${app}").toString();
+        EcsPushDefinition def = parser.parse(template, false);
+        Assert.assertEquals("repo/my-app:latest", def.getContainerDefinitions().get(0).getImage());
+        Assert.assertEquals(Integer.valueOf(512), def.getContainerDefinitions().get(0).getCpu());
+    }
+
+    @Test
+    public void shouldMapPropertiesWithQuotesIntoJson() {
+        handler.addProperty("quoted", "say \"hi\"");
+        String template = "{\"appName\": \"${quoted}\", \"containerDefinitions\": [{\"memory\": 256}]}";
+        EcsPushDefinition def = parser.parse(template, true);
+        Assert.assertEquals("say \"hi\"", def.getAppName());
+    }
 }
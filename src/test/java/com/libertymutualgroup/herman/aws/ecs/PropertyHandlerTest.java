@@ -1,5 +1,6 @@
 package com.libertymutualgroup.herman.aws.ecs;
 
+import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.SysoutLogger;
 import org.junit.Assert;
 import org.junit.Before;
@@ -41,6 +42,44 @@ public class PropertyHandlerTest {
         Assert.assertEquals("{\"property\": \"" + value + "\"}", result);
     }
 
+    @Test
+    public void shouldMapReferencesInsidePropertyValues() {
+        handler.addProperty("outer", "${inner}-${inner}");
+        handler.addProperty("inner", "$1\\x");
+        String result = handler.mapInProperties("${outer}/${outer}");
+        Assert.assertEquals("$1\\x-$1\\x/$1\\x-$1\\x", result);
+    }
+
+    @Test
+    public void shouldLeaveInvalidReferencesAlone() {
+        handler.addProperty("prop", value);
+        String template = "${not a prop} $prop ${} ${prop} ${unclosed";
+        String result = handler.mapInProperties(template);
+        Assert.assertEquals("${not a prop} $prop ${} " + value + " ${unclosed", result);
+    }
+
+    @Test
+    public void shouldFailOnMissingProperty() {
+        try {
+            handler.mapInProperties("${missing}");
+            Assert.fail("Expected missing property to fail");
+        } catch (AwsExecException e) {
+            Assert.assertEquals("Missing property set for missing", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldFailOnCircularReference() {
+        handler.addProperty("a", "${b}");
+        handler.addProperty("b", "x-${a}");
+        try {
+            handler.mapInProperties("${a}");
+            Assert.fail("Expected circular reference to fail");
+        } catch (AwsExecException e) {
+            Assert.assertEquals("Circular property reference: a -> b -> a", e.getMessage());
+        }
+    }
+
     @Test
     public void shouldLoadPropertiesFromFile() throws Exception {
         File file = new File("junit.properties");
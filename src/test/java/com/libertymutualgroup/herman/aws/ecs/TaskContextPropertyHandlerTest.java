@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.atlassian.bamboo.deployments.execution.DeploymentContext;
+import com.atlassian.bamboo.deployments.execution.DeploymentTaskContext;
+import com.atlassian.bamboo.v2.build.CommonContext;
+import com.atlassian.bamboo.variable.CustomVariableContext;
+import com.atlassian.bamboo.variable.VariableContext;
+import com.atlassian.bamboo.variable.VariableDefinitionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TaskContextPropertyHandlerTest {
+
+    @Mock
+    DeploymentTaskContext taskContext;
+    @Mock
+    DeploymentContext deploymentContext;
+    @Mock
+    CommonContext commonContext;
+    @Mock
+    VariableContext deploymentVariables;
+    @Mock
+    VariableContext commonVariables;
+    @Mock
+    CustomVariableContext customVariableContext;
+
+    private TaskContextPropertyHandler handler;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        when(taskContext.getDeploymentContext()).thenReturn(deploymentContext);
+        when(taskContext.getCommonContext()).thenReturn(commonContext);
+        when(taskContext.getRootDirectory()).thenReturn(new File("."));
+        when(deploymentContext.getEnvironmentName()).thenReturn("junit");
+        when(deploymentContext.getVariableContext()).thenReturn(deploymentVariables);
+        when(commonContext.getVariableContext()).thenReturn(commonVariables);
+
+        Map<String, VariableDefinitionContext> deploymentEffective = variables("shared", "deployment");
+        Map<String, VariableDefinitionContext> commonEffective = variables("shared", "common", "build", "plan");
+        Map<String, VariableDefinitionContext> custom = variables("custom", "value");
+        when(deploymentVariables.getEffectiveVariables()).thenReturn(deploymentEffective);
+        when(deploymentVariables.getResultVariables()).thenReturn(Collections.emptyMap());
+        when(deploymentVariables.getOriginalVariables()).thenReturn(Collections.emptyMap());
+        when(commonVariables.getEffectiveVariables()).thenReturn(commonEffective);
+        when(commonVariables.getResultVariables()).thenReturn(Collections.emptyMap());
+        when(customVariableContext.getVariableContexts()).thenReturn(custom);
+
+        handler = new TaskContextPropertyHandler(taskContext, customVariableContext);
+    }
+
+    @Test
+    public void shouldResolveInPrecedenceOrder() {
+        handler.addProperty("custom", "from-props");
+
+        assertEquals("deployment", handler.lookupVariable("bamboo.shared"));
+        assertEquals("plan", handler.lookupVariable("build"));
+        assertEquals("from-props", handler.lookupVariable("custom"));
+        assertEquals("junit", handler.lookupVariable("bamboo.deploy.environment"));
+        assertNull(handler.lookupVariable("unknown"));
+    }
+
+    @Test
+    public void shouldBuildIndexOnce() {
+        for (int i = 0; i < 10; i++) {
+            handler.lookupVariable("shared");
+            handler.lookupVariable("custom");
+            handler.lookupVariable("unknown");
+        }
+
+        verify(deploymentVariables, times(1)).getEffectiveVariables();
+        verify(commonVariables, times(1)).getEffectiveVariables();
+        verify(customVariableContext, times(1)).getVariableContexts();
+    }
+
+    @Test
+    public void shouldTrackKeysUsed() {
+        handler.addProperty("fromProps", "x");
+        handler.lookupVariable("bamboo.shared");
+        handler.lookupVariable("custom");
+        handler.lookupVariable("fromProps");
+        handler.lookupVariable("unknown");
+
+        assertTrue(handler.getPropertyKeysUsed().contains("shared"));
+        assertTrue(handler.getPropertyKeysUsed().contains("custom"));
+        assertFalse(handler.getPropertyKeysUsed().contains("fromProps"));
+        assertFalse(handler.getPropertyKeysUsed().contains("unknown"));
+    }
+
+    private static Map<String, VariableDefinitionContext> variables(String... keysAndValues) {
+        Map<String, VariableDefinitionContext> variables = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            VariableDefinitionContext variable = Mockito.mock(VariableDefinitionContext.class);
+            when(variable.getValue()).thenReturn(keysAndValues[i + 1]);
+            variables.put(keysAndValues[i], variable);
+        }
+        return variables;
+    }
+}
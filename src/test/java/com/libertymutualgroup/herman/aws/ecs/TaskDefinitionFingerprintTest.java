@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.amazonaws.services.ecs.model.ContainerDefinition;
+import com.amazonaws.services.ecs.model.DescribeTaskDefinitionResult;
+import com.amazonaws.services.ecs.model.KeyValuePair;
+import com.amazonaws.services.ecs.model.RegisterTaskDefinitionRequest;
+import com.amazonaws.services.ecs.model.Tag;
+import com.amazonaws.services.ecs.model.TaskDefinition;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TaskDefinitionFingerprintTest {
+
+    @Test
+    public void shouldProduceSameHashForSameContent() {
+        assertEquals(TaskDefinitionFingerprint.hash(request("1")), TaskDefinitionFingerprint.hash(request("1")));
+    }
+
+    @Test
+    public void shouldChangeHashWhenEnvironmentChanges() {
+        assertFalse(TaskDefinitionFingerprint.hash(request("1")).equals(TaskDefinitionFingerprint.hash(request("2"))));
+    }
+
+    @Test
+    public void shouldIgnoreTagsWhenHashing() {
+        String hash = TaskDefinitionFingerprint.hash(request("1"));
+
+        assertEquals(hash, TaskDefinitionFingerprint.hash(request("1")
+            .withTags(TaskDefinitionFingerprint.toTag("something-else"))));
+    }
+
+    @Test
+    public void shouldMatchHashTag() {
+        String hash = TaskDefinitionFingerprint.hash(request("1"));
+
+        assertTrue(TaskDefinitionFingerprint.matches(hash,
+            Arrays.asList(new Tag().withKey("team").withValue("a"), TaskDefinitionFingerprint.toTag(hash))));
+        assertFalse(TaskDefinitionFingerprint.matches(hash,
+            Collections.singletonList(TaskDefinitionFingerprint.toTag("other"))));
+        assertFalse(TaskDefinitionFingerprint.matches(hash, null));
+    }
+
+    @Test
+    public void shouldCompareDescribedDefinitionWhenRevisionIsUntagged() {
+        RegisterTaskDefinitionRequest registered = request("1");
+        DescribeTaskDefinitionResult current = new DescribeTaskDefinitionResult().withTaskDefinition(new TaskDefinition()
+            .withFamily(registered.getFamily())
+            .withNetworkMode(registered.getNetworkMode())
+            .withContainerDefinitions(registered.getContainerDefinitions()));
+
+        assertTrue(TaskDefinitionFingerprint.matchesRevision(TaskDefinitionFingerprint.hash(request("1")), current));
+        assertFalse(TaskDefinitionFingerprint.matchesRevision(TaskDefinitionFingerprint.hash(request("2")), current));
+        assertFalse(TaskDefinitionFingerprint.matchesRevision(TaskDefinitionFingerprint.hash(request("1")),
+            current.withTags(TaskDefinitionFingerprint.toTag("other"))));
+    }
+
+    private RegisterTaskDefinitionRequest request(String version) {
+        return new RegisterTaskDefinitionRequest()
+            .withFamily("app")
+            .withNetworkMode("bridge")
+            .withContainerDefinitions(new ContainerDefinition()
+                .withName("app")
+                .withImage("app:latest")
+                .withMemory(512)
+                .withEnvironment(new KeyValuePair().withName("VERSION").withValue(version)));
+    }
+}
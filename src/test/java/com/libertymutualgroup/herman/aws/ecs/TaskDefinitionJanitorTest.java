@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.amazonaws.services.cloudwatchevents.AmazonCloudWatchEvents;
+import com.amazonaws.services.cloudwatchevents.model.EcsParameters;
+import com.amazonaws.services.cloudwatchevents.model.EventBus;
+import com.amazonaws.services.cloudwatchevents.model.ListEventBusesRequest;
+import com.amazonaws.services.cloudwatchevents.model.ListEventBusesResult;
+import com.amazonaws.services.cloudwatchevents.model.ListRulesRequest;
+import com.amazonaws.services.cloudwatchevents.model.ListRulesResult;
+import com.amazonaws.services.cloudwatchevents.model.ListTargetsByRuleRequest;
+import com.amazonaws.services.cloudwatchevents.model.ListTargetsByRuleResult;
+import com.amazonaws.services.cloudwatchevents.model.Rule;
+import com.amazonaws.services.cloudwatchevents.model.Target;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.DeregisterTaskDefinitionRequest;
+import com.amazonaws.services.ecs.model.DescribeServicesRequest;
+import com.amazonaws.services.ecs.model.DescribeServicesResult;
+import com.amazonaws.services.ecs.model.DescribeTasksRequest;
+import com.amazonaws.services.ecs.model.DescribeTasksResult;
+import com.amazonaws.services.ecs.model.Deployment;
+import com.amazonaws.services.ecs.model.ListClustersRequest;
+import com.amazonaws.services.ecs.model.ListClustersResult;
+import com.amazonaws.services.ecs.model.ListServicesRequest;
+import com.amazonaws.services.ecs.model.ListServicesResult;
+import com.amazonaws.services.ecs.model.ListTaskDefinitionFamiliesRequest;
+import com.amazonaws.services.ecs.model.ListTaskDefinitionFamiliesResult;
+import com.amazonaws.services.ecs.model.ListTaskDefinitionsRequest;
+import com.amazonaws.services.ecs.model.ListTaskDefinitionsResult;
+import com.amazonaws.services.ecs.model.ListTasksRequest;
+import com.amazonaws.services.ecs.model.ListTasksResult;
+import com.amazonaws.services.ecs.model.Service;
+import com.amazonaws.services.ecs.model.Task;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TaskDefinitionJanitorTest {
+
+    private static final String ARN = "arn:aws:ecs:us-east-1:123456789012:task-definition/";
+
+    HermanLogger logger = new SysoutLogger();
+
+    @Mock
+    AmazonECS ecsClient;
+    @Mock
+    AmazonCloudWatchEvents eventsClient;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        when(ecsClient.listClusters(Mockito.any(ListClustersRequest.class)))
+            .thenReturn(new ListClustersResult().withClusterArns("cluster"));
+        when(ecsClient.listServices(Mockito.any(ListServicesRequest.class)))
+            .thenReturn(new ListServicesResult());
+        when(ecsClient.listTasks(Mockito.any(ListTasksRequest.class))).thenReturn(new ListTasksResult());
+        when(eventsClient.listEventBuses(Mockito.any(ListEventBusesRequest.class)))
+            .thenReturn(new ListEventBusesResult().withEventBuses(new EventBus().withName("default")));
+        when(eventsClient.listRules(Mockito.any(ListRulesRequest.class))).thenReturn(new ListRulesResult());
+    }
+
+    @Test
+    public void shouldPageThroughRevisionsAndKeepNewestAndProtected() {
+        when(ecsClient.listTaskDefinitions(Mockito.any(ListTaskDefinitionsRequest.class))).thenReturn(
+            new ListTaskDefinitionsResult().withTaskDefinitionArns(ARN + "app:9", ARN + "app-worker:4", ARN + "app:8")
+                .withNextToken("page2"),
+            new ListTaskDefinitionsResult().withTaskDefinitionArns(ARN + "app:7", ARN + "app:6", ARN + "app:5"));
+
+        List<String> stale = new TaskDefinitionJanitor(ecsClient, logger, 2, 0)
+            .findStaleRevisions("app", new HashSet<>(Collections.singletonList(ARN + "app:6")));
+
+        assertEquals(Arrays.asList(ARN + "app:7", ARN + "app:5"), stale);
+        verify(ecsClient, times(2)).listTaskDefinitions(Mockito.any(ListTaskDefinitionsRequest.class));
+    }
+
+    @Test
+    public void shouldDeregisterInBackground() throws Exception {
+        when(ecsClient.listTaskDefinitions(Mockito.any(ListTaskDefinitionsRequest.class))).thenReturn(
+            new ListTaskDefinitionsResult().withTaskDefinitionArns(ARN + "app:3", ARN + "app:2", ARN + "app:1"));
+
+        int deregistered = new TaskDefinitionJanitor(ecsClient, logger, 1, 0)
+            .cleanAsync("app", new HashSet<>(Collections.singletonList(ARN + "app:2"))).get();
+
+        assertEquals(1, deregistered);
+        verify(ecsClient).deregisterTaskDefinition(new DeregisterTaskDefinitionRequest()
+            .withTaskDefinition(ARN + "app:1"));
+    }
+
+    @Test
+    public void shouldNotDeregisterRevisionsUsedByServicesWhenSweeping() {
+        when(ecsClient.listServices(Mockito.any(ListServicesRequest.class)))
+            .thenReturn(new ListServicesResult().withServiceArns("app"));
+        when(ecsClient.describeServices(Mockito.any(DescribeServicesRequest.class))).thenReturn(
+            new DescribeServicesResult().withServices(new Service().withTaskDefinition(ARN + "app:2")
+                .withDeployments(new Deployment().withTaskDefinition(ARN + "app:1"))));
+        when(ecsClient.listTaskDefinitionFamilies(Mockito.any(ListTaskDefinitionFamiliesRequest.class)))
+            .thenReturn(new ListTaskDefinitionFamiliesResult().withFamilies("app"));
+        when(ecsClient.listTaskDefinitions(Mockito.any(ListTaskDefinitionsRequest.class))).thenReturn(
+            new ListTaskDefinitionsResult().withTaskDefinitionArns(ARN + "app:3", ARN + "app:2", ARN + "app:1"));
+
+        assertEquals(0, new TaskDefinitionJanitor(ecsClient, logger, 1, 0).withEventsClient(eventsClient)
+            .sweep(null, 2, false));
+        verify(ecsClient, never()).deregisterTaskDefinition(Mockito.any(DeregisterTaskDefinitionRequest.class));
+    }
+
+    @Test
+    public void shouldNotDeregisterRevisionsUsedByTasksOrScheduledRulesWhenSweeping() {
+        when(ecsClient.listTasks(Mockito.any(ListTasksRequest.class)))
+            .thenReturn(new ListTasksResult().withTaskArns("task"));
+        when(ecsClient.describeTasks(Mockito.any(DescribeTasksRequest.class))).thenReturn(
+            new DescribeTasksResult().withTasks(new Task().withTaskDefinitionArn(ARN + "job:2")));
+        when(eventsClient.listRules(Mockito.any(ListRulesRequest.class)))
+            .thenReturn(new ListRulesResult().withRules(new Rule().withName("nightly"), new Rule().withName("hourly")));
+        when(eventsClient.listTargetsByRule(new ListTargetsByRuleRequest().withEventBusName("default")
+            .withRule("nightly"))).thenReturn(new ListTargetsByRuleResult().withTargets(new Target()
+            .withEcsParameters(new EcsParameters().withTaskDefinitionArn(ARN + "job:1"))));
+        when(eventsClient.listTargetsByRule(new ListTargetsByRuleRequest().withEventBusName("default")
+            .withRule("hourly"))).thenReturn(new ListTargetsByRuleResult().withTargets(new Target()
+            .withEcsParameters(new EcsParameters().withTaskDefinitionArn(ARN + "report"))));
+        when(ecsClient.listTaskDefinitionFamilies(Mockito.any(ListTaskDefinitionFamiliesRequest.class)))
+            .thenReturn(new ListTaskDefinitionFamiliesResult().withFamilies("job", "report"));
+        when(ecsClient.listTaskDefinitions(new ListTaskDefinitionsRequest().withFamilyPrefix("job")
+            .withStatus("ACTIVE").withSort("DESC"))).thenReturn(
+            new ListTaskDefinitionsResult().withTaskDefinitionArns(ARN + "job:3", ARN + "job:2", ARN + "job:1"));
+        when(ecsClient.listTaskDefinitions(new ListTaskDefinitionsRequest().withFamilyPrefix("report")
+            .withStatus("ACTIVE").withSort("DESC"))).thenReturn(
+            new ListTaskDefinitionsResult().withTaskDefinitionArns(ARN + "report:2", ARN + "report:1"));
+
+        assertEquals(2, new TaskDefinitionJanitor(ecsClient, logger, 0, 0).withEventsClient(eventsClient)
+            .sweep("", 2, false));
+        verify(ecsClient).deregisterTaskDefinition(new DeregisterTaskDefinitionRequest()
+            .withTaskDefinition(ARN + "job:3"));
+        verify(ecsClient).deregisterTaskDefinition(new DeregisterTaskDefinitionRequest()
+            .withTaskDefinition(ARN + "report:1"));
+        verify(ecsClient, never()).deregisterTaskDefinition(new DeregisterTaskDefinitionRequest()
+            .withTaskDefinition(ARN + "report:2"));
+    }
+
+    @Test
+    public void shouldOnlyListStaleRevisionsOnDryRunSweep() {
+        when(ecsClient.listTaskDefinitionFamilies(Mockito.any(ListTaskDefinitionFamiliesRequest.class)))
+            .thenReturn(new ListTaskDefinitionFamiliesResult().withFamilies("app"));
+        when(ecsClient.listTaskDefinitions(Mockito.any(ListTaskDefinitionsRequest.class))).thenReturn(
+            new ListTaskDefinitionsResult().withTaskDefinitionArns(ARN + "app:2", ARN + "app:1"));
+
+        assertEquals(1, new TaskDefinitionJanitor(ecsClient, logger, 1, 0).withEventsClient(eventsClient)
+            .sweep("app", 2, true));
+        verify(ecsClient).listTaskDefinitionFamilies(new ListTaskDefinitionFamiliesRequest().withFamilyPrefix("app")
+            .withStatus("ACTIVE"));
+        verify(ecsClient, never()).deregisterTaskDefinition(Mockito.any(DeregisterTaskDefinitionRequest.class));
+    }
+}
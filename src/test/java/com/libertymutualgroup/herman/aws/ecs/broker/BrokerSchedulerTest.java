@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BrokerSchedulerTest {
+
+    @Test
+    public void shouldRunIndependentBrokersConcurrently() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        BrokerScheduler scheduler = new BrokerScheduler(new SysoutLogger(), 2)
+            .addBroker("sqs", () -> awaitPeer(bothStarted))
+            .addBroker("sns", () -> awaitPeer(bothStarted));
+
+        Map<String, Long> timings = scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("sqs", "sns"), Arrays.asList(timings.keySet().toArray()));
+    }
+
+    @Test
+    public void shouldStartDependentsAfterTheirDependencies() {
+        List<String> started = new CopyOnWriteArrayList<>();
+        new BrokerScheduler(new SysoutLogger(), 4)
+            .addBroker("kms", () -> {
+                Thread.sleep(50);
+                started.add("kms");
+                return null;
+            })
+            .addBroker("s3", () -> {
+                started.add("s3");
+                return null;
+            }, "kms")
+            .run();
+
+        Assert.assertEquals(Arrays.asList("kms", "s3"), started);
+    }
+
+    @Test
+    public void shouldApplyDeferredActionsInDeclarationOrder() {
+        List<String> applied = new CopyOnWriteArrayList<>();
+        new BrokerScheduler(new SysoutLogger(), 4)
+            .addBroker("slow", () -> {
+                Thread.sleep(50);
+                return () -> applied.add("slow");
+            })
+            .addBroker("fast", () -> () -> applied.add("fast"))
+            .run();
+
+        Assert.assertEquals(Arrays.asList("slow", "fast"), applied);
+    }
+
+    @Test
+    public void shouldSkipDependentsAndRethrowWhenBrokerFails() {
+        AtomicBoolean dependentRan = new AtomicBoolean(false);
+        BrokerScheduler scheduler = new BrokerScheduler(new SysoutLogger(), 4)
+            .addBroker("kms", () -> {
+                throw new AwsExecException("kms failed");
+            })
+            .addBroker("rds", () -> {
+                dependentRan.set(true);
+                return null;
+            }, "kms");
+
+        try {
+            scheduler.run();
+            Assert.fail("Expected broker failure to be rethrown");
+        } catch (AwsExecException e) {
+            Assert.assertEquals("kms failed", e.getMessage());
+        }
+        Assert.assertFalse(dependentRan.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownDependency() {
+        new BrokerScheduler(new SysoutLogger(), 4).addBroker("s3", () -> null, "kms");
+    }
+
+    private Runnable awaitPeer(CountDownLatch bothStarted) throws InterruptedException {
+        bothStarted.countDown();
+        if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+            throw new AwsExecException("Brokers did not run concurrently");
+        }
+        return null;
+    }
+}
@@ -45,7 +45,7 @@ public class DynamoDBConfigTest {
         String temp = FileUtils.readFileToString(new File(template.getFile()));
 
         PropertyHandler ph = mock(TaskContextPropertyHandler.class);
-        when(ph.mapInProperties(any())).thenReturn(temp);
+        when(ph.mapInProperties(any())).thenAnswer(invocation -> invocation.getArguments()[0]);
 
         EcsDefinitionParser parser = new EcsDefinitionParser(ph);
         EcsPushDefinition pushDef = parser.parse(temp, false);
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesResult;
+import com.amazonaws.services.ecs.model.ListContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.ListContainerInstancesResult;
+import com.amazonaws.services.ecs.model.PutAttributesRequest;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContainerInstanceHandlerTest {
+
+    private AmazonECS ecsClient;
+    private ContainerInstanceHandler handler;
+
+    @Before
+    public void setup() {
+        ecsClient = mock(AmazonECS.class);
+        handler = new ContainerInstanceHandler(ecsClient, mock(AmazonEC2.class), mock(HermanLogger.class));
+
+        // 250 instances over two list pages
+        when(ecsClient.listContainerInstances(any(ListContainerInstancesRequest.class)))
+            .thenReturn(new ListContainerInstancesResult().withContainerInstanceArns(arns(0, 100)).withNextToken("next"))
+            .thenReturn(new ListContainerInstancesResult().withContainerInstanceArns(arns(100, 250)));
+        when(ecsClient.describeContainerInstances(any(DescribeContainerInstancesRequest.class)))
+            .thenAnswer(invocation -> {
+                DescribeContainerInstancesRequest request =
+                    (DescribeContainerInstancesRequest) invocation.getArguments()[0];
+                List<ContainerInstance> instances = request.getContainerInstances().stream()
+                    .map(arn -> new ContainerInstance().withContainerInstanceArn(arn))
+                    .collect(Collectors.toList());
+                return new DescribeContainerInstancesResult().withContainerInstances(instances);
+            });
+    }
+
+    @Test
+    public void shouldPageAndDescribeInChunks() {
+        List<ContainerInstance> instances = handler.getContainerInstances("cluster");
+
+        assertEquals(250, instances.size());
+        assertEquals("arn-0", instances.get(0).getContainerInstanceArn());
+        assertEquals("arn-249", instances.get(249).getContainerInstanceArn());
+        verify(ecsClient, times(2)).listContainerInstances(any(ListContainerInstancesRequest.class));
+        verify(ecsClient, times(3)).describeContainerInstances(any(DescribeContainerInstancesRequest.class));
+    }
+
+    @Test
+    public void shouldBatchAttributesPerPut() {
+        handler.setAttributeOnCluster("cluster", "state", "pre-drain");
+
+        ArgumentCaptor<PutAttributesRequest> requests = ArgumentCaptor.forClass(PutAttributesRequest.class);
+        verify(ecsClient, times(25)).putAttributes(requests.capture());
+        PutAttributesRequest first = requests.getAllValues().get(0);
+        assertEquals(ContainerInstanceHandler.MAX_ATTRIBUTES_PER_PUT, first.getAttributes().size());
+        assertEquals("arn-1", first.getAttributes().get(1).getTargetId());
+        assertEquals("pre-drain", first.getAttributes().get(1).getValue());
+    }
+
+    private static List<String> arns(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "arn-" + i).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesResult;
+import com.amazonaws.services.ecs.model.Resource;
+import com.amazonaws.services.ecs.model.UpdateContainerInstancesStateRequest;
+import com.amazonaws.services.ecs.model.UpdateContainerInstancesStateResult;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DrainSchedulerTest {
+
+    private static final long POLL_MS = 10000;
+
+    private AmazonECS ecsClient;
+    private AtomicLong clock;
+    private Map<String, Integer> pollsUntilDrained;
+    private List<List<String>> drainBatches;
+
+    @Before
+    public void setup() {
+        ecsClient = mock(AmazonECS.class);
+        clock = new AtomicLong();
+        pollsUntilDrained = new HashMap<>();
+        drainBatches = new ArrayList<>();
+
+        when(ecsClient.updateContainerInstancesState(any(UpdateContainerInstancesStateRequest.class)))
+            .thenAnswer(invocation -> {
+                UpdateContainerInstancesStateRequest request =
+                    (UpdateContainerInstancesStateRequest) invocation.getArguments()[0];
+                drainBatches.add(new ArrayList<>(request.getContainerInstances()));
+                return new UpdateContainerInstancesStateResult();
+            });
+        when(ecsClient.describeContainerInstances(any(DescribeContainerInstancesRequest.class)))
+            .thenAnswer(invocation -> {
+                DescribeContainerInstancesRequest request =
+                    (DescribeContainerInstancesRequest) invocation.getArguments()[0];
+                List<ContainerInstance> instances = request.getContainerInstances().stream()
+                    .map(this::instance)
+                    .collect(Collectors.toList());
+                return new DescribeContainerInstancesResult().withContainerInstances(instances);
+            });
+    }
+
+    @Test
+    public void shouldStartNextInstanceAsSoonAsASlotFrees() {
+        // each old instance uses half of the spare capacity on the new one, so two fit at a time
+        pollsUntilDrained.put("old-1", 1);
+        pollsUntilDrained.put("old-2", 3);
+        pollsUntilDrained.put("old-3", 1);
+
+        Map<String, Long> durations = scheduler(3).drain(Arrays.asList("old-1", "old-2", "old-3"),
+            Collections.singletonList("new-1"));
+
+        assertEquals(Arrays.asList(Arrays.asList("old-1", "old-2"), Collections.singletonList("old-3")),
+            drainBatches);
+        assertEquals(POLL_MS, (long) durations.get("old-1"));
+        assertEquals(3 * POLL_MS, (long) durations.get("old-2"));
+        assertEquals(POLL_MS, (long) durations.get("old-3"));
+        // old-3 finished alongside old-2 instead of waiting for a whole partition to drain
+        assertEquals(3 * POLL_MS, clock.get());
+    }
+
+    @Test
+    public void shouldFallBackToMaxConcurrentWithoutNewInstances() {
+        pollsUntilDrained.put("old-1", 2);
+        pollsUntilDrained.put("old-2", 2);
+        pollsUntilDrained.put("old-3", 2);
+
+        scheduler(2).drain(Arrays.asList("old-1", "old-2", "old-3"), Collections.emptyList());
+
+        assertEquals(Arrays.asList(Arrays.asList("old-1", "old-2"), Collections.singletonList("old-3")),
+            drainBatches);
+    }
+
+    @Test
+    public void shouldGiveUpOnInstanceAfterTimeout() {
+        pollsUntilDrained.put("old-1", 100);
+
+        Map<String, Long> durations = scheduler(1).drain(Collections.singletonList("old-1"),
+            Collections.singletonList("new-1"));
+
+        assertEquals(3 * POLL_MS, (long) durations.get("old-1"));
+    }
+
+    private DrainScheduler scheduler(int maxConcurrent) {
+        return new DrainScheduler(ecsClient, mock(HermanLogger.class), "cluster", maxConcurrent, POLL_MS,
+            3 * POLL_MS, clock::addAndGet, clock::get);
+    }
+
+    private ContainerInstance instance(String arn) {
+        boolean draining = drainBatches.stream().anyMatch(batch -> batch.contains(arn));
+        int running = 0;
+        if (arn.startsWith("old")) {
+            running = pollsUntilDrained.get(arn);
+            if (draining && running > 0) {
+                pollsUntilDrained.put(arn, --running);
+            }
+        }
+        List<Resource> registered = resources(1024, 2048);
+        List<Resource> remaining = arn.startsWith("old") ? resources(512, 1024) : resources(1024, 2048);
+        return new ContainerInstance().withContainerInstanceArn(arn).withEc2InstanceId("i-" + arn)
+            .withRunningTasksCount(running).withRegisteredResources(registered).withRemainingResources(remaining);
+    }
+
+    private static List<Resource> resources(int cpu, int memory) {
+        return Arrays.asList(new Resource().withName("CPU").withIntegerValue(cpu),
+            new Resource().withName("MEMORY").withIntegerValue(memory));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesResult;
+import com.amazonaws.services.ecs.model.ListContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.ListContainerInstancesResult;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+import com.libertymutualgroup.herman.aws.ecs.cluster.InstanceLifecycleTracker.State;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InstanceLifecycleTrackerTest {
+
+    private static final String ASG = "cluster-instances-2-asg";
+    private static final long POLL_MS = 10000;
+
+    private AmazonECS ecsClient;
+    private AutoscalingGroupHandler asgHandler;
+    private AtomicLong clock;
+    private Map<String, String> lifecycle;
+    private Map<String, String> health;
+    private Set<String> registered;
+    private List<String> filters;
+
+    @Before
+    public void setup() {
+        ecsClient = mock(AmazonECS.class);
+        asgHandler = mock(AutoscalingGroupHandler.class);
+        clock = new AtomicLong();
+        lifecycle = new LinkedHashMap<>();
+        health = new LinkedHashMap<>();
+        registered = new HashSet<>();
+        filters = new ArrayList<>();
+
+        when(asgHandler.getAsg(ASG)).thenAnswer(invocation -> {
+            List<Instance> instances = lifecycle.keySet().stream()
+                .map(id -> new Instance()
+                    .withInstanceId(id)
+                    .withLifecycleState(lifecycle.get(id))
+                    .withHealthStatus(health.getOrDefault(id, "Healthy")))
+                .collect(Collectors.toList());
+            return new AutoScalingGroup().withDesiredCapacity(2).withInstances(instances);
+        });
+        when(ecsClient.listContainerInstances(any(ListContainerInstancesRequest.class))).thenAnswer(invocation -> {
+            String filter = ((ListContainerInstancesRequest) invocation.getArguments()[0]).getFilter();
+            filters.add(filter);
+            List<String> arns = registered.stream()
+                .filter(id -> filter.contains("'" + id + "'"))
+                .map(id -> "arn-" + id)
+                .collect(Collectors.toList());
+            return new ListContainerInstancesResult().withContainerInstanceArns(arns);
+        });
+        when(ecsClient.describeContainerInstances(any(DescribeContainerInstancesRequest.class)))
+            .thenAnswer(invocation -> {
+                DescribeContainerInstancesRequest request =
+                    (DescribeContainerInstancesRequest) invocation.getArguments()[0];
+                List<ContainerInstance> instances = request.getContainerInstances().stream()
+                    .map(arn -> new ContainerInstance().withContainerInstanceArn(arn)
+                        .withEc2InstanceId(arn.substring("arn-".length())))
+                    .collect(Collectors.toList());
+                return new DescribeContainerInstancesResult().withContainerInstances(instances);
+            });
+        doAnswer(invocation -> health.put((String) invocation.getArguments()[0], "Unhealthy"))
+            .when(asgHandler).setEc2Unhealthy(any(String.class));
+    }
+
+    @Test
+    public void shouldOnlyQueryClusterForInstancesInService() {
+        lifecycle.put("i-1", "InService");
+        lifecycle.put("i-2", "Pending");
+        registered.add("i-1");
+
+        Map<String, State> states = tracker(POLL_MS * 6, millis -> {
+            clock.addAndGet(millis);
+            lifecycle.put("i-2", "InService");
+            registered.add("i-2");
+        }).waitUntilRegistered(ASG);
+
+        assertEquals(State.REGISTERED, states.get("i-1"));
+        assertEquals(State.REGISTERED, states.get("i-2"));
+        assertEquals("ec2InstanceId in ['i-1']", filters.get(0));
+        assertEquals("ec2InstanceId in ['i-2']", filters.get(1));
+    }
+
+    @Test
+    public void shouldReplaceOnlyTheInstanceThatNeverRegisters() {
+        lifecycle.put("i-1", "InService");
+        lifecycle.put("i-2", "InService");
+        registered.add("i-1");
+
+        Map<String, State> states = tracker(POLL_MS * 2, millis -> {
+            clock.addAndGet(millis);
+            if ("Unhealthy".equals(health.get("i-2"))) {
+                lifecycle.put("i-2", "Terminating");
+                lifecycle.put("i-3", "InService");
+                registered.add("i-3");
+            }
+        }).waitUntilRegistered(ASG);
+
+        verify(asgHandler).setEc2Unhealthy("i-2");
+        verify(asgHandler, never()).setEc2Unhealthy("i-1");
+        assertEquals(State.REGISTERED, states.get("i-1"));
+        assertEquals(State.REPLACED, states.get("i-2"));
+        assertEquals(State.REGISTERED, states.get("i-3"));
+        assertFalse(filters.stream().skip(1).anyMatch(filter -> filter.contains("'i-1'")));
+    }
+
+    @Test
+    public void shouldTimeOutWhenInstancesNeverStart() {
+        lifecycle.put("i-1", "Pending");
+        lifecycle.put("i-2", "Pending");
+
+        try {
+            tracker(POLL_MS * 3, clock::addAndGet).waitUntilRegistered(ASG);
+            fail("Expected a timeout");
+        } catch (AwsExecException e) {
+            assertEquals("Instance startup timed out", e.getMessage());
+        }
+        assertEquals(POLL_MS * 3, clock.get());
+    }
+
+    private InstanceLifecycleTracker tracker(long registrationTimeoutMs, LongConsumer sleeper) {
+        return new InstanceLifecycleTracker(ecsClient, asgHandler, mock(HermanLogger.class), "cluster", POLL_MS,
+            POLL_MS * 3, registrationTimeoutMs, sleeper, clock::get);
+    }
+}
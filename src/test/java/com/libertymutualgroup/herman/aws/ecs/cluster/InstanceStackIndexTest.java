@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InstanceStackIndexTest {
+
+    @Test
+    public void shouldFindLatestGenerationNumerically() {
+        AmazonCloudFormation cfnClient = mock(AmazonCloudFormation.class);
+        when(cfnClient.listStacks(any(ListStacksRequest.class)))
+            .thenReturn(new ListStacksResult().withNextToken("page2").withStackSummaries(
+                summary("app-us-east-1-instances-9"),
+                summary("app-us-east-1-shared"),
+                summary("other-app-us-east-1-instances-40")))
+            .thenReturn(new ListStacksResult().withStackSummaries(
+                summary("app-us-east-1-instances-10"),
+                summary("app-us-east-1-instances-old")));
+
+        InstanceStackIndex index = new InstanceStackIndex(cfnClient, "app-us-east-1");
+
+        assertEquals(10, index.getLatestGeneration());
+        assertEquals("app-us-east-1-instances-10", index.getLatest().get().getStackName());
+        assertEquals("app-us-east-1-instances-11", index.getNextStackName());
+
+        // listed once for the whole push, filtered to stacks that still exist
+        ArgumentCaptor<ListStacksRequest> requests = ArgumentCaptor.forClass(ListStacksRequest.class);
+        verify(cfnClient, times(2)).listStacks(requests.capture());
+        assertFalse(requests.getValue().getStackStatusFilters().contains("DELETE_COMPLETE"));
+        assertTrue(requests.getValue().getStackStatusFilters().contains("UPDATE_COMPLETE"));
+    }
+
+    @Test
+    public void shouldStartAtFirstGenerationWithoutStacks() {
+        AmazonCloudFormation cfnClient = mock(AmazonCloudFormation.class);
+        when(cfnClient.listStacks(any(ListStacksRequest.class))).thenReturn(new ListStacksResult());
+
+        InstanceStackIndex index = new InstanceStackIndex(cfnClient, "app-us-east-1");
+
+        assertFalse(index.getLatest().isPresent());
+        assertEquals("app-us-east-1-instances-1", index.getNextStackName());
+    }
+
+    private static StackSummary summary(String name) {
+        return new StackSummary().withStackName(name).withStackStatus("CREATE_COMPLETE");
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstanceTypesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstanceTypesResult;
+import com.amazonaws.services.ec2.model.InstanceTypeInfo;
+import com.amazonaws.services.ec2.model.MemoryInfo;
+import com.amazonaws.services.ec2.model.VCpuInfo;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.Attribute;
+import com.amazonaws.services.ecs.model.ContainerDefinition;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DescribeServicesRequest;
+import com.amazonaws.services.ecs.model.DescribeServicesResult;
+import com.amazonaws.services.ecs.model.DescribeTaskDefinitionRequest;
+import com.amazonaws.services.ecs.model.DescribeTaskDefinitionResult;
+import com.amazonaws.services.ecs.model.DescribeTasksRequest;
+import com.amazonaws.services.ecs.model.DescribeTasksResult;
+import com.amazonaws.services.ecs.model.ListTasksRequest;
+import com.amazonaws.services.ecs.model.ListTasksResult;
+import com.amazonaws.services.ecs.model.PlacementConstraint;
+import com.amazonaws.services.ecs.model.Resource;
+import com.amazonaws.services.ecs.model.Service;
+import com.amazonaws.services.ecs.model.Task;
+import com.amazonaws.services.ecs.model.TaskDefinition;
+import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReplacementCapacityPlannerTest {
+
+    private static final String PRE_DRAIN = "attribute:state !exists or attribute:state != pre-drain";
+
+    private final AmazonECS ecsClient = mock(AmazonECS.class);
+    private final AmazonEC2 ec2Client = mock(AmazonEC2.class);
+    private final ReplacementCapacityPlanner planner =
+        new ReplacementCapacityPlanner(ecsClient, ec2Client, mock(HermanLogger.class));
+
+    private final List<Task> tasks = new ArrayList<>();
+    private final Map<String, TaskDefinition> definitions = new HashMap<>();
+    private final List<Service> services = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        when(ecsClient.listTasks(any(ListTasksRequest.class))).thenAnswer(invocation -> new ListTasksResult()
+            .withTaskArns(tasks.stream().map(Task::getTaskArn).collect(Collectors.toList())));
+        when(ecsClient.describeTasks(any(DescribeTasksRequest.class))).thenAnswer(invocation -> {
+            List<String> arns = ((DescribeTasksRequest) invocation.getArguments()[0]).getTasks();
+            return new DescribeTasksResult().withTasks(tasks.stream()
+                .filter(task -> arns.contains(task.getTaskArn())).collect(Collectors.toList()));
+        });
+        when(ecsClient.describeTaskDefinition(any(DescribeTaskDefinitionRequest.class))).thenAnswer(invocation ->
+            new DescribeTaskDefinitionResult().withTaskDefinition(definitions.get(
+                ((DescribeTaskDefinitionRequest) invocation.getArguments()[0]).getTaskDefinition())));
+        when(ecsClient.describeServices(any(DescribeServicesRequest.class)))
+            .thenAnswer(invocation -> new DescribeServicesResult().withServices(services));
+    }
+
+    @Test
+    public void shouldPlaceEachTaskOntoInstanceCapacity() {
+        // 4 instances of 2048 CPU / 3800 MiB, each running one 2000 MiB task
+        List<ContainerInstance> oldInstances = instances(4, 2048, 3800);
+        definition("app:1", 512, 2000);
+        for (int i = 0; i < 4; i++) {
+            task("app:1", "instance-" + i, "family:app");
+        }
+
+        // 8000 MiB + 10% would fit on 3 instances in aggregate, but two 2000 MiB tasks never fit in 3800 MiB
+        assertEquals(4, planner.plan("cluster", oldInstances, null, 10, 0).getAsInt());
+        assertEquals(4, planner.plan("cluster", oldInstances, "m5.large", 10, 0).getAsInt());
+    }
+
+    @Test
+    public void shouldScaleToNewInstanceType() {
+        when(ec2Client.describeInstanceTypes(any(DescribeInstanceTypesRequest.class)))
+            .thenReturn(new DescribeInstanceTypesResult().withInstanceTypes(
+                type("m5.large", 2, 8192),
+                type("m5.2xlarge", 8, 32768)));
+        List<ContainerInstance> oldInstances = instances(6, 2048, 7680);
+        definition("app:1", 1024, 3000);
+        for (int i = 0; i < 12; i++) {
+            task("app:1", "instance-" + i % 6, "family:app");
+        }
+
+        // 8192 CPU units / 1.1 per m5.2xlarge holds 7 of the 1024 unit tasks
+        assertEquals(2, planner.plan("cluster", oldInstances, "m5.2xlarge", 10, 0).getAsInt());
+    }
+
+    @Test
+    public void shouldKeepDistinctInstanceTasksApart() {
+        List<ContainerInstance> oldInstances = instances(3, 2048, 3800);
+        definition("web:1", 128, 256);
+        services.add(new Service().withServiceName("web")
+            .withPlacementConstraints(new PlacementConstraint().withType("distinctInstance")));
+        for (int i = 0; i < 3; i++) {
+            task("web:1", "instance-" + i, "service:web");
+        }
+        definition("worker:1", 128, 256);
+        task("worker:1", "instance-0", "family:worker");
+
+        assertEquals(3, planner.plan("cluster", oldInstances, null, 10, 0).getAsInt());
+    }
+
+    @Test
+    public void shouldOnlyShareInstancesBetweenMatchingMemberOfConstraints() {
+        List<ContainerInstance> oldInstances = instances(2, 2048, 3800);
+        definition("east-a:1", 128, 256, PRE_DRAIN, "attribute:ecs.availability-zone == us-east-1a");
+        definition("east-b:1", 128, 256, PRE_DRAIN, "attribute:ecs.availability-zone == us-east-1b");
+        definition("any:1", 128, 256, PRE_DRAIN, "attribute:ecs.instance-type == m5.large");
+        task("east-a:1", "instance-0", "family:east-a");
+        task("east-b:1", "instance-1", "family:east-b");
+        task("any:1", "instance-1", "family:any");
+
+        assertEquals(3, planner.plan("cluster", oldInstances, null, 10, 0).getAsInt());
+    }
+
+    @Test
+    public void shouldNotPlanBelowInstanceStackMinimum() {
+        List<ContainerInstance> oldInstances = instances(2, 2048, 3800);
+        definition("app:1", 128, 256);
+        task("app:1", "instance-0", "family:app");
+
+        assertEquals(4, planner.plan("cluster", oldInstances, null, 10, 4).getAsInt());
+        assertEquals(1, planner.plan("cluster", oldInstances, null, 10, 0).getAsInt());
+    }
+
+    @Test
+    public void shouldNotPlanWithoutOldInstances() {
+        assertFalse(planner.plan("cluster", Collections.emptyList(), null, 10, 0).isPresent());
+    }
+
+    private void definition(String arn, int cpu, int memoryReservation, String... memberOf) {
+        definitions.put(arn, new TaskDefinition().withTaskDefinitionArn(arn)
+            .withContainerDefinitions(new ContainerDefinition().withCpu(cpu).withMemoryReservation(memoryReservation))
+            .withPlacementConstraints(Arrays.stream(memberOf)
+                .map(expression -> new TaskDefinitionPlacementConstraint().withType("memberOf")
+                    .withExpression(expression))
+                .collect(Collectors.toList())));
+    }
+
+    private void task(String definitionArn, String instanceArn, String group) {
+        tasks.add(new Task().withTaskArn("task-" + tasks.size()).withTaskDefinitionArn(definitionArn)
+            .withContainerInstanceArn(instanceArn).withGroup(group));
+    }
+
+    private static List<ContainerInstance> instances(int count, int cpu, int memory) {
+        List<ContainerInstance> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            instances.add(new ContainerInstance()
+                .withContainerInstanceArn("instance-" + i)
+                .withAttributes(new Attribute().withName("ecs.instance-type").withValue("m5.large"))
+                .withRegisteredResources(resources(cpu, memory)));
+        }
+        return instances;
+    }
+
+    private static List<Resource> resources(int cpu, int memory) {
+        return Arrays.asList(new Resource().withName("CPU").withIntegerValue(cpu),
+            new Resource().withName("MEMORY").withIntegerValue(memory));
+    }
+
+    private static InstanceTypeInfo type(String name, int vcpus, long memoryMiB) {
+        return new InstanceTypeInfo().withInstanceType(name)
+            .withVCpuInfo(new VCpuInfo().withDefaultVCpus(vcpus))
+            .withMemoryInfo(new MemoryInfo().withSizeInMiB(memoryMiB));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.loadbalancing;
+
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.DeleteServiceRequest;
+import com.amazonaws.services.ecs.model.DescribeServicesRequest;
+import com.amazonaws.services.ecs.model.DescribeServicesResult;
+import com.amazonaws.services.ecs.model.ListClustersRequest;
+import com.amazonaws.services.ecs.model.ListClustersResult;
+import com.amazonaws.services.ecs.model.Service;
+import com.amazonaws.services.ecs.model.UpdateServiceRequest;
+import com.amazonaws.services.ecs.model.UpdateServiceResult;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServicePurgerTest {
+
+    HermanLogger logger = new SysoutLogger();
+
+    @Mock
+    AmazonECS ecsClient;
+
+    ServicePurger purger;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        purger = new ServicePurger(ecsClient, logger, 4, 1, 2);
+    }
+
+    @Test
+    public void shouldPurgeEveryPageOfOtherClustersConcurrently() {
+        when(ecsClient.listClusters(Mockito.any(ListClustersRequest.class))).thenReturn(
+            new ListClustersResult().withClusterArns("arn:cluster/target", "arn:cluster/old-a").withNextToken("next"),
+            new ListClustersResult().withClusterArns("arn:cluster/old-b", "arn:cluster/unused"));
+        stubService("arn:cluster/old-a", "ACTIVE");
+        stubService("arn:cluster/old-b", "ACTIVE");
+        stubService("arn:cluster/unused", "INACTIVE");
+
+        CountDownLatch bothShuttingDown = new CountDownLatch(2);
+        when(ecsClient.updateService(Mockito.any(UpdateServiceRequest.class))).thenAnswer(invocation -> {
+            bothShuttingDown.countDown();
+            if (!bothShuttingDown.await(5, TimeUnit.SECONDS)) {
+                throw new AwsExecException("Clusters were purged one at a time");
+            }
+            return new UpdateServiceResult();
+        });
+
+        purger.waitForPurge(purger.purgeOtherClustersAsync("target", "app"));
+
+        verify(ecsClient).deleteService(new DeleteServiceRequest().withCluster("arn:cluster/old-a").withService("app"));
+        verify(ecsClient).deleteService(new DeleteServiceRequest().withCluster("arn:cluster/old-b").withService("app"));
+        verify(ecsClient, never()).deleteService(
+            new DeleteServiceRequest().withCluster("arn:cluster/unused").withService("app"));
+        verify(ecsClient, never()).describeServices(
+            new DescribeServicesRequest().withCluster("arn:cluster/target").withServices("app"));
+    }
+
+    @Test(expected = AwsExecException.class)
+    public void shouldSurfacePurgeFailuresWhenWaiting() {
+        when(ecsClient.listClusters(Mockito.any(ListClustersRequest.class)))
+            .thenReturn(new ListClustersResult().withClusterArns("arn:cluster/old"));
+        stubService("arn:cluster/old", "ACTIVE");
+        when(ecsClient.updateService(Mockito.any(UpdateServiceRequest.class)))
+            .thenThrow(new AwsExecException("Access denied"));
+
+        purger.waitForPurge(purger.purgeOtherClustersAsync("target", "app"));
+    }
+
+    private void stubService(String cluster, String status) {
+        // Running count 0 and INACTIVE after the first check, so the shutdown and delete waits finish right away
+        when(ecsClient.describeServices(new DescribeServicesRequest().withCluster(cluster).withServices("app")))
+            .thenReturn(
+                new DescribeServicesResult().withServices(new Service().withStatus(status).withRunningCount(1)),
+                new DescribeServicesResult().withServices(new Service().withStatus("INACTIVE").withRunningCount(0)));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.service;
+
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.Container;
+import com.amazonaws.services.ecs.model.DescribeServicesRequest;
+import com.amazonaws.services.ecs.model.DescribeServicesResult;
+import com.amazonaws.services.ecs.model.DescribeTasksRequest;
+import com.amazonaws.services.ecs.model.DescribeTasksResult;
+import com.amazonaws.services.ecs.model.Deployment;
+import com.amazonaws.services.ecs.model.ListTasksRequest;
+import com.amazonaws.services.ecs.model.ListTasksResult;
+import com.amazonaws.services.ecs.model.Service;
+import com.amazonaws.services.ecs.model.Task;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeploymentFailureDetectorTest {
+
+    private static final String NEW_TASK_DEF = "arn:task-definition/app:2";
+    private static final String OLD_TASK_DEF = "arn:task-definition/app:1";
+
+    HermanLogger logger = new SysoutLogger();
+
+    @Mock
+    AmazonECS ecsClient;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void shouldFailOnceThresholdOfNewTasksHasStopped() {
+        when(ecsClient.listTasks(Mockito.any(ListTasksRequest.class))).thenReturn(
+            new ListTasksResult().withTaskArns("t1"),
+            new ListTasksResult().withTaskArns("t1", "t2"));
+        when(ecsClient.describeTasks(Mockito.any(DescribeTasksRequest.class))).thenReturn(
+            new DescribeTasksResult().withTasks(stoppedTask("t1", NEW_TASK_DEF, new Date())),
+            new DescribeTasksResult().withTasks(stoppedTask("t2", NEW_TASK_DEF, new Date())));
+
+        DeploymentFailureDetector detector = detector(2);
+
+        assertFalse(detector.hasFailed());
+        assertTrue(detector.hasFailed());
+        assertEquals(2, detector.getStoppedTasks());
+    }
+
+    @Test
+    public void shouldIgnoreOldRevisionsAndEarlierTasks() {
+        when(ecsClient.listTasks(Mockito.any(ListTasksRequest.class))).thenReturn(
+            new ListTasksResult().withTaskArns("old", "earlier"));
+        when(ecsClient.describeTasks(Mockito.any(DescribeTasksRequest.class))).thenReturn(
+            new DescribeTasksResult().withTasks(
+                stoppedTask("old", OLD_TASK_DEF, new Date()),
+                stoppedTask("earlier", NEW_TASK_DEF, new Date(System.currentTimeMillis() - 3600000))));
+
+        DeploymentFailureDetector detector = detector(1);
+
+        assertFalse(detector.hasFailed());
+        assertEquals(0, detector.getStoppedTasks());
+    }
+
+    @Test
+    public void shouldNotQueryWhenDisabled() {
+        assertFalse(detector(0).hasFailed());
+        verify(ecsClient, never()).listTasks(Mockito.any(ListTasksRequest.class));
+    }
+
+    @Test
+    public void shouldStopStabilizationWaitEarly() {
+        when(ecsClient.describeServices(Mockito.any(DescribeServicesRequest.class))).thenReturn(
+            new DescribeServicesResult().withServices(new Service().withDesiredCount(1).withRunningCount(0)
+                .withDeployments(new Deployment().withStatus("PRIMARY").withTaskDefinition(NEW_TASK_DEF)
+                    .withDesiredCount(1).withRunningCount(0).withPendingCount(1))));
+        when(ecsClient.listTasks(Mockito.any(ListTasksRequest.class))).thenReturn(
+            new ListTasksResult().withTaskArns("t1"));
+        when(ecsClient.describeTasks(Mockito.any(DescribeTasksRequest.class))).thenReturn(
+            new DescribeTasksResult().withTasks(stoppedTask("t1", NEW_TASK_DEF, new Date())));
+
+        ServiceStabilizationWaiter waiter = new ServiceStabilizationWaiter(ecsClient, logger, "cluster", "app", 1, 2);
+
+        assertFalse(waiter.waitForSteadyState(60000, detector(1)));
+    }
+
+    private DeploymentFailureDetector detector(int threshold) {
+        return new DeploymentFailureDetector(ecsClient, logger, "cluster", "app", NEW_TASK_DEF, threshold);
+    }
+
+    private Task stoppedTask(String arn, String taskDefinition, Date createdAt) {
+        return new Task().withTaskArn(arn).withTaskDefinitionArn(taskDefinition).withCreatedAt(createdAt)
+            .withDesiredStatus("STOPPED").withStoppedReason("Essential container in task exited")
+            .withContainers(new Container().withName("app").withExitCode(1));
+    }
+}
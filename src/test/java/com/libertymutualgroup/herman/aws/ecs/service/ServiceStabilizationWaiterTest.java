@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.service;
+
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.DescribeServicesRequest;
+import com.amazonaws.services.ecs.model.DescribeServicesResult;
+import com.amazonaws.services.ecs.model.Deployment;
+import com.amazonaws.services.ecs.model.LoadBalancer;
+import com.amazonaws.services.ecs.model.Service;
+import com.amazonaws.services.ecs.model.ServiceEvent;
+import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancing;
+import com.amazonaws.services.elasticloadbalancingv2.model.DescribeTargetHealthRequest;
+import com.amazonaws.services.elasticloadbalancingv2.model.DescribeTargetHealthResult;
+import com.amazonaws.services.elasticloadbalancingv2.model.TargetHealth;
+import com.amazonaws.services.elasticloadbalancingv2.model.TargetHealthDescription;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServiceStabilizationWaiterTest {
+
+    @Mock
+    AmazonECS ecsClient;
+    @Mock
+    HermanLogger logger;
+    @Mock
+    AmazonElasticLoadBalancing elbClient;
+
+    ServiceStabilizationWaiter waiter;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        waiter = new ServiceStabilizationWaiter(ecsClient, logger, "cluster", "app", 1, 2);
+    }
+
+    @Test
+    public void shouldStabilizeWhenOnlyPrimaryDeploymentIsFullyRunning() {
+        when(ecsClient.describeServices(Mockito.any(DescribeServicesRequest.class))).thenReturn(
+            result(service(2, 1, deployment("PRIMARY", "task:2", 2, 1), deployment("ACTIVE", "task:1", 1, 1))),
+            result(service(2, 2, deployment("PRIMARY", "task:2", 2, 2))));
+
+        assertTrue(waiter.waitForSteadyState(5000));
+    }
+
+    @Test
+    public void shouldTimeOutWhileOldDeploymentIsDraining() {
+        when(ecsClient.describeServices(Mockito.any(DescribeServicesRequest.class))).thenReturn(
+            result(service(2, 2, deployment("PRIMARY", "task:2", 2, 2), deployment("ACTIVE", "task:1", 0, 0))));
+
+        assertFalse(waiter.waitForSteadyState(20));
+    }
+
+    @Test
+    public void shouldWaitForNewTargetsToPassHealthChecks() {
+        Service steady = service(2, 2, deployment("PRIMARY", "task:2", 2, 2))
+            .withLoadBalancers(new LoadBalancer().withTargetGroupArn("tg"));
+        when(ecsClient.describeServices(Mockito.any(DescribeServicesRequest.class))).thenReturn(result(steady));
+        when(elbClient.describeTargetHealth(Mockito.any(DescribeTargetHealthRequest.class))).thenReturn(
+            targets("healthy", "initial", "draining"),
+            targets("healthy", "unhealthy", "draining"),
+            targets("healthy", "healthy", "draining"));
+
+        assertTrue(waiter.withTargetHealthCheck(elbClient).waitForSteadyState(5000));
+        verify(elbClient, times(3)).describeTargetHealth(Mockito.any(DescribeTargetHealthRequest.class));
+    }
+
+    @Test
+    public void shouldStreamEveryNewEventInOrder() {
+        Service first = service(1, 0, deployment("PRIMARY", "task:2", 1, 0))
+            .withEvents(event("e1", "old event"));
+        Service second = service(1, 1, deployment("PRIMARY", "task:2", 1, 1))
+            .withEvents(event("e3", "reached steady state"), event("e2", "started task"), event("e1", "old event"));
+        when(ecsClient.describeServices(Mockito.any(DescribeServicesRequest.class)))
+            .thenReturn(result(first), result(second));
+
+        assertTrue(waiter.waitForSteadyState(5000));
+
+        InOrder inOrder = Mockito.inOrder(logger);
+        inOrder.verify(logger).addLogEntry("old event");
+        inOrder.verify(logger).addLogEntry("started task");
+        inOrder.verify(logger).addLogEntry("reached steady state");
+    }
+
+    @Test
+    public void shouldInitializeOnceTaskDefinitionIsPrimary() {
+        when(ecsClient.describeServices(Mockito.any(DescribeServicesRequest.class))).thenReturn(
+            result(service(1, 1, deployment("PRIMARY", "task:1", 1, 1))),
+            result(service(1, 1, deployment("PRIMARY", "task:2", 1, 0), deployment("ACTIVE", "task:1", 1, 1))));
+
+        assertTrue(waiter.waitForInitialization("task:2", 5000));
+        verify(logger).addLogEntry("Waiting for start...");
+    }
+
+    @Test
+    public void shouldNotWaitWhenAlreadyInitialized() {
+        when(ecsClient.describeServices(Mockito.any(DescribeServicesRequest.class))).thenReturn(
+            result(service(1, 1, deployment("PRIMARY", "task:2", 1, 1))));
+
+        assertTrue(waiter.waitForInitialization("task:2", 5000));
+        verify(logger, never()).addLogEntry("Waiting for start...");
+    }
+
+    private DescribeServicesResult result(Service service) {
+        return new DescribeServicesResult().withServices(service);
+    }
+
+    private Service service(int desired, int running, Deployment... deployments) {
+        return new Service().withStatus("ACTIVE").withDesiredCount(desired).withRunningCount(running)
+            .withPendingCount(desired - running).withDeployments(deployments);
+    }
+
+    private Deployment deployment(String status, String taskDefinition, int desired, int running) {
+        return new Deployment().withStatus(status).withTaskDefinition(taskDefinition).withDesiredCount(desired)
+            .withRunningCount(running).withPendingCount(desired - running);
+    }
+
+    private DescribeTargetHealthResult targets(String... states) {
+        DescribeTargetHealthResult result = new DescribeTargetHealthResult();
+        for (String state : states) {
+            result.withTargetHealthDescriptions(
+                new TargetHealthDescription().withTargetHealth(new TargetHealth().withState(state)));
+        }
+        return result;
+    }
+
+    private ServiceEvent event(String id, String message) {
+        return new ServiceEvent().withId(id).withMessage(message);
+    }
+}
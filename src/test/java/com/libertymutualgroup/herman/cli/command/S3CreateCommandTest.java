@@ -1,5 +1,6 @@
 package com.libertymutualgroup.herman.cli.command;
 
+import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.regions.Regions;
 import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.broker.s3.BucketMeta;
@@ -44,6 +45,7 @@ public class S3CreateCommandTest {
         S3CreateCommand command = spy(new S3CreateCommand());
         doReturn(s3Broker).when(command).getBroker(any());
         doReturn(new BucketMeta()).when(s3Broker).brokerFromConfigurationFile();
+        when(credHandler.getAWSCredentials()).thenReturn(new BasicAWSCredentials("accessKey", "secretKey"));
 
         command.executeS3Task(mock(SysoutLogger.class), Regions.US_EAST_1, credHandler, propUtil, configUtil);
 
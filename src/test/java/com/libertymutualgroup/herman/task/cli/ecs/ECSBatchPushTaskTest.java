@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.task.cli.ecs;
+
+import com.amazonaws.regions.Regions;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ECSBatchPushTaskTest {
+
+    HermanLogger logger = new SysoutLogger();
+    ECSBatchPushTask task = new ECSBatchPushTask(logger);
+
+    @Test
+    public void shouldKeepPushingWhenOneAppFails() {
+        Map<String, ECSPushTaskConfiguration> apps = new LinkedHashMap<>();
+        apps.put("api", new ECSPushTaskConfiguration());
+        apps.put("broken", new ECSPushTaskConfiguration());
+        apps.put("worker", new ECSPushTaskConfiguration());
+
+        List<ECSBatchPushTask.AppResult> results = task.pushAll(apps, 2, (configuration, appLogger) -> {
+            if (configuration == apps.get("broken")) {
+                throw new AwsExecException("Task definition invalid");
+            }
+        });
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSucceeded());
+        assertFalse(results.get(1).isSucceeded());
+        assertEquals("Task definition invalid", results.get(1).getError());
+        assertTrue(results.get(2).isSucceeded());
+    }
+
+    @Test
+    public void shouldPushAppsConcurrently() {
+        Map<String, ECSPushTaskConfiguration> apps = new LinkedHashMap<>();
+        apps.put("api", new ECSPushTaskConfiguration());
+        apps.put("worker", new ECSPushTaskConfiguration());
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        List<ECSBatchPushTask.AppResult> results = task.pushAll(apps, 2, (configuration, appLogger) -> {
+            bothStarted.countDown();
+            try {
+                if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new AwsExecException("Apps were pushed one at a time");
+                }
+            } catch (InterruptedException e) {
+                throw new AwsExecException(e);
+            }
+        });
+
+        assertTrue(results.get(0).isSucceeded());
+        assertTrue(results.get(1).isSucceeded());
+    }
+
+    @Test
+    public void shouldApplyDefaultsToManifestApps() {
+        ECSBatchPushManifest manifest = new ECSBatchPushManifest();
+        manifest.getApps().add(new ECSBatchPushApp().withDirectory("services/api")
+            .withVariables(Collections.singletonMap("image", "api:2")));
+        manifest.getApps().add(new ECSBatchPushApp().withName("jobs").withDirectory("services/worker")
+            .withEnvironment("qa").withTimeout(15));
+        ECSPushTaskConfiguration defaults = new ECSPushTaskConfiguration()
+            .withTimeout(5)
+            .withEnvironmentName("dev")
+            .withRegion(Regions.US_EAST_1)
+            .withCustomVariables(Collections.singletonMap("team", "platform"));
+
+        Map<String, ECSPushTaskConfiguration> apps = task.getAppConfigurations(manifest, new File("/releases"),
+            defaults);
+
+        ECSPushTaskConfiguration api = apps.get("api");
+        assertEquals(new File("/releases/services/api").getAbsolutePath(), api.getRootPath());
+        assertEquals("dev", api.getEnvironmentName());
+        assertEquals(5, api.getTimeout());
+        assertEquals("platform", api.getCustomVariables().get("team"));
+        assertEquals("api:2", api.getCustomVariables().get("image"));
+
+        ECSPushTaskConfiguration jobs = apps.get("jobs");
+        assertEquals("qa", jobs.getEnvironmentName());
+        assertEquals(15, jobs.getTimeout());
+        assertEquals(Regions.US_EAST_1, jobs.getRegion());
+    }
+
+    @Test(expected = AwsExecException.class)
+    public void shouldRejectDuplicateAppNames() {
+        ECSBatchPushManifest manifest = new ECSBatchPushManifest();
+        manifest.getApps().add(new ECSBatchPushApp().withDirectory("a/api"));
+        manifest.getApps().add(new ECSBatchPushApp().withDirectory("b/api"));
+
+        task.getAppConfigurations(manifest, new File("/releases"), new ECSPushTaskConfiguration());
+    }
+}
@@ -53,6 +53,8 @@ public class ConfigurationUtilTest {
         PowerMockito.when(AWSSecurityTokenServiceClientBuilder.standard()).thenReturn(builder);
         PowerMockito.when(builder.withCredentials(Mockito.any())).thenReturn(builder);
         PowerMockito.when(builder.withClientConfiguration(clientConfig)).thenReturn(builder);
+        PowerMockito.when(builder.withRequestHandlers(Mockito.anyVararg())).thenReturn(builder);
+        PowerMockito.when(builder.withRegion(Mockito.any(Regions.class))).thenReturn(builder);
         PowerMockito.when(builder.build()).thenReturn(stsClient);
 
         when(stsClient.getCallerIdentity(Mockito.any())).thenReturn(resultClient);
@@ -4,22 +4,33 @@ import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class FileUtilTest {
 
     @Mock
     HermanLogger logger;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     FileUtil util;
 
     @Before
@@ -89,4 +100,46 @@ public class FileUtilTest {
         }
     }
 
+    @Test
+    public void shareZipIndexBetweenInstances() throws IOException {
+        File zip = writeZip(folder.newFolder("shared"), "entry.txt", "one");
+        FileUtil first = new FileUtil(zip.getParent(), logger);
+        FileUtil second = new FileUtil(zip.getParent(), logger);
+
+        Assert.assertEquals("one", first.findFile("entry.txt", false));
+        Assert.assertEquals("one", second.findFile("entry.txt", false));
+        Assert.assertSame(ConfigZip.get(zip), ConfigZip.get(zip));
+    }
+
+    @Test
+    public void reindexChangedZip() throws IOException {
+        File root = folder.newFolder("changed");
+        File zip = writeZip(root, "entry.txt", "one");
+        Assert.assertEquals("one", new FileUtil(root.getPath(), logger).findFile("entry.txt", false));
+
+        writeZip(root, "entry.txt", "two, longer");
+        zip.setLastModified(zip.lastModified() + 2000);
+        Assert.assertEquals("two, longer", new FileUtil(root.getPath(), logger).findFile("entry.txt", false));
+    }
+
+    @Test
+    public void readLargeFileFromFilesystem() throws IOException {
+        char[] chars = new char[3 * 1024 * 1024];
+        Arrays.fill(chars, 'x');
+        String content = new String(chars) + "\u00e9";
+        File file = folder.newFile("large.json");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertEquals(content, new FileUtil(folder.getRoot().getPath(), logger).findFile("large.json", false));
+    }
+
+    private File writeZip(File root, String entry, String content) throws IOException {
+        File zip = new File(root, "app-config.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry(entry));
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return zip;
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBMixIns;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectMappersTest {
+
+    @Test
+    public void shouldBuildMixInMappersOnce() {
+        Map<Class<?>, Class<?>> mixIns = ObjectMappers.mixIns(DynamoDBMixIns.class, KeySchemaElement.class,
+            Projection.class);
+
+        assertSame(ObjectMappers.withMixIns(false, mixIns),
+            ObjectMappers.withMixIns(false, ObjectMappers.mixIns(DynamoDBMixIns.class, KeySchemaElement.class,
+                Projection.class)));
+        assertFalse(ObjectMappers.withMixIns(true, mixIns) == ObjectMappers.withMixIns(false, mixIns));
+    }
+
+    @Test
+    public void shouldNotChangeSharedMappers() {
+        ObjectMappers.withMixIns(true, ObjectMappers.mixIns(DynamoDBMixIns.class, KeySchemaElement.class));
+
+        assertNull(ObjectMappers.json().findMixInClassFor(KeySchemaElement.class));
+        assertTrue(ObjectMappers.withMixIns(true, ObjectMappers.mixIns(DynamoDBMixIns.class, KeySchemaElement.class))
+            .findMixInClassFor(KeySchemaElement.class) == DynamoDBMixIns.class);
+    }
+}